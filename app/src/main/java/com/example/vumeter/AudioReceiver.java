@@ -1,88 +1,168 @@
-package com.example.vumeter;
-
-import android.media.AudioRecord;
-import android.media.AudioFormat;
-import android.media.MediaRecorder;
-
-import static androidx.constraintlayout.widget.Constraints.TAG;
-import static java.lang.Integer.max;
-import static java.lang.Math.abs;
-
-import android.util.Log;
-import android.os.Handler;
-import android.os.Looper;
-
-public class AudioReceiver {
-
-    private static final int RECORDING_RATE = 8000;
-    private static final int CHANNEL = AudioFormat.CHANNEL_IN_MONO;
-    private static final int FORMAT = AudioFormat.ENCODING_PCM_16BIT;
-
-
-    private AudioRecord recorder;
-
-    private Thread mReceivingThread;
-
-    private static int BUFFER_SIZE;
-    short[] buffer;
-
-    int mRMS;
-    int mPeak;
-
-    AudioReceiverListener mListener;
-
-
-    AudioReceiver(AudioReceiverListener listener) {
-       mListener = listener;
-       receiveAndCalc();
-    }
-
-    void receiveAndCalc() {
-        BUFFER_SIZE = AudioRecord.getMinBufferSize( RECORDING_RATE, CHANNEL, FORMAT );
-        recorder = new AudioRecord(MediaRecorder.AudioSource.MIC,
-                RECORDING_RATE, CHANNEL, FORMAT, BUFFER_SIZE * 10);
-        buffer = new short[BUFFER_SIZE];
-        recorder.startRecording();
-
-        mReceivingThread = new Thread(new Runnable() {
-
-            @Override
-            public void run() {
-                try {
-                    Handler uiHandler = new Handler(Looper.getMainLooper());
-                    while (true) {
-                        int length_read = recorder.read(buffer, 0, buffer.length);
-                        calcRMS( buffer, length_read );
-                        if (mListener != null) {
-                            uiHandler.post(new Runnable() {
-                                @Override
-                                public void run() {
-                                    mListener.onUpdateRMS(mRMS, mPeak);
-                                }
-                            });
-                        }
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "Exception: " + e);
-                }
-            }
-        });
-
-        mReceivingThread.start();
-
-    }
-
-    void calcRMS( short[] buffer, int length ) {
-        double accumAbs = 0.0;
-        mPeak = 0;
-        for (int i = 0; i < length; i++) {
-            int v = abs((int)buffer[i]);
-            if ( mPeak < v ) {
-                mPeak = v;
-            }
-            double val = (double) buffer[i];
-            accumAbs += (val * val);
-        }
-        mRMS = (int) Math.sqrt((accumAbs / (double) length));
-    }
-}
+package com.example.vumeter;
+
+import android.util.Log;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.vumeter.core.AudioReceiverListener;
+import com.example.vumeter.core.AudioSource;
+import com.example.vumeter.core.Ballistics;
+import com.example.vumeter.core.CaptureConfig;
+import com.example.vumeter.core.CaptureEngine;
+import com.example.vumeter.core.CaptureLoop;
+import com.example.vumeter.core.LevelHistory;
+import com.example.vumeter.core.MeterMetrics;
+import com.example.vumeter.core.MeterStateListener;
+import com.example.vumeter.core.MeterStateTripleBuffer;
+import com.example.vumeter.core.SessionRecorder;
+import com.example.vumeter.core.SpectrumAnalyzer;
+
+import java.util.concurrent.Executor;
+
+/** @brief Runs a CaptureLoop on the microphone, or another AudioSource,
+ *         on its own thread. The metering itself is in meter-core.
+ *
+ *  Nothing is captured until start(). Follow the lifecycle of the screen
+ *  with start(), pause() and stop(); see CaptureEngine.
+ */
+public class AudioReceiver {
+
+    private static final String TAG = AudioReceiver.class.getSimpleName();
+
+    final AudioSource       mSource;
+    final CaptureEngine     mEngine;
+    final CaptureLoop       mCaptureLoop;
+
+    AudioReceiver() {
+        this(CaptureConfig.DEFAULT, null);
+    }
+
+    AudioReceiver(CaptureConfig config) {
+        this(config, null);
+    }
+
+    AudioReceiver(CaptureConfig config, AudioReceiverListener listener) {
+        this(config, Ballistics.Mode.VU, listener);
+    }
+
+    /**
+     * @param mode     ballistics of the hands.
+     * @param listener notified on the main thread with the loudest channel.
+     */
+    AudioReceiver(CaptureConfig config, Ballistics.Mode mode, AudioReceiverListener listener) {
+       this(new AudioRecordSource(config), mode, listener);
+    }
+
+    /**
+     * @param source   in place of the microphone, paced to real time like
+     *                 it, e.g. a SineAudioSource in real time.
+     */
+    AudioReceiver(AudioSource source, Ballistics.Mode mode, AudioReceiverListener listener) {
+       mSource      = source;
+       mEngine      = new CaptureEngine(mSource, mode);
+       mCaptureLoop = mEngine.getLoop();
+       mEngine.setListener(new CaptureEngine.Listener() {
+           @Override
+           public void onCaptureEnded(Throwable failure) {
+               if (failure != null) {
+                   Log.e(TAG, "Capture failed: " + failure);
+               }
+           }
+       });
+       if (listener != null) {
+           final Handler uiHandler = new Handler(Looper.getMainLooper());
+           mCaptureLoop.setLevelListener(new Executor() {
+               @Override
+               public void execute(Runnable r) {
+                   uiHandler.post(r);
+               }
+           }, listener);
+       }
+    }
+
+    CaptureConfig getConfig() {
+        return mCaptureLoop.getConfig();
+    }
+
+    Ballistics.Mode getBallisticsMode() {
+        return mCaptureLoop.getBallisticsMode();
+    }
+
+    /** @brief Written by the capture thread, read wait-free by the GL thread. */
+    MeterStateTripleBuffer getMeterState() {
+        return mCaptureLoop.getMeterState();
+    }
+
+    /** @brief The overload LED lights when the true peak of a block reaches
+     *         dBTP. Any thread.
+     */
+    void setOverloadThreshold(float dBTP) {
+        mCaptureLoop.setOverloadThreshold(dBTP);
+    }
+
+    /** @brief Starts a new program for the integrated loudness and the
+     *         loudness range. Any thread.
+     */
+    void resetLoudness() {
+        mCaptureLoop.resetLoudness();
+    }
+
+    /** @brief Turns the band levels on with the given analyzer, or off
+     *         with null. Any thread.
+     */
+    void setSpectrumAnalyzer(SpectrumAnalyzer analyzer) {
+        mCaptureLoop.setSpectrumAnalyzer(analyzer);
+    }
+
+    /** @brief Appends the levels of every block to the recorder, or stops
+     *         with null. Any thread.
+     */
+    void setSessionRecorder(SessionRecorder recorder) {
+        mCaptureLoop.setSessionRecorder(recorder);
+    }
+
+    /** @brief Adds the levels of every block to the history, or stops
+     *         with null. Any thread.
+     */
+    void setLevelHistory(LevelHistory history) {
+        mCaptureLoop.setLevelHistory(history);
+    }
+
+    /** @brief Where the capture thread and the listener record their
+     *         timings and counts. Any thread.
+     */
+    void setMetrics(MeterMetrics metrics) {
+        mCaptureLoop.setMetrics(metrics);
+    }
+
+    /** @brief Called on the capture thread right after each publication to
+     *         the meter state. It must not block.
+     */
+    void setCaptureThreadListener(MeterStateListener listener) {
+        mCaptureLoop.setCaptureThreadListener(listener);
+    }
+
+    /** @brief Opens the microphone if needed and starts, or resumes, the
+     *         capture thread. Needs the RECORD_AUDIO permission; without it
+     *         the capture fails and the hands rest. Main thread.
+     */
+    void start() {
+        mEngine.start();
+    }
+
+    /** @brief Stops the capture thread and the recording, keeping the
+     *         microphone open and the levels for start(). Main thread.
+     */
+    void pause() {
+        mEngine.pause();
+    }
+
+    /** @brief Stops the capture thread and releases the microphone. Main thread. */
+    void stop() {
+        mEngine.stop();
+    }
+
+    CaptureEngine.State getState() {
+        return mEngine.getState();
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.vumeter;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.AudioTimestamp;
+import android.media.MediaRecorder;
+import android.os.Build;
+
+import com.example.vumeter.core.AudioSource;
+import com.example.vumeter.core.CaptureConfig;
+import com.example.vumeter.core.CaptureTimestamps;
+
+/** @brief AudioSource on the microphone through AudioRecord.
+ *
+ *  The recorder keeps RING_BUFFER_FACTOR times its minimum buffer, so the
+ *  capture thread can be held up without an overrun. Each read() takes the
+ *  block size of the config, or the minimum buffer if it has none, so the
+ *  latency follows the block size and not the ring. From Android 7.0 the
+ *  capture time of the samples comes from AudioRecord.getTimestamp().
+ *
+ *  The AudioRecord is created by the first start() and after each
+ *  release(), so the microphone is only held between those, and the source
+ *  can be built before the permission to record is granted.
+ */
+class AudioRecordSource implements AudioSource, CaptureTimestamps {
+
+    static final int RING_BUFFER_FACTOR = 10;
+
+    private final CaptureConfig  mConfig;
+    private final int            mRingSize;
+    private final int            mBufferSizeInSamples;
+    private final AudioTimestamp mTimestamp;
+
+    /** @brief null until start() and after release(). Capture thread, and
+     *         the thread that releases after joining it.
+     */
+    private AudioRecord          mRecorder;
+
+    /** @brief Frames read in all, and when the recorder was last started.
+     *         The timestamps of the recorder count from that start.
+     */
+    private long                 mFramesRead;
+    private long                 mFramesAtStart;
+
+    AudioRecordSource(CaptureConfig config) {
+        mConfig = supportedConfig(config);
+
+        final int rate    = mConfig.getSampleRate();
+        final int channel = channelMask(mConfig);
+        final int format  = audioFormat(mConfig);
+
+        // In bytes.
+        int bufferSize = AudioRecord.getMinBufferSize( rate, channel, format );
+        mRingSize = Math.max(bufferSize, mConfig.getBlockSamples(0) * mConfig.getBytesPerSample())
+                  * RING_BUFFER_FACTOR;
+
+        mBufferSizeInSamples = mConfig.getBlockSamples(bufferSize / mConfig.getBytesPerFrame());
+
+        mTimestamp = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N ? new AudioTimestamp() : null;
+    }
+
+    /** @brief AudioRecord.read(float[], ...) exists only from Android 6.0.
+     *         Older devices fall back to 16-bit capture.
+     */
+    static CaptureConfig supportedConfig(CaptureConfig config) {
+        if (config.getEncoding() == CaptureConfig.Encoding.PCM_FLOAT
+                && Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return config.withEncoding(CaptureConfig.Encoding.PCM_16BIT);
+        }
+        return config;
+    }
+
+    static int channelMask(CaptureConfig config) {
+        return config.getChannelCount() == 2 ? AudioFormat.CHANNEL_IN_STEREO
+                                             : AudioFormat.CHANNEL_IN_MONO;
+    }
+
+    static int audioFormat(CaptureConfig config) {
+        return config.getEncoding() == CaptureConfig.Encoding.PCM_FLOAT
+                ? AudioFormat.ENCODING_PCM_FLOAT
+                : AudioFormat.ENCODING_PCM_16BIT;
+    }
+
+    @Override
+    public CaptureConfig getConfig() {
+        return mConfig;
+    }
+
+    @Override
+    public int getBufferSizeInSamples() {
+        return mBufferSizeInSamples;
+    }
+
+    @Override
+    public void start() {
+        if (mRecorder == null) {
+            AudioRecord recorder = new AudioRecord(MediaRecorder.AudioSource.MIC,
+                    mConfig.getSampleRate(), channelMask(mConfig), audioFormat(mConfig), mRingSize);
+            if (recorder.getState() != AudioRecord.STATE_INITIALIZED) {
+                // No RECORD_AUDIO permission, or no microphone.
+                recorder.release();
+                throw new SecurityException("The microphone could not be opened.");
+            }
+            mRecorder = recorder;
+        }
+        mRecorder.startRecording();
+        mFramesAtStart = mFramesRead;
+    }
+
+    @Override
+    public int read(short[] buffer, int offset, int length) {
+        return counted(mRecorder.read(buffer, offset, length));
+    }
+
+    @Override
+    public int read(float[] buffer, int offset, int length) {
+        return counted(mRecorder.read(buffer, offset, length, AudioRecord.READ_BLOCKING));
+    }
+
+    private int counted(int samples) {
+        if (samples > 0) {
+            mFramesRead += samples / mConfig.getChannelCount();
+        }
+        return samples;
+    }
+
+    /** @brief Extrapolated from the last timestamp of the recorder, whose
+     *         frame positions count from the last startRecording().
+     */
+    @Override
+    public long captureNanosOfFrame(long framePosition) {
+        if (mTimestamp == null
+                || mRecorder.getTimestamp(mTimestamp, AudioTimestamp.TIMEBASE_MONOTONIC)
+                   != AudioRecord.SUCCESS) {
+            return NO_TIMESTAMP;
+        }
+        return mTimestamp.nanoTime
+             + (framePosition - mFramesAtStart - mTimestamp.framePosition)
+               * 1000000000L / mConfig.getSampleRate();
+    }
+
+    @Override
+    public void stop() {
+        mRecorder.stop();
+    }
+
+    @Override
+    public void release() {
+        if (mRecorder != null) {
+            mRecorder.release();
+            mRecorder = null;
+        }
+    }
+}
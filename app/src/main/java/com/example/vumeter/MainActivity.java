@@ -1,28 +1,85 @@
-package com.example.vumeter;
-
-import androidx.appcompat.app.AppCompatActivity;
-import androidx.core.app.ActivityCompat;
-
-import android.Manifest;
-import android.content.pm.PackageManager;
-import android.os.Bundle;
-
-public class MainActivity extends AppCompatActivity {
-
-    @Override
-    protected void onCreate(Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_main);
-    }
-
-    private void checkRecordPermission() {
-
-        if (ActivityCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO)
-                != PackageManager.PERMISSION_GRANTED) {
-
-            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.RECORD_AUDIO},
-                    123);
-        }
-    }
-
-}
+package com.example.vumeter;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.app.ActivityCompat;
+
+import android.Manifest;
+import android.content.pm.PackageManager;
+import android.os.Bundle;
+import android.widget.Toast;
+
+/** @brief Shows the meter. The microphone is captured only while the
+ *         Activity is in the foreground: paused with onPause(), released
+ *         with onStop().
+ */
+public class MainActivity extends AppCompatActivity {
+
+    private static final int REQUEST_RECORD_AUDIO = 123;
+
+    private VUMeterView mMeterView;
+
+    /** @brief Asked at most once per Activity, so a denial is not asked again
+     *         at every onResume().
+     */
+    private boolean mPermissionRequested;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_main);
+        mMeterView = (VUMeterView) findViewById(R.id.VUMeterView);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        mMeterView.onResume();
+        if (checkRecordPermission()) {
+            mMeterView.startCapture();
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        mMeterView.onPause();
+        super.onPause();
+    }
+
+    @Override
+    protected void onStop() {
+        mMeterView.stopCapture();
+        super.onStop();
+    }
+
+    @Override
+    public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions,
+                                           @NonNull int[] grantResults) {
+        super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+        if (requestCode != REQUEST_RECORD_AUDIO) {
+            return;
+        }
+        if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+            // onResume() follows the dialog and starts the capture.
+            return;
+        }
+        // The hands stay at rest.
+        Toast.makeText(this, R.string.record_permission_denied, Toast.LENGTH_LONG).show();
+    }
+
+    /** @return true if RECORD_AUDIO is granted. Otherwise asks for it, once. */
+    private boolean checkRecordPermission() {
+
+        if (ActivityCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO)
+                == PackageManager.PERMISSION_GRANTED) {
+            return true;
+        }
+        if (!mPermissionRequested) {
+            mPermissionRequested = true;
+            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.RECORD_AUDIO},
+                    REQUEST_RECORD_AUDIO);
+        }
+        return false;
+    }
+
+}
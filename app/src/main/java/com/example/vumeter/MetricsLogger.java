@@ -0,0 +1,50 @@
+package com.example.vumeter;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.vumeter.core.MeterMetrics;
+
+/** @brief Writes the report of MeterMetrics to logcat periodically, from
+ *         the main thread.
+ */
+class MetricsLogger {
+
+    private static final String TAG = "VUMeterMetrics";
+
+    static final long DEFAULT_INTERVAL_MILLIS = 5000L;
+
+    private final MeterMetrics mMetrics;
+    private final long         mIntervalMillis;
+    private final Handler      mHandler = new Handler(Looper.getMainLooper());
+
+    private final Runnable mLog = new Runnable() {
+        @Override
+        public void run() {
+            for (String line : mMetrics.report().split("\n")) {
+                Log.i(TAG, line);
+            }
+            mHandler.postDelayed(this, mIntervalMillis);
+        }
+    };
+
+    MetricsLogger(MeterMetrics metrics, long intervalMillis)
+    {
+        mMetrics        = metrics;
+        mIntervalMillis = intervalMillis;
+    }
+
+    /** @brief Any thread. */
+    void start()
+    {
+        mHandler.removeCallbacks(mLog);
+        mHandler.postDelayed(mLog, mIntervalMillis);
+    }
+
+    /** @brief Any thread. */
+    void stop()
+    {
+        mHandler.removeCallbacks(mLog);
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.vumeter;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import com.example.vumeter.core.MeterMetrics;
+import com.example.vumeter.core.VertexUploadPlan;
+
+/** @brief The report of MeterMetrics as text over the upper left of the
+ *         meter, drawn with the program of the meter.
+ *
+ *  The text is drawn into a Bitmap with a Canvas and uploaded as a texture
+ *  at most once per UPDATE_INTERVAL_NANOS, so the overlay costs one quad
+ *  per frame. It is refreshed with the frames drawn; a meter at rest does
+ *  not draw any. GL thread only.
+ */
+class MetricsOverlay {
+
+    static final long  UPDATE_INTERVAL_NANOS = 1000000000L;
+
+    static final int   TEXTURE_WIDTH  = 1024;
+    static final int   TEXTURE_HEIGHT = 256;
+    static final float TEXT_SIZE      = 20.0f;
+
+    /** @brief In normalized device coordinates. */
+    static final float LEFT   = -1.0f;
+    static final float TOP    =  1.0f;
+    static final float WIDTH  =  1.6f;
+    static final float HEIGHT =  0.8f;
+
+    private final MeterMetrics mMetrics;
+    private final Bitmap       mBitmap;
+    private final Canvas       mCanvas;
+    private final Paint        mPaint;
+    private final FloatBuffer  mVertices;
+    private final int[]        mTextureHandle = new int[1];
+
+    private long    mLastUpdateNanos;
+    private boolean mUploaded;
+
+    MetricsOverlay(MeterMetrics metrics)
+    {
+        mMetrics = metrics;
+        mBitmap  = Bitmap.createBitmap(TEXTURE_WIDTH, TEXTURE_HEIGHT, Bitmap.Config.ARGB_8888);
+        mCanvas  = new Canvas(mBitmap);
+        mPaint   = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mPaint.setTypeface(Typeface.MONOSPACE);
+        mPaint.setTextSize(TEXT_SIZE);
+        mPaint.setColor(Color.WHITE);
+
+        // A triangle fan: top left, top right, bottom right, bottom left.
+        float[] quad = {
+            LEFT,         TOP,          0.0f, 0.0f, 0.0f,
+            LEFT + WIDTH, TOP,          0.0f, 1.0f, 0.0f,
+            LEFT + WIDTH, TOP - HEIGHT, 0.0f, 1.0f, 1.0f,
+            LEFT,         TOP - HEIGHT, 0.0f, 0.0f, 1.0f,
+        };
+        ByteBuffer bb = ByteBuffer.allocateDirect(quad.length * 4);
+        bb.order(ByteOrder.nativeOrder());
+        mVertices = bb.asFloatBuffer();
+        mVertices.put(quad);
+
+        GLES20.glGenTextures(1, mTextureHandle, 0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTextureHandle[0]);
+        GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+    }
+
+    /** @brief Draws the overlay with the meter program bound. Leaves the
+     *         overlay texture bound and no array buffer.
+     */
+    void draw(long nowNanos, int positionSlot, int texCoordSlot)
+    {
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTextureHandle[0]);
+        if (!mUploaded || nowNanos - mLastUpdateNanos >= UPDATE_INTERVAL_NANOS) {
+            drawText();
+            if (mUploaded) {
+                GLUtils.texSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, 0, mBitmap);
+            }
+            else {
+                GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, mBitmap, 0);
+                mUploaded = true;
+            }
+            mLastUpdateNanos = nowNanos;
+        }
+
+        // Client-side arrays: the quad does not need a buffer object.
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        mVertices.position(0);
+        GLES20.glVertexAttribPointer(positionSlot, VertexUploadPlan.POSITION_ELEMENTS,
+                GLES20.GL_FLOAT, false, VertexUploadPlan.STRIDE_BYTES, mVertices);
+        mVertices.position(VertexUploadPlan.POSITION_ELEMENTS);
+        GLES20.glVertexAttribPointer(texCoordSlot, VertexUploadPlan.TEXCOORD_ELEMENTS,
+                GLES20.GL_FLOAT, false, VertexUploadPlan.STRIDE_BYTES, mVertices);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_FAN, 0, 4);
+    }
+
+    void release()
+    {
+        GLES20.glDeleteTextures(1, mTextureHandle, 0);
+        mBitmap.recycle();
+    }
+
+    private void drawText()
+    {
+        mBitmap.eraseColor(Color.argb(160, 0, 0, 0));
+        float y = TEXT_SIZE;
+        for (String line : mMetrics.report().split("\n")) {
+            mCanvas.drawText(line, 4.0f, y, mPaint);
+            y += TEXT_SIZE * 1.2f;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.vumeter;
+
+import android.content.Context;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.util.Log;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.example.vumeter.core.ProgramBinaryCache;
+
+/** @brief Links the GL programs of a renderer: from the binaries cached by
+ *         an earlier run if the context is OpenGL ES 3.0 or later, and from
+ *         the shader sources otherwise.
+ *
+ *  A context created for OpenGL ES 2.0 is a 3.x context on most devices,
+ *  so glGetProgramBinary() is usually there. A binary the driver rejects
+ *  is dropped and the program compiled again. GL thread only.
+ */
+class ProgramLoader {
+
+    private static final String TAG = ProgramLoader.class.getSimpleName();
+
+    private final ProgramBinaryCache mCache;
+
+    private boolean mBinaries;
+    private String  mRenderer;
+    private String  mVersion;
+    private int     mCompiled;
+
+    ProgramLoader(Context context)
+    {
+        mCache = new ProgramBinaryCache(new File(context.getCodeCacheDir(), "programs"));
+    }
+
+    /** @brief Call in onSurfaceCreated(), before link(). */
+    void onContextCreated()
+    {
+        mRenderer = GLES20.glGetString(GLES20.GL_RENDERER);
+        mVersion  = GLES20.glGetString(GLES20.GL_VERSION);
+        mCompiled = 0;
+        mBinaries = false;
+        if (mVersion != null && mVersion.startsWith("OpenGL ES ")
+                && mVersion.length() > 10 && mVersion.charAt(10) >= '3') {
+            int[] formats = new int[1];
+            GLES30.glGetIntegerv(GLES30.GL_NUM_PROGRAM_BINARY_FORMATS, formats, 0);
+            mBinaries = formats[0] > 0;
+        }
+    }
+
+    /** @brief True if every program since onContextCreated() came from the cache. */
+    boolean allFromCache()
+    {
+        return mCompiled == 0;
+    }
+
+    int link(String vertexSource, String fragmentSource)
+    {
+        if (!mBinaries) {
+            mCompiled++;
+            return compileAndLink(vertexSource, fragmentSource);
+        }
+        String key = ProgramBinaryCache.key(vertexSource, fragmentSource, mRenderer, mVersion);
+        ProgramBinaryCache.Entry entry = mCache.load(key);
+        if (entry != null) {
+            int handle = GLES20.glCreateProgram();
+            ByteBuffer binary = ByteBuffer.allocateDirect(entry.binary.length).order(ByteOrder.nativeOrder());
+            binary.put(entry.binary).position(0);
+            GLES30.glProgramBinary(handle, entry.format, binary, entry.binary.length);
+            if (isLinked(handle)) {
+                return handle;
+            }
+            Log.i(TAG, "Cached program rejected, compiling it again.");
+            GLES20.glDeleteProgram(handle);
+            mCache.remove(key);
+        }
+        mCompiled++;
+        int handle = compileAndLink(vertexSource, fragmentSource);
+        store(key, handle);
+        return handle;
+    }
+
+    private void store(String key, int handle)
+    {
+        int[] length = new int[1];
+        GLES20.glGetProgramiv(handle, GLES30.GL_PROGRAM_BINARY_LENGTH, length, 0);
+        if (length[0] <= 0) {
+            return;
+        }
+        int[] format = new int[1];
+        ByteBuffer binary = ByteBuffer.allocateDirect(length[0]).order(ByteOrder.nativeOrder());
+        GLES30.glGetProgramBinary(handle, length[0], length, 0, format, 0, binary);
+        if (GLES20.glGetError() != GLES20.GL_NO_ERROR || length[0] <= 0) {
+            return;
+        }
+        byte[] bytes = new byte[length[0]];
+        binary.position(0);
+        binary.get(bytes);
+        mCache.store(key, format[0], bytes, bytes.length);
+    }
+
+    private int compileAndLink(String vertexSource, String fragmentSource)
+    {
+        int vertexShader   = loadShader(GLES20.GL_VERTEX_SHADER,   vertexSource);
+        int fragmentShader = loadShader(GLES20.GL_FRAGMENT_SHADER, fragmentSource);
+
+        int handle = GLES20.glCreateProgram();
+
+        if (handle != 0) {
+            GLES20.glAttachShader(handle, vertexShader);
+            GLES20.glAttachShader(handle, fragmentShader);
+            if (mBinaries) {
+                // Some drivers only keep a binary when asked before linking.
+                GLES30.glProgramParameteri(handle, GLES30.GL_PROGRAM_BINARY_RETRIEVABLE_HINT,
+                        GLES20.GL_TRUE);
+            }
+            GLES20.glLinkProgram(handle);
+            if (!isLinked(handle)) {
+                GLES20.glDeleteProgram(handle);
+                handle = 0;
+            }
+        }
+        // The program keeps what it needs; the shaders go with it.
+        GLES20.glDeleteShader(vertexShader);
+        GLES20.glDeleteShader(fragmentShader);
+
+        if (handle == 0) {
+            throw new RuntimeException("Error creating program.");
+        }
+        return handle;
+    }
+
+    private static boolean isLinked(int handle)
+    {
+        final int[] linkStatus = new int[1];
+        GLES20.glGetProgramiv(handle, GLES20.GL_LINK_STATUS, linkStatus, 0);
+        return linkStatus[0] != 0;
+    }
+
+    private static int loadShader(int type, String source)
+    {
+        int handle = GLES20.glCreateShader(type);
+
+        if (handle != 0) {
+            GLES20.glShaderSource(handle, source);
+            GLES20.glCompileShader(handle);
+            final int[] compileStatus = new int[1];
+            GLES20.glGetShaderiv(handle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
+            if (compileStatus[0] == 0) {
+                GLES20.glDeleteShader(handle);
+                handle = 0;
+            }
+        }
+        if (handle == 0) {
+            throw new RuntimeException(type == GLES20.GL_VERTEX_SHADER
+                    ? "Error creating vertex shader." : "Error creating fragment shader.");
+        }
+        return handle;
+    }
+}
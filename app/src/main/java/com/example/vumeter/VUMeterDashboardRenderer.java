@@ -0,0 +1,211 @@
+package com.example.vumeter;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.opengl.GLES20;
+import android.opengl.GLSurfaceView;
+import android.opengl.GLUtils;
+
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.opengles.GL10;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import com.example.vumeter.core.MeterBatch;
+import com.example.vumeter.core.MeterGeometry;
+import com.example.vumeter.core.NeedleMeter;
+
+/** @brief Draws many meters, e.g. one per track of a multitrack recorder,
+ *         with one glDrawElements() per frame.
+ *
+ *  The geometry of all meters is a MeterBatch sharing vu_meter_texture.png.
+ *  The whole vertex buffer is uploaded when the surface changes; per frame
+ *  only the range of the meters whose hands or LED moved is re-sent.
+ */
+public class VUMeterDashboardRenderer implements GLSurfaceView.Renderer {
+
+    private final Context       mContext;
+    private final NeedleMeter[] mMeters;
+    private final MeterBatch    mBatch;
+    private final ProgramLoader mPrograms;
+
+    private final FloatBuffer   mVerticesNative;
+    private final ShortBuffer   mIndicesNative;
+
+    private int       mProgramHandle = 0;
+    private int[]     mTextureHandles = new int[1];
+    private IntBuffer mVertexBuffer  = IntBuffer.allocate(1);
+    private IntBuffer mIndexBuffer   = IntBuffer.allocate(1);
+
+    private int       mPositionSlot;
+    private int       mTexCoordSlot;
+    private int       mAlphaSlot;
+
+    /** @param meters all with the same number of channels. */
+    public VUMeterDashboardRenderer(Context context, MeterGeometry geometry, NeedleMeter[] meters)
+    {
+        mContext = context;
+        mMeters  = meters;
+        mBatch   = new MeterBatch(geometry, meters.length, meters[0].getChannelCount());
+        mPrograms = new ProgramLoader(context);
+
+        ByteBuffer bb1 = ByteBuffer.allocateDirect(mBatch.vertexBytes());
+        bb1.order(ByteOrder.nativeOrder());
+        mVerticesNative = bb1.asFloatBuffer();
+
+        short[] indices = new short[mBatch.numIndices()];
+        mBatch.fillIndices(indices);
+        ByteBuffer bb2 = ByteBuffer.allocateDirect(mBatch.indexBytes());
+        bb2.order(ByteOrder.nativeOrder());
+        mIndicesNative = bb2.asShortBuffer();
+        mIndicesNative.put(indices);
+        mIndicesNative.position(0);
+    }
+
+    @Override
+    public void onSurfaceCreated(GL10 gl, EGLConfig config)
+    {
+        mPrograms.onContextCreated();
+        createProgram();
+        loadTexture();
+        setupGL();
+    }
+
+    @Override
+    public void onSurfaceChanged(GL10 gl, int width, int height)
+    {
+        GLES20.glViewport(0, 0, width, height);
+        mBatch.layout(width, height);
+        // The redraw thresholds are in pixels of one meter.
+        for (NeedleMeter meter : mMeters) {
+            meter.setViewportSize(width / mBatch.getColumns(), height / mBatch.getRows());
+        }
+    }
+
+    @Override
+    public void onDrawFrame(GL10 gl)
+    {
+        long now = System.nanoTime();
+        for (int m = 0; m < mMeters.length; m++) {
+            mMeters[m].updateFromCapture(now);
+            mBatch.setMeter(m, mMeters[m]);
+        }
+
+        float[] vertices = mBatch.getVertices();
+        if (mBatch.takeLayoutChanged()) {
+            mVerticesNative.position(0);
+            mVerticesNative.put(vertices);
+            mVerticesNative.position(0);
+            GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, mBatch.vertexBytes(),
+                    mVerticesNative, GLES20.GL_DYNAMIC_DRAW);
+        }
+        else if (mBatch.isDirty()) {
+            mVerticesNative.position(mBatch.dirtyFirstFloat());
+            mVerticesNative.put(vertices, mBatch.dirtyFirstFloat(), mBatch.dirtyFloatCount());
+            mVerticesNative.position(mBatch.dirtyFirstFloat());
+            GLES20.glBufferSubData(GLES20.GL_ARRAY_BUFFER, mBatch.dirtyByteOffset(),
+                    mBatch.dirtyByteSize(), mVerticesNative);
+            mBatch.clearDirty();
+        }
+
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+        GLES20.glDrawElements(GLES20.GL_TRIANGLES, mBatch.numIndices(), GLES20.GL_UNSIGNED_SHORT, 0);
+
+        for (NeedleMeter meter : mMeters) {
+            meter.onFrameDrawn();
+        }
+    }
+
+    private void createProgram() {
+        mProgramHandle = mPrograms.link(mVertexShader, mFragmentShader);
+
+        mPositionSlot = GLES20.glGetAttribLocation(mProgramHandle, "Position");
+        mTexCoordSlot = GLES20.glGetAttribLocation(mProgramHandle, "TexCoordIn");
+        mAlphaSlot    = GLES20.glGetAttribLocation(mProgramHandle, "AlphaIn");
+    }
+
+    private void loadTexture() {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        // At the size of the PNG, not scaled up to the screen density.
+        options.inScaled = false;
+        Bitmap bitmap = BitmapFactory.decodeResource(mContext.getResources(), R.drawable.vu_meter_texture, options);
+
+        GLES20.glGenTextures(1, mTextureHandles, 0);
+        GLES20.glBindTexture(GL10.GL_TEXTURE_2D, mTextureHandles[0]);
+        GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER, GL10.GL_LINEAR);
+        GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER, GL10.GL_LINEAR);
+        GLUtils.texImage2D(GL10.GL_TEXTURE_2D, 0, bitmap, 0);
+        bitmap.recycle();
+    }
+
+    /** @brief Buffers and state that stay bound for every frame. */
+    private void setupGL() {
+        GLES20.glGenBuffers(1, mVertexBuffer);
+        GLES20.glGenBuffers(1, mIndexBuffer);
+
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVertexBuffer.get(0));
+        mVerticesNative.position(0);
+        mVerticesNative.put(mBatch.getVertices());
+        mVerticesNative.position(0);
+        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, mBatch.vertexBytes(),
+                mVerticesNative, GLES20.GL_DYNAMIC_DRAW);
+
+        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mIndexBuffer.get(0));
+        GLES20.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, mBatch.indexBytes(),
+                mIndicesNative, GLES20.GL_STATIC_DRAW);
+
+        GLES20.glUseProgram(mProgramHandle);
+        GLES20.glEnableVertexAttribArray(mPositionSlot);
+        GLES20.glEnableVertexAttribArray(mTexCoordSlot);
+        GLES20.glEnableVertexAttribArray(mAlphaSlot);
+        GLES20.glVertexAttribPointer(mPositionSlot, MeterBatch.POSITION_ELEMENTS, GLES20.GL_FLOAT,
+                false, MeterBatch.STRIDE_BYTES, MeterBatch.POSITION_OFFSET);
+        GLES20.glVertexAttribPointer(mTexCoordSlot, MeterBatch.TEXCOORD_ELEMENTS, GLES20.GL_FLOAT,
+                false, MeterBatch.STRIDE_BYTES, MeterBatch.TEXCOORD_OFFSET);
+        GLES20.glVertexAttribPointer(mAlphaSlot, MeterBatch.ALPHA_ELEMENTS, GLES20.GL_FLOAT,
+                false, MeterBatch.STRIDE_BYTES, MeterBatch.ALPHA_OFFSET);
+
+        GLES20.glClearColor(1.0f, 1.0f, 1.0f, 0.0f);
+        GLES20.glEnable(GLES20.GL_BLEND);
+        GLES20.glDepthMask(false);
+        GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTextureHandles[0]);
+        GLES20.glUniform1i(GLES20.glGetUniformLocation(mProgramHandle, "Texture"), 0);
+
+        // A new surface has a new buffer: start over with a full upload.
+        mBatch.clearDirty();
+    }
+
+    final String mVertexShader =
+          "attribute vec2  Position;\n"
+        + "attribute vec2  TexCoordIn;\n"
+        + "attribute float AlphaIn;\n"
+        + "varying   vec2  TexCoordOut;\n"
+        + "varying   float AlphaOut;\n"
+        + "\n"
+        + "void main (void) {\n"
+        + "\n"
+        + "    gl_Position = vec4( Position, 0.0, 1.0 );\n"
+        + "    TexCoordOut = TexCoordIn;\n"
+        + "    AlphaOut    = AlphaIn;\n"
+        + "\n"
+        + "}\n";
+
+    final String mFragmentShader =
+          "varying lowp vec2  TexCoordOut;\n"
+        + "varying lowp float AlphaOut;\n"
+        + "uniform sampler2D Texture;\n"
+        + "\n"
+        + "void main (void) {\n"
+        + "\n"
+        + "    gl_FragColor = texture2D( Texture, TexCoordOut );\n"
+        + "    gl_FragColor.a *= AlphaOut;\n"
+        + "}\n";
+}
@@ -0,0 +1,52 @@
+package com.example.vumeter;
+
+import android.opengl.GLSurfaceView;
+
+import android.content.Context;
+
+import com.example.vumeter.core.MeterGeometry;
+import com.example.vumeter.core.MeterStateTripleBuffer;
+import com.example.vumeter.core.NeedleMeter;
+import com.example.vumeter.core.RenderRequester;
+
+
+/** @brief A wall of meters, one per MeterStateTripleBuffer, drawn in one
+ *         pass by VUMeterDashboardRenderer.
+ *
+ *  Register getMeter(i) as the capture thread listener of the source that
+ *  publishes into the i-th buffer, as VUMeterModel does for its one meter.
+ */
+public class VUMeterDashboardView extends GLSurfaceView implements RenderRequester {
+
+    private final NeedleMeter[] mMeters;
+
+    public VUMeterDashboardView(Context context, MeterStateTripleBuffer[] meterStates, int channels)
+    {
+        super(context);
+
+        setEGLContextClientVersion(2);
+
+        MeterGeometry geometry = new MeterGeometry();
+        geometry.setLookupTables(true);
+        mMeters = new NeedleMeter[meterStates.length];
+        for (int i = 0; i < meterStates.length; i++) {
+            mMeters[i] = new NeedleMeter(geometry, channels, meterStates[i], this);
+            mMeters[i].setLookupTables(true);
+        }
+
+        setRenderer(new VUMeterDashboardRenderer(context, geometry, mMeters));
+
+        // Any meter whose hand or LED visibly changes requests the frame.
+        setRenderMode(RENDERMODE_WHEN_DIRTY);
+    }
+
+    public int getMeterCount()
+    {
+        return mMeters.length;
+    }
+
+    public NeedleMeter getMeter(int index)
+    {
+        return mMeters[index];
+    }
+}
@@ -1,423 +1,681 @@
-package com.example.vumeter;
-
-import java.lang.Math;
-import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
-import java.nio.ByteOrder;
-
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
-import java.nio.ShortBuffer;
-
-import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-
-import android.util.Log;
-
-
-/** @brief Positions in pixel in vu_meter_texture.png
- * The positions are in the xy integer coordinates
- * of the PNG file where Y's positive direction is
- * downward.
- *
- *           PNG Texture Coordinates
- *           -----------------------
- *
- *  (0,0)                          (TextureWidth, 0)
- *    +---------------------------------------->X
- *    |
- *    |
- *    |  [ Pixels are in this rectangular area ]
- *    |
- *  Y\|/
- *   (0,TextureHeight)
- *
- *
- *  Normalized Texture Coordinates used by OpenGL
- *  ---------------------------------------------
- *
- *                  (0,1)
- *                     ^
- *                     |
- *                     |
- *                     |
- *                     |
- *  (-1,0)        (0,0)|                (1,0)
- *    -----------------+------------------>
- *                     |
- *                     |
- *                     |
- *                     |
- *                     |
- *                   (0,-1)
- */
-
-public class VUMeterModel implements AudioReceiverListener {
-
-    private static final String TAG = VUMeterModel.class.getSimpleName();
-
-    float       mTheta;
-    float       mVelocity;
-    float       mAccel;
-    double      mPrevTime;
-
-    int         mRMS;
-    int         mPeak;
-
-    /** @brief Following are points in PNG texture coordinates. */
-    Bitmap mTextureBitmap = null;
-
-    final float TextureWidth             = 512.0f;
-    final float TextureHeight            = 512.0f;
-
-    final float BaseWidth                = 512.0f;
-    final float BaseHeight               = 300.0f;
-
-    final float HandTopLeftX             =   8.0f;
-    final float HandTopLeftY             = 313.0f;
-    final float HandBottomRightX         = 187.0f;
-    final float HandBottomRightY         = 316.0f;
-    final float HandRotatingCenterX      = 251.0f;
-    final float HandRotatingCenterY      = 288.0f;
-    final float HandBottomUprightOnBaseY = 240.0f;
-
-    final float LEDTopLeftOnBaseX        = 414.0f;
-    final float LEDTopLeftOnBaseY        = 116.0f;
-    final float LEDTopLeftX              = 198.0f;
-    final float LEDTopLeftY              = 304.0f;
-    final float LEDBottomRightX          = 231.0f;
-    final float LEDBottomRightY          = 339.0f;
-
-    final float HandAngularLimitLeft     = (float)Math.PI * 3.0f/4.0f;
-    final float HandAngularLimitRight    = (float)Math.PI * 1.0f/4.0f;
-
-    final float AccelerationCoefficient  = 100.0f;
-    final float FrictionCoefficient      =  10.0f;
-    final float AmplitudeRef             = ((float)Short.MAX_VALUE) / 1.4142135623f;
-
-
-    final float DynamicRangeFloorDB      = -96.0f;
-
-    // Following three parameters depend on the microphone and the amplifier.
-    final short OverloadThreshold        =  32767 -10000;
-    final float MicGainCalibFloorDB      = -55.0f;
-    final float MicGainCalibPeakDB       =  -0.0f;
-
-
-    float[] mVertices = new float[ 3 * 4 * 5 ];
-    short[] mIndices  = new short[18];
-
-    public FloatBuffer mVerticesNative;
-    public ShortBuffer mIndicesNative;
-    public int mVerticesByteSize()  { return  3 /*rects*/ * 4 /*points*/ * 5 /*elements*/ * 4/*float*/ ; }
-    public int mIndicesByteSize()   { return 18 * 2/*short*/; }
-    public int mVerticesAttribSize(){ return  5 * 4; }
-    Context     mContext;
-    AudioReceiver mReceiver;
-
-
-    VUMeterModel (Context context) {
-        mContext = context;
-
-        mTextureBitmap = BitmapFactory.decodeResource( mContext.getResources(), R.drawable.vu_meter_texture );
-
-        makeInitialVertexCoordinates();
-        resetPhysics();
-
-        mReceiver = new AudioReceiver(this);
-
-    }
-
-
-    public void onUpdateRMS( int rms, int peak )
-    {
-        mRMS = rms;
-        //Log.i(TAG, String.valueOf(mRMS));
-        mPeak = peak;
-
-        updatePhysics();
-        makeHandVertices();
-    }
-
-    boolean peaked() { return mPeak > OverloadThreshold; }
-
-
-    /**  @brief Converting from PNG texture Coord to Normalized Coord */
-    float fromTexCoordToNormCoordX(float x)
-    {
-        return ( x / BaseWidth ) * 2.0f - 1.0f;
-    }
-
-
-    /** @brief Converting from PNG texture Coord to Normalized Coord */
-    float fromTexCoordToNormCoordYInverted(float y)
-    {
-        return ( y / BaseHeight ) * -2.0f + 1.0f;
-    }
-
-
-    /** @brief Construct the vertices, texture points, and the indices for OpenGL.
-     *         Called only once at initialization.
-     */
-
-    void makeInitialVertexCoordinates()
-    {
-        // VU Meter base.
-        mVertices[  0 *  5 +  0 ] = fromTexCoordToNormCoordX( BaseWidth );
-
-        mVertices[  0 *  5 +  1 ] = fromTexCoordToNormCoordYInverted( BaseHeight );
-
-        mVertices[  0 *  5 +  2 ] = 0.0f;
-
-        mVertices[  1 *  5 +  0 ] = fromTexCoordToNormCoordX( BaseWidth );
-
-        mVertices[  1 *  5 +  1 ] = fromTexCoordToNormCoordYInverted(0.0f );
-
-        mVertices[  1 *  5 +  2 ] = 0.0f;
-
-        mVertices[  2 *  5 +  0 ] = fromTexCoordToNormCoordX(0.0f );
-
-        mVertices[  2 *  5 +  1 ] = fromTexCoordToNormCoordYInverted( 0.0f );
-
-        mVertices[  2 *  5 +  2 ] = 0.0f;
-
-        mVertices[  3 *  5 +  0 ] = fromTexCoordToNormCoordX(0.0f);
-
-        mVertices[  3 *  5 +  1 ] = fromTexCoordToNormCoordYInverted( BaseHeight );
-
-        mVertices[  3 *  5 +  2 ] = 0.0f;
-
-        // LED
-        float LEDWidth  = LEDBottomRightX - LEDTopLeftX;
-        float LEDHeight = LEDBottomRightY - LEDTopLeftY;
-
-        //Log.i("VUMETER", "LED: " + String.valueOf(LEDWidth) + "," + String.valueOf(LEDHeight) );
-
-        mVertices[  8 *  5 +  0 ] = fromTexCoordToNormCoordX( LEDTopLeftOnBaseX + LEDWidth );
-
-        mVertices[  8 *  5 +  1 ] = fromTexCoordToNormCoordYInverted(LEDTopLeftOnBaseY + LEDHeight );
-
-        mVertices[  8 *  5 +  2 ] = 0.0f;
-
-        mVertices[  9 *  5 +  0 ] = fromTexCoordToNormCoordX( LEDTopLeftOnBaseX + LEDWidth );
-
-        mVertices[  9 *  5 +  1 ] = fromTexCoordToNormCoordYInverted( LEDTopLeftOnBaseY  );
-
-        mVertices[  9 *  5 +  2 ] = 0.0f;
-
-        mVertices[ 10 *  5 +  0 ] = fromTexCoordToNormCoordX( LEDTopLeftOnBaseX );
-
-        mVertices[ 10 *  5 +  1 ] = fromTexCoordToNormCoordYInverted( LEDTopLeftOnBaseY );
-
-        mVertices[ 10 *  5 +  2 ] = 0.0f;
-
-        mVertices[ 11 *  5 +  0 ] = fromTexCoordToNormCoordX( LEDTopLeftOnBaseX );
-
-        mVertices[ 11 *  5 +  1 ] = fromTexCoordToNormCoordYInverted(LEDTopLeftOnBaseY + LEDHeight );
-
-        mVertices[ 11 *  5 +  2 ] = 0.0f;
-
-        // Base
-        mVertices[  0 *  5  + 3 ] = BaseWidth  / TextureWidth;
-        mVertices[  0 *  5  + 4 ] = BaseHeight / TextureHeight;
-        mVertices[  1 *  5  + 3 ] = BaseWidth  / TextureWidth;
-        mVertices[  1 *  5  + 4 ] = 0.0f;
-        mVertices[  2 *  5  + 3 ] = 0.0f;
-        mVertices[  2 *  5  + 4 ] = 0.0f;
-        mVertices[  3 *  5  + 3 ] = 0.0f;
-        mVertices[  3 *  5  + 4 ] = BaseHeight / TextureHeight;
-
-        // Indicator
-        mVertices[  4 *  5  + 3 ] = HandBottomRightX / TextureWidth;
-        mVertices[  4 *  5  + 4 ] = HandBottomRightY / TextureHeight;
-        mVertices[  5 *  5  + 3 ] = HandBottomRightX / TextureWidth;
-        mVertices[  5 *  5  + 4 ] = HandTopLeftY     / TextureHeight;
-        mVertices[  6 *  5  + 3 ] = HandTopLeftX     / TextureWidth;
-        mVertices[  6 *  5  + 4 ] = HandTopLeftY     / TextureHeight;
-        mVertices[  7 *  5  + 3 ] = HandTopLeftX     / TextureWidth;
-        mVertices[  7 *  5  + 4 ] = HandBottomRightY / TextureHeight;
-
-        // LED
-        mVertices[  8 *  5  + 3 ] = LEDBottomRightX / TextureWidth;
-        mVertices[  8 *  5  + 4 ] = LEDBottomRightY / TextureHeight;
-        mVertices[  9 *  5  + 3 ] = LEDBottomRightX / TextureWidth;
-        mVertices[  9 *  5  + 4 ] = LEDTopLeftY     / TextureHeight;
-        mVertices[ 10 *  5  + 3 ] = LEDTopLeftX     / TextureWidth;
-        mVertices[ 10 *  5  + 4 ] = LEDTopLeftY     / TextureHeight;
-        mVertices[ 11 *  5  + 3 ] = LEDTopLeftX     / TextureWidth;
-        mVertices[ 11 *  5  + 4 ] = LEDBottomRightY / TextureHeight;
-
-        // Indices
-        mIndices[ 0] =  0;
-        mIndices[ 1] =  1;
-        mIndices[ 2] =  2;
-        mIndices[ 3] =  2;
-        mIndices[ 4] =  3;
-        mIndices[ 5] =  0;
-        mIndices[ 6] =  4;
-        mIndices[ 7] =  5;
-        mIndices[ 8] =  6;
-        mIndices[ 9] =  6;
-        mIndices[10] =  7;
-        mIndices[11] =  4;
-        mIndices[12] =  8;
-        mIndices[13] =  9;
-        mIndices[14] = 10;
-        mIndices[15] = 10;
-        mIndices[16] = 11;
-        mIndices[17] =  8;
-
-        ByteBuffer bb1 = ByteBuffer.allocateDirect( mVertices.length * 4 );
-        bb1.order(ByteOrder.nativeOrder());
-        mVerticesNative = bb1.asFloatBuffer();
-        // mVerticesNative.put(mVertices);
-        // mVerticesNative.position(0);
-
-        makeHandVertices();
-
-        ByteBuffer bb2 = ByteBuffer.allocateDirect( mIndices.length * 2 );
-        bb2.order(ByteOrder.nativeOrder());
-        mIndicesNative = bb2.asShortBuffer();
-        mIndicesNative.put(mIndices);
-        mIndicesNative.position(0);
-
-    }
-
-    /** @brief Construct/Update the vertices, texture points, and the indices
-     *         of the hand of the VU meter for OpenGL.
-     *         Called at every screen update (at frame rate).
-     *         It depends on mTheta, the angle of the hand.
-     */
-    void makeHandVertices()
-    {
-        float radiusShort   = HandRotatingCenterY - HandBottomUprightOnBaseY;
-
-        float radiusLong    = radiusShort + HandBottomRightX - HandTopLeftX;
-
-        float handHalfWidth = ( HandBottomRightY - HandTopLeftY ) * 0.5f;
-
-        float cosTheta = (float)Math.cos( mTheta );
-        float sinTheta = (float)Math.sin( mTheta );
-
-        float posBottomCenterX = HandRotatingCenterX + cosTheta * radiusShort;
-        float posBottomCenterY = HandRotatingCenterY - sinTheta * radiusShort;
-        float posTopCenterX    = HandRotatingCenterX + cosTheta * radiusLong;
-        float posTopCenterY    = HandRotatingCenterY - sinTheta * radiusLong;
-
-        float offsetFromCenterToTopLeftX = handHalfWidth * -1.0f * sinTheta;
-        float offsetFromCenterToTopLeftY = handHalfWidth * cosTheta;
-
-        mVertices[  4 *  5 +  0 ] = fromTexCoordToNormCoordX(posTopCenterX + offsetFromCenterToTopLeftX );
-
-        mVertices[  4 *  5 +  1 ] = fromTexCoordToNormCoordYInverted(posTopCenterY - offsetFromCenterToTopLeftY );
-
-        mVertices[  4 *  5 +  2 ] = 0.0f;
-
-        mVertices[  5 *  5 +  0 ] = fromTexCoordToNormCoordX( posTopCenterX - offsetFromCenterToTopLeftX );
-
-        mVertices[  5 *  5 +  1 ] = fromTexCoordToNormCoordYInverted( posTopCenterY + offsetFromCenterToTopLeftY );
-
-        mVertices[  5 *  5 +  2 ] = 0.0f;
-
-        mVertices[  6 *  5 +  0 ] = fromTexCoordToNormCoordX(posBottomCenterX + offsetFromCenterToTopLeftX );
-
-        mVertices[  6 *  5 +  1 ] = fromTexCoordToNormCoordYInverted(posBottomCenterY - offsetFromCenterToTopLeftY );
-
-        mVertices[  6 *  5 +  2 ] = 0.0f;
-
-        mVertices[  7 *  5 +  0 ] = fromTexCoordToNormCoordX(posBottomCenterX - offsetFromCenterToTopLeftX  );
-
-        mVertices[  7 *  5 +  1 ] = fromTexCoordToNormCoordYInverted( posBottomCenterY + offsetFromCenterToTopLeftY );
-
-        mVertices[  7 *  5 +  2 ] = 0.0f;
-
-        mVerticesNative.put(mVertices);
-        mVerticesNative.position(0);
-
-    }
-
-    void resetPhysics()
-    {
-        mRMS      = 0;
-        mPeak     = 0;
-        mTheta    = HandAngularLimitLeft;
-        mVelocity = 0.0f;
-        mAccel    = 0.0f;
-        mPrevTime = 0.0f;
-    }
-
-
-    void updatePhysics()
-    {
-        double currentTime = ((double)System.currentTimeMillis()) / 1000.0;
-        //Log.i("VUMETER", "cuurrent time: " + String.valueOf(currentTime) + " " + String.valueOf(mPrevTime));
-        double dt;
-
-        if ( mPrevTime == 0.0 ) {
-
-            dt = 0.01;
-        }
-        else{
-
-            dt = currentTime - mPrevTime;
-        }
-
-        mPrevTime = currentTime;
-
-        if ( mRMS < 1 ) {
-            mRMS = 1;
-        }
-
-        // The range of micDB is expected to be in
-        // [ MicGainCalibFloorDB ,MicGainCalibPeakDB ].
-
-        float micDB = (float)(20.0 * Math.log10( ( (float)mRMS ) / AmplitudeRef ));
-        //Log.i("VUMETER", "micDB: " + String.valueOf(micDB));
-        float targetTheta = HandAngularLimitLeft
-                + ( HandAngularLimitRight - HandAngularLimitLeft )
-                * ( micDB - MicGainCalibFloorDB )
-                / ( MicGainCalibPeakDB - MicGainCalibFloorDB );
-
-
-        mAccel = AccelerationCoefficient * ( targetTheta - mTheta )
-                - FrictionCoefficient * mVelocity;
-
-        mVelocity = mVelocity + mAccel * (float)dt;
-        mTheta    = mTheta + mVelocity * (float)dt;
-        if ( mTheta > HandAngularLimitLeft ) {
-
-            mTheta = HandAngularLimitLeft;
-            mVelocity = 0.0f;
-        }
-
-        if ( mTheta < HandAngularLimitRight ) {
-
-            mTheta = HandAngularLimitRight;
-            mVelocity = 0.0f;
-        }
-    }
-
-    final String mVertexShader =
-          "attribute vec4 Position;\n"
-        + "attribute vec2 TexCoordIn;\n"
-        + "varying   vec2 TexCoordOut;\n"
-        + "\n"
-        + "void main (void) {\n"
-        + "\n"
-        + "    gl_Position = Position;\n"
-        + "    TexCoordOut = TexCoordIn;\n"
-        + "\n"
-        + "}\n";
-
-    final String mFragmentShader =
-          "varying lowp vec2 TexCoordOut;\n"
-        + "uniform sampler2D Texture;\n"
-        + "\n"
-        + "void main (void) {\n"
-        + "\n"
-        + "    gl_FragColor = texture2D( Texture, TexCoordOut );\n"
-        + "}\n";
-
-
-}
+package com.example.vumeter;
+
+import java.lang.Math;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.ByteOrder;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Trace;
+import android.util.Log;
+
+import com.example.vumeter.core.Ballistics;
+import com.example.vumeter.core.CaptureConfig;
+import com.example.vumeter.core.HandShader;
+import com.example.vumeter.core.HistoryOverlay;
+import com.example.vumeter.core.LatencyHistogram;
+import com.example.vumeter.core.LevelHistory;
+import com.example.vumeter.core.MeterFace;
+import com.example.vumeter.core.MeterFaceCache;
+import com.example.vumeter.core.MeterGeometry;
+import com.example.vumeter.core.MeterMetrics;
+import com.example.vumeter.core.NeedleMeter;
+import com.example.vumeter.core.RenderRequester;
+import com.example.vumeter.core.SessionPlayer;
+import com.example.vumeter.core.SessionReader;
+import com.example.vumeter.core.SessionRecorder;
+import com.example.vumeter.core.SpectrumAnalyzer;
+import com.example.vumeter.core.SpectrumBars;
+import com.example.vumeter.core.StartupTrace;
+import com.example.vumeter.core.VertexUploadPlan;
+
+
+/** @brief Positions in pixel in vu_meter_texture.png
+ * The positions are in the xy integer coordinates
+ * of the PNG file where Y's positive direction is
+ * downward.
+ *
+ *           PNG Texture Coordinates
+ *           -----------------------
+ *
+ *  (0,0)                          (TextureWidth, 0)
+ *    +---------------------------------------->X
+ *    |
+ *    |
+ *    |  [ Pixels are in this rectangular area ]
+ *    |
+ *  Y\|/
+ *   (0,TextureHeight)
+ *
+ *
+ *  Normalized Texture Coordinates used by OpenGL
+ *  ---------------------------------------------
+ *
+ *                  (0,1)
+ *                     ^
+ *                     |
+ *                     |
+ *                     |
+ *                     |
+ *  (-1,0)        (0,0)|                (1,0)
+ *    -----------------+------------------>
+ *                     |
+ *                     |
+ *                     |
+ *                     |
+ *                     |
+ *                   (0,-1)
+ */
+
+public class VUMeterModel {
+
+    private static final String TAG = VUMeterModel.class.getSimpleName();
+
+    /** @brief Positions in the texture. */
+    final MeterGeometry mGeometry = new MeterGeometry();
+
+    /** @brief The tessellated faces drawn instead of the base of the
+     *         texture, by scale and size.
+     */
+    final MeterFaceCache mFaces = new MeterFaceCache( mGeometry );
+
+    /** @brief The hands, one per channel, driven by the capture thread. */
+    NeedleMeter mMeter;
+
+    /** @brief Timings and counts of the capture thread, the level listener
+     *         and the GL thread.
+     */
+    final MeterMetrics mMetrics = new MeterMetrics();
+
+    /** @brief From the creation of the meter to its first frame. */
+    final StartupTrace mStartup = new StartupTrace();
+
+    /** @brief Decoded on its own thread from the constructor on, while the
+     *         GL thread sets up; see textureBitmap(). Kept for a new context.
+     */
+    final FutureTask<Bitmap> mTextureBitmap;
+
+    VertexUploadPlan mPlan;
+    float[] mVertices;
+    short[] mIndices;
+
+    /** @brief The hands rotated by the vertex shader from mHandAngles,
+     *         with their quads static in mVertices. GL thread only.
+     */
+    HandShader mHandShader;
+    boolean    mGpuHands;
+    float[]    mHandAngles;
+
+    public FloatBuffer mVerticesNative;
+    /** @brief View of mVerticesNative covering only the hands, streamed per frame. */
+    public FloatBuffer mHandVerticesNative;
+    public ShortBuffer mIndicesNative;
+    public int mVerticesByteSize()  { return mPlan.vertexBytes(); }
+    public int mIndicesByteSize()   { return mPlan.indexBytes(); }
+    public int mVerticesAttribSize(){ return VertexUploadPlan.STRIDE_BYTES; }
+    Context     mContext;
+    AudioReceiver mReceiver;
+
+    /** @brief The session being recorded, and the one being replayed in
+     *         place of the capture. Main thread.
+     */
+    SessionRecorder mRecorder;
+    SessionPlayer   mPlayer;
+    SessionReader   mReplayReader;
+    Thread          mReplayThread;
+
+    /** @brief Spectrum bars across the lower part of the face. */
+    final SpectrumBars mBars = new SpectrumBars( -0.9f, 0.9f );
+    final float        BarsBottom = -0.92f;
+    final float        BarsHeight =  0.55f;
+    float[]            mBarVertices;
+    public FloatBuffer mBarVerticesNative;
+    public ShortBuffer mBarIndicesNative;
+    public int mBarVerticesByteSize() { return mBarVertices.length * 4; }
+    public int mBarIndicesByteSize()  { return mBars.numIndices() * 2; }
+    public int mBarVerticesAttribSize() { return SpectrumBars.FLOATS_PER_VERTEX * 4; }
+
+    /** @brief The readings of the session in decimated tiers, and the
+     *         peak-hold markers and history strip drawn from them with the
+     *         program of the face.
+     */
+    LevelHistory       mHistory;
+    HistoryOverlay     mHistoryOverlay;
+    public FloatBuffer mHistoryVerticesNative;
+    public ShortBuffer mHistoryIndicesNative;
+
+
+    /** @brief 8 kHz mono in low-latency blocks. */
+    VUMeterModel (Context context, RenderRequester renderRequester) {
+        this( context, renderRequester,
+              CaptureConfig.DEFAULT.withBlockMillis( CaptureConfig.LOW_LATENCY_BLOCK_MILLIS ) );
+    }
+
+    VUMeterModel (Context context, RenderRequester renderRequester, CaptureConfig config) {
+        this( context, renderRequester, config, Ballistics.Mode.VU );
+    }
+
+    VUMeterModel (Context context, RenderRequester renderRequester, CaptureConfig config,
+                  Ballistics.Mode mode) {
+        mContext = context;
+
+        mTextureBitmap = new FutureTask<Bitmap>( new TextureDecoder( mContext.getResources(), mStartup ) );
+        new Thread( mTextureBitmap, "TextureDecoder" ).start();
+
+        mReceiver = new AudioReceiver( config, mode, null );
+        mReceiver.setMetrics( mMetrics );
+
+        int channels = mReceiver.getConfig().getChannelCount();
+
+        mMeter    = new NeedleMeter( mGeometry, channels, mReceiver.getMeterState(), renderRequester );
+        mMeter.setMetrics( mMetrics );
+        // No log10(), cos() or sin() per snapshot or frame, for errors far
+        // below a pixel and a hundredth of a dB.
+        mGeometry.setLookupTables( true );
+        mMeter.setLookupTables( true );
+        mPlan     = new VertexUploadPlan( channels );
+        mVertices = new float[ mPlan.numVertexFloats() ];
+        mIndices  = new short[ mPlan.numIndices() ];
+        mHandShader = new HandShader( mGeometry, channels );
+        mHandAngles = new float[ channels ];
+
+        makeInitialVertexCoordinates();
+        makeInitialBarVertices();
+
+        mHistory        = new LevelHistory( channels, mReceiver.getConfig().getSampleRate() );
+        mHistoryOverlay = new HistoryOverlay( mGeometry, mMeter, mHistory );
+        makeInitialHistoryVertices();
+
+        mReceiver.setCaptureThreadListener( mMeter );
+
+        // The capture starts with startCapture(), once the screen is shown.
+    }
+
+
+    /** @brief Starts or resumes the capture from the microphone. Main thread. */
+    void startCapture()
+    {
+        stopReplay();
+        mReceiver.start();
+        mStartup.mark( StartupTrace.Milestone.CAPTURE_STARTED );
+    }
+
+    /** @brief Stops the capture, keeping the microphone and the levels for
+     *         startCapture(). Main thread.
+     */
+    void pauseCapture()
+    {
+        stopReplay();
+        mReceiver.pause();
+    }
+
+    /** @brief Stops the capture and releases the microphone. Main thread. */
+    void stopCapture()
+    {
+        stopReplay();
+        mReceiver.stop();
+    }
+
+    /** @brief Appends the levels of every block from now on to file, which
+     *         is created or truncated. Main thread.
+     */
+    void startRecording( File file ) throws IOException
+    {
+        stopRecording();
+        CaptureConfig config = mReceiver.getConfig();
+        mRecorder = new SessionRecorder( file, config.getChannelCount(), config.getSampleRate() );
+        mReceiver.setSessionRecorder( mRecorder );
+    }
+
+    /** @brief Ends the recording and completes its file. Main thread. */
+    void stopRecording() throws IOException
+    {
+        if ( mRecorder == null ) {
+            return;
+        }
+        SessionRecorder recorder = mRecorder;
+        mRecorder = null;
+        mReceiver.setSessionRecorder( null );
+        recorder.close();
+    }
+
+    /** @brief Shows a recorded session in place of the microphone, at
+     *         speed times real time. The capture is paused meanwhile, since
+     *         the replay writes the same meter state. Main thread.
+     */
+    void startReplay( File file, double speed ) throws IOException
+    {
+        stopReplay();
+        SessionReader reader = new SessionReader( file );
+        mReceiver.pause();
+        mReplayReader = reader;
+        mPlayer       = new SessionPlayer( reader, mReceiver.getMeterState(), speed );
+        mPlayer.setCaptureThreadListener( mMeter );
+        mReplayThread = new Thread( mPlayer, "SessionPlayer" );
+        mReplayThread.start();
+    }
+
+    /** @brief Ends the replay, if any. startCapture() goes back to the
+     *         microphone. Main thread.
+     */
+    void stopReplay()
+    {
+        if ( mPlayer == null ) {
+            return;
+        }
+        mPlayer.requestStop();
+        boolean interrupted = false;
+        while ( mReplayThread.isAlive() ) {
+            try {
+                mReplayThread.join();
+            }
+            catch ( InterruptedException e ) {
+                interrupted = true;
+            }
+        }
+        if ( interrupted ) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            mReplayReader.close();
+        }
+        catch ( IOException e ) {
+            Log.w( TAG, "Closing the replayed session: " + e );
+        }
+        mPlayer       = null;
+        mReplayReader = null;
+        mReplayThread = null;
+    }
+
+
+    /** @brief Called on the GL thread when the surface size changes. */
+    void setViewportSize( int width, int height )
+    {
+        mMeter.setViewportSize( width, height );
+    }
+
+
+    /** @brief Advances the hands to the frame time with the latest levels
+     *         and updates their vertices. Called on the GL thread before
+     *         every frame, so the vertices are only ever written and read
+     *         on that thread.
+     */
+    void updateFromCapture( long frameTimeNanos )
+    {
+        mMeter.updateFromCapture( frameTimeNanos );
+        long start = System.nanoTime();
+        if ( mGpuHands ) {
+            for ( int hand = 0; hand < mHandAngles.length; hand++ ) {
+                mHandAngles[hand] = mMeter.getTheta( hand );
+            }
+        }
+        else {
+            makeHandVertices();
+        }
+        mMetrics.record( MeterMetrics.Stage.VERTICES, System.nanoTime() - start );
+    }
+
+
+    /** @brief Called on the GL thread after a frame has been drawn. */
+    void onFrameDrawn()
+    {
+        mMeter.onFrameDrawn();
+        if ( mStartup.mark( StartupTrace.Milestone.FIRST_FRAME ) ) {
+            Log.i( TAG, mStartup.report() );
+        }
+    }
+
+    /** @brief The texture of the face. Called on the GL thread, which waits
+     *         here if it is still being decoded.
+     */
+    Bitmap textureBitmap()
+    {
+        boolean interrupted = false;
+        try {
+            while ( true ) {
+                try {
+                    return mTextureBitmap.get();
+                }
+                catch ( InterruptedException e ) {
+                    interrupted = true;
+                }
+            }
+        }
+        catch ( ExecutionException e ) {
+            throw new RuntimeException( "Error decoding the texture.", e.getCause() );
+        }
+        finally {
+            if ( interrupted ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** @brief Decodes vu_meter_texture.png at its own size. */
+    static class TextureDecoder implements Callable<Bitmap> {
+
+        private final Resources    mResources;
+        private final StartupTrace mStartup;
+
+        TextureDecoder( Resources resources, StartupTrace startup )
+        {
+            mResources = resources;
+            mStartup   = startup;
+        }
+
+        @Override
+        public Bitmap call()
+        {
+            Trace.beginSection( "VUMeter decode texture" );
+            try {
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                // The PNG is in drawable/, i.e. mdpi: scaled to the density
+                // of the screen it would be decoded at 9 times the size on
+                // xxhdpi, only for GL to sample it down again.
+                options.inScaled = false;
+                Bitmap bitmap = BitmapFactory.decodeResource( mResources, R.drawable.vu_meter_texture, options );
+                mStartup.mark( StartupTrace.Milestone.TEXTURE_DECODED );
+                return bitmap;
+            }
+            finally {
+                Trace.endSection();
+            }
+        }
+    }
+
+    boolean peaked()
+    {
+        return mMeter.peaked();
+    }
+
+    /** @brief 0 (off) to 1 (fully lit) at the last frame. */
+    float ledBrightness()
+    {
+        return mMeter.getLedBrightness();
+    }
+
+    /** @brief From the capture of the sound to the frame that shows it. Any thread. */
+    LatencyHistogram captureToRenderLatency()
+    {
+        return mMeter.getCaptureToRenderLatency();
+    }
+
+    /** @brief Shows the third-octave spectrum on bars behind the hands, or
+     *         hides it and stops the analysis. Any thread.
+     */
+    void setSpectrumVisible( boolean visible )
+    {
+        if ( visible ) {
+            mReceiver.setSpectrumAnalyzer( SpectrumAnalyzer.forConfig( mReceiver.getConfig() ) );
+            mMeter.setSpectrum( mBars );
+        }
+        else {
+            mMeter.setSpectrum( null );
+            mReceiver.setSpectrumAnalyzer( null );
+        }
+    }
+
+    /** @brief Called on the GL thread before the bars are drawn. True if
+     *         mBarVerticesNative changed and has to be uploaded again.
+     */
+    boolean updateBarVertices()
+    {
+        if ( !mBars.takeLayoutChanged() ) {
+            return false;
+        }
+        mBars.makeVertices( mBarVertices );
+        mBarVerticesNative.position(0);
+        mBarVerticesNative.put( mBarVertices );
+        mBarVerticesNative.position(0);
+        return true;
+    }
+
+    /** @brief Keeps the history of the readings for the peak-hold markers
+     *         and the history strip, or stops. The history goes on from
+     *         where it was. Any thread.
+     */
+    void setHistoryVisible( boolean visible )
+    {
+        mReceiver.setLevelHistory( visible ? mHistory : null );
+    }
+
+    /** @brief Called on the GL thread before the history is drawn. True if
+     *         mHistoryVerticesNative changed and has to be uploaded again.
+     */
+    boolean updateHistoryVertices()
+    {
+        if ( !mHistoryOverlay.update() ) {
+            return false;
+        }
+        mHistoryVerticesNative.position(0);
+        mHistoryVerticesNative.put( mHistoryOverlay.getVertices() );
+        mHistoryVerticesNative.position(0);
+        return true;
+    }
+
+    /** @brief Drives the hands from the microphone level in dB or from the
+     *         loudness of the program in LUFS. Any thread.
+     */
+    void setScale( NeedleMeter.Scale scale )
+    {
+        mMeter.setScale( scale );
+    }
+
+    /** @brief The face that goes with what the hands show. Any thread. */
+    MeterFace.Scale faceScale()
+    {
+        if ( mMeter.getScale() != NeedleMeter.Scale.MIC_DB ) {
+            return MeterFace.Scale.LUFS;
+        }
+        return mReceiver.getBallisticsMode() == Ballistics.Mode.VU ? MeterFace.Scale.VU : MeterFace.Scale.PPM;
+    }
+
+    /** @brief Starts a new program for the integrated loudness. Any thread. */
+    void resetLoudness()
+    {
+        mReceiver.resetLoudness();
+    }
+
+    /** @brief The LED lights when the true peak reaches thresholdDBTP, stays
+     *         lit for holdNanos and fades out over releaseNanos. Call on
+     *         the GL thread.
+     */
+    void setOverloadLed( float thresholdDBTP, long holdNanos, long releaseNanos )
+    {
+        mReceiver.setOverloadThreshold( thresholdDBTP );
+        mMeter.setLedTiming( holdNanos, releaseNanos );
+    }
+
+
+    /** @brief Construct the vertices, texture points, and the indices for OpenGL.
+     *         Called only once at initialization.
+     */
+
+    void makeInitialVertexCoordinates()
+    {
+        mGeometry.makeStaticVertices( mVertices, mPlan );
+
+        // Indices
+        mPlan.fillIndices( mIndices );
+
+        ByteBuffer bb1 = ByteBuffer.allocateDirect( mVertices.length * 4 );
+        bb1.order(ByteOrder.nativeOrder());
+        mVerticesNative = bb1.asFloatBuffer();
+
+        mVerticesNative.position( mPlan.dynamicFirstFloat() );
+        mHandVerticesNative = mVerticesNative.slice();
+        mHandVerticesNative.limit( mPlan.dynamicFloatCount() );
+
+        makeHandVertices();
+
+        mVerticesNative.position(0);
+        mVerticesNative.put(mVertices);
+        mVerticesNative.position(0);
+
+        ByteBuffer bb2 = ByteBuffer.allocateDirect( mIndices.length * 2 );
+        bb2.order(ByteOrder.nativeOrder());
+        mIndicesNative = bb2.asShortBuffer();
+        mIndicesNative.put(mIndices);
+        mIndicesNative.position(0);
+
+    }
+
+    /** @brief The vertices and indices of all the bars. They only change
+     *         with the number of bands.
+     */
+    void makeInitialBarVertices()
+    {
+        mBarVertices = new float[ mBars.numVertexFloats() ];
+        mBars.makeVertices( mBarVertices );
+
+        ByteBuffer bb1 = ByteBuffer.allocateDirect( mBarVertices.length * 4 );
+        bb1.order(ByteOrder.nativeOrder());
+        mBarVerticesNative = bb1.asFloatBuffer();
+        mBarVerticesNative.put( mBarVertices );
+        mBarVerticesNative.position(0);
+
+        short[] indices = new short[ mBars.numIndices() ];
+        SpectrumBars.makeIndices( indices );
+        ByteBuffer bb2 = ByteBuffer.allocateDirect( indices.length * 2 );
+        bb2.order(ByteOrder.nativeOrder());
+        mBarIndicesNative = bb2.asShortBuffer();
+        mBarIndicesNative.put( indices );
+        mBarIndicesNative.position(0);
+    }
+
+    /** @brief The buffers of the history overlay. Its indices never
+     *         change; its vertices are rewritten in place.
+     */
+    void makeInitialHistoryVertices()
+    {
+        ByteBuffer bb1 = ByteBuffer.allocateDirect( mHistoryOverlay.vertexBytes() );
+        bb1.order(ByteOrder.nativeOrder());
+        mHistoryVerticesNative = bb1.asFloatBuffer();
+        mHistoryVerticesNative.put( mHistoryOverlay.getVertices() );
+        mHistoryVerticesNative.position(0);
+
+        ByteBuffer bb2 = ByteBuffer.allocateDirect( mHistoryOverlay.indexBytes() );
+        bb2.order(ByteOrder.nativeOrder());
+        mHistoryIndicesNative = bb2.asShortBuffer();
+        mHistoryIndicesNative.put( mHistoryOverlay.getIndices() );
+        mHistoryIndicesNative.position(0);
+    }
+
+    /** @brief Rotates the hands in the vertex shader of mHandShader from
+     *         mHandAngles, or on the CPU. Rewrites the hands in
+     *         mHandVerticesNative, to be uploaded once. GL thread.
+     */
+    void setGpuHands( boolean on )
+    {
+        mGpuHands = on;
+        if ( on ) {
+            mHandShader.makeHandVertices( mVertices );
+            copyHandVertices();
+        }
+        else {
+            makeHandVertices();
+        }
+    }
+
+    /** @brief Construct/Update the vertices of the hands of the VU meter
+     *         for OpenGL. Called at every screen update (at frame rate).
+     *         It depends on the angles of the hands in mMeter.
+     */
+    void makeHandVertices()
+    {
+        for ( int hand = 0; hand < mPlan.numHands(); hand++ ) {
+            mGeometry.makeHandVertices( mVertices, hand, mMeter.getTheta( hand ) );
+        }
+        copyHandVertices();
+    }
+
+    private void copyHandVertices()
+    {
+        // Only the hands change. The rest was copied once at initialization.
+        mHandVerticesNative.position(0);
+        mHandVerticesNative.put( mVertices,
+                                 mPlan.dynamicFirstFloat(),
+                                 mPlan.dynamicFloatCount() );
+        mHandVerticesNative.position(0);
+    }
+
+    final String mVertexShader =
+          "attribute vec4 Position;\n"
+        + "attribute vec2 TexCoordIn;\n"
+        + "varying   vec2 TexCoordOut;\n"
+        + "\n"
+        + "void main (void) {\n"
+        + "\n"
+        + "    gl_Position = Position;\n"
+        + "    TexCoordOut = TexCoordIn;\n"
+        + "\n"
+        + "}\n";
+
+    final String mFragmentShader =
+          "varying lowp vec2 TexCoordOut;\n"
+        + "uniform sampler2D Texture;\n"
+        + "uniform lowp float Alpha;\n"
+        + "\n"
+        + "void main (void) {\n"
+        + "\n"
+        + "    gl_FragColor = texture2D( Texture, TexCoordOut );\n"
+        + "    gl_FragColor.a *= Alpha;\n"
+        + "}\n";
+
+    /** @brief Lifts the top edge of each bar by the height of its band. */
+    final String mBarVertexShader =
+          "attribute vec3 Corner;\n"
+        + "uniform   float Heights[" + SpectrumBars.MAX_BANDS + "];\n"
+        + "uniform   vec2  Extent;\n"
+        + "\n"
+        + "void main (void) {\n"
+        + "\n"
+        + "    float h = Heights[ int( Corner.z ) ];\n"
+        + "    gl_Position = vec4( Corner.x, Extent.x + Corner.y * h * Extent.y, 0.0, 1.0 );\n"
+        + "\n"
+        + "}\n";
+
+    /** @brief The tessellated face: one palette color per vertex. */
+    final String mFaceVertexShader =
+          "attribute vec3 Vertex;\n"
+        + "uniform   vec4 Palette[" + MeterFace.COLORS + "];\n"
+        + "varying   lowp vec4 Color;\n"
+        + "\n"
+        + "void main (void) {\n"
+        + "\n"
+        + "    gl_Position = vec4( Vertex.xy, 0.0, 1.0 );\n"
+        + "    Color = Palette[ int( Vertex.z ) ];\n"
+        + "\n"
+        + "}\n";
+
+    final String mFaceFragmentShader =
+          "varying lowp vec4 Color;\n"
+        + "\n"
+        + "void main (void) {\n"
+        + "\n"
+        + "    gl_FragColor = Color;\n"
+        + "}\n";
+
+    final String mBarFragmentShader =
+          "uniform lowp vec4 Color;\n"
+        + "\n"
+        + "void main (void) {\n"
+        + "\n"
+        + "    gl_FragColor = Color;\n"
+        + "}\n";
+
+
+}
@@ -1,238 +1,634 @@
-package com.example.vumeter;
-
-import android.opengl.GLSurfaceView;
-import android.opengl.GLES20;
-import android.opengl.GLUtils;
-
-import javax.microedition.khronos.egl.EGLConfig;
-import javax.microedition.khronos.opengles.GL10;
-
-import android.content.Context;
-
-import static android.opengl.GLES20.GL_FRAMEBUFFER;
-
-import java.nio.IntBuffer;
-
-public class VUMeterRenderer implements GLSurfaceView.Renderer {
-
-    private final Context      mContext;
-    private final VUMeterModel mModel;
-
-    private int       mVertexShaderHandle   = 0;
-    private int       mFragmentShaderHandle = 0;
-    private int       mProgramHandle        = 0;
-    private int[]     mTextureHandles       = new int[1];
-    private IntBuffer mVertexBuffer         = IntBuffer.allocate(1);
-    private IntBuffer mIndexBuffer          = IntBuffer.allocate(1);
-    private IntBuffer mColorRenderBuffer    = IntBuffer.allocate(1);
-    private IntBuffer mFramebuffer          = IntBuffer.allocate(1);
-
-    private int       mPositionSlot;
-    private int       mTexCoordSlot;
-    private int       mTextureUniform;
-
-    private int       mWidth;
-    private int       mHeight;
-
-    public VUMeterRenderer(Context context)
-    {
-        mContext = context;
-        mModel   = new VUMeterModel(context);
-    }
-
-    @Override
-    public void onSurfaceCreated(GL10 gl, EGLConfig config)
-    {
-        createShaders();
-        createShaderProgram();
-        prepareShaders();
-        loadTexture();
-        setupGL();
-    }
-
-
-    @Override
-    public void onDrawFrame(GL10 gl)
-    {
-        render();
-    }
-
-    @Override
-    public void onSurfaceChanged(GL10 gl, int width, int height)
-    {
-        GLES20.glViewport(0, 0, width, height);
-        mWidth  = width;
-        mHeight = height;
-    }
-
-
-    private void createShaders() {
-
-        mVertexShaderHandle = GLES20.glCreateShader(GLES20.GL_VERTEX_SHADER);
-
-        if (mVertexShaderHandle != 0) {
-            GLES20.glShaderSource(mVertexShaderHandle, mModel.mVertexShader);
-            GLES20.glCompileShader(mVertexShaderHandle);
-            final int[] compileStatus = new int[1];
-            GLES20.glGetShaderiv(mVertexShaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
-            if (compileStatus[0] == 0) {
-                GLES20.glDeleteShader(mVertexShaderHandle);
-                mVertexShaderHandle = 0;
-            }
-        }
-        if (mVertexShaderHandle == 0) {
-            throw new RuntimeException("Error creating vertex shader.");
-        }
-
-        mFragmentShaderHandle = GLES20.glCreateShader(GLES20.GL_FRAGMENT_SHADER);
-
-        if (mFragmentShaderHandle != 0) {
-            GLES20.glShaderSource(mFragmentShaderHandle, mModel.mFragmentShader);
-            GLES20.glCompileShader(mFragmentShaderHandle);
-            final int[] compileStatus = new int[1];
-            GLES20.glGetShaderiv(mFragmentShaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
-            if (compileStatus[0] == 0) {
-                GLES20.glDeleteShader(mFragmentShaderHandle);
-                mFragmentShaderHandle = 0;
-            }
-        }
-        if (mFragmentShaderHandle == 0) {
-            throw new RuntimeException("Error creating fragment shader.");
-        }
-    }
-
-
-    private void createShaderProgram() {
-        mProgramHandle = GLES20.glCreateProgram();
-
-        if (mProgramHandle != 0) {
-            GLES20.glAttachShader(mProgramHandle, mVertexShaderHandle);
-
-            GLES20.glAttachShader(mProgramHandle, mFragmentShaderHandle);
-            GLES20.glLinkProgram(mProgramHandle);
-
-            final int[] linkStatus = new int[1];
-            GLES20.glGetProgramiv(mProgramHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
-
-            if (linkStatus[0] == 0) {
-                GLES20.glDeleteProgram(mProgramHandle);
-                mProgramHandle = 0;
-            }
-        }
-        if (mProgramHandle == 0) {
-            throw new RuntimeException("Error creating program.");
-        }
-    }
-
-
-    private void prepareShaders() {
-        GLES20.glUseProgram(mProgramHandle);
-
-        mPositionSlot = GLES20.glGetAttribLocation(mProgramHandle, "Position");
-        mTexCoordSlot = GLES20.glGetAttribLocation(mProgramHandle, "TexCoordIn");
-
-        GLES20.glEnableVertexAttribArray(mPositionSlot);
-        GLES20.glEnableVertexAttribArray(mTexCoordSlot);
-
-        mTextureUniform = GLES20.glGetUniformLocation(mProgramHandle, "Texture");
-    }
-
-
-    private void loadTexture() {
-
-        GLES20.glGenTextures(1, mTextureHandles, 0);
-        GLES20.glBindTexture(GL10.GL_TEXTURE_2D, mTextureHandles[0]);
-        GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER, GL10.GL_NEAREST);
-        GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER, GL10.GL_LINEAR);
-        GLUtils.texImage2D(GL10.GL_TEXTURE_2D, 0, mModel.mTextureBitmap, 0);
-
-    }
-
-
-    private void setupGL() {
-
-        GLES20.glGenBuffers        (1, mVertexBuffer      );
-        GLES20.glGenBuffers        (1, mIndexBuffer       );
-       // GLES20.glGenRenderbuffers  (1, mColorRenderBuffer );
-       // GLES20.glGenFramebuffers   (1, mFramebuffer       );
-
-        mVertexBuffer.position      (0);
-        mIndexBuffer.position       (0);
-        //mColorRenderBuffer.position (0);
-        //mFramebuffer.position       (0);
-
-        //GLES20.glBindRenderbuffer( GLES20.GL_RENDERBUFFER, mColorRenderBuffer.get() );
-        //mColorRenderBuffer.position(0);
-
-        //GLES20.glBindFramebuffer( GLES20.GL_FRAMEBUFFER, mFramebuffer.get() );
-        //mFramebuffer.position(0);
-/*
-        GLES20.glFramebufferRenderbuffer(
-                GLES20.GL_FRAMEBUFFER,
-                GLES20.GL_COLOR_ATTACHMENT0,
-                GLES20.GL_RENDERBUFFER,
-                mColorRenderBuffer.get()
-        );
-        mColorRenderBuffer.position(0);
-*/
-    }
-
-    int dummyRMS = 0;
-
-    private void render() {
-
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVertexBuffer.get());
-        mVertexBuffer.position(0);
-        GLES20.glBufferData(
-                GLES20.GL_ARRAY_BUFFER,
-                mModel.mVerticesByteSize(),
-                mModel.mVerticesNative,
-                GLES20.GL_STATIC_DRAW
-        );
-
-        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mIndexBuffer.get());
-        mIndexBuffer.position(0);
-
-        GLES20.glBufferData(
-                GLES20.GL_ELEMENT_ARRAY_BUFFER,
-                mModel.mIndicesByteSize(),
-                mModel.mIndicesNative,
-                GLES20.GL_STATIC_DRAW
-        );
-
-        GLES20.glClearColor(1.0f, 1.0f, 1.0f, 0.0f);
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
-
-        GLES20.glEnable(GLES20.GL_TEXTURE_2D);
-        GLES20.glEnable(GLES20.GL_BLEND);
-        GLES20.glDepthMask(false);
-        GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
-
-        GLES20.glViewport(0, 0, mWidth, mHeight);
-
-        GLES20.glVertexAttribPointer(mPositionSlot,
-                3,
-                GLES20.GL_FLOAT,
-                false,
-                mModel.mVerticesAttribSize(),
-                0);
-
-        GLES20.glVertexAttribPointer(mTexCoordSlot,
-                2,
-                GLES20.GL_FLOAT,
-                false,
-                mModel.mVerticesAttribSize(),
-                4 * 3);
-
-        GLES20.glActiveTexture( GLES20.GL_TEXTURE0 );
-        GLES20.glBindTexture  ( GLES20.GL_TEXTURE_2D, mTextureHandles[0] );
-        GLES20.glUniform1i    ( mTextureUniform, 0 );
-
-        GLES20.glDrawElements(GLES20.GL_TRIANGLES, 6, GLES20.GL_UNSIGNED_SHORT,  0);
-        GLES20.glDrawElements(GLES20.GL_TRIANGLES, 6, GLES20.GL_UNSIGNED_SHORT, 12);
-
-        if (mModel.peaked()) {
-            GLES20.glDrawElements(GLES20.GL_TRIANGLES, 6, GLES20.GL_UNSIGNED_SHORT, 24);
-        }
-    }
-}
+package com.example.vumeter;
+
+import android.opengl.GLSurfaceView;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+import android.os.Trace;
+
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.opengles.GL10;
+
+import android.content.Context;
+
+import com.example.vumeter.core.HandShader;
+import com.example.vumeter.core.LatencyHistogram;
+import com.example.vumeter.core.MeterFace;
+import com.example.vumeter.core.MeterMetrics;
+import com.example.vumeter.core.RenderRequester;
+import com.example.vumeter.core.SpectrumBars;
+import com.example.vumeter.core.StartupTrace;
+import com.example.vumeter.core.VertexUploadPlan;
+
+import static android.opengl.GLES20.GL_FRAMEBUFFER;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+public class VUMeterRenderer implements GLSurfaceView.Renderer {
+
+    private final Context      mContext;
+    private final VUMeterModel mModel;
+    private final ProgramLoader mPrograms;
+
+    /** @brief The meter program in use: mCpuProgramHandle, or
+     *         mGpuProgramHandle while the shader rotates the hands.
+     */
+    private int       mProgramHandle        = 0;
+    private int       mCpuProgramHandle     = 0;
+    private int       mGpuProgramHandle     = 0;
+    private int[]     mTextureHandles       = new int[1];
+    private IntBuffer mVertexBuffer         = IntBuffer.allocate(1);
+    private IntBuffer mIndexBuffer          = IntBuffer.allocate(1);
+    private IntBuffer mColorRenderBuffer    = IntBuffer.allocate(1);
+    private IntBuffer mFramebuffer          = IntBuffer.allocate(1);
+
+    private int       mPositionSlot;
+    private int       mTexCoordSlot;
+    private int       mTextureUniform;
+    private int       mAlphaUniform;
+    private int       mThetaUniform;
+
+    private int       mBarProgramHandle     = 0;
+    private int       mBarCornerSlot;
+    private int       mBarHeightsUniform;
+    private IntBuffer mBarVertexBuffer      = IntBuffer.allocate(1);
+    private IntBuffer mBarIndexBuffer       = IntBuffer.allocate(1);
+
+    private int       mFaceProgramHandle    = 0;
+    private int       mFaceVertexSlot;
+    private IntBuffer mFaceVertexBuffer     = IntBuffer.allocate(1);
+    private IntBuffer mFaceIndexBuffer      = IntBuffer.allocate(1);
+    private IntBuffer mHistoryVertexBuffer  = IntBuffer.allocate(1);
+    private IntBuffer mHistoryIndexBuffer   = IntBuffer.allocate(1);
+
+    /** @brief Draws a MeterFace instead of the base of the texture, and the
+     *         mesh in its buffers, null until uploaded. GL thread only.
+     */
+    private boolean        mVectorFace;
+    private MeterFace.Mesh mFaceMesh;
+
+    /** @brief Draws the spectrum bars behind the hands. GL thread only. */
+    private boolean   mSpectrumMode;
+
+    /** @brief Draws the peak-hold markers and the history strip. GL thread only. */
+    private boolean   mHistoryMode;
+
+    /** @brief Sends the angles of the hands instead of their vertices. GL thread only. */
+    private boolean   mGpuHands;
+
+    /** @brief Text of the metrics over the meter, null while hidden. GL thread only. */
+    private MetricsOverlay mOverlay;
+
+    private int       mWidth;
+    private int       mHeight;
+
+    public VUMeterRenderer(Context context, RenderRequester renderRequester)
+    {
+        mContext = context;
+        mModel   = new VUMeterModel(context, renderRequester);
+        mPrograms = new ProgramLoader(context);
+    }
+
+    /** @brief Everything that does not need the texture comes first, while
+     *         it is still being decoded.
+     */
+    @Override
+    public void onSurfaceCreated(GL10 gl, EGLConfig config)
+    {
+        StartupTrace startup = mModel.mStartup;
+        startup.mark(StartupTrace.Milestone.SURFACE_CREATED);
+
+        Trace.beginSection("VUMeter programs");
+        mPrograms.onContextCreated();
+        createShaderProgram();
+        createBarProgram();
+        prepareShaders();
+        Trace.endSection();
+        startup.mark(mPrograms.allFromCache() ? StartupTrace.Milestone.PROGRAMS_LOADED
+                                              : StartupTrace.Milestone.PROGRAMS_COMPILED);
+        setupGL();
+
+        Trace.beginSection("VUMeter texture");
+        loadTexture();
+        Trace.endSection();
+        startup.mark(StartupTrace.Milestone.TEXTURE_UPLOADED);
+
+        setupRenderState();
+        // The face program and buffers went with the old context.
+        mFaceProgramHandle = 0;
+        mFaceMesh          = null;
+        if (mOverlay != null) {
+            // The texture went with the old context.
+            mOverlay = new MetricsOverlay(mModel.mMetrics);
+        }
+    }
+
+
+    @Override
+    public void onDrawFrame(GL10 gl)
+    {
+        mModel.updateFromCapture(System.nanoTime());
+        long start = System.nanoTime();
+        render();
+        mModel.mMetrics.record(MeterMetrics.Stage.RENDER, System.nanoTime() - start);
+        mModel.mMetrics.increment(MeterMetrics.Counter.FRAMES_RENDERED);
+        mModel.onFrameDrawn();
+    }
+
+    @Override
+    public void onSurfaceChanged(GL10 gl, int width, int height)
+    {
+        GLES20.glViewport(0, 0, width, height);
+        mWidth  = width;
+        mHeight = height;
+        mModel.setViewportSize(width, height);
+    }
+
+
+    /** @brief Shows or hides the spectrum bars. Call on the GL thread,
+     *         e.g. through GLSurfaceView.queueEvent().
+     */
+    void setSpectrumMode(boolean on)
+    {
+        mSpectrumMode = on;
+        mModel.setSpectrumVisible(on);
+    }
+
+
+    /** @brief Shows or hides the peak-hold markers and the history strip.
+     *         Call on the GL thread.
+     */
+    void setLevelHistory(boolean on)
+    {
+        mHistoryMode = on;
+        mModel.setHistoryVisible(on);
+    }
+
+
+    /** @brief Rotates the hands in the vertex shader from their angles, or
+     *         rebuilds their vertices on the CPU every frame. Call on the GL
+     *         thread.
+     */
+    void setGpuHands(boolean on)
+    {
+        mGpuHands = on;
+        mModel.setGpuHands(on);
+        if (mCpuProgramHandle == 0) {
+            // No surface yet: onSurfaceCreated() picks the program.
+            return;
+        }
+        useMeterProgram(on ? gpuProgram() : mCpuProgramHandle);
+        // The hands once, in the layout of the new program.
+        mModel.mHandVerticesNative.position(0);
+        GLES20.glBufferSubData(
+                GLES20.GL_ARRAY_BUFFER,
+                mModel.mPlan.dynamicByteOffset(),
+                mModel.mPlan.dynamicByteSize(),
+                mModel.mHandVerticesNative
+        );
+    }
+
+
+    /** @brief Draws the face tessellated at the size of the surface instead
+     *         of the base of the texture, or goes back to it. Call on the GL
+     *         thread.
+     */
+    void setVectorFace(boolean on)
+    {
+        mVectorFace = on;
+    }
+
+
+    /** @brief Shows the metrics over the meter, or hides them. Call on
+     *         the GL thread.
+     */
+    void setMetricsOverlay(boolean on)
+    {
+        if (on && mOverlay == null) {
+            mOverlay = new MetricsOverlay(mModel.mMetrics);
+        }
+        else if (!on && mOverlay != null) {
+            mOverlay.release();
+            mOverlay = null;
+        }
+    }
+
+    /** @brief The capture follows the lifecycle of the view. Main thread. */
+    void startCapture()
+    {
+        mModel.startCapture();
+    }
+
+    void pauseCapture()
+    {
+        mModel.pauseCapture();
+    }
+
+    void stopCapture()
+    {
+        mModel.stopCapture();
+    }
+
+    /** @brief Recording and replay of sessions. Main thread. */
+    void startRecording(File file) throws IOException
+    {
+        mModel.startRecording(file);
+    }
+
+    void stopRecording() throws IOException
+    {
+        mModel.stopRecording();
+    }
+
+    void startReplay(File file, double speed) throws IOException
+    {
+        mModel.startReplay(file, speed);
+    }
+
+    void stopReplay()
+    {
+        mModel.stopReplay();
+    }
+
+    StartupTrace startupTrace()
+    {
+        return mModel.mStartup;
+    }
+
+    MeterMetrics metrics()
+    {
+        return mModel.mMetrics;
+    }
+
+    /** @brief Capture-to-render latency of the frames drawn so far. Any thread. */
+    LatencyHistogram captureToRenderLatency()
+    {
+        return mModel.captureToRenderLatency();
+    }
+
+
+    private void createShaderProgram() {
+        mCpuProgramHandle = mPrograms.link(mModel.mVertexShader, mModel.mFragmentShader);
+        // Only linked when used, so the start does not wait for it.
+        mGpuProgramHandle = 0;
+        mProgramHandle    = mGpuHands ? gpuProgram() : mCpuProgramHandle;
+    }
+
+
+    /** @brief The meter program with the hands rotated by the vertex shader. */
+    private int gpuProgram() {
+        if (mGpuProgramHandle == 0) {
+            mGpuProgramHandle = mPrograms.link(mModel.mHandShader.vertexShader(), mModel.mFragmentShader);
+        }
+        return mGpuProgramHandle;
+    }
+
+
+    /** @brief The program of the spectrum bars: no texture, one color. */
+    private void createBarProgram() {
+        mBarProgramHandle  = mPrograms.link(mModel.mBarVertexShader, mModel.mBarFragmentShader);
+
+        mBarCornerSlot     = GLES20.glGetAttribLocation (mBarProgramHandle, "Corner");
+        mBarHeightsUniform = GLES20.glGetUniformLocation(mBarProgramHandle, "Heights");
+        int extentUniform  = GLES20.glGetUniformLocation(mBarProgramHandle, "Extent");
+        int colorUniform   = GLES20.glGetUniformLocation(mBarProgramHandle, "Color");
+
+        GLES20.glUseProgram(mBarProgramHandle);
+        GLES20.glUniform2f(extentUniform, mModel.BarsBottom, mModel.BarsHeight);
+        GLES20.glUniform4f(colorUniform, 0.1f, 0.6f, 0.2f, 0.6f);
+        GLES20.glUseProgram(mProgramHandle);
+    }
+
+
+    private void prepareShaders() {
+        GLES20.glUseProgram(mProgramHandle);
+
+        mPositionSlot = GLES20.glGetAttribLocation(mProgramHandle, "Position");
+        mTexCoordSlot = GLES20.glGetAttribLocation(mProgramHandle, "TexCoordIn");
+
+        GLES20.glEnableVertexAttribArray(mPositionSlot);
+        GLES20.glEnableVertexAttribArray(mTexCoordSlot);
+
+        mTextureUniform = GLES20.glGetUniformLocation(mProgramHandle, "Texture");
+        mAlphaUniform   = GLES20.glGetUniformLocation(mProgramHandle, "Alpha");
+        mThetaUniform   = GLES20.glGetUniformLocation(mProgramHandle, HandShader.THETA_UNIFORM);
+    }
+
+
+    /** @brief Switches the meter program, with its slots and uniforms. */
+    private void useMeterProgram(int handle) {
+        mProgramHandle = handle;
+        prepareShaders();
+        GLES20.glUniform1i(mTextureUniform, 0);
+        GLES20.glUniform1f(mAlphaUniform, 1.0f);
+        bindMeterAttributes();
+    }
+
+
+    private void loadTexture() {
+
+        GLES20.glGenTextures(1, mTextureHandles, 0);
+        GLES20.glBindTexture(GL10.GL_TEXTURE_2D, mTextureHandles[0]);
+        GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER, GL10.GL_NEAREST);
+        GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER, GL10.GL_LINEAR);
+        GLUtils.texImage2D(GL10.GL_TEXTURE_2D, 0, mModel.textureBitmap(), 0);
+
+    }
+
+
+    private void setupGL() {
+
+        GLES20.glGenBuffers        (1, mVertexBuffer      );
+        GLES20.glGenBuffers        (1, mIndexBuffer       );
+       // GLES20.glGenRenderbuffers  (1, mColorRenderBuffer );
+       // GLES20.glGenFramebuffers   (1, mFramebuffer       );
+
+        mVertexBuffer.position      (0);
+        mIndexBuffer.position       (0);
+
+        // Upload the whole geometry once. Only the hand is re-sent per frame.
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVertexBuffer.get(0));
+        mModel.mVerticesNative.position(0);
+        GLES20.glBufferData(
+                GLES20.GL_ARRAY_BUFFER,
+                mModel.mVerticesByteSize(),
+                mModel.mVerticesNative,
+                GLES20.GL_DYNAMIC_DRAW
+        );
+
+        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mIndexBuffer.get(0));
+        mModel.mIndicesNative.position(0);
+        GLES20.glBufferData(
+                GLES20.GL_ELEMENT_ARRAY_BUFFER,
+                mModel.mIndicesByteSize(),
+                mModel.mIndicesNative,
+                GLES20.GL_STATIC_DRAW
+        );
+        // The bars: static but for a change of the band count.
+        GLES20.glGenBuffers(1, mBarVertexBuffer);
+        GLES20.glGenBuffers(1, mBarIndexBuffer);
+
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mBarVertexBuffer.get(0));
+        GLES20.glBufferData(
+                GLES20.GL_ARRAY_BUFFER,
+                mModel.mBarVerticesByteSize(),
+                mModel.mBarVerticesNative,
+                GLES20.GL_STATIC_DRAW
+        );
+        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mBarIndexBuffer.get(0));
+        GLES20.glBufferData(
+                GLES20.GL_ELEMENT_ARRAY_BUFFER,
+                mModel.mBarIndicesByteSize(),
+                mModel.mBarIndicesNative,
+                GLES20.GL_STATIC_DRAW
+        );
+
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVertexBuffer.get(0));
+        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mIndexBuffer.get(0));
+
+        //mColorRenderBuffer.position (0);
+        //mFramebuffer.position       (0);
+
+        //GLES20.glBindRenderbuffer( GLES20.GL_RENDERBUFFER, mColorRenderBuffer.get() );
+        //mColorRenderBuffer.position(0);
+
+        //GLES20.glBindFramebuffer( GLES20.GL_FRAMEBUFFER, mFramebuffer.get() );
+        //mFramebuffer.position(0);
+/*
+        GLES20.glFramebufferRenderbuffer(
+                GLES20.GL_FRAMEBUFFER,
+                GLES20.GL_COLOR_ATTACHMENT0,
+                GLES20.GL_RENDERBUFFER,
+                mColorRenderBuffer.get()
+        );
+        mColorRenderBuffer.position(0);
+*/
+    }
+
+    /** @brief State that does not change between frames. The context keeps
+     *         it, so it is set once after the buffers and texture exist.
+     */
+    private void setupRenderState() {
+
+        GLES20.glUseProgram(mProgramHandle);
+
+        GLES20.glClearColor(1.0f, 1.0f, 1.0f, 0.0f);
+
+        GLES20.glEnable(GLES20.GL_BLEND);
+        GLES20.glDepthMask(false);
+        GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+
+        bindMeterAttributes();
+
+        GLES20.glActiveTexture( GLES20.GL_TEXTURE0 );
+        GLES20.glBindTexture  ( GLES20.GL_TEXTURE_2D, mTextureHandles[0] );
+        GLES20.glUniform1i    ( mTextureUniform, 0 );
+        GLES20.glUniform1f    ( mAlphaUniform, 1.0f );
+    }
+
+    /** @brief Buffers and attribute arrays of the meter program. */
+    private void bindMeterAttributes() {
+
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVertexBuffer.get(0));
+        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mIndexBuffer.get(0));
+        GLES20.glEnableVertexAttribArray(mPositionSlot);
+        GLES20.glEnableVertexAttribArray(mTexCoordSlot);
+
+        GLES20.glVertexAttribPointer(mPositionSlot,
+                VertexUploadPlan.POSITION_ELEMENTS,
+                GLES20.GL_FLOAT,
+                false,
+                mModel.mVerticesAttribSize(),
+                VertexUploadPlan.POSITION_OFFSET);
+
+        GLES20.glVertexAttribPointer(mTexCoordSlot,
+                VertexUploadPlan.TEXCOORD_ELEMENTS,
+                GLES20.GL_FLOAT,
+                false,
+                mModel.mVerticesAttribSize(),
+                VertexUploadPlan.TEXCOORD_OFFSET);
+    }
+
+    /** @brief The program and buffers of the face, and those of the history
+     *         overlay, which is drawn with it, made when first drawn.
+     */
+    private void createFaceProgram() {
+        mFaceProgramHandle = mPrograms.link(mModel.mFaceVertexShader, mModel.mFaceFragmentShader);
+        mFaceVertexSlot    = GLES20.glGetAttribLocation(mFaceProgramHandle, "Vertex");
+        int paletteUniform = GLES20.glGetUniformLocation(mFaceProgramHandle, "Palette");
+
+        GLES20.glUseProgram(mFaceProgramHandle);
+        GLES20.glUniform4fv(paletteUniform, MeterFace.COLORS, MeterFace.palette(), 0);
+
+        GLES20.glGenBuffers(1, mFaceVertexBuffer);
+        GLES20.glGenBuffers(1, mFaceIndexBuffer);
+
+        GLES20.glGenBuffers(1, mHistoryVertexBuffer);
+        GLES20.glGenBuffers(1, mHistoryIndexBuffer);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mHistoryVertexBuffer.get(0));
+        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, mModel.mHistoryOverlay.vertexBytes(),
+                mModel.mHistoryVerticesNative, GLES20.GL_DYNAMIC_DRAW);
+        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mHistoryIndexBuffer.get(0));
+        GLES20.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, mModel.mHistoryOverlay.indexBytes(),
+                mModel.mHistoryIndicesNative, GLES20.GL_STATIC_DRAW);
+    }
+
+    /** @brief The face for the current scale and size, from the cache of the
+     *         model. Uploaded only when it is another mesh, i.e. after a
+     *         change of scale or size. Leaves the meter program bound.
+     */
+    private void renderFace() {
+
+        if (mFaceProgramHandle == 0) {
+            createFaceProgram();
+        }
+        GLES20.glUseProgram(mFaceProgramHandle);
+        GLES20.glDisableVertexAttribArray(mTexCoordSlot);
+        GLES20.glEnableVertexAttribArray(mFaceVertexSlot);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mFaceVertexBuffer.get(0));
+        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mFaceIndexBuffer.get(0));
+
+        MeterFace.Scale scale = mModel.faceScale();
+        MeterFace.Mesh  mesh  = mFaceMesh;
+        if (mesh == null || mesh.getScale() != scale || mesh.getWidth() != mWidth || mesh.getHeight() != mHeight) {
+            mesh = mModel.mFaces.get(scale, mWidth, mHeight);
+            ByteBuffer vertices = ByteBuffer.allocateDirect(mesh.vertexBytes()).order(ByteOrder.nativeOrder());
+            vertices.asFloatBuffer().put(mesh.getVertices());
+            GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, mesh.vertexBytes(), vertices, GLES20.GL_STATIC_DRAW);
+            ByteBuffer indices = ByteBuffer.allocateDirect(mesh.indexBytes()).order(ByteOrder.nativeOrder());
+            indices.asShortBuffer().put(mesh.getIndices());
+            GLES20.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, mesh.indexBytes(), indices, GLES20.GL_STATIC_DRAW);
+            mFaceMesh = mesh;
+        }
+        GLES20.glVertexAttribPointer(mFaceVertexSlot,
+                MeterFace.Mesh.FLOATS_PER_VERTEX,
+                GLES20.GL_FLOAT,
+                false,
+                MeterFace.Mesh.STRIDE_BYTES,
+                0);
+        GLES20.glDrawElements(GLES20.GL_TRIANGLES, mesh.indexCount(), GLES20.GL_UNSIGNED_SHORT, 0);
+
+        GLES20.glDisableVertexAttribArray(mFaceVertexSlot);
+        GLES20.glUseProgram(mProgramHandle);
+        bindMeterAttributes();
+    }
+
+    /** @brief The peak-hold markers and the history strip in one draw call,
+     *         with the program of the face. The vertices are uploaded only
+     *         when a marker or the strip moved. Leaves the meter program
+     *         bound.
+     */
+    private void renderHistory() {
+
+        if (mFaceProgramHandle == 0) {
+            createFaceProgram();
+        }
+        GLES20.glUseProgram(mFaceProgramHandle);
+        GLES20.glDisableVertexAttribArray(mTexCoordSlot);
+        GLES20.glEnableVertexAttribArray(mFaceVertexSlot);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mHistoryVertexBuffer.get(0));
+        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mHistoryIndexBuffer.get(0));
+        if (mModel.updateHistoryVertices()) {
+            GLES20.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0,
+                    mModel.mHistoryOverlay.vertexBytes(), mModel.mHistoryVerticesNative);
+        }
+        GLES20.glVertexAttribPointer(mFaceVertexSlot,
+                MeterFace.Mesh.FLOATS_PER_VERTEX,
+                GLES20.GL_FLOAT,
+                false,
+                MeterFace.Mesh.STRIDE_BYTES,
+                0);
+        GLES20.glDrawElements(GLES20.GL_TRIANGLES, mModel.mHistoryOverlay.indexCount(), GLES20.GL_UNSIGNED_SHORT, 0);
+
+        GLES20.glDisableVertexAttribArray(mFaceVertexSlot);
+        GLES20.glUseProgram(mProgramHandle);
+        bindMeterAttributes();
+    }
+
+    /** @brief All bars in one draw call. The only per-frame upload is the
+     *         array of band heights. Leaves the meter program bound.
+     */
+    private void renderBars() {
+
+        GLES20.glUseProgram(mBarProgramHandle);
+        GLES20.glDisableVertexAttribArray(mTexCoordSlot);
+        GLES20.glEnableVertexAttribArray(mBarCornerSlot);
+
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mBarVertexBuffer.get(0));
+        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mBarIndexBuffer.get(0));
+        if (mModel.updateBarVertices()) {
+            GLES20.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0,
+                    mModel.mBarVerticesByteSize(), mModel.mBarVerticesNative);
+        }
+        GLES20.glVertexAttribPointer(mBarCornerSlot,
+                SpectrumBars.FLOATS_PER_VERTEX,
+                GLES20.GL_FLOAT,
+                false,
+                mModel.mBarVerticesAttribSize(),
+                0);
+
+        GLES20.glUniform1fv(mBarHeightsUniform, SpectrumBars.MAX_BANDS, mModel.mBars.getHeights(), 0);
+        GLES20.glDrawElements(GLES20.GL_TRIANGLES, mModel.mBars.indexCount(), GLES20.GL_UNSIGNED_SHORT, 0);
+
+        GLES20.glDisableVertexAttribArray(mBarCornerSlot);
+        GLES20.glUseProgram(mProgramHandle);
+        bindMeterAttributes();
+    }
+
+    int dummyRMS = 0;
+
+    private void render() {
+
+        if (mGpuHands) {
+            // A float per hand; the quads stay in the buffer.
+            GLES20.glUniform1fv(mThetaUniform, mModel.mHandAngles.length, mModel.mHandAngles, 0);
+        }
+        else {
+            mModel.mHandVerticesNative.position(0);
+            GLES20.glBufferSubData(
+                    GLES20.GL_ARRAY_BUFFER,
+                    mModel.mPlan.dynamicByteOffset(),
+                    mModel.mPlan.dynamicByteSize(),
+                    mModel.mHandVerticesNative
+            );
+        }
+
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+
+        if (mVectorFace && mWidth > 0 && mHeight > 0) {
+            renderFace();
+        }
+        else {
+            GLES20.glDrawElements(GLES20.GL_TRIANGLES, VertexUploadPlan.INDICES_PER_QUAD, GLES20.GL_UNSIGNED_SHORT,
+                    VertexUploadPlan.indexByteOffsetOfQuad(VertexUploadPlan.QUAD_BASE));
+        }
+
+        if (mSpectrumMode) {
+            renderBars();
+        }
+
+        if (mHistoryMode) {
+            renderHistory();
+        }
+
+        GLES20.glDrawElements(GLES20.GL_TRIANGLES, mModel.mPlan.handIndexCount(), GLES20.GL_UNSIGNED_SHORT,
+                VertexUploadPlan.indexByteOffsetOfQuad(VertexUploadPlan.QUAD_FIRST_HAND));
+
+        if (mModel.peaked()) {
+            // Held at 1, then fading out over the release time.
+            GLES20.glUniform1f(mAlphaUniform, mModel.ledBrightness());
+            GLES20.glDrawElements(GLES20.GL_TRIANGLES, VertexUploadPlan.INDICES_PER_QUAD, GLES20.GL_UNSIGNED_SHORT,
+                    VertexUploadPlan.indexByteOffsetOfQuad(VertexUploadPlan.QUAD_LED));
+            GLES20.glUniform1f(mAlphaUniform, 1.0f);
+        }
+
+        if (mOverlay != null) {
+            mOverlay.draw(System.nanoTime(), mPositionSlot, mTexCoordSlot);
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTextureHandles[0]);
+            bindMeterAttributes();
+        }
+    }
+}
@@ -1,31 +1,230 @@
-package com.example.vumeter;
-
-import android.opengl.GLSurfaceView;
-
-import android.content.Context;
-import android.util.AttributeSet;
-
-
-public class VUMeterView extends GLSurfaceView {
-
-
-    public VUMeterView(Context context)
-    {
-        this(context, null);
-    }
-
-    public VUMeterView(Context context, AttributeSet attrs)
-    {
-        this(context, attrs, 0);
-    }
-
-    public VUMeterView(Context context, AttributeSet attrs, int defStyle)
-    {
-        super(context, attrs);
-
-        setEGLContextClientVersion(2);
-
-        setRenderer(new VUMeterRenderer(context));
-    }
-
-}
+package com.example.vumeter;
+
+import android.opengl.GLSurfaceView;
+
+import android.content.Context;
+import android.util.AttributeSet;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.example.vumeter.core.LatencyHistogram;
+import com.example.vumeter.core.MeterMetrics;
+import com.example.vumeter.core.RenderRequester;
+import com.example.vumeter.core.StartupTrace;
+
+
+public class VUMeterView extends GLSurfaceView implements RenderRequester {
+
+    private final VUMeterRenderer mRenderer;
+
+    private MetricsLogger mMetricsLogger;
+    private boolean       mMetricsLogging;
+
+    public VUMeterView(Context context)
+    {
+        this(context, null);
+    }
+
+    public VUMeterView(Context context, AttributeSet attrs)
+    {
+        this(context, attrs, 0);
+    }
+
+    public VUMeterView(Context context, AttributeSet attrs, int defStyle)
+    {
+        super(context, attrs);
+
+        setEGLContextClientVersion(2);
+
+        mRenderer = new VUMeterRenderer(context, this);
+        setRenderer(mRenderer);
+
+        // The texture, buffers and programs survive onPause(), so onResume()
+        // draws again without rebuilding them where the device allows it.
+        setPreserveEGLContextOnPause(true);
+
+        // Frames are requested by the model only when the hand or the LED
+        // visibly changes, and while the hand is still moving.
+        setRenderMode(RENDERMODE_WHEN_DIRTY);
+    }
+
+    /** @brief Starts, or resumes, the capture from the microphone. Call
+     *         from the Activity once it is resumed and RECORD_AUDIO is
+     *         granted.
+     */
+    public void startCapture()
+    {
+        mRenderer.startCapture();
+    }
+
+    /** @brief Stops the capture and releases the microphone, e.g. in
+     *         Activity.onStop(). startCapture() opens it again.
+     */
+    public void stopCapture()
+    {
+        mRenderer.stopCapture();
+    }
+
+    /** @brief Keeps the levels of every block from now on in file, e.g.
+     *         for an audit of what a broadcast showed. Main thread.
+     */
+    public void startRecording(File file) throws IOException
+    {
+        mRenderer.startRecording(file);
+    }
+
+    /** @brief Ends the recording and completes its file. Also before the
+     *         Activity is destroyed. Main thread.
+     */
+    public void stopRecording() throws IOException
+    {
+        mRenderer.stopRecording();
+    }
+
+    /** @brief Shows a recorded session instead of the microphone, at speed
+     *         times real time, e.g. 1 or 8. Until stopReplay(),
+     *         startCapture() or onPause(). Main thread.
+     */
+    public void startReplay(File file, double speed) throws IOException
+    {
+        mRenderer.startReplay(file, speed);
+    }
+
+    public void stopReplay()
+    {
+        mRenderer.stopReplay();
+    }
+
+    /** @brief Also pauses the capture, keeping the microphone for a quick
+     *         startCapture(). Forward from Activity.onPause().
+     */
+    @Override
+    public void onPause()
+    {
+        mRenderer.pauseCapture();
+        if (mMetricsLogger != null) {
+            mMetricsLogger.stop();
+        }
+        super.onPause();
+    }
+
+    /** @brief Forward from Activity.onResume(). The capture starts with
+     *         startCapture().
+     */
+    @Override
+    public void onResume()
+    {
+        super.onResume();
+        if (mMetricsLogging) {
+            mMetricsLogger.start();
+        }
+    }
+
+    /** @brief Percentiles of the latency from the capture of the sound, by
+     *         the AudioRecord timestamps, to the onDrawFrame() that shows it.
+     */
+    public LatencyHistogram getCaptureToRenderLatency()
+    {
+        return mRenderer.captureToRenderLatency();
+    }
+
+    /** @brief Timings of every stage from the read of the microphone to
+     *         the frame, and counts of blocks, updates and frames.
+     */
+    public MeterMetrics getMetrics()
+    {
+        return mRenderer.metrics();
+    }
+
+    /** @brief When the texture, the programs, the capture and the first
+     *         frame were ready, from the creation of the view. Also logged
+     *         at the first frame.
+     */
+    public StartupTrace getStartupTrace()
+    {
+        return mRenderer.startupTrace();
+    }
+
+    /** @brief Writes the metrics to logcat every few seconds, or stops. Main thread. */
+    public void setMetricsLogging(boolean on)
+    {
+        if (mMetricsLogger == null) {
+            mMetricsLogger = new MetricsLogger(getMetrics(), MetricsLogger.DEFAULT_INTERVAL_MILLIS);
+        }
+        mMetricsLogging = on;
+        if (on) {
+            mMetricsLogger.start();
+        }
+        else {
+            mMetricsLogger.stop();
+        }
+    }
+
+    /** @brief Shows the metrics as text over the meter, or hides them. */
+    public void setMetricsOverlay(final boolean on)
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.setMetricsOverlay(on);
+            }
+        });
+        requestRender();
+    }
+
+    /** @brief Rotates the hands on the GPU from one angle per hand, instead
+     *         of uploading their vertices every frame, or goes back to that.
+     */
+    public void setGpuHands(final boolean on)
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.setGpuHands(on);
+            }
+        });
+        requestRender();
+    }
+
+    /** @brief Draws a face tessellated at the size of the view, for the
+     *         scale the hands show, instead of the one of the texture.
+     */
+    public void setVectorFace(final boolean on)
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.setVectorFace(on);
+            }
+        });
+        requestRender();
+    }
+
+    /** @brief Shows the third-octave spectrum behind the hands, or hides it. */
+    public void setSpectrumMode(final boolean on)
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.setSpectrumMode(on);
+            }
+        });
+        requestRender();
+    }
+
+    /** @brief Shows the peak-hold markers and the scrolling history of the
+     *         levels, or hides them.
+     */
+    public void setLevelHistory(final boolean on)
+    {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.setLevelHistory(on);
+            }
+        });
+        requestRender();
+    }
+
+}
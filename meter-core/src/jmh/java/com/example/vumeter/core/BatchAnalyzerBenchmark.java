@@ -0,0 +1,69 @@
+package com.example.vumeter.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to check 8 synthetic programs of 48 kHz stereo, 16-bit, 4 minutes
+ * each, half an hour in all, on pools of 1 to 8 threads. The throughput
+ * scales with the cores while the files stay in the page cache; compare
+ * the scores of the thread counts up to the cores of the machine.
+ *
+ *   ./gradlew :meter-core:jmh -Pjmh.include=BatchAnalyzerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BatchAnalyzerBenchmark {
+
+    static final int FILES   = 8;
+    static final int SECONDS = 240;
+
+    static final CaptureConfig STEREO = new CaptureConfig(48000, 2, CaptureConfig.Encoding.PCM_FLOAT);
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    List<File>    files = new ArrayList<File>();
+    ForkJoinPool  pool;
+    BatchAnalyzer analyzer;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        for (int i = 0; i < FILES; i++) {
+            File file = File.createTempFile("program", ".wav");
+            WavWriter.write(file, new PinkNoiseAudioSource(STEREO, 0.1, i + 1, 48000L * SECONDS, false), 16, false);
+            files.add(file);
+        }
+        pool     = new ForkJoinPool(threads);
+        analyzer = new BatchAnalyzer(pool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    @Benchmark
+    public BatchReport analyze() {
+        return analyzer.analyze(files);
+    }
+}
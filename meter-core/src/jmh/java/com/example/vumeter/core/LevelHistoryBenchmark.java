@@ -0,0 +1,78 @@
+package com.example.vumeter.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The highest reading over the last seconds of a two-hour stereo session,
+ * from the tiers of a LevelHistory or by a scan of every 10 ms reading,
+ * and the cost of adding a block to the history.
+ *
+ *   ./gradlew :meter-core:jmh -Pjmh.include=LevelHistoryBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LevelHistoryBenchmark {
+
+    static final int  RATE         = 48000;
+    static final int  BLOCK_FRAMES = 480;
+    static final long SESSION_BINS = 2L * 3600 * 100;
+
+    @Param({"10", "300", "3600"})
+    public int seconds;
+
+    LevelHistory history;
+    float[] levels;
+    MeterSnapshot block;
+    long frames;
+    long rangeNanos;
+
+    @Setup
+    public void setup() {
+        history = new LevelHistory(2, RATE);
+        levels = new float[(int) SESSION_BINS];
+        block = new MeterSnapshot();
+        block.mChannelCount = 2;
+        Random random = new Random(25);
+        for (int i = 0; i < SESSION_BINS; i++) {
+            levels[i] = random.nextFloat() * 23170.0f;
+            block.mLevel[0] = levels[i];
+            block.mLevel[1] = levels[i] * 0.5f;
+            frames += BLOCK_FRAMES;
+            history.add(frames, block);
+        }
+        rangeNanos = seconds * 1000000000L;
+    }
+
+    @Benchmark
+    public float maxOverLast() {
+        return history.maxOverLast(0, rangeNanos);
+    }
+
+    /** What the history replaces: every reading of the range, kept one by one. */
+    @Benchmark
+    public float scan() {
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = levels.length - seconds * 100; i < levels.length; i++) {
+            max = Math.max(max, levels[i]);
+        }
+        return max;
+    }
+
+    @Benchmark
+    public long add() {
+        frames += BLOCK_FRAMES;
+        history.add(frames, block);
+        return frames;
+    }
+}
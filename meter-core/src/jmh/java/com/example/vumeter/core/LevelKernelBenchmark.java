@@ -0,0 +1,120 @@
+package com.example.vumeter.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LevelKernel against the original AudioReceiver.calcRMS(), from the
+ * getMinBufferSize() of 8 kHz mono (320 samples) and 48 kHz stereo
+ * (1920 samples) up to 64k samples.
+ *
+ *   ./gradlew :meter-core:jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LevelKernelBenchmark {
+
+    @Param({ "320", "1920", "4096", "16384", "65536" })
+    public int size;
+
+    short[] shorts;
+    float[] floats;
+
+    // Fields written by the loop, as in AudioReceiver.
+    int mRMS;
+    int mPeak;
+
+    final LevelKernel.Block block = new LevelKernel.Block();
+    final LevelKernel.FloatBlock floatBlock = new LevelKernel.FloatBlock();
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        shorts = new short[size];
+        floats = new float[size];
+        for (int i = 0; i < size; i++) {
+            shorts[i] = (short) random.nextInt(65536);
+            floats[i] = (float) (random.nextGaussian() * 0.3);
+        }
+    }
+
+    /** Verbatim copy of the original loop. */
+    void calcRMS( short[] buffer, int length ) {
+        double accumAbs = 0.0;
+        mPeak = 0;
+        for (int i = 0; i < length; i++) {
+            int v = Math.abs((int)buffer[i]);
+            if ( mPeak < v ) {
+                mPeak = v;
+            }
+            double val = (double) buffer[i];
+            accumAbs += (val * val);
+        }
+        mRMS = (int) Math.sqrt((accumAbs / (double) length));
+    }
+
+    @Benchmark
+    public void legacyCalcRMS(Blackhole bh) {
+        calcRMS(shorts, size);
+        bh.consume(mRMS);
+        bh.consume(mPeak);
+    }
+
+    @Benchmark
+    public void kernelShort(Blackhole bh) {
+        LevelKernel.measure(shorts, 0, size, 1, block);
+        bh.consume(LevelKernel.rms(block.sumOfSquares, size));
+        bh.consume(block.peak);
+    }
+
+    /** Sum and peak as two separate passes. */
+    @Benchmark
+    public void kernelShortTwoPass(Blackhole bh) {
+        bh.consume(LevelKernel.rms(LevelKernel.sumOfSquares(shorts, 0, size), size));
+        bh.consume(LevelKernel.peak(shorts, 0, size));
+    }
+
+    @Benchmark
+    public void kernelShortStereo(Blackhole bh) {
+        for (int ch = 0; ch < 2; ch++) {
+            LevelKernel.measure(shorts, ch, size, 2, block);
+            bh.consume(LevelKernel.rms(block.sumOfSquares, size / 2));
+            bh.consume(block.peak);
+        }
+    }
+
+    /** calcRMS() style loop (abs, branch, double) on float PCM. */
+    @Benchmark
+    public void legacyStyleFloat(Blackhole bh) {
+        double accum = 0.0;
+        float peak = 0.0f;
+        for (int i = 0; i < size; i++) {
+            float v = Math.abs(floats[i]);
+            if (peak < v) {
+                peak = v;
+            }
+            double val = floats[i];
+            accum += val * val;
+        }
+        bh.consume(Math.sqrt(accum / size));
+        bh.consume(peak);
+    }
+
+    @Benchmark
+    public void kernelFloat(Blackhole bh) {
+        LevelKernel.measure(floats, 0, size, 1, floatBlock);
+        bh.consume(LevelKernel.rms(floatBlock.sumOfSquares, size));
+        bh.consume(floatBlock.peak);
+    }
+}
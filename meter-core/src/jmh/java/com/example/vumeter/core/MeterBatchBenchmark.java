@@ -0,0 +1,70 @@
+package com.example.vumeter.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The CPU side of one dashboard frame for 1 to 64 stereo meters: every hand
+ * moved and every LED fading, written into the batch and staged into the
+ * direct buffer that glBufferSubData() reads. Also the layout() of a
+ * surface change.
+ *
+ *   ./gradlew :meter-core:jmh -Pjmh.include=MeterBatchBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MeterBatchBenchmark {
+
+    @Param({ "1", "4", "16", "32", "64" })
+    public int meters;
+
+    MeterBatch  batch;
+    FloatBuffer staging;
+    float       theta;
+    float       led;
+
+    @Setup
+    public void setup() {
+        batch = new MeterBatch(new MeterGeometry(), meters, 2);
+        batch.layout(1920, 1080);
+        batch.takeLayoutChanged();
+        staging = ByteBuffer.allocateDirect(batch.vertexBytes())
+                            .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        theta = 1.0f;
+    }
+
+    @Benchmark
+    public int frame() {
+        theta = theta > 2.3f ? 1.0f : theta + 0.001f;
+        led   = led   > 0.0f ? led - 0.01f : 1.0f;
+        for (int m = 0; m < meters; m++) {
+            batch.setHand(m, 0, theta);
+            batch.setHand(m, 1, theta + 0.01f * m);
+            batch.setLed(m, led);
+        }
+        staging.position(batch.dirtyFirstFloat());
+        staging.put(batch.getVertices(), batch.dirtyFirstFloat(), batch.dirtyFloatCount());
+        int bytes = batch.dirtyByteSize();
+        batch.clearDirty();
+        return bytes;
+    }
+
+    @Benchmark
+    public int layout() {
+        batch.layout(1920, 1080);
+        batch.takeLayoutChanged();
+        return batch.getColumns();
+    }
+}
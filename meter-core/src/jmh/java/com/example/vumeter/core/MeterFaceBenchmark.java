@@ -0,0 +1,52 @@
+package com.example.vumeter.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to tessellate a meter face at the size of a phone-sized meter, a
+ * 1080p and a 4K screen, against a hit in the MeterFaceCache.
+ *
+ *   ./gradlew :meter-core:jmh -Pjmh.include=MeterFaceBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MeterFaceBenchmark {
+
+    @Param({"VU", "PPM", "LUFS"})
+    public MeterFace.Scale scale;
+
+    @Param({"512", "1920", "3840"})
+    public int width;
+
+    MeterGeometry geometry;
+    MeterFaceCache cache;
+    int height;
+
+    @Setup
+    public void setup() {
+        geometry = new MeterGeometry();
+        cache = new MeterFaceCache(geometry);
+        height = Math.round(width * geometry.BaseHeight / geometry.BaseWidth);
+        cache.get(scale, width, height);
+    }
+
+    @Benchmark
+    public MeterFace.Mesh generate() {
+        return MeterFace.generate(geometry, scale, width, height);
+    }
+
+    @Benchmark
+    public MeterFace.Mesh cached() {
+        return cache.get(scale, width, height);
+    }
+}
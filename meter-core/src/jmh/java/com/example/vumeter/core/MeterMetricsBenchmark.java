@@ -0,0 +1,42 @@
+package com.example.vumeter.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the instrumentation adds to the capture thread per block: one
+ * histogram record, one counter increment, and the System.nanoTime() that
+ * times a stage.
+ *
+ *   ./gradlew :meter-core:jmh -Pjmh.include=MeterMetricsBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MeterMetricsBenchmark {
+
+    MeterMetrics metrics = new MeterMetrics();
+    long         nanos   = 1234567L;
+
+    @Benchmark
+    public void record() {
+        nanos = nanos * 6364136223846793005L + 1442695040888963407L;
+        metrics.record(MeterMetrics.Stage.METER, (nanos >>> 40));
+    }
+
+    @Benchmark
+    public void increment() {
+        metrics.increment(MeterMetrics.Counter.BLOCKS_READ);
+    }
+
+    @Benchmark
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.vumeter.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The two hot paths of the meter, stereo at 48 kHz: one capture block
+ * (read, meter, publish) and one frame (pull the snapshot, advance the
+ * hands, rebuild their vertices).
+ *
+ *   ./gradlew :meter-core:jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MeterPathBenchmark {
+
+    private static final long FRAME_NANOS = 16666667L;
+
+    /** Replays one pre-generated block, so the benchmark does not time sin(). */
+    static class ReplaySource implements AudioSource {
+        final CaptureConfig config;
+        final float[] block;
+
+        ReplaySource(CaptureConfig config) {
+            this.config = config;
+            SineAudioSource sine = new SineAudioSource(config, 1000.0, 0.5, -1, false);
+            block = new float[sine.getBufferSizeInSamples()];
+            sine.read(block, 0, block.length);
+        }
+
+        @Override public CaptureConfig getConfig() { return config; }
+        @Override public int getBufferSizeInSamples() { return block.length; }
+        @Override public void start() { }
+        @Override public int read(short[] buffer, int offset, int length) { return END_OF_STREAM; }
+        @Override public int read(float[] buffer, int offset, int length) {
+            System.arraycopy(block, 0, buffer, offset, length);
+            return length;
+        }
+        @Override public void stop() { }
+        @Override public void release() { }
+    }
+
+    CaptureLoop loop;
+    NeedleMeter meter;
+    MeterGeometry geometry;
+    float[] vertices;
+    long now;
+
+    @Setup
+    public void setup() {
+        loop = new CaptureLoop(new ReplaySource(CaptureConfig.BROADCAST));
+        geometry = new MeterGeometry();
+        meter = new NeedleMeter(geometry, 2, loop.getMeterState(), new RenderRequester() {
+            @Override
+            public void requestRender() {
+            }
+        });
+        loop.setCaptureThreadListener(meter);
+        vertices = new float[new VertexUploadPlan(2).numVertexFloats()];
+    }
+
+    @Benchmark
+    public boolean captureBlock() {
+        return loop.processBlock();
+    }
+
+    @Benchmark
+    public float[] frame() {
+        loop.processBlock();
+        now += FRAME_NANOS;
+        meter.updateFromCapture(now);
+        for (int hand = 0; hand < 2; hand++) {
+            geometry.makeHandVertices(vertices, hand, meter.getTheta(hand));
+        }
+        meter.onFrameDrawn();
+        return vertices;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.vumeter.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The mapping of a reading to an angle and the vertices of a hand at an
+ * angle, with log10(), cos() and sin() or with the lookup tables, per call.
+ *
+ *   ./gradlew :meter-core:jmh -Pjmh.include=NeedleLookupBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NeedleLookupBenchmark {
+
+    static final int CALLS = 1024;
+
+    @Param({"false", "true"})
+    public boolean tables;
+
+    MeterGeometry geometry;
+    NeedleMeter meter;
+    float[] vertices;
+    float[] levels = new float[CALLS];
+    float[] angles = new float[CALLS];
+
+    @Setup
+    public void setup() {
+        geometry = new MeterGeometry();
+        geometry.setLookupTables(tables);
+        meter = new NeedleMeter(geometry, 2, new MeterStateTripleBuffer(), new RenderRequester() {
+            @Override
+            public void requestRender() {
+            }
+        });
+        meter.setLookupTables(tables);
+        vertices = new float[new VertexUploadPlan(2).numVertexFloats()];
+
+        // Readings over the 60 dB of the scale, and angles over all of it.
+        Random random = new Random(1);
+        for (int i = 0; i < CALLS; i++) {
+            levels[i] = (float) (23170.0 * Math.pow(10.0, -3.0 * random.nextDouble()));
+            angles[i] = geometry.HandAngularLimitRight
+                      + (geometry.HandAngularLimitLeft - geometry.HandAngularLimitRight) * random.nextFloat();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public float targetTheta() {
+        float sum = 0.0f;
+        for (int i = 0; i < CALLS; i++) {
+            sum += meter.targetThetaFor(levels[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public float[] handVertices() {
+        for (int i = 0; i < CALLS; i++) {
+            geometry.makeHandVertices(vertices, i & 1, angles[i]);
+        }
+        return vertices;
+    }
+}
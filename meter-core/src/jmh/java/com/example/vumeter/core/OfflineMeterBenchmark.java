@@ -0,0 +1,60 @@
+package com.example.vumeter.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to meter a minute of 48 kHz stereo pink noise offline, from a WAV
+ * file of the given format or straight from the generator, with the same
+ * seed every run. A minute of real time is 60000 ms.
+ *
+ *   ./gradlew :meter-core:jmh -Pjmh.include=OfflineMeterBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OfflineMeterBenchmark {
+
+    static final int MINUTE = 48000 * 60;
+
+    static final CaptureConfig STEREO = new CaptureConfig(48000, 2, CaptureConfig.Encoding.PCM_FLOAT);
+
+    @Param({"16", "24", "float"})
+    public String format;
+
+    File file;
+
+    @Setup
+    public void setup() throws IOException {
+        file = File.createTempFile("pink", ".wav");
+        boolean isFloat = format.equals("float");
+        WavWriter.write(file, new PinkNoiseAudioSource(STEREO, 0.1, 1L, MINUTE, false),
+                        isFloat ? 32 : Integer.parseInt(format), isFloat);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public LevelReport wavFile() throws IOException {
+        return new OfflineMeter(new WavAudioSource(file)).run();
+    }
+
+    @Benchmark
+    public LevelReport generator() {
+        return new OfflineMeter(new PinkNoiseAudioSource(STEREO, 0.1, 1L, MINUTE, false)).run();
+    }
+}
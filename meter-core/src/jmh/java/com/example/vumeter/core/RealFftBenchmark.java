@@ -0,0 +1,67 @@
+package com.example.vumeter.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RealFft from 1k to 8k points, and the whole SpectrumAnalyzer on one 20 ms
+ * capture block of 48 kHz stereo at the same FFT size.
+ *
+ *   ./gradlew :meter-core:jmh -Pjmh.include=RealFftBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RealFftBenchmark {
+
+    @Param({ "1024", "2048", "4096", "8192" })
+    public int size;
+
+    RealFft fft;
+    float[] input;
+    float[] re;
+    float[] im;
+
+    SpectrumAnalyzer analyzer;
+    float[] block;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        fft   = new RealFft(size);
+        input = new float[size];
+        for (int i = 0; i < size; i++) {
+            input[i] = (float) (random.nextGaussian() * 0.3);
+        }
+        re = new float[fft.getBinCount()];
+        im = new float[fft.getBinCount()];
+
+        analyzer = new SpectrumAnalyzer(48000, 2, size, SpectrumAnalyzer.Bands.THIRD_OCTAVE,
+                                        SpectrumAnalyzer.DEFAULT_AVERAGES);
+        block = new float[2 * 960];
+        for (int i = 0; i < block.length; i++) {
+            block[i] = (float) (random.nextGaussian() * 0.3);
+        }
+    }
+
+    @Benchmark
+    public float forward() {
+        fft.forward(input, 0, re, im);
+        return re[1];
+    }
+
+    @Benchmark
+    public float analyzerBlock() {
+        analyzer.process(block, block.length);
+        return analyzer.getBandDB(0);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.vumeter.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the session recorder adds to the capture thread per block, and how
+ * fast an hour of stereo reads back for a replay or an audit.
+ *
+ *   ./gradlew :meter-core:jmh -Pjmh.include=SessionLogBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SessionLogBenchmark {
+
+    static final int HOUR_OF_RECORDS = 3600 * 200;
+
+    File            recorded;
+    File            hour;
+    SessionRecorder recorder;
+    SessionReader   reader;
+    MeterSnapshot   snapshot = new MeterSnapshot();
+    int             index;
+
+    @Setup
+    public void setup() throws IOException {
+        snapshot.mChannelCount = 2;
+        snapshot.mBlockNanos   = 5000000L;
+
+        hour = File.createTempFile("hour", ".vms");
+        SessionRecorder writer = new SessionRecorder(hour, 2, 48000, 65536, SessionRecorder.DEFAULT_FLUSH_NANOS);
+        for (int i = 0; i < HOUR_OF_RECORDS; i++) {
+            snapshot.mTimestampNanos = writer.getStartNanos() + i * 5000000L;
+            while (!writer.record(snapshot)) {
+                Thread.yield();
+            }
+        }
+        writer.close();
+        reader = new SessionReader(hour);
+
+        recorded = File.createTempFile("recorded", ".vms");
+        recorder = new SessionRecorder(recorded, 2, 48000, 65536, SessionRecorder.DEFAULT_FLUSH_NANOS);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        recorder.close();
+        reader.close();
+        recorded.delete();
+        hour.delete();
+    }
+
+    /** The capture thread side: a copy into the ring, or a counted drop
+     *  when the writer falls behind this loop, which never happens at 200
+     *  blocks per second.
+     */
+    @Benchmark
+    public boolean record() {
+        snapshot.mTimestampNanos += 5000000L;
+        return recorder.record(snapshot);
+    }
+
+    @Benchmark
+    public int read() {
+        index = index + 1 < HOUR_OF_RECORDS ? index + 1 : 0;
+        reader.read(index, snapshot);
+        return snapshot.mRMS[0];
+    }
+}
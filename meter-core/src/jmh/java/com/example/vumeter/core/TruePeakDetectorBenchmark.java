@@ -0,0 +1,88 @@
+package com.example.vumeter.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TruePeakDetector on one capture block, 20 ms at 48 kHz mono (960
+ * samples) and stereo (1920 samples), against a straightforward ring
+ * buffer with a modulo per tap and one pass per phase. The block budget
+ * at 48 kHz is 20 ms; the detector must stay far below it.
+ *
+ *   ./gradlew :meter-core:jmh -Pjmh.include=TruePeakDetectorBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TruePeakDetectorBenchmark {
+
+    @Param({ "960", "1920" })
+    public int size;
+
+    short[] shorts;
+    float[] floats;
+
+    final TruePeakDetector left  = new TruePeakDetector();
+    final TruePeakDetector right = new TruePeakDetector();
+
+    final float[] ring = new float[TruePeakDetector.TAPS];
+    int ringPos;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        shorts = new short[size];
+        floats = new float[size];
+        for (int i = 0; i < size; i++) {
+            shorts[i] = (short) (random.nextGaussian() * 8000.0);
+            floats[i] = (float) (random.nextGaussian() * 0.3);
+        }
+    }
+
+    /** The filter as written in the recommendation. */
+    float naive( short[] x, int start, int end, int stride ) {
+        float peak = 0.0f;
+        for (int i = start; i < end; i += stride) {
+            ring[ringPos] = x[i] * TruePeakDetector.SHORT_TO_FLOAT_SCALE;
+            for (int p = 0; p < TruePeakDetector.PHASES; p++) {
+                float acc = 0.0f;
+                for (int k = 0; k < TruePeakDetector.TAPS; k++) {
+                    int j = (ringPos - k + TruePeakDetector.TAPS) % TruePeakDetector.TAPS;
+                    acc += TruePeakDetector.COEFFICIENTS[p][k] * ring[j];
+                }
+                peak = Math.max(peak, Math.abs(acc));
+            }
+            ringPos = (ringPos + 1) % TruePeakDetector.TAPS;
+        }
+        return peak;
+    }
+
+    @Benchmark
+    public float naiveMono() {
+        return naive(shorts, 0, size, 1);
+    }
+
+    @Benchmark
+    public float detectorMono() {
+        return left.process(shorts, 0, size, 1);
+    }
+
+    @Benchmark
+    public float detectorStereo() {
+        return Math.max(left.process(shorts, 0, size, 2), right.process(shorts, 1, size, 2));
+    }
+
+    @Benchmark
+    public float detectorFloatMono() {
+        return left.process(floats, 0, size, 1);
+    }
+}
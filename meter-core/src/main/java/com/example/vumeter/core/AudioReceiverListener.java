@@ -1,8 +1,8 @@
-package com.example.vumeter;
-
-public interface AudioReceiverListener {
-
-    void onUpdateRMS( int rms, int peak );
-
-}
-
+package com.example.vumeter.core;
+
+public interface AudioReceiverListener {
+
+    void onUpdateRMS( int rms, int peak );
+
+}
+
@@ -0,0 +1,40 @@
+package com.example.vumeter.core;
+
+/** @brief Where the meter gets its PCM from: the microphone on the device,
+ *         and a file or a generator on the JVM.
+ *
+ *  Used by CaptureLoop on the capture thread only. read() blocks until
+ *  samples are available, like AudioRecord.read() in blocking mode, so the
+ *  source also paces the loop. Only the read() of the encoding of
+ *  getConfig() is called.
+ */
+public interface AudioSource {
+
+    /** @brief Returned by read() when no more samples will come. */
+    int END_OF_STREAM = -1;
+
+    CaptureConfig getConfig();
+
+    /** @brief Samples (not frames) to ask for per read(). A whole number of frames. */
+    int getBufferSizeInSamples();
+
+    /** @brief Opens the resources if needed and starts to capture. It may
+     *         throw, e.g. without the permission to record.
+     */
+    void start();
+
+    /** @return number of samples read, or END_OF_STREAM or another negative
+     *          value to end the capture.
+     */
+    int read( short[] buffer, int offset, int length );
+
+    /** @brief Same as read(short[], int, int) for PCM_FLOAT, in [-1, 1]. */
+    int read( float[] buffer, int offset, int length );
+
+    void stop();
+
+    /** @brief Frees the underlying resources, e.g. the microphone. The next
+     *         start(), if any, opens them again.
+     */
+    void release();
+}
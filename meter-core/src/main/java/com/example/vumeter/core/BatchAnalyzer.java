@@ -0,0 +1,223 @@
+package com.example.vumeter.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/** @brief Measures the ProgramStats of many WAV files on all the cores of a
+ *         ForkJoinPool, e.g. to check a directory of programs.
+ *
+ *  Every file is a task, split in halves down to chunks of about the chunk
+ *  length, so long files spread over the cores too, and the halves merge
+ *  as they join. The chunks start on the grid of the windows of the file.
+ *  Each chunk runs the PREROLL before it through the Ballistics and the
+ *  TruePeakDetector of the channels first, so they start from the state a
+ *  single pass would have had at the boundary. The true peaks and the
+ *  overloads are exact, since the detector only remembers TAPS samples.
+ *  The ballistics forget their state within the preroll: the VU to well
+ *  below 0.01 dB, the PPMs to 40 dB below the level before it.
+ *
+ *  The files are read through WavAudioSource, each chunk on its own
+ *  mapping; nothing is loaded whole.
+ */
+public class BatchAnalyzer {
+
+    /** @brief Length of the windows of the histogram and the overloads. */
+    public static final int    WINDOW_MILLIS          = 100;
+    public static final double DEFAULT_CHUNK_SECONDS  = 60.0;
+    public static final double PREROLL_SECONDS        = 5.0;
+
+    private final ForkJoinPool    mPool;
+    private final Ballistics.Mode mMode;
+    private final float           mOverloadThreshold;
+    private final double          mChunkSeconds;
+
+    /** @brief VU, overloads from -1 dBTP, one-minute chunks. */
+    public BatchAnalyzer( ForkJoinPool pool ) {
+        this( pool, Ballistics.Mode.VU, CaptureLoop.DEFAULT_OVERLOAD_DBTP, DEFAULT_CHUNK_SECONDS );
+    }
+
+    /**
+     *  @param overloadDBTP  true peak from which a window is overloaded.
+     *  @param chunkSeconds  longest part of a file measured as one task.
+     */
+    public BatchAnalyzer( ForkJoinPool pool, Ballistics.Mode mode, float overloadDBTP, double chunkSeconds ) {
+        if ( !( chunkSeconds > 0.0 ) ) {
+            throw new IllegalArgumentException( "chunkSeconds " + chunkSeconds );
+        }
+        mPool              = pool;
+        mMode              = mode;
+        mOverloadThreshold = TruePeakDetector.fromDB( overloadDBTP );
+        mChunkSeconds      = chunkSeconds;
+    }
+
+    /** @brief Measures the files in parallel. A file that cannot be read is
+     *         reported with its error, the others are measured anyway.
+     */
+    public BatchReport analyze( List<File> files ) {
+        final List<FileTask> tasks = new ArrayList<FileTask>( files.size() );
+        for ( File file : files ) {
+            tasks.add( new FileTask( file ) );
+        }
+        long start = System.nanoTime();
+        mPool.invoke( new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll( tasks );
+            }
+        } );
+        long elapsed = System.nanoTime() - start;
+
+        BatchReport report = new BatchReport( elapsed );
+        for ( FileTask task : tasks ) {
+            report.add( task.mFile, task.mStats, task.mFailure );
+        }
+        return report;
+    }
+
+    /** @brief Measures one file in parallel. */
+    public ProgramStats analyze( File file ) throws IOException {
+        FileTask task = new FileTask( file );
+        mPool.invoke( task );
+        if ( task.mFailure != null ) {
+            throw task.mFailure;
+        }
+        return task.mStats;
+    }
+
+    private class FileTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        final File   mFile;
+        ProgramStats mStats;
+        IOException  mFailure;
+
+        FileTask( File file ) {
+            mFile = file;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                WavAudioSource header = new WavAudioSource( mFile );
+                int  rate   = header.getConfig().getSampleRate();
+                long window = Math.max( 1, rate * WINDOW_MILLIS / 1000 );
+                long chunk  = Math.max( 1L, Math.round( mChunkSeconds * rate / window ) ) * window;
+                mStats = new ChunkTask( mFile, header.getConfig().getChannelCount(), rate, (int)window,
+                                        chunk, 0L, header.getFrameCount() ).compute();
+            }
+            catch ( IOException e ) {
+                mFailure = e;
+            }
+            catch ( RuntimeException e ) {
+                // A chunk failed; the pool may rethrow it wrapped.
+                Throwable cause = e.getCause();
+                while ( cause != null && !( cause instanceof IOException ) ) {
+                    cause = cause.getCause();
+                }
+                mFailure = cause != null ? (IOException)cause : new IOException( mFile + ": " + e, e );
+            }
+        }
+    }
+
+    /** @brief The windows of frames [mStart, mEnd) of a file. */
+    private class ChunkTask extends RecursiveTask<ProgramStats> {
+
+        private static final long serialVersionUID = 1L;
+
+        final File mFile;
+        final int  mChannels;
+        final int  mSampleRate;
+        final int  mWindowFrames;
+        final long mChunkFrames;
+        final long mStart;
+        final long mEnd;
+
+        ChunkTask( File file, int channels, int sampleRate, int windowFrames, long chunkFrames,
+                   long start, long end ) {
+            mFile         = file;
+            mChannels     = channels;
+            mSampleRate   = sampleRate;
+            mWindowFrames = windowFrames;
+            mChunkFrames  = chunkFrames;
+            mStart        = start;
+            mEnd          = end;
+        }
+
+        @Override
+        protected ProgramStats compute() {
+            if ( mEnd - mStart > mChunkFrames ) {
+                // Halves on the window grid, so the windows do not depend on the split.
+                long middle = mStart + Math.max( 1L, ( mEnd - mStart ) / 2 / mWindowFrames ) * mWindowFrames;
+                ChunkTask first  = new ChunkTask( mFile, mChannels, mSampleRate, mWindowFrames,
+                                                  mChunkFrames, mStart, middle );
+                ChunkTask second = new ChunkTask( mFile, mChannels, mSampleRate, mWindowFrames,
+                                                  mChunkFrames, middle, mEnd );
+                first.fork();
+                ProgramStats later = second.compute();
+                return first.join().merge( later );
+            }
+            try {
+                return measure();
+            }
+            catch ( IOException e ) {
+                throw new IllegalStateException( e.getMessage(), e );
+            }
+        }
+
+        private ProgramStats measure() throws IOException {
+            ProgramStats stats = new ProgramStats( mChannels );
+            Ballistics[]       ballistics = new Ballistics[mChannels];
+            TruePeakDetector[] truePeak   = new TruePeakDetector[mChannels];
+            for ( int ch = 0; ch < mChannels; ch++ ) {
+                ballistics[ch] = new Ballistics( mMode, mSampleRate );
+                truePeak[ch]   = new TruePeakDetector();
+            }
+            float[] windowTruePeak = new float[mChannels];
+            float[] windowLevel    = new float[mChannels];
+            LevelKernel.FloatBlock scratch = new LevelKernel.FloatBlock();
+
+            WavAudioSource source = new WavAudioSource( mFile, mWindowFrames );
+            float[] x = new float[ mWindowFrames * mChannels ];
+            long position = Math.max( 0L, mStart - (long)( PREROLL_SECONDS * mSampleRate ) );
+            source.start();
+            try {
+                source.seek( position );
+                while ( position < mEnd ) {
+                    // Up to the next window boundary, so the preroll ends on one.
+                    // The preroll is before mStart: its offset rounds down, not
+                    // to zero, without Math.floorMod(), which is API 24.
+                    long limit  = position < mStart ? mStart : mEnd;
+                    long offset = ( position - mStart ) % mWindowFrames;
+                    if ( offset < 0L ) {
+                        offset += mWindowFrames;
+                    }
+                    long toNext = mWindowFrames - offset;
+                    int  frames = (int)Math.min( toNext, limit - position );
+                    int length = source.read( x, 0, frames * mChannels );
+                    if ( length != frames * mChannels ) {
+                        throw new IOException( mFile + " ends early at frame " + position );
+                    }
+                    for ( int ch = 0; ch < mChannels; ch++ ) {
+                        ballistics[ch].process( x, ch, length, mChannels );
+                        windowTruePeak[ch] = truePeak[ch].process( x, ch, length, mChannels );
+                        windowLevel[ch]    = ballistics[ch].getReading();
+                    }
+                    if ( position >= mStart ) {
+                        stats.addWindow( x, frames, mSampleRate, windowTruePeak, windowLevel, mOverloadThreshold, scratch );
+                    }
+                    position += frames;
+                }
+            }
+            finally {
+                source.release();
+            }
+            return stats;
+        }
+    }
+}
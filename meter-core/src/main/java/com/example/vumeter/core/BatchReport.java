@@ -0,0 +1,117 @@
+package com.example.vumeter.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/** @brief The ProgramStats of each file of a BatchAnalyzer run, or the
+ *         reason it could not be read, with their total.
+ */
+public class BatchReport {
+
+    private final long               mElapsedNanos;
+    private final List<File>         mFiles    = new ArrayList<File>();
+    private final List<ProgramStats> mStats    = new ArrayList<ProgramStats>();
+    private final List<IOException>  mFailures = new ArrayList<IOException>();
+    private final ProgramStats       mTotal    = new ProgramStats( CaptureConfig.MAX_CHANNELS );
+
+    BatchReport( long elapsedNanos ) {
+        mElapsedNanos = elapsedNanos;
+    }
+
+    void add( File file, ProgramStats stats, IOException failure ) {
+        mFiles.add( file );
+        mStats.add( stats );
+        mFailures.add( failure );
+        if ( stats != null ) {
+            mTotal.merge( stats );
+        }
+    }
+
+    public int getFileCount() {
+        return mFiles.size();
+    }
+
+    public File getFile( int index ) {
+        return mFiles.get( index );
+    }
+
+    /** @brief null if the file could not be read. */
+    public ProgramStats getStats( int index ) {
+        return mStats.get( index );
+    }
+
+    /** @brief Why the file could not be read, or null. */
+    public IOException getFailure( int index ) {
+        return mFailures.get( index );
+    }
+
+    /** @brief All the files merged, channel by channel. A mono file counts
+     *         on the first channel only.
+     */
+    public ProgramStats getTotal() {
+        return mTotal;
+    }
+
+    /** @brief Total length of the programs measured. */
+    public long getDurationNanos() {
+        return mTotal.getDurationNanos();
+    }
+
+    public long getElapsedNanos() {
+        return mElapsedNanos;
+    }
+
+    /** @brief How many times faster than real time the programs were measured. */
+    public double getSpeed() {
+        return mElapsedNanos > 0L ? (double)getDurationNanos() / mElapsedNanos : Double.POSITIVE_INFINITY;
+    }
+
+    /** @brief Writes one line per file and one for the total, in columns:
+     *         length, sample peak, true peak, RMS and highest ballistic
+     *         reading of the loudest channel, the median and 95th percentile
+     *         of the RMS of the windows, and the overloaded windows.
+     */
+    public void writeTable( Appendable out ) throws IOException {
+        int width = 5;
+        for ( File file : mFiles ) {
+            width = Math.max( width, file.getName().length() );
+        }
+        String row = "%-" + width + "s %10s %8s %8s %8s %8s %8s %8s %9s\n";
+        out.append( String.format( Locale.ROOT, row, "file", "length", "peak", "true pk", "rms",
+                                   "level", "rms 50%", "rms 95%", "overloads" ) );
+        for ( int i = 0; i < mFiles.size(); i++ ) {
+            ProgramStats stats = mStats.get( i );
+            if ( stats == null ) {
+                out.append( String.format( Locale.ROOT, "%-" + width + "s %s\n",
+                                           mFiles.get( i ).getName(), mFailures.get( i ).getMessage() ) );
+                continue;
+            }
+            appendRow( out, row, mFiles.get( i ).getName(), stats );
+        }
+        appendRow( out, row, "total", mTotal );
+    }
+
+    private static void appendRow( Appendable out, String row, String name, ProgramStats stats )
+            throws IOException {
+        float peak = Float.NEGATIVE_INFINITY, truePeak = peak, rms = peak, level = peak;
+        for ( int ch = 0; ch < stats.getChannelCount(); ch++ ) {
+            peak     = Math.max( peak,     stats.getPeakDB( ch ) );
+            truePeak = Math.max( truePeak, stats.getTruePeakDB( ch ) );
+            rms      = Math.max( rms,      stats.getRMSDB( ch ) );
+            level    = Math.max( level,    stats.getMaxLevelDB( ch ) );
+        }
+        long seconds = stats.getDurationNanos() / 1000000000L;
+        out.append( String.format( Locale.ROOT, row, name,
+                String.format( Locale.ROOT, "%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60 ),
+                decibels( peak ), decibels( truePeak ), decibels( rms ), decibels( level ),
+                decibels( stats.getRMSPercentileDB( 0.5 ) ), decibels( stats.getRMSPercentileDB( 0.95 ) ),
+                Long.toString( stats.getOverloadWindows() ) ) );
+    }
+
+    private static String decibels( float db ) {
+        return Float.isInfinite( db ) || Float.isNaN( db ) ? "-inf" : String.format( Locale.ROOT, "%.1f", db );
+    }
+}
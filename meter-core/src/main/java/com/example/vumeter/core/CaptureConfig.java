@@ -0,0 +1,99 @@
+package com.example.vumeter.core;
+
+/** @brief Format of the captured audio: sample rate, number of interleaved
+ *         channels and sample encoding, and optionally the size of the
+ *         blocks read and metered at a time. Immutable.
+ *
+ *  The block size sets how often the meter sees new samples, and so the
+ *  latency from the sound to the hands. It is independent of the size of
+ *  the ring buffer of the device, which only has to be large enough not to
+ *  overrun. 0 frames leaves the block size to the AudioSource.
+ */
+public class CaptureConfig {
+
+    public enum Encoding {
+        /** @brief Signed 16-bit integer PCM, read into short[]. */
+        PCM_16BIT,
+        /** @brief 32-bit float PCM in [-1, 1], read into float[]. */
+        PCM_FLOAT
+    }
+
+    public static final int MAX_CHANNELS = MeterSnapshot.MAX_CHANNELS;
+
+    /** @brief Block length of the low-latency capture. */
+    public static final float LOW_LATENCY_BLOCK_MILLIS = 5.0f;
+
+    /** @brief The original format of the app: 8 kHz, mono, 16-bit. */
+    public static final CaptureConfig DEFAULT   = new CaptureConfig(  8000, 1, Encoding.PCM_16BIT );
+
+    /** @brief Broadcast monitoring: 48 kHz, stereo, float. */
+    public static final CaptureConfig BROADCAST = new CaptureConfig( 48000, 2, Encoding.PCM_FLOAT );
+
+    private final int      mSampleRate;
+    private final int      mChannelCount;
+    private final Encoding mEncoding;
+    private final int      mBlockFrames;
+
+    public CaptureConfig( int sampleRate, int channelCount, Encoding encoding ) {
+        this( sampleRate, channelCount, encoding, 0 );
+    }
+
+    /** @param blockFrames frames per read, or 0 for the default of the source. */
+    public CaptureConfig( int sampleRate, int channelCount, Encoding encoding, int blockFrames ) {
+        if ( sampleRate <= 0 ) {
+            throw new IllegalArgumentException( "sampleRate must be positive: " + sampleRate );
+        }
+        if ( channelCount < 1 || channelCount > MAX_CHANNELS ) {
+            throw new IllegalArgumentException( "channelCount must be 1.." + MAX_CHANNELS + ": " + channelCount );
+        }
+        if ( encoding == null ) {
+            throw new IllegalArgumentException( "encoding must not be null" );
+        }
+        if ( blockFrames < 0 ) {
+            throw new IllegalArgumentException( "blockFrames must not be negative: " + blockFrames );
+        }
+        mSampleRate   = sampleRate;
+        mChannelCount = channelCount;
+        mEncoding     = encoding;
+        mBlockFrames  = blockFrames;
+    }
+
+    public int      getSampleRate()   { return mSampleRate;   }
+    public int      getChannelCount() { return mChannelCount; }
+    public Encoding getEncoding()     { return mEncoding;     }
+
+    /** @brief Frames per read, 0 if the source decides. */
+    public int      getBlockFrames()  { return mBlockFrames;  }
+
+    /** @brief Samples per read: getBlockFrames(), or defaultFrames if it is 0. */
+    public int getBlockSamples( int defaultFrames ) {
+        return ( mBlockFrames > 0 ? mBlockFrames : defaultFrames ) * mChannelCount;
+    }
+
+    public int getBytesPerSample() {
+        return mEncoding == Encoding.PCM_FLOAT ? 4 : 2;
+    }
+
+    public int getBytesPerFrame() {
+        return getBytesPerSample() * mChannelCount;
+    }
+
+    public CaptureConfig withEncoding( Encoding encoding ) {
+        return new CaptureConfig( mSampleRate, mChannelCount, encoding, mBlockFrames );
+    }
+
+    public CaptureConfig withBlockFrames( int blockFrames ) {
+        return new CaptureConfig( mSampleRate, mChannelCount, mEncoding, blockFrames );
+    }
+
+    /** @brief Blocks of the given length, at least one frame. */
+    public CaptureConfig withBlockMillis( float millis ) {
+        return withBlockFrames( Math.max( 1, Math.round( mSampleRate * millis / 1000.0f ) ) );
+    }
+
+    @Override
+    public String toString() {
+        return mSampleRate + " Hz, " + mChannelCount + " ch, " + mEncoding
+             + ( mBlockFrames > 0 ? ", " + mBlockFrames + " frames per block" : "" );
+    }
+}
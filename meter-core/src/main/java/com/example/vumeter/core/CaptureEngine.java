@@ -0,0 +1,173 @@
+package com.example.vumeter.core;
+
+/** @brief Runs a CaptureLoop on its own thread through the lifecycle of the
+ *         screen that shows the meter.
+ *
+ *    STOPPED  --start()-->  RUNNING  --pause()-->  PAUSED  --start()-->  RUNNING
+ *    any      --stop()-->   STOPPED
+ *    RUNNING  --the loop ends by itself-->  FINISHED or FAILED  --start()-->  RUNNING
+ *
+ *  pause() ends the capture thread and stops the source, but keeps the
+ *  source open and the loop as it is, so start() resumes within a block
+ *  with the ballistics, the loudness and the meter state where they were.
+ *  stop() also releases the source, e.g. the AudioRecord, until the next
+ *  start() opens it again. Every transition joins the capture thread before
+ *  it returns, so there is at most one capture thread and none outlives
+ *  pause() or stop().
+ *
+ *  The loop ends by itself at the end of the stream (FINISHED) or when the
+ *  source throws, e.g. without the permission to record (FAILED, see
+ *  getFailure()). start() then runs it again.
+ *
+ *  The transitions are for one thread, typically the main thread; getState()
+ *  is for any thread.
+ */
+public class CaptureEngine {
+
+    public enum State {
+        STOPPED,
+        RUNNING,
+        PAUSED,
+        FINISHED,
+        FAILED
+    }
+
+    /** @brief Told on the capture thread when the loop ends by itself, not
+     *         by pause() or stop().
+     */
+    public interface Listener {
+        /** @param failure what the source threw, or null at the end of the stream. */
+        void onCaptureEnded( Throwable failure );
+    }
+
+    public static final String THREAD_NAME = "CaptureEngine";
+
+    private final CaptureLoop mLoop;
+    private final AudioSource mSource;
+
+    /** @brief Guarded by this. */
+    private State  mState = State.STOPPED;
+    private Thread mThread;
+
+    /** @brief Written by the capture thread as it ends, mFailure first. */
+    private volatile Throwable mFailure;
+    private volatile boolean   mEnded;
+
+    private volatile Listener mListener;
+
+    public CaptureEngine( AudioSource source ) {
+        this( source, Ballistics.Mode.VU );
+    }
+
+    /** @param source owned by the engine from now on. */
+    public CaptureEngine( AudioSource source, Ballistics.Mode mode ) {
+        mSource = source;
+        mLoop   = new CaptureLoop( source, mode );
+    }
+
+    /** @brief To set the listeners and the metering up, from any thread. */
+    public CaptureLoop getLoop() {
+        return mLoop;
+    }
+
+    public void setListener( Listener listener ) {
+        mListener = listener;
+    }
+
+    public synchronized State getState() {
+        if ( mState == State.RUNNING && mEnded ) {
+            return mFailure != null ? State.FAILED : State.FINISHED;
+        }
+        return mState;
+    }
+
+    /** @brief What ended the last run, null if nothing failed. */
+    public Throwable getFailure() {
+        return mFailure;
+    }
+
+    /** @brief Starts the capture thread, or resumes it after pause(). Does
+     *         nothing while it runs.
+     */
+    public synchronized void start() {
+        if ( mState == State.RUNNING && !mEnded ) {
+            return;
+        }
+        joinThread();
+        mFailure = null;
+        mEnded   = false;
+        mLoop.clearStopRequest();
+        mThread  = new Thread( new Runnable() {
+            @Override
+            public void run() {
+                runLoop();
+            }
+        }, THREAD_NAME );
+        mThread.start();
+        mState = State.RUNNING;
+    }
+
+    /** @brief Ends the capture thread and stops the source, keeping it open.
+     *         Returns once the thread is gone, within a block.
+     */
+    public synchronized void pause() {
+        if ( mState != State.RUNNING ) {
+            return;
+        }
+        joinThread();
+        mState = State.PAUSED;
+    }
+
+    /** @brief Ends the capture thread and releases the source. */
+    public synchronized void stop() {
+        if ( mState == State.STOPPED ) {
+            return;
+        }
+        joinThread();
+        mSource.release();
+        mState = State.STOPPED;
+    }
+
+    private void runLoop() {
+        Throwable failure = null;
+        try {
+            mLoop.run();
+        }
+        catch ( RuntimeException e ) {
+            failure = e;
+        }
+        if ( mLoop.isStopRequested() ) {
+            return;
+        }
+        mFailure = failure;
+        mEnded   = true;
+        Listener listener = mListener;
+        if ( listener != null ) {
+            listener.onCaptureEnded( failure );
+        }
+    }
+
+    /** @brief The capture thread never takes the lock, so it can end while
+     *         this waits for it with the lock held.
+     */
+    private void joinThread() {
+        Thread thread = mThread;
+        if ( thread == null ) {
+            return;
+        }
+        mLoop.requestStop();
+        boolean interrupted = false;
+        while ( thread.isAlive() ) {
+            try {
+                thread.join();
+            }
+            catch ( InterruptedException e ) {
+                interrupted = true;
+            }
+        }
+        if ( interrupted ) {
+            Thread.currentThread().interrupt();
+        }
+        mThread = null;
+    }
+}
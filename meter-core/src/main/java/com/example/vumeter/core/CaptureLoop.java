@@ -0,0 +1,416 @@
+package com.example.vumeter.core;
+
+import java.util.concurrent.Executor;
+
+/** @brief The capture thread: reads blocks from an AudioSource, meters them
+ *         and publishes the levels.
+ *
+ *  The samples of each block also run through the Ballistics and the
+ *  TruePeakDetector of every channel, so the reading does not depend on the
+ *  block size. A block whose true peak reaches the overload threshold is
+ *  latched in the snapshot for the LED (see OverloadLed). A LoudnessMeter
+ *  follows the whole program for the loudness readings, an optional
+ *  SpectrumAnalyzer gives the band levels, an optional SessionRecorder
+ *  keeps the readings in a file and an optional LevelHistory keeps them
+ *  in memory. Each block
+ *  is handed to the GL thread through the MeterStateTripleBuffer,
+ *  to the capture-thread listener right after that, and to the optional
+ *  level listener through a LevelUpdateDispatcher. Buffers are allocated
+ *  once; the loop itself allocates nothing.
+ *
+ *  The loop always meters the freshest block. If the source tells when
+ *  its samples were captured (CaptureTimestamps) and the newest sample of
+ *  a block is older than the maximum lag, e.g. after the thread was held
+ *  up by the scheduler or a GC, the backlog is read and dropped without
+ *  metering until the loop has caught up. The ballistics and the loudness
+ *  then skip the dropped audio; the snapshots count it. Without timestamps
+ *  the newest sample is taken to be captured when read() returns.
+ *
+ *  The read, the metering and the publication of every block are timed
+ *  into MeterMetrics, with counts of the blocks read, short, dropped or
+ *  failed.
+ *
+ *  run() owns the source from start() to stop(). The caller releases it.
+ *  CaptureEngine runs the loop on its own thread, paused and resumed with
+ *  the screen.
+ */
+public class CaptureLoop implements Runnable {
+
+    /** @brief Default overload threshold, EBU R 128 maximum true peak. */
+    public static final float DEFAULT_OVERLOAD_DBTP = -1.0f;
+
+    /** @brief Default maximum lag of the newest sample, in blocks. */
+    public static final int   DEFAULT_MAX_LAG_BLOCKS = 3;
+
+    private final AudioSource   mSource;
+    private final CaptureTimestamps mTimestamps;
+    private final CaptureConfig mConfig;
+    private final LevelMeter    mLevelMeter;
+    private final Ballistics[]  mBallistics;
+    private final TruePeakDetector[] mTruePeak;
+    private final LoudnessMeter mLoudness;
+
+    private volatile boolean mLoudnessResetRequested;
+
+    /** @brief null while the spectrum is off. Set from any thread. */
+    private volatile SpectrumAnalyzer mSpectrum;
+
+    /** @brief null while nothing is recorded. Set from any thread. */
+    private volatile SessionRecorder mRecorder;
+
+    /** @brief null while no history is kept. Set from any thread. */
+    private volatile LevelHistory mHistory;
+
+    /** @brief Linear, 1.0 at 0 dBTP. Set from any thread. */
+    private volatile float mOverloadThreshold = TruePeakDetector.fromDB( DEFAULT_OVERLOAD_DBTP );
+
+    private long mOverloadCount;
+    private long mLastOverloadNanos;
+
+    private final short[] mBuffer;
+    private final float[] mFloatBuffer;
+
+    /** @brief Written by the capture thread, read wait-free by the GL thread. */
+    private final MeterStateTripleBuffer mMeterState = new MeterStateTripleBuffer();
+
+    /** @brief Called on the capture thread right after each publication to
+     *         mMeterState. It must not block.
+     */
+    private volatile MeterStateListener mCaptureThreadListener;
+
+    private LevelUpdateDispatcher mDispatcher;
+
+    /** @brief Set from any thread, recorded on the capture thread. */
+    private volatile MeterMetrics mMetrics = new MeterMetrics();
+
+    private volatile boolean mStopRequested;
+
+    /** @brief Samples per channel in the last block. */
+    private int mLastFrames;
+
+    /** @brief Set from any thread. */
+    private volatile long mMaxLagNanos;
+
+    private final long mFullBlockNanos;
+    private long       mFramesRead;
+    private long       mDroppedFrames;
+    private long       mNewestCaptureNanos;
+
+    public CaptureLoop( AudioSource source ) {
+        this( source, Ballistics.Mode.VU );
+    }
+
+    public CaptureLoop( AudioSource source, Ballistics.Mode mode ) {
+        mSource     = source;
+        mTimestamps = source instanceof CaptureTimestamps ? (CaptureTimestamps)source : null;
+        mConfig     = source.getConfig();
+        mLevelMeter = new LevelMeter( mConfig.getChannelCount() );
+        mBallistics = new Ballistics[ mConfig.getChannelCount() ];
+        for ( int ch = 0; ch < mBallistics.length; ch++ ) {
+            mBallistics[ch] = new Ballistics( mode, mConfig.getSampleRate() );
+        }
+        mTruePeak = new TruePeakDetector[ mConfig.getChannelCount() ];
+        for ( int ch = 0; ch < mTruePeak.length; ch++ ) {
+            mTruePeak[ch] = new TruePeakDetector();
+        }
+
+        mLoudness = new LoudnessMeter( mConfig.getSampleRate(), mConfig.getChannelCount() );
+
+        int samplesPerRead = source.getBufferSizeInSamples();
+        if ( mConfig.getEncoding() == CaptureConfig.Encoding.PCM_FLOAT ) {
+            mBuffer      = null;
+            mFloatBuffer = new float[samplesPerRead];
+        }
+        else {
+            mBuffer      = new short[samplesPerRead];
+            mFloatBuffer = null;
+        }
+        mFullBlockNanos = (long)( samplesPerRead / mConfig.getChannelCount() ) * 1000000000L
+                        / mConfig.getSampleRate();
+        mMaxLagNanos    = DEFAULT_MAX_LAG_BLOCKS * mFullBlockNanos;
+    }
+
+    public CaptureConfig getConfig() {
+        return mConfig;
+    }
+
+    public Ballistics.Mode getBallisticsMode() {
+        return mBallistics[0].getMode();
+    }
+
+    /** @brief A block whose true peak reaches dBTP on any channel turns the
+     *         overload LED on. Any thread.
+     */
+    public void setOverloadThreshold( float dBTP ) {
+        mOverloadThreshold = TruePeakDetector.fromDB( dBTP );
+    }
+
+    public float getOverloadThreshold() {
+        return TruePeakDetector.toDB( mOverloadThreshold );
+    }
+
+    /** @brief A block whose newest sample is older than this when it is
+     *         read is dropped for the next one. Any thread.
+     */
+    public void setMaxLag( long nanos ) {
+        mMaxLagNanos = nanos;
+    }
+
+    public long getMaxLag() {
+        return mMaxLagNanos;
+    }
+
+    /** @brief Frames read from the source so far, the dropped ones too.
+     *         Capture thread, e.g. from the capture-thread listener.
+     */
+    public long getFramesRead() {
+        return mFramesRead;
+    }
+
+    /** @brief Duration of a full block read from the source. */
+    public long getBlockNanos() {
+        return mFullBlockNanos;
+    }
+
+    /** @brief Starts a new program for the integrated loudness and the
+     *         loudness range, at the next block. Any thread.
+     */
+    public void resetLoudness() {
+        mLoudnessResetRequested = true;
+    }
+
+    /** @brief Turns the band levels on with the given analyzer, built for
+     *         getConfig(), or off with null. Any thread; it is allocated by
+     *         the caller, so the loop still allocates nothing.
+     */
+    public void setSpectrumAnalyzer( SpectrumAnalyzer analyzer ) {
+        mSpectrum = analyzer;
+    }
+
+    /** @brief Appends every published snapshot to the recorder, or stops
+     *         with null. Any thread. Close the recorder after detaching it;
+     *         the block in flight at the time may be left out.
+     */
+    public void setSessionRecorder( SessionRecorder recorder ) {
+        mRecorder = recorder;
+    }
+
+    /** @brief Adds every published snapshot to the history, at the frames
+     *         read so far, or stops with null. Any thread.
+     */
+    public void setLevelHistory( LevelHistory history ) {
+        mHistory = history;
+    }
+
+    public MeterStateTripleBuffer getMeterState() {
+        return mMeterState;
+    }
+
+    public void setCaptureThreadListener( MeterStateListener listener ) {
+        mCaptureThreadListener = listener;
+    }
+
+    /** @brief Notifies listener on the executor with the loudest channel,
+     *         coalesced to the latest level. Call before run().
+     */
+    public void setLevelListener( Executor executor, AudioReceiverListener listener ) {
+        mDispatcher = listener != null ? new LevelUpdateDispatcher( executor, listener, mMetrics ) : null;
+    }
+
+    /** @brief Where the capture thread and the level listener record their
+     *         timings and counts from the next block on. Any thread.
+     */
+    public void setMetrics( MeterMetrics metrics ) {
+        mMetrics = metrics;
+        LevelUpdateDispatcher dispatcher = mDispatcher;
+        if ( dispatcher != null ) {
+            dispatcher.setMetrics( metrics );
+        }
+    }
+
+    public MeterMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /** @brief Any thread. run() returns after the block being read. */
+    public void requestStop() {
+        mStopRequested = true;
+    }
+
+    public boolean isStopRequested() {
+        return mStopRequested;
+    }
+
+    /** @brief Lets run() be called again after a stop, e.g. to resume. */
+    void clearStopRequest() {
+        mStopRequested = false;
+    }
+
+    @Override
+    public void run() {
+        mSource.start();
+        try {
+            while ( !mStopRequested && processBlock() ) {
+            }
+        }
+        finally {
+            mSource.stop();
+        }
+    }
+
+    /** @brief Reads, meters and publishes one block.
+     *  @return false at the end of the stream.
+     */
+    public boolean processBlock() {
+        int channels = mBallistics.length;
+        SpectrumAnalyzer spectrum = mSpectrum;
+        if ( mLoudnessResetRequested ) {
+            mLoudnessResetRequested = false;
+            mLoudness.reset();
+        }
+        MeterMetrics metrics = mMetrics;
+        long readStart = System.nanoTime();
+        int length = readFreshest( metrics );
+        long meterStart = System.nanoTime();
+        metrics.record( MeterMetrics.Stage.READ, meterStart - readStart );
+        if ( length < 0 ) {
+            if ( length != AudioSource.END_OF_STREAM ) {
+                metrics.increment( MeterMetrics.Counter.READ_ERRORS );
+            }
+            return false;
+        }
+        metrics.increment( MeterMetrics.Counter.BLOCKS_READ );
+        if ( length < ( mFloatBuffer != null ? mFloatBuffer.length : mBuffer.length ) ) {
+            metrics.increment( MeterMetrics.Counter.SHORT_READS );
+        }
+        mLastFrames = length / channels;
+        if ( mFloatBuffer != null ) {
+            mLevelMeter.process( mFloatBuffer, length );
+            mLoudness.process( mFloatBuffer, length );
+            if ( spectrum != null ) {
+                spectrum.process( mFloatBuffer, length );
+            }
+            for ( int ch = 0; ch < channels; ch++ ) {
+                mBallistics[ch].process( mFloatBuffer, ch, mLastFrames * channels, channels );
+                mTruePeak[ch].process( mFloatBuffer, ch, mLastFrames * channels, channels );
+            }
+        }
+        else {
+            mLevelMeter.process( mBuffer, length );
+            mLoudness.process( mBuffer, length );
+            if ( spectrum != null ) {
+                spectrum.process( mBuffer, length );
+            }
+            for ( int ch = 0; ch < channels; ch++ ) {
+                mBallistics[ch].process( mBuffer, ch, mLastFrames * channels, channels );
+                mTruePeak[ch].process( mBuffer, ch, mLastFrames * channels, channels );
+            }
+        }
+        long publishStart = System.nanoTime();
+        metrics.record( MeterMetrics.Stage.METER, publishStart - meterStart );
+        publishLevels( spectrum );
+        metrics.record( MeterMetrics.Stage.PUBLISH, System.nanoTime() - publishStart );
+        return true;
+    }
+
+    /** @brief Reads a block, and reads again while the newest sample read
+     *         is older than the maximum lag. Only the last block read is
+     *         left in the buffer.
+     *  @return samples in the buffer, or a negative value at the end.
+     */
+    private int readFreshest( MeterMetrics metrics ) {
+        int length = read();
+        if ( length < 0 ) {
+            return length;
+        }
+        advance( length );
+
+        long lag = System.nanoTime() - mNewestCaptureNanos;
+        long maxLag = mMaxLagNanos;
+        if ( mTimestamps == null || lag <= maxLag || mFullBlockNanos <= 0 ) {
+            return length;
+        }
+        // The backlog is buffered in the source, so these reads do not block.
+        // Bounded in case the timestamps run ahead of the reads.
+        long skips = lag / mFullBlockNanos + 1;
+        while ( lag > maxLag && skips-- > 0 ) {
+            int next = read();
+            if ( next < 0 ) {
+                return next;
+            }
+            mDroppedFrames += length / mConfig.getChannelCount();
+            metrics.increment( MeterMetrics.Counter.BLOCKS_DROPPED );
+            length = next;
+            advance( length );
+            lag = System.nanoTime() - mNewestCaptureNanos;
+        }
+        return length;
+    }
+
+    private int read() {
+        return mFloatBuffer != null ? mSource.read( mFloatBuffer, 0, mFloatBuffer.length )
+                                    : mSource.read( mBuffer, 0, mBuffer.length );
+    }
+
+    /** @brief Counts the frames read and finds when the newest was captured. */
+    private void advance( int length ) {
+        mFramesRead += length / mConfig.getChannelCount();
+        long captured = mTimestamps != null ? mTimestamps.captureNanosOfFrame( mFramesRead - 1 )
+                                            : CaptureTimestamps.NO_TIMESTAMP;
+        mNewestCaptureNanos = captured != CaptureTimestamps.NO_TIMESTAMP ? captured : System.nanoTime();
+    }
+
+    /** @brief Hands the levels of the last block to the GL thread, the
+     *         capture-thread listener and the level listener.
+     */
+    void publishLevels( SpectrumAnalyzer spectrum ) {
+        MeterSnapshot s = mMeterState.beginWrite();
+        long now = System.nanoTime();
+        float threshold = mOverloadThreshold;
+        boolean overload = false;
+        s.mChannelCount = mLevelMeter.getChannelCount();
+        for ( int ch = 0; ch < s.mChannelCount; ch++ ) {
+            s.mRMS[ch]      = mLevelMeter.getRMS( ch );
+            s.mPeak[ch]     = mLevelMeter.getPeak( ch );
+            s.mLevel[ch]    = mBallistics[ch].getReading();
+            s.mTruePeak[ch] = mTruePeak[ch].getPeak();
+            overload |= s.mTruePeak[ch] >= threshold;
+        }
+        if ( overload ) {
+            mOverloadCount++;
+            mLastOverloadNanos = now;
+        }
+        s.mOverload          = overload;
+        s.mOverloadCount     = mOverloadCount;
+        s.mLastOverloadNanos = mLastOverloadNanos;
+        s.mMomentaryLUFS     = mLoudness.getMomentary();
+        s.mShortTermLUFS     = mLoudness.getShortTerm();
+        s.mIntegratedLUFS    = mLoudness.getIntegrated();
+        s.mLoudnessRangeLU   = mLoudness.getLoudnessRange();
+        s.mBandCount         = spectrum != null ? spectrum.getBandCount() : 0;
+        for ( int b = 0; b < s.mBandCount; b++ ) {
+            s.mBandDB[b] = spectrum.getBandDB( b );
+        }
+        s.mBlockNanos        = mLastFrames * 1000000000L / mConfig.getSampleRate();
+        s.mTimestampNanos    = now;
+        s.mCaptureNanos      = mNewestCaptureNanos;
+        s.mDroppedFrames     = mDroppedFrames;
+        MeterSnapshot published = mMeterState.publish();
+
+        MeterStateListener captureThreadListener = mCaptureThreadListener;
+        if ( captureThreadListener != null ) {
+            captureThreadListener.onMeterStatePublished( published );
+        }
+        SessionRecorder recorder = mRecorder;
+        if ( recorder != null ) {
+            recorder.record( published );
+        }
+        LevelHistory history = mHistory;
+        if ( history != null ) {
+            history.add( mFramesRead, published );
+        }
+        if ( mDispatcher != null ) {
+            mDispatcher.publish( mLevelMeter.getMaxRMS(), mLevelMeter.getMaxPeak() );
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.vumeter.core;
+
+/** @brief Optional side of an AudioSource that knows when its samples
+ *         were captured, e.g. from AudioRecord.getTimestamp().
+ *
+ *  CaptureLoop uses it to measure how far behind the newest sample it
+ *  reads, to drop a backlog, and stamps the snapshots with it so the
+ *  renderer can measure the latency from the sound to the screen.
+ *  Called on the capture thread only.
+ */
+public interface CaptureTimestamps {
+
+    /** @brief Returned when the time is not known (yet). */
+    long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    /** @return System.nanoTime() at which the frame at framePosition
+     *          (frames read since start()) was captured, or NO_TIMESTAMP.
+     */
+    long captureNanosOfFrame( long framePosition );
+}
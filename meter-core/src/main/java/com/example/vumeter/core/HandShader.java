@@ -0,0 +1,137 @@
+package com.example.vumeter.core;
+
+/** @brief The hands of a MeterGeometry rotated by the vertex shader, from one
+ *         angle uniform per hand, instead of rebuilt on the CPU.
+ *
+ *  The quads of the hands stay in the vertex buffer as VertexUploadPlan
+ *  lays it out, but with their positions in the frame of the hand at angle
+ *  0: x along the hand from the rotating center, y across it, both in PNG
+ *  pixels, and z = hand + 1. The base and the LED keep z = 0 and are drawn
+ *  as they are. The shader rotates (x, y) by Theta[hand], then scales and
+ *  moves it to the rotating center in normalized device coordinates:
+ *  exactly what MeterGeometry.handCorners() and makeHandVertices() do on the
+ *  CPU, which position() mirrors in Java for the tests.
+ *
+ *  The vertex buffer is then uploaded once; per frame only the angles go to
+ *  the GPU, 4 bytes per hand instead of VertexUploadPlan.bytesUploadedPerFrame().
+ */
+public class HandShader {
+
+    /** @brief Name of the float[numHands] uniform of the angles. */
+    public static final String THETA_UNIFORM = "Theta";
+
+    private final MeterGeometry mGeometry;
+    private final int           mNumHands;
+
+    /** @brief Rotating center in normalized device coordinates. */
+    private final float mCenterX;
+    private final float mCenterY;
+
+    /** @brief PNG pixels to normalized device coordinates. Y points up. */
+    private final float mScaleX;
+    private final float mScaleY;
+
+    public HandShader( MeterGeometry geometry, int numHands ) {
+        mGeometry = geometry;
+        mNumHands = numHands;
+        mCenterX  = geometry.fromTexCoordToNormCoordX( geometry.HandRotatingCenterX );
+        mCenterY  = geometry.fromTexCoordToNormCoordYInverted( geometry.HandRotatingCenterY );
+        mScaleX   = 2.0f / geometry.BaseWidth;
+        mScaleY   = 2.0f / geometry.BaseHeight;
+    }
+
+    public int numHands() {
+        return mNumHands;
+    }
+
+    public float getCenterX() {
+        return mCenterX;
+    }
+
+    public float getCenterY() {
+        return mCenterY;
+    }
+
+    public float getScaleX() {
+        return mScaleX;
+    }
+
+    public float getScaleY() {
+        return mScaleY;
+    }
+
+    /** @brief Bytes sent to the GPU in every onDrawFrame(): the angles. */
+    public int bytesUploadedPerFrame() {
+        return mNumHands * VertexUploadPlan.BYTES_PER_FLOAT;
+    }
+
+    /** @brief Writes the positions of every hand in its own frame, after
+     *         MeterGeometry.makeStaticVertices() filled the rest. They do not
+     *         change with the angle.
+     */
+    public void makeHandVertices( float[] vertices ) {
+        float rShort = mGeometry.mRadiusShort;
+        float rLong  = mGeometry.mRadiusLong;
+        float half   = mGeometry.mHandHalfWidth;
+        for ( int hand = 0; hand < mNumHands; hand++ ) {
+            int h = VertexUploadPlan.firstFloatOfQuad( VertexUploadPlan.quadOfHand( hand ) );
+            // Same order as MeterGeometry.handCorners(): tip, then bottom.
+            vertex( vertices, h, 0, rLong,   half, hand );
+            vertex( vertices, h, 1, rLong,  -half, hand );
+            vertex( vertices, h, 2, rShort,  half, hand );
+            vertex( vertices, h, 3, rShort, -half, hand );
+        }
+    }
+
+    private static void vertex( float[] vertices, int h, int v, float x, float y, int hand ) {
+        vertices[ h + v * 5 + 0 ] = x;
+        vertices[ h + v * 5 + 1 ] = y;
+        vertices[ h + v * 5 + 2 ] = hand + 1;
+    }
+
+    /** @brief What the vertex shader computes for the point (x, y) of a hand
+     *         at angle theta, into xy[0, 2), in float as the GPU does.
+     */
+    public void position( float[] xy, float x, float y, float theta ) {
+        float c = (float)Math.cos( theta );
+        float s = (float)Math.sin( theta );
+        xy[0] = mCenterX + mScaleX * ( x * c - y * s );
+        xy[1] = mCenterY + mScaleY * ( x * s + y * c );
+    }
+
+    /** @brief The vertex shader, for the fragment shader of VUMeterModel. */
+    public String vertexShader() {
+        return "attribute vec4  Position;\n"
+             + "attribute vec2  TexCoordIn;\n"
+             + "varying   vec2  TexCoordOut;\n"
+             + "uniform   float " + THETA_UNIFORM + "[" + mNumHands + "];\n"
+             + "\n"
+             + "const     vec2  Center = vec2( " + literal( mCenterX ) + ", " + literal( mCenterY ) + " );\n"
+             + "const     vec2  Scale  = vec2( " + literal( mScaleX ) + ", " + literal( mScaleY ) + " );\n"
+             + "\n"
+             + "void main (void) {\n"
+             + "\n"
+             + "    // z is 0 for the base and the LED, hand + 1 for the hands.\n"
+             + "    if ( Position.z < 0.5 ) {\n"
+             + "        gl_Position = Position;\n"
+             + "    }\n"
+             + "    else {\n"
+             + "        float t = " + THETA_UNIFORM + "[ int( Position.z ) - 1 ];\n"
+             + "        float c = cos( t );\n"
+             + "        float s = sin( t );\n"
+             + "        vec2  p = vec2( Position.x * c - Position.y * s, Position.x * s + Position.y * c );\n"
+             + "        gl_Position = vec4( Center + Scale * p, 0.0, 1.0 );\n"
+             + "    }\n"
+             + "    TexCoordOut = TexCoordIn;\n"
+             + "\n"
+             + "}\n";
+    }
+
+    /** @brief A GLSL float literal that reads back as exactly f:
+     *         Float.toString() always has a point, and GLSL ES takes its
+     *         exponent form too.
+     */
+    static String literal( float f ) {
+        return Float.toString( f );
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.vumeter.core;
+
+import java.util.Arrays;
+
+/** @brief The peak-hold markers and the scrolling history strip of a
+ *         LevelHistory, as triangles for the program of the MeterFace.
+ *
+ *  A red marker per channel stands inside the scale at the angle of the
+ *  highest reading of the last hold time, and a strip under the caption
+ *  shows the lowest to the highest reading of every column of the window,
+ *  newest on the right, a lane per channel. Readings map to the angles of
+ *  the hands on the NeedleMeter.Scale.MIC_DB scale, so the strip spans the
+ *  scale from its floor at the bottom to its peak at the top. The history
+ *  keeps the ballistic readings, which the LUFS scales do not show, so
+ *  while the hands show loudness the markers and the strip are hidden.
+ *
+ *  The vertices are (x, y, color) like those of a MeterFace.Mesh, in a
+ *  fixed number of quads: the indices never change and the vertices are
+ *  rebuilt in place, so update() allocates nothing. The strip moves by a
+ *  whole column at a time and is rebuilt only then; older columns come
+ *  from the coarser tiers of the history, where the finest no longer
+ *  reaches. GL thread only; the history is read without locks.
+ */
+public class HistoryOverlay {
+
+    public static final long DEFAULT_WINDOW_NANOS = 30000000000L;
+    public static final int  DEFAULT_COLUMNS      = 120;
+    public static final long DEFAULT_HOLD_NANOS   = 2000000000L;
+
+    // Layout in PNG pixels of the base: the blank band under the caption.
+    static final float STRIP_LEFT    =  80.0f;
+    static final float STRIP_TOP     = 200.0f;
+    static final float STRIP_RIGHT   = 422.0f;
+    static final float STRIP_BOTTOM  = 232.0f;
+    static final float LANE_GAP      =   2.0f;
+    static final float MARKER_INNER  = 160.0f;
+    static final float MARKER_OUTER  = 186.0f;
+    static final float MARKER_WIDTH  =   3.0f;
+
+    static final int   VERTICES_PER_QUAD = 4;
+    static final int   INDICES_PER_QUAD  = 6;
+
+    private final MeterGeometry mGeometry;
+    private final NeedleMeter   mMeter;
+    private final LevelHistory  mHistory;
+    private final int           mChannels;
+    private final int           mColumns;
+    private final long          mColumnBins;
+    private final long          mHoldNanos;
+
+    private final float[] mVertices;
+    private final short[] mIndices;
+
+    /** @brief Bins of the finest tier up to the end of the newest column
+     *         drawn, -1 before the first update().
+     */
+    private long          mStripEnd = -1L;
+    private final float[] mHoldTheta;
+
+    /** @brief All quads collapsed, while the hands are not on MIC_DB. */
+    private boolean       mHidden;
+
+    public HistoryOverlay( MeterGeometry geometry, NeedleMeter meter, LevelHistory history ) {
+        this( geometry, meter, history, DEFAULT_WINDOW_NANOS, DEFAULT_COLUMNS, DEFAULT_HOLD_NANOS );
+    }
+
+    public HistoryOverlay( MeterGeometry geometry, NeedleMeter meter, LevelHistory history,
+                           long windowNanos, int columns, long holdNanos ) {
+        if ( columns <= 0 ) {
+            throw new IllegalArgumentException( columns + " columns" );
+        }
+        mGeometry   = geometry;
+        mMeter      = meter;
+        mHistory    = history;
+        mChannels   = history.getChannelCount();
+        mColumns    = columns;
+        mColumnBins = Math.max( 1L, history.binsOf( windowNanos ) / columns );
+        mHoldNanos  = holdNanos;
+        mHoldTheta  = new float[ mChannels ];
+        Arrays.fill( mHoldTheta, Float.NaN );
+
+        int quads = quadCount();
+        mVertices = new float[ quads * VERTICES_PER_QUAD * MeterFace.Mesh.FLOATS_PER_VERTEX ];
+        mIndices  = new short[ quads * INDICES_PER_QUAD ];
+        for ( int q = 0; q < quads; q++ ) {
+            int v = q * VERTICES_PER_QUAD;
+            int i = q * INDICES_PER_QUAD;
+            mIndices[ i     ] = (short)v;
+            mIndices[ i + 1 ] = (short)( v + 1 );
+            mIndices[ i + 2 ] = (short)( v + 2 );
+            mIndices[ i + 3 ] = (short)( v + 2 );
+            mIndices[ i + 4 ] = (short)( v + 3 );
+            mIndices[ i + 5 ] = (short)v;
+        }
+        rect( 0, STRIP_LEFT, STRIP_TOP, STRIP_RIGHT, STRIP_BOTTOM, MeterFace.COLOR_PAPER );
+        for ( int q = 1; q < quads; q++ ) {
+            rect( q, 0.0f, 0.0f, 0.0f, 0.0f, MeterFace.COLOR_INK );
+        }
+    }
+
+    /** @brief The paper of the strip, a column per channel and column of the
+     *         window, and a marker per channel.
+     */
+    private int quadCount() {
+        return 1 + mColumns * mChannels + mChannels;
+    }
+
+    private int columnQuad( int channel, int column ) {
+        return 1 + channel * mColumns + column;
+    }
+
+    private int markerQuad( int channel ) {
+        return 1 + mColumns * mChannels + channel;
+    }
+
+    public float[] getVertices() {
+        return mVertices;
+    }
+
+    public short[] getIndices() {
+        return mIndices;
+    }
+
+    public int vertexCount() {
+        return mVertices.length / MeterFace.Mesh.FLOATS_PER_VERTEX;
+    }
+
+    public int indexCount() {
+        return mIndices.length;
+    }
+
+    public int vertexBytes() {
+        return mVertices.length * VertexUploadPlan.BYTES_PER_FLOAT;
+    }
+
+    public int indexBytes() {
+        return mIndices.length * VertexUploadPlan.BYTES_PER_SHORT;
+    }
+
+    /** @brief The angle of the peak-hold marker of the channel at the last
+     *         update(), NaN before it and while hidden.
+     */
+    public float getPeakHoldTheta( int channel ) {
+        return mHoldTheta[ channel ];
+    }
+
+    /** @brief Brings the markers and the strip up to the history.
+     *  @return true if the vertices changed and have to be uploaded again.
+     */
+    public boolean update() {
+        if ( mMeter.getScale() != NeedleMeter.Scale.MIC_DB ) {
+            return hide();
+        }
+        boolean changed = false;
+        if ( mHidden ) {
+            mHidden = false;
+            rect( 0, STRIP_LEFT, STRIP_TOP, STRIP_RIGHT, STRIP_BOTTOM, MeterFace.COLOR_PAPER );
+            changed = true;
+        }
+        for ( int ch = 0; ch < mChannels; ch++ ) {
+            float theta = thetaOf( mHistory.maxOverLast( ch, mHoldNanos ) );
+            if ( theta != mHoldTheta[ch] ) {
+                mHoldTheta[ch] = theta;
+                marker( markerQuad( ch ), theta );
+                changed = true;
+            }
+        }
+
+        long end = mHistory.getBinCount( 0 ) / mColumnBins * mColumnBins;
+        if ( end != mStripEnd ) {
+            mStripEnd = end;
+            float laneHeight = ( STRIP_BOTTOM - STRIP_TOP ) / mChannels;
+            float columnWidth = ( STRIP_RIGHT - STRIP_LEFT ) / mColumns;
+            for ( int ch = 0; ch < mChannels; ch++ ) {
+                float laneBottom = STRIP_TOP + laneHeight * ( ch + 1 ) - LANE_GAP * 0.5f;
+                float laneSpan   = laneHeight - LANE_GAP;
+                for ( int c = 0; c < mColumns; c++ ) {
+                    long to   = end - (long)( mColumns - 1 - c ) * mColumnBins;
+                    long from = to - mColumnBins;
+                    int quad = columnQuad( ch, c );
+                    if ( from < 0L ) {
+                        rect( quad, 0.0f, 0.0f, 0.0f, 0.0f, MeterFace.COLOR_INK );
+                        continue;
+                    }
+                    float low  = scaleFraction( mHistory.min( ch, from, to ) );
+                    float high = scaleFraction( mHistory.max( ch, from, to ) );
+                    float x = STRIP_LEFT + c * columnWidth;
+                    // At least a line, so a steady level still shows.
+                    float top    = laneBottom - laneSpan * high - 0.5f;
+                    float bottom = Math.max( laneBottom - laneSpan * low, top + 1.0f );
+                    rect( quad, x, top, x + columnWidth, bottom, MeterFace.COLOR_INK );
+                }
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    /** @brief Collapses every quad, and has the next update() on MIC_DB
+     *         rebuild them.
+     *  @return true if the vertices changed.
+     */
+    private boolean hide() {
+        if ( mHidden ) {
+            return false;
+        }
+        mHidden   = true;
+        mStripEnd = -1L;
+        Arrays.fill( mHoldTheta, Float.NaN );
+        for ( int q = 0; q < quadCount(); q++ ) {
+            rect( q, 0.0f, 0.0f, 0.0f, 0.0f, MeterFace.COLOR_INK );
+        }
+        return true;
+    }
+
+    private float thetaOf( float level ) {
+        return mMeter.clampToScale( mMeter.targetThetaFor( level ) );
+    }
+
+    /** @brief 0 at the floor of the scale to 1 at its peak. */
+    private float scaleFraction( float level ) {
+        return ( thetaOf( level ) - mGeometry.HandAngularLimitLeft )
+             / ( mGeometry.HandAngularLimitRight - mGeometry.HandAngularLimitLeft );
+    }
+
+    /** @brief A radial bar inside the scale at angle theta. */
+    private void marker( int quad, float theta ) {
+        float c = (float)Math.cos( theta );
+        float s = (float)Math.sin( theta );
+        float cx = mGeometry.HandRotatingCenterX;
+        float cy = mGeometry.HandRotatingCenterY;
+        float nx =  s * MARKER_WIDTH * 0.5f;
+        float ny =  c * MARKER_WIDTH * 0.5f;
+        float x0 = cx + MARKER_INNER * c;
+        float y0 = cy - MARKER_INNER * s;
+        float x1 = cx + MARKER_OUTER * c;
+        float y1 = cy - MARKER_OUTER * s;
+        quad( quad, x0 + nx, y0 + ny, x1 + nx, y1 + ny, x1 - nx, y1 - ny, x0 - nx, y0 - ny, MeterFace.COLOR_RED );
+    }
+
+    private void rect( int quad, float x0, float y0, float x1, float y1, int color ) {
+        quad( quad, x0, y0, x1, y0, x1, y1, x0, y1, color );
+    }
+
+    /** @brief Quad of the four corners in order around it, in PNG pixels of
+     *         the base.
+     */
+    private void quad( int quad, float x0, float y0, float x1, float y1, float x2, float y2, float x3, float y3,
+                       int color ) {
+        int f = quad * VERTICES_PER_QUAD * MeterFace.Mesh.FLOATS_PER_VERTEX;
+        f = vertex( f, x0, y0, color );
+        f = vertex( f, x1, y1, color );
+        f = vertex( f, x2, y2, color );
+        vertex( f, x3, y3, color );
+    }
+
+    private int vertex( int f, float x, float y, int color ) {
+        mVertices[ f     ] = mGeometry.fromTexCoordToNormCoordX( x );
+        mVertices[ f + 1 ] = mGeometry.fromTexCoordToNormCoordYInverted( y );
+        mVertices[ f + 2 ] = color;
+        return f + MeterFace.Mesh.FLOATS_PER_VERTEX;
+    }
+}
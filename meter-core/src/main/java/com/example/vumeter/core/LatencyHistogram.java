@@ -0,0 +1,129 @@
+package com.example.vumeter.core;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/** @brief Distribution of durations in nanoseconds, e.g. of a stage of the
+ *         capture or the render path, with percentiles.
+ *
+ *  Log-linear buckets in the manner of HdrHistogram: values below
+ *  2 * SUB_BUCKETS are exact, and every power of two above is split into
+ *  SUB_BUCKETS buckets, so a percentile is within 1 / SUB_BUCKETS (about
+ *  3 %) of the value recorded, from nanoseconds to minutes. Percentiles
+ *  are the upper edge of their bucket, but at most the maximum seen.
+ *  Negative durations (clocks that disagree) count as 0.
+ *
+ *  One thread records; any thread reads. record() costs a few nanoseconds,
+ *  allocates nothing and takes no lock: the buckets, the sum and the
+ *  maximum are plain fields, and the count, stored last with an ordered
+ *  store, publishes them to a reader that reads the count first. A reader
+ *  running alongside record() may miss the records in flight. reset() is
+ *  for the recording thread too.
+ */
+public class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS     = 1 << SUB_BUCKET_BITS;
+
+    /** @brief Up to Long.MAX_VALUE. */
+    static final int BUCKETS = ( 64 - SUB_BUCKET_BITS ) * SUB_BUCKETS;
+
+    private static final AtomicLongFieldUpdater<LatencyHistogram> COUNT =
+            AtomicLongFieldUpdater.newUpdater( LatencyHistogram.class, "mCount" );
+
+    private final int[]   mCounts = new int[BUCKETS];
+    private long          mSumNanos;
+    private long          mMaxNanos;
+    private volatile long mCount;
+
+    /** @brief Recording thread. */
+    public void record( long nanos ) {
+        if ( nanos < 0L ) {
+            nanos = 0L;
+        }
+        mCounts[ bucketOf( nanos ) ]++;
+        mSumNanos += nanos;
+        if ( nanos > mMaxNanos ) {
+            mMaxNanos = nanos;
+        }
+        COUNT.lazySet( this, mCount + 1 );
+    }
+
+    /** @brief Recording thread. */
+    public void reset() {
+        for ( int b = 0; b < BUCKETS; b++ ) {
+            mCounts[b] = 0;
+        }
+        mSumNanos = 0L;
+        mMaxNanos = 0L;
+        mCount    = 0L;
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public long getMaxNanos() {
+        return mCount > 0 ? mMaxNanos : 0L;
+    }
+
+    public long getMeanNanos() {
+        long count = mCount;
+        return count > 0 ? mSumNanos / count : 0L;
+    }
+
+    /** @param percentile 0 to 100.
+     *  @return the duration not exceeded by that share of the records, 0 if
+     *          there are none.
+     */
+    public long getPercentileNanos( double percentile ) {
+        long count = mCount;
+        if ( count == 0 ) {
+            return 0L;
+        }
+        long max  = mMaxNanos;
+        long rank = Math.max( 1L, (long)Math.ceil( count * percentile / 100.0 ) );
+        long seen = 0L;
+        for ( int b = 0; b < BUCKETS; b++ ) {
+            seen += mCounts[b];
+            if ( seen >= rank ) {
+                return Math.min( max, highestOf( b ) );
+            }
+        }
+        return max;
+    }
+
+    /** @brief The exact values below 2 * SUB_BUCKETS, then the top
+     *         SUB_BUCKET_BITS + 1 bits of the value.
+     */
+    static int bucketOf( long value ) {
+        int magnitude = 63 - Long.numberOfLeadingZeros( value | ( 2 * SUB_BUCKETS - 1 ) );
+        int shift     = magnitude - SUB_BUCKET_BITS;
+        return ( shift << SUB_BUCKET_BITS ) + (int)( value >>> shift );
+    }
+
+    /** @brief The largest value that falls in the bucket. */
+    static long highestOf( int bucket ) {
+        int shift = ( bucket >>> SUB_BUCKET_BITS ) - 1;
+        if ( shift <= 0 ) {
+            return bucket;
+        }
+        long mantissa = bucket - ( (long)shift << SUB_BUCKET_BITS );
+        return ( ( mantissa + 1 ) << shift ) - 1;
+    }
+
+    /** @brief "n=... p50=... p99=... max=..." in microseconds. */
+    public void appendTo( StringBuilder out ) {
+        out.append( "n=" ).append( getCount() );
+        out.append( String.format( Locale.ROOT, " p50=%.1fus p90=%.1fus p99=%.1fus max=%.1fus",
+                getPercentileNanos( 50.0 ) / 1.0e3, getPercentileNanos( 90.0 ) / 1.0e3,
+                getPercentileNanos( 99.0 ) / 1.0e3, getMaxNanos() / 1.0e3 ) );
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        appendTo( out );
+        return out.toString();
+    }
+}
@@ -0,0 +1,332 @@
+package com.example.vumeter.core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** @brief The readings of the meter over the session, in fixed memory, for
+ *         "what was the highest level in the last 10 seconds", peak-hold
+ *         markers and the history strip.
+ *
+ *  Like the mip-maps of a waveform overview, the lowest and the highest
+ *  reading per channel are kept in tiers of bins, each FACTOR times as long
+ *  as the one below: 10 ms, 100 ms, 1 s, 10 s, 100 s by default. Every tier
+ *  is a ring of the same capacity, so the finer ones reach back less far:
+ *  with the default 1000 bins, 10 s at 10 ms and 27 hours at 100 s, for
+ *  160 kB in stereo however long the session.
+ *
+ *  A bin is written once, when complete, and folded into a running bin of
+ *  the tier above, so an append costs O(1) amortized. A query takes at
+ *  most FACTOR - 1 bins at each end of the range in each tier and the rest
+ *  from the tier above, so O(log n) bins for a range of n. Where the range
+ *  starts before what a tier still holds, it is widened to the bins of
+ *  the tier above: the result is never below the highest reading of the
+ *  range that the coarsest tier still holds, and never above that of the
+ *  range widened by a bin of the coarsest tier reached. Bins count from
+ *  the first block added; the bins of a gap between blocks, while the
+ *  history was detached, are empty and read as no reading.
+ *
+ *  Written by the capture thread (CaptureLoop.setLevelHistory()), without
+ *  locks. Read from any thread: a bin is read only once its tier's count,
+ *  stored after the bin, shows it complete, and a query is retried in the
+ *  rare case the writer laps the bins it read.
+ */
+public class LevelHistory {
+
+    public static final long DEFAULT_BIN_NANOS = 10000000L;
+    public static final int  FACTOR            = 10;
+    public static final int  DEFAULT_TIERS     = 5;
+    public static final int  DEFAULT_CAPACITY  = 1000;
+
+    private final int   mChannels;
+    private final int   mSampleRate;
+    private final long  mBinFrames;
+    private final int   mTiers;
+    private final int   mCapacity;
+
+    /** @brief Bins of a tier a reader keeps clear of, at the old end, for
+     *         the writer to move on while it reads.
+     */
+    private final int   mMargin;
+
+    /** @brief Per tier, channel-major: [ channel * mCapacity + slot ]. */
+    private final float[][] mMin;
+    private final float[][] mMax;
+
+    /** @brief Complete bins per tier. Stored after the bins. */
+    private final AtomicLongArray mCounts;
+
+    /** @brief The bins being filled, per tier and channel. Writer only. */
+    private final float[][] mPendingMin;
+    private final float[][] mPendingMax;
+    private final int[]     mPendingChildren;
+    private long            mBinEndFrame;
+
+    public LevelHistory( int channels, int sampleRate ) {
+        this( channels, sampleRate, DEFAULT_BIN_NANOS, DEFAULT_TIERS, DEFAULT_CAPACITY );
+    }
+
+    /** @param binNanos length of the bins of the finest tier.
+     *  @param capacity bins per tier, at least 2 * FACTOR.
+     */
+    public LevelHistory( int channels, int sampleRate, long binNanos, int tiers, int capacity ) {
+        if ( tiers < 1 || capacity < 2 * FACTOR ) {
+            throw new IllegalArgumentException( tiers + " tiers of " + capacity + " bins" );
+        }
+        mChannels   = channels;
+        mSampleRate = sampleRate;
+        mBinFrames  = Math.max( 1L, Math.round( binNanos * (double)sampleRate / 1.0e9 ) );
+        mTiers      = tiers;
+        mCapacity   = capacity;
+        mMargin     = Math.max( FACTOR, capacity / 8 );
+
+        mMin    = new float[tiers][ channels * capacity ];
+        mMax    = new float[tiers][ channels * capacity ];
+        mCounts = new AtomicLongArray( tiers );
+
+        mPendingMin      = new float[tiers][channels];
+        mPendingMax      = new float[tiers][channels];
+        mPendingChildren = new int[tiers];
+        for ( int k = 0; k < tiers; k++ ) {
+            resetPending( k );
+        }
+    }
+
+    public int getChannelCount() {
+        return mChannels;
+    }
+
+    public int getTierCount() {
+        return mTiers;
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /** @brief Length of a bin of the given tier. */
+    public long getBinNanos( int tier ) {
+        long nanos = mBinFrames * 1000000000L / mSampleRate;
+        for ( int k = 0; k < tier; k++ ) {
+            nanos *= FACTOR;
+        }
+        return nanos;
+    }
+
+    /** @brief Complete bins of the given tier so far. Any thread. */
+    public long getBinCount( int tier ) {
+        return mCounts.get( tier );
+    }
+
+    /** @brief Bytes of the bins, the same whatever the length of the session. */
+    public long sizeInBytes() {
+        return 2L * mTiers * mChannels * mCapacity * 4L;
+    }
+
+    /** @brief Adds the readings of the block that ends before frame endFrame.
+     *         Capture thread.
+     */
+    public void add( long endFrame, MeterSnapshot s ) {
+        long startFrame = Math.max( 0L, endFrame - s.mBlockNanos * mSampleRate / 1000000000L );
+        if ( mBinEndFrame == 0L ) {
+            // Bins count from the bin the first block starts in, whenever
+            // the history was attached.
+            mBinEndFrame = ( startFrame / mBinFrames + 1 ) * mBinFrames;
+        }
+        else if ( startFrame > mBinEndFrame ) {
+            // Detached meanwhile: the bins up to the one the block starts
+            // in were not metered, and stay empty.
+            completeBin( 0 );
+            skipEmpty( 0, startFrame / mBinFrames - mBinEndFrame / mBinFrames );
+            mBinEndFrame = ( startFrame / mBinFrames + 1 ) * mBinFrames;
+        }
+        int channels = Math.min( mChannels, s.mChannelCount );
+        float[] levels = s.mLevel;
+        mergePending( levels, channels );
+        // A block longer than a bin fills every bin it spans.
+        while ( endFrame >= mBinEndFrame ) {
+            completeBin( 0 );
+            mBinEndFrame += mBinFrames;
+            if ( endFrame > mBinEndFrame - mBinFrames ) {
+                mergePending( levels, channels );
+            }
+        }
+    }
+
+    private void mergePending( float[] levels, int channels ) {
+        float[] min = mPendingMin[0];
+        float[] max = mPendingMax[0];
+        for ( int ch = 0; ch < channels; ch++ ) {
+            float level = levels[ch];
+            if ( level < min[ch] ) {
+                min[ch] = level;
+            }
+            if ( level > max[ch] ) {
+                max[ch] = level;
+            }
+        }
+    }
+
+    /** @brief Stores the pending bin of the tier and carries it up the
+     *         tiers it completes.
+     */
+    private void completeBin( int tier ) {
+        for ( int k = tier; k < mTiers; k++ ) {
+            long count = mCounts.get( k );
+            int slot = (int)( count % mCapacity );
+            float[] min = mPendingMin[k];
+            float[] max = mPendingMax[k];
+            for ( int ch = 0; ch < mChannels; ch++ ) {
+                mMin[k][ ch * mCapacity + slot ] = min[ch];
+                mMax[k][ ch * mCapacity + slot ] = max[ch];
+                if ( k + 1 < mTiers ) {
+                    if ( min[ch] < mPendingMin[k + 1][ch] ) {
+                        mPendingMin[k + 1][ch] = min[ch];
+                    }
+                    if ( max[ch] > mPendingMax[k + 1][ch] ) {
+                        mPendingMax[k + 1][ch] = max[ch];
+                    }
+                }
+            }
+            // Ordered after the bin, so a reader that sees the count sees it.
+            mCounts.lazySet( k, count + 1 );
+            resetPending( k );
+            if ( k + 1 == mTiers || ++mPendingChildren[k + 1] < FACTOR ) {
+                break;
+            }
+            mPendingChildren[k + 1] = 0;
+        }
+    }
+
+    /** @brief Appends n empty bins to the tier, whose pending bin is empty,
+     *         and their share to the tiers above. Each tier takes at most
+     *         FACTOR bins one by one and stores at most its capacity of
+     *         empty slots, however long the gap.
+     */
+    private void skipEmpty( int tier, long n ) {
+        if ( tier + 1 == mTiers ) {
+            storeEmpty( tier, n );
+            return;
+        }
+        // Up to the start of a bin of the tier above.
+        while ( n > 0 && mPendingChildren[tier + 1] != 0 ) {
+            completeBin( tier );
+            n--;
+        }
+        long parents = n / FACTOR;
+        if ( parents > 0 ) {
+            storeEmpty( tier, parents * FACTOR );
+            skipEmpty( tier + 1, parents );
+        }
+        for ( long i = parents * FACTOR; i < n; i++ ) {
+            completeBin( tier );
+        }
+    }
+
+    /** @brief Appends n empty bins to the ring of the tier alone. Every bin
+     *         is counted as it is stored, as in completeBin(), so readers
+     *         see the ring lapped; past a full ring, the ring is all empty
+     *         and only the count moves on.
+     */
+    private void storeEmpty( int tier, long n ) {
+        long count = mCounts.get( tier );
+        long stored = Math.min( n, (long)mCapacity );
+        for ( long i = 0; i < stored; i++ ) {
+            int slot = (int)( ( count + i ) % mCapacity );
+            for ( int ch = 0; ch < mChannels; ch++ ) {
+                mMin[tier][ ch * mCapacity + slot ] = Float.POSITIVE_INFINITY;
+                mMax[tier][ ch * mCapacity + slot ] = Float.NEGATIVE_INFINITY;
+            }
+            mCounts.lazySet( tier, count + i + 1 );
+        }
+        mCounts.lazySet( tier, count + n );
+    }
+
+    private void resetPending( int tier ) {
+        for ( int ch = 0; ch < mChannels; ch++ ) {
+            mPendingMin[tier][ch] = Float.POSITIVE_INFINITY;
+            mPendingMax[tier][ch] = Float.NEGATIVE_INFINITY;
+        }
+    }
+
+    /** @brief Bins of the finest tier in the given time, rounded up. */
+    public long binsOf( long nanos ) {
+        long binNanos = getBinNanos( 0 );
+        return ( nanos + binNanos - 1 ) / binNanos;
+    }
+
+    /** @brief Highest reading of the channel over the last nanos of complete
+     *         bins, in the units of MeterSnapshot.getLevel(); 0 while none.
+     *         Any thread.
+     */
+    public float maxOverLast( int channel, long nanos ) {
+        long count = mCounts.get( 0 );
+        return max( channel, count - binsOf( nanos ), count );
+    }
+
+    public float minOverLast( int channel, long nanos ) {
+        long count = mCounts.get( 0 );
+        return min( channel, count - binsOf( nanos ), count );
+    }
+
+    /** @brief Highest reading of the channel in the bins of the finest tier
+     *         from fromBin to toBin, exclusive. Any thread.
+     */
+    public float max( int channel, long fromBin, long toBin ) {
+        return query( mMax, true, channel, fromBin, toBin );
+    }
+
+    public float min( int channel, long fromBin, long toBin ) {
+        return query( mMin, false, channel, fromBin, toBin );
+    }
+
+    private float query( float[][] tiers, boolean max, int channel, long fromBin, long toBin ) {
+        while ( true ) {
+            float result = max ? Float.NEGATIVE_INFINITY : Float.POSITIVE_INFINITY;
+            boolean lapped = false;
+            long a = Math.max( 0L, fromBin );
+            long b = toBin;
+            int offset = channel * mCapacity;
+            for ( int k = 0; k < mTiers && a < b; k++ ) {
+                float[] bins = tiers[k];
+                long count  = mCounts.get( k );
+                long oldest = Math.max( 0L, count - mCapacity + mMargin );
+                b = Math.min( b, count );
+                if ( k == mTiers - 1 ) {
+                    // Nothing above: what is left of the range that is kept.
+                    for ( long i = Math.max( a, oldest ); i < b; i++ ) {
+                        result = fold( result, bins[ offset + (int)( i % mCapacity ) ], max );
+                    }
+                }
+                else {
+                    if ( a < oldest ) {
+                        // Gone from this tier: widen to the bin above.
+                        a -= a % FACTOR;
+                    }
+                    for ( ; a < b && a % FACTOR != 0; a++ ) {
+                        result = fold( result, bins[ offset + (int)( a % mCapacity ) ], max );
+                    }
+                    while ( a < b && b % FACTOR != 0 ) {
+                        if ( b - 1 < oldest ) {
+                            b += FACTOR - b % FACTOR;
+                            break;
+                        }
+                        b--;
+                        result = fold( result, bins[ offset + (int)( b % mCapacity ) ], max );
+                    }
+                    a /= FACTOR;
+                    b /= FACTOR;
+                }
+                if ( mCounts.get( k ) - count >= mMargin ) {
+                    lapped = true;
+                    break;
+                }
+            }
+            if ( !lapped ) {
+                return Float.isInfinite( result ) ? 0.0f : result;
+            }
+        }
+    }
+
+    private static float fold( float result, float bin, boolean max ) {
+        return max ? Math.max( result, bin ) : Math.min( result, bin );
+    }
+}
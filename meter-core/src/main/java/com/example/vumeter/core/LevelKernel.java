@@ -0,0 +1,184 @@
+package com.example.vumeter.core;
+
+/** @brief Inner loops for block level metering, written for the JIT.
+ *
+ *  - 16-bit sum of squares is accumulated in long. Every product of two
+ *    shorts is exact in int, and the sum is exact in long, so the result is
+ *    bit-identical to the original double accumulation of calcRMS() (whose
+ *    partial sums also stay exact below 2^53 for any realistic block).
+ *  - measure() computes sum and peak in one pass with one accumulator
+ *    each, a plain counted loop that C2 unrolls by itself. Hand unrolling
+ *    and running sum and peak as two passes both measured slower (see
+ *    LevelKernelBenchmark).
+ *  - The fused 16-bit peak tracks the largest square, which is already
+ *    computed for the sum, so the loop has no abs() and no branch. The
+ *    square of a short fits in int and its sqrt is exact in double.
+ *  - The standalone 16-bit peak() uses a running int min and max:
+ *    max(max, -min).
+ *  - The float variants accumulate in float lanes over chunks of
+ *    FLOAT_CHUNK samples and flush each chunk into a double. The relative
+ *    error of the sum of squares is below 1e-5 compared to pure double
+ *    accumulation, i.e. about 5e-6 on the RMS.
+ *  - The float peak compares the raw bits with the sign cleared as ints.
+ *    For non-NaN floats that order matches |x|, and it avoids
+ *    Math.min/max(float), which must handle NaN and -0.0 and is slow.
+ *
+ *  Stateless and allocation-free. Buffers are addressed as
+ *  [start, end) with a stride, so interleaved channels are metered in place.
+ */
+public final class LevelKernel {
+
+    /** @brief Samples accumulated in float before flushing to double. */
+    public static final int FLOAT_CHUNK = 256;
+
+    private static final int ABS_BITS_MASK = 0x7fffffff;
+
+    /** @brief Output of measure() for 16-bit PCM. Reused by the caller. */
+    public static final class Block {
+        public long sumOfSquares;
+        public int  peak;
+    }
+
+    /** @brief Output of measure() for float PCM. Reused by the caller. */
+    public static final class FloatBlock {
+        public double sumOfSquares;
+        public float  peak;
+    }
+
+    private LevelKernel() {
+    }
+
+    /** @brief sumOfSquares() and peak() of x[start], x[start + stride], ... < end in one pass. */
+    public static void measure( short[] x, int start, int end, int stride, Block out ) {
+        long sum       = 0L;
+        int  maxSquare = 0;
+        for ( int i = start; i < end; i += stride ) {
+            int a = x[i];
+            int square = a * a;
+            sum += square;
+            maxSquare = Math.max( maxSquare, square );
+        }
+        out.sumOfSquares = sum;
+        out.peak         = (int)Math.sqrt( (double)maxSquare );
+    }
+
+    /** @brief sumOfSquares() and peak() of x[start], x[start + stride], ... < end in one pass. */
+    public static void measure( float[] x, int start, int end, int stride, FloatBlock out ) {
+        double sum     = 0.0;
+        int    maxBits = 0;
+        int    i       = start;
+        int chunkSpan  = FLOAT_CHUNK * stride;
+        while ( i < end ) {
+            int chunkEnd = Math.min( end, i + chunkSpan );
+            float chunk = 0.0f;
+            for ( ; i < chunkEnd; i += stride ) {
+                float a = x[i];
+                chunk += a * a;
+                maxBits = Math.max( maxBits, Float.floatToRawIntBits( a ) & ABS_BITS_MASK );
+            }
+            sum += (double)chunk;
+        }
+        out.sumOfSquares = sum;
+        out.peak         = Float.intBitsToFloat( maxBits );
+    }
+
+    /** @brief Sum of x[i]^2 for i in [start, end). */
+    public static long sumOfSquares( short[] x, int start, int end ) {
+        long sum = 0L;
+        for ( int i = start; i < end; i++ ) {
+            int a = x[i];
+            sum += a * a;
+        }
+        return sum;
+    }
+
+    /** @brief Sum of x[i]^2 for i = start, start + stride, ... < end. */
+    public static long sumOfSquares( short[] x, int start, int end, int stride ) {
+        if ( stride == 1 ) {
+            return sumOfSquares( x, start, end );
+        }
+        long sum = 0L;
+        for ( int i = start; i < end; i += stride ) {
+            int a = x[i];
+            sum += a * a;
+        }
+        return sum;
+    }
+
+    /** @brief Largest |x[i]| for i in [start, end), 0 if empty. 32768 for -32768. */
+    public static int peak( short[] x, int start, int end ) {
+        int min = 0, max = 0;
+        for ( int i = start; i < end; i++ ) {
+            int a = x[i];
+            min = Math.min( min, a );
+            max = Math.max( max, a );
+        }
+        return Math.max( max, -min );
+    }
+
+    /** @brief Largest |x[i]| for i = start, start + stride, ... < end. */
+    public static int peak( short[] x, int start, int end, int stride ) {
+        if ( stride == 1 ) {
+            return peak( x, start, end );
+        }
+        int min = 0, max = 0;
+        for ( int i = start; i < end; i += stride ) {
+            int a = x[i];
+            min = Math.min( min, a );
+            max = Math.max( max, a );
+        }
+        return Math.max( max, -min );
+    }
+
+    /** @brief Sum of x[i]^2 for i in [start, end). See FLOAT_CHUNK. */
+    public static double sumOfSquares( float[] x, int start, int end ) {
+        return sumOfSquares( x, start, end, 1 );
+    }
+
+    /** @brief Sum of x[i]^2 for i = start, start + stride, ... < end. */
+    public static double sumOfSquares( float[] x, int start, int end, int stride ) {
+        double sum = 0.0;
+        int i = start;
+        int chunkSpan = FLOAT_CHUNK * stride;
+        while ( i < end ) {
+            int chunkEnd = Math.min( end, i + chunkSpan );
+            float chunk = 0.0f;
+            for ( ; i < chunkEnd; i += stride ) {
+                float a = x[i];
+                chunk += a * a;
+            }
+            sum += (double)chunk;
+        }
+        return sum;
+    }
+
+    /** @brief Largest |x[i]| for i in [start, end), 0 if empty. */
+    public static float peak( float[] x, int start, int end ) {
+        return peak( x, start, end, 1 );
+    }
+
+    /** @brief Largest |x[i]| for i = start, start + stride, ... < end. */
+    public static float peak( float[] x, int start, int end, int stride ) {
+        int maxBits = 0;
+        for ( int i = start; i < end; i += stride ) {
+            maxBits = Math.max( maxBits, Float.floatToRawIntBits( x[i] ) & ABS_BITS_MASK );
+        }
+        return Float.intBitsToFloat( maxBits );
+    }
+
+    /** @brief (int)sqrt(sumOfSquares / count), as calcRMS() did. 0 if count <= 0. */
+    public static int rms( long sumOfSquares, int count ) {
+        if ( count <= 0 ) {
+            return 0;
+        }
+        return (int)Math.sqrt( (double)sumOfSquares / (double)count );
+    }
+
+    /** @brief sqrt(sumOfSquares / count). 0 if count <= 0. */
+    public static double rms( double sumOfSquares, int count ) {
+        if ( count <= 0 ) {
+            return 0.0;
+        }
+        return Math.sqrt( sumOfSquares / (double)count );
+    }
+}
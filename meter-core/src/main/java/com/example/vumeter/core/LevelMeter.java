@@ -0,0 +1,84 @@
+package com.example.vumeter.core;
+
+/** @brief Block RMS and peak per channel of interleaved PCM buffers.
+ *
+ *  Levels are reported in 16-bit sample units for both encodings, so that
+ *  the rest of the meter does not depend on the capture format: float
+ *  samples are scaled by FLOAT_TO_SHORT_SCALE. The loops are in
+ *  LevelKernel. All state is preallocated; process() allocates nothing.
+ */
+public class LevelMeter {
+
+    public static final float FLOAT_TO_SHORT_SCALE = (float)Short.MAX_VALUE;
+
+    private final int   mChannelCount;
+    private final int[] mRMS;
+    private final int[] mPeak;
+
+    private final LevelKernel.Block      mBlock      = new LevelKernel.Block();
+    private final LevelKernel.FloatBlock mFloatBlock = new LevelKernel.FloatBlock();
+
+    public LevelMeter( int channelCount ) {
+        mChannelCount = channelCount;
+        mRMS          = new int[channelCount];
+        mPeak         = new int[channelCount];
+    }
+
+    public int getChannelCount() {
+        return mChannelCount;
+    }
+
+    /** @brief RMS of the given channel of the last processed block. */
+    public int getRMS( int channel ) {
+        return mRMS[channel];
+    }
+
+    /** @brief Largest absolute sample of the given channel of the last block. */
+    public int getPeak( int channel ) {
+        return mPeak[channel];
+    }
+
+    /**
+     *  @param buffer  interleaved samples, frame by frame.
+     *  @param length  number of samples (not frames) to use from the start
+     *                 of the buffer. A trailing partial frame is ignored.
+     */
+    public void process( short[] buffer, int length ) {
+        int frames = Math.max( 0, length / mChannelCount );
+        int end    = frames * mChannelCount;
+        for ( int ch = 0; ch < mChannelCount; ch++ ) {
+            LevelKernel.measure( buffer, ch, end, mChannelCount, mBlock );
+            mPeak[ch] = mBlock.peak;
+            mRMS[ch]  = LevelKernel.rms( mBlock.sumOfSquares, frames );
+        }
+    }
+
+    /** @brief Same as process(short[], int) for float PCM in [-1, 1]. */
+    public void process( float[] buffer, int length ) {
+        int frames = Math.max( 0, length / mChannelCount );
+        int end    = frames * mChannelCount;
+        for ( int ch = 0; ch < mChannelCount; ch++ ) {
+            LevelKernel.measure( buffer, ch, end, mChannelCount, mFloatBlock );
+            mPeak[ch] = (int)( mFloatBlock.peak * FLOAT_TO_SHORT_SCALE );
+            mRMS[ch]  = (int)( LevelKernel.rms( mFloatBlock.sumOfSquares, frames ) * FLOAT_TO_SHORT_SCALE );
+        }
+    }
+
+    /** @brief Loudest RMS over all channels of the last block. */
+    public int getMaxRMS() {
+        int max = 0;
+        for ( int ch = 0; ch < mChannelCount; ch++ ) {
+            max = Math.max( max, mRMS[ch] );
+        }
+        return max;
+    }
+
+    /** @brief Largest peak over all channels of the last block. */
+    public int getMaxPeak() {
+        int max = 0;
+        for ( int ch = 0; ch < mChannelCount; ch++ ) {
+            max = Math.max( max, mPeak[ch] );
+        }
+        return max;
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.vumeter.core;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/** @brief The levels of a metered program over time, one row per interval,
+ *         and its totals. Built by OfflineMeter.
+ *
+ *  Each row holds, per channel, the highest ballistic reading, sample peak
+ *  and true peak of the blocks that ended in the interval, with the highest
+ *  momentary loudness and the number of overloaded blocks. The levels are
+ *  in dBFS of 16-bit full scale, so a full-scale sine reads -3 dBFS on the
+ *  ballistics and 0 dBFS on the peak. The rows are kept in flat arrays,
+ *  12 bytes per channel and 8 more per interval: an hour of stereo in
+ *  100 ms intervals takes 1.2 MB.
+ */
+public class LevelReport {
+
+    private final int  mChannels;
+    private final int  mSampleRate;
+    private final long mIntervalNanos;
+
+    private int     mRows;
+    private float[] mLevel;
+    private float[] mPeak;
+    private float[] mTruePeak;
+    private float[] mMomentary;
+    private int[]   mOverloads;
+
+    private long  mFrames;
+    private long  mBlocks;
+    private long  mOverloadBlocks;
+    private long  mElapsedNanos;
+    private float mIntegratedLUFS  = Float.NEGATIVE_INFINITY;
+    private float mLoudnessRangeLU;
+    private final float[] mMaxTruePeak;
+
+    LevelReport( int channels, int sampleRate, long intervalNanos ) {
+        mChannels      = channels;
+        mSampleRate    = sampleRate;
+        mIntervalNanos = intervalNanos;
+        mMaxTruePeak   = new float[channels];
+        mLevel         = new float[ 64 * channels ];
+        mPeak          = new float[ 64 * channels ];
+        mTruePeak      = new float[ 64 * channels ];
+        mMomentary     = new float[64];
+        mOverloads     = new int[64];
+    }
+
+    /** @brief Adds the block that ends before frame endFrame. */
+    void add( long endFrame, MeterSnapshot s ) {
+        long endNanos = ( endFrame - 1 ) * 1000000000L / mSampleRate;
+        int  row      = (int)( Math.max( 0L, endNanos ) / mIntervalNanos );
+        while ( mRows <= row ) {
+            addRow();
+        }
+        int channels = Math.min( mChannels, s.mChannelCount );
+        for ( int ch = 0; ch < channels; ch++ ) {
+            int at = row * mChannels + ch;
+            mLevel[at]    = Math.max( mLevel[at],    s.mLevel[ch] );
+            mPeak[at]     = Math.max( mPeak[at],     s.mPeak[ch] );
+            mTruePeak[at] = Math.max( mTruePeak[at], s.mTruePeak[ch] );
+            mMaxTruePeak[ch] = Math.max( mMaxTruePeak[ch], s.mTruePeak[ch] );
+        }
+        mMomentary[row] = Math.max( mMomentary[row], s.mMomentaryLUFS );
+        if ( s.mOverload ) {
+            mOverloads[row]++;
+            mOverloadBlocks++;
+        }
+        mBlocks++;
+        mIntegratedLUFS  = s.mIntegratedLUFS;
+        mLoudnessRangeLU = s.mLoudnessRangeLU;
+    }
+
+    void finish( long frames, long elapsedNanos ) {
+        mFrames       = frames;
+        mElapsedNanos = elapsedNanos;
+    }
+
+    private void addRow() {
+        if ( mRows == mMomentary.length ) {
+            int rows   = mRows * 2;
+            mLevel     = Arrays.copyOf( mLevel,    rows * mChannels );
+            mPeak      = Arrays.copyOf( mPeak,     rows * mChannels );
+            mTruePeak  = Arrays.copyOf( mTruePeak, rows * mChannels );
+            mMomentary = Arrays.copyOf( mMomentary, rows );
+            mOverloads = Arrays.copyOf( mOverloads, rows );
+        }
+        mMomentary[ mRows ] = Float.NEGATIVE_INFINITY;
+        mRows++;
+    }
+
+    public int getChannelCount() {
+        return mChannels;
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public long getIntervalNanos() {
+        return mIntervalNanos;
+    }
+
+    public int getRowCount() {
+        return mRows;
+    }
+
+    public long getRowStartNanos( int row ) {
+        return row * mIntervalNanos;
+    }
+
+    /** @brief Highest ballistic reading in the interval, in dBFS. */
+    public float getLevelDB( int row, int channel ) {
+        return toDBFS( mLevel[ index( row, channel ) ] );
+    }
+
+    /** @brief Highest sample peak in the interval, in dBFS. */
+    public float getPeakDB( int row, int channel ) {
+        return toDBFS( mPeak[ index( row, channel ) ] );
+    }
+
+    /** @brief Highest true peak in the interval, in dBTP. */
+    public float getTruePeakDB( int row, int channel ) {
+        return TruePeakDetector.toDB( mTruePeak[ index( row, channel ) ] );
+    }
+
+    /** @brief Highest momentary loudness in the interval. */
+    public float getMomentaryLUFS( int row ) {
+        return mMomentary[ index( row, 0 ) / mChannels ];
+    }
+
+    /** @brief Overloaded blocks in the interval. */
+    public int getOverloads( int row ) {
+        return mOverloads[ index( row, 0 ) / mChannels ];
+    }
+
+    public long getFrameCount() {
+        return mFrames;
+    }
+
+    public long getBlockCount() {
+        return mBlocks;
+    }
+
+    public long getOverloadBlocks() {
+        return mOverloadBlocks;
+    }
+
+    /** @brief Length of the program metered. */
+    public long getDurationNanos() {
+        return mFrames * 1000000000L / mSampleRate;
+    }
+
+    /** @brief Time the metering took. */
+    public long getElapsedNanos() {
+        return mElapsedNanos;
+    }
+
+    /** @brief How many times faster than real time the program was metered. */
+    public double getSpeed() {
+        return mElapsedNanos > 0L ? (double)getDurationNanos() / mElapsedNanos : Double.POSITIVE_INFINITY;
+    }
+
+    public float getIntegratedLUFS() {
+        return mIntegratedLUFS;
+    }
+
+    public float getLoudnessRangeLU() {
+        return mLoudnessRangeLU;
+    }
+
+    /** @brief Highest true peak of the program, in dBTP. */
+    public float getMaxTruePeakDB( int channel ) {
+        return TruePeakDetector.toDB( mMaxTruePeak[channel] );
+    }
+
+    /** @brief Writes the rows as CSV with a header line: the start of the
+     *         interval in seconds, then level, peak and true peak of each
+     *         channel, momentary loudness and overloads.
+     */
+    public void writeCsv( Appendable out ) throws IOException {
+        out.append( "time_s" );
+        for ( int ch = 1; ch <= mChannels; ch++ ) {
+            out.append( ",level_dbfs_" ).append( Integer.toString( ch ) )
+               .append( ",peak_dbfs_" ).append( Integer.toString( ch ) )
+               .append( ",true_peak_dbtp_" ).append( Integer.toString( ch ) );
+        }
+        out.append( ",momentary_lufs,overloads\n" );
+        for ( int row = 0; row < mRows; row++ ) {
+            out.append( String.format( Locale.ROOT, "%.3f", getRowStartNanos( row ) / 1e9 ) );
+            for ( int ch = 0; ch < mChannels; ch++ ) {
+                out.append( String.format( Locale.ROOT, ",%.2f,%.2f,%.2f",
+                        getLevelDB( row, ch ), getPeakDB( row, ch ), getTruePeakDB( row, ch ) ) );
+            }
+            out.append( String.format( Locale.ROOT, ",%.2f,%d\n",
+                    getMomentaryLUFS( row ), getOverloads( row ) ) );
+        }
+    }
+
+    /** @brief The totals on one line. */
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder();
+        b.append( String.format( Locale.ROOT, "%.1f s metered in %.1f ms (%.0fx), %.1f LUFS, LRA %.1f LU, true peak",
+                getDurationNanos() / 1e9, mElapsedNanos / 1e6, getSpeed(),
+                mIntegratedLUFS, mLoudnessRangeLU ) );
+        for ( int ch = 0; ch < mChannels; ch++ ) {
+            b.append( String.format( Locale.ROOT, " %.1f", getMaxTruePeakDB( ch ) ) );
+        }
+        b.append( String.format( Locale.ROOT, " dBTP, %d overloaded blocks", mOverloadBlocks ) );
+        return b.toString();
+    }
+
+    private int index( int row, int channel ) {
+        if ( row < 0 || row >= mRows ) {
+            throw new IndexOutOfBoundsException( "row " + row + " of " + mRows );
+        }
+        return row * mChannels + channel;
+    }
+
+    private static float toDBFS( float level ) {
+        return (float)( 20.0 * Math.log10( level / LevelMeter.FLOAT_TO_SHORT_SCALE ) );
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.vumeter.core;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** @brief Coalescing hand-off of the latest (rms, peak) pair from the
+ *         capture thread to the thread of the listener.
+ *
+ *  The capture thread calls publish() once per buffer. The pair is packed
+ *  into a single "latest value" slot, and at most one drain runnable is
+ *  outstanding on the executor at any time. If the consumer has not run it
+ *  yet, the new values overwrite the slot and nothing is posted, so a slow
+ *  consumer never builds a queue. Nothing is allocated per buffer.
+ *
+ *  With MeterMetrics, the updates published, posted and delivered are
+ *  counted, and the time from a post to its delivery is recorded.
+ */
+public class LevelUpdateDispatcher {
+
+    private final Executor              mExecutor;
+    private final AudioReceiverListener mListener;
+
+    private final AtomicLong    mLatest  = new AtomicLong(0L);
+    private final AtomicBoolean mPending = new AtomicBoolean(false);
+
+    private volatile MeterMetrics mMetrics;
+    private volatile long         mPostedNanos;
+
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            // Clear the flag before reading the slot so that a publish()
+            // racing with this drain is never lost: it either lands before
+            // the read below or posts a fresh drain.
+            mPending.set(false);
+            MeterMetrics metrics = mMetrics;
+            if ( metrics != null ) {
+                metrics.record( MeterMetrics.Stage.DISPATCH_HOP, System.nanoTime() - mPostedNanos );
+                metrics.increment( MeterMetrics.Counter.LEVELS_CONSUMED );
+            }
+            long packed = mLatest.get();
+            mListener.onUpdateRMS( unpackRMS(packed), unpackPeak(packed) );
+        }
+    };
+
+    public LevelUpdateDispatcher( Executor executor, AudioReceiverListener listener ) {
+        this( executor, listener, null );
+    }
+
+    /** @param metrics null for none. */
+    public LevelUpdateDispatcher( Executor executor, AudioReceiverListener listener, MeterMetrics metrics ) {
+        mExecutor = executor;
+        mListener = listener;
+        mMetrics  = metrics;
+    }
+
+    /** @brief Any thread; null for none. */
+    public void setMetrics( MeterMetrics metrics ) {
+        mMetrics = metrics;
+    }
+
+    /** @brief Called from the capture thread. Never blocks, never allocates. */
+    public void publish( int rms, int peak ) {
+        MeterMetrics metrics = mMetrics;
+        mLatest.set( pack(rms, peak) );
+        if ( metrics != null ) {
+            metrics.increment( MeterMetrics.Counter.LEVELS_PUBLISHED );
+        }
+        if ( mPending.compareAndSet(false, true) ) {
+            if ( metrics != null ) {
+                mPostedNanos = System.nanoTime();
+                metrics.increment( MeterMetrics.Counter.LEVELS_POSTED );
+            }
+            mExecutor.execute(mDrain);
+        }
+    }
+
+    static long pack( int rms, int peak ) {
+        return ( ((long)rms) << 32 ) | ( ((long)peak) & 0xffffffffL );
+    }
+
+    static int unpackRMS( long packed ) {
+        return (int)( packed >>> 32 );
+    }
+
+    static int unpackPeak( long packed ) {
+        return (int)packed;
+    }
+}
@@ -0,0 +1,368 @@
+package com.example.vumeter.core;
+
+import java.util.Arrays;
+
+/** @brief Loudness as in ITU-R BS.1770-4 and EBU R 128: momentary,
+ *         short-term and integrated loudness, and loudness range.
+ *
+ *  - Every channel runs through the K-weighting filter, a high shelf and a
+ *    high pass biquad. Their coefficients are derived for the sample rate
+ *    from the analog prototype of the 48 kHz coefficients of the
+ *    recommendation, so any capture rate works.
+ *  - The mean square of the weighted signal is taken over 100 ms
+ *    sub-blocks. The last 30 of them are kept in a ring: momentary
+ *    loudness is the last 4 (400 ms), short-term loudness all 30 (3 s).
+ *  - Each 400 ms gating block (75 % overlap, one every sub-block) goes into
+ *    a histogram of 0.1 LU bins that keeps the count and the sum of the
+ *    energies per bin. Integrated loudness with the absolute (-70 LUFS) and
+ *    relative (-10 LU) gates is computed from it, so memory does not grow
+ *    with the length of the program. The gates are resolved to 0.1 LU; the
+ *    energies averaged are exact.
+ *  - Loudness range (EBU Tech 3342) comes the same way from a histogram of
+ *    the short-term loudness every 100 ms, gated at -70 LUFS and -20 LU, as
+ *    the 10th to 95th percentile.
+ *
+ *  Channel weights are 1, as for L, R and C; surround channels do not occur
+ *  here. 16-bit samples are scaled by 1/32768; a 1 kHz sine with a peak
+ *  of -23 dBFS on both channels of a stereo pair reads -23 LUFS. Levels
+ *  are Float.NEGATIVE_INFINITY when nothing has been measured.
+ *
+ *  Allocation-free after construction. Not thread safe: owned by the
+ *  capture thread.
+ */
+public class LoudnessMeter {
+
+    public static final float ABSOLUTE_GATE_LUFS   = -70.0f;
+    public static final float RELATIVE_GATE_LU     = -10.0f;
+    public static final float LRA_RELATIVE_GATE_LU = -20.0f;
+    public static final float LRA_LOW_PERCENTILE   =   0.10f;
+    public static final float LRA_HIGH_PERCENTILE  =   0.95f;
+
+    static final int MOMENTARY_SUB_BLOCKS  = 4;
+    static final int SHORT_TERM_SUB_BLOCKS = 30;
+
+    private static final double LOUDNESS_OFFSET = -0.691;
+
+    private final int mChannels;
+    private final int mSubBlockFrames;
+
+    // K-weighting. Stage 1: high shelf. Stage 2: high pass (b = 1, -2, 1).
+    private final double mShelfB0, mShelfB1, mShelfB2, mShelfA1, mShelfA2;
+    private final double mPassA1,  mPassA2;
+
+    // Transposed direct form II state per channel.
+    private final double[] mShelfZ1, mShelfZ2;
+    private final double[] mPassZ1,  mPassZ2;
+
+    /** @brief Sum of squares of the weighted signal in the current sub-block. */
+    private final double[] mChannelSum;
+    private int            mSubBlockFill;
+
+    /** @brief Channel-summed mean square of the last sub-blocks. */
+    private final double[] mRing = new double[SHORT_TERM_SUB_BLOCKS];
+    private int            mRingPos;
+    private long           mSubBlocks;
+
+    private final Histogram mGatingBlocks = new Histogram();
+    private final Histogram mShortTerms   = new Histogram();
+
+    private float mMomentary;
+    private float mShortTerm;
+    private float mIntegrated;
+    private float mLoudnessRange;
+
+    public LoudnessMeter( int sampleRate, int channelCount ) {
+        mChannels       = channelCount;
+        mSubBlockFrames = Math.max( 1, Math.round( sampleRate / 10.0f ) );
+
+        double k  = Math.tan( Math.PI * 1681.974450955533 / sampleRate );
+        double q  = 0.7071752369554196;
+        double vh = Math.pow( 10.0, 3.999843853973347 / 20.0 );
+        double vb = Math.pow( vh, 0.4996667741545416 );
+        double a0 = 1.0 + k / q + k * k;
+        mShelfB0  = ( vh + vb * k / q + k * k ) / a0;
+        mShelfB1  = 2.0 * ( k * k - vh ) / a0;
+        mShelfB2  = ( vh - vb * k / q + k * k ) / a0;
+        mShelfA1  = 2.0 * ( k * k - 1.0 ) / a0;
+        mShelfA2  = ( 1.0 - k / q + k * k ) / a0;
+
+        k  = Math.tan( Math.PI * 38.13547087602444 / sampleRate );
+        q  = 0.5003270373238773;
+        a0 = 1.0 + k / q + k * k;
+        mPassA1 = 2.0 * ( k * k - 1.0 ) / a0;
+        mPassA2 = ( 1.0 - k / q + k * k ) / a0;
+
+        mShelfZ1    = new double[channelCount];
+        mShelfZ2    = new double[channelCount];
+        mPassZ1     = new double[channelCount];
+        mPassZ2     = new double[channelCount];
+        mChannelSum = new double[channelCount];
+
+        reset();
+    }
+
+    /** @brief Starts a new program: clears the filters, the windows and the
+     *         integrated loudness and loudness range.
+     */
+    public void reset() {
+        Arrays.fill( mShelfZ1, 0.0 );
+        Arrays.fill( mShelfZ2, 0.0 );
+        Arrays.fill( mPassZ1, 0.0 );
+        Arrays.fill( mPassZ2, 0.0 );
+        Arrays.fill( mChannelSum, 0.0 );
+        Arrays.fill( mRing, 0.0 );
+        mSubBlockFill  = 0;
+        mRingPos       = 0;
+        mSubBlocks     = 0L;
+        mGatingBlocks.clear();
+        mShortTerms.clear();
+        mMomentary     = Float.NEGATIVE_INFINITY;
+        mShortTerm     = Float.NEGATIVE_INFINITY;
+        mIntegrated    = Float.NEGATIVE_INFINITY;
+        mLoudnessRange = 0.0f;
+    }
+
+    public int getChannelCount() {
+        return mChannels;
+    }
+
+    /** @brief Interleaved 16-bit samples, x[0, length). */
+    public void process( short[] x, int length ) {
+        int frames = length / mChannels;
+        int frame  = 0;
+        while ( frame < frames ) {
+            int n = Math.min( frames - frame, mSubBlockFrames - mSubBlockFill );
+            for ( int ch = 0; ch < mChannels; ch++ ) {
+                int start = frame * mChannels + ch;
+                mChannelSum[ch] += filter( x, start, start + n * mChannels, ch );
+            }
+            frame += n;
+            endOfSegment( n );
+        }
+    }
+
+    /** @brief Interleaved float samples, x[0, length). */
+    public void process( float[] x, int length ) {
+        int frames = length / mChannels;
+        int frame  = 0;
+        while ( frame < frames ) {
+            int n = Math.min( frames - frame, mSubBlockFrames - mSubBlockFill );
+            for ( int ch = 0; ch < mChannels; ch++ ) {
+                int start = frame * mChannels + ch;
+                mChannelSum[ch] += filter( x, start, start + n * mChannels, ch );
+            }
+            frame += n;
+            endOfSegment( n );
+        }
+    }
+
+    /** @brief 400 ms window, LUFS. Updated every 100 ms. */
+    public float getMomentary() {
+        return mMomentary;
+    }
+
+    /** @brief 3 s window, LUFS. Updated every 100 ms. */
+    public float getShortTerm() {
+        return mShortTerm;
+    }
+
+    /** @brief Gated loudness since reset(), LUFS. */
+    public float getIntegrated() {
+        return mIntegrated;
+    }
+
+    /** @brief LU, 0 until short-term loudness above the gates exists. */
+    public float getLoudnessRange() {
+        return mLoudnessRange;
+    }
+
+    /** @brief Mean square to LUFS. */
+    static float toLUFS( double energy ) {
+        return (float)( LOUDNESS_OFFSET + 10.0 * Math.log10( energy ) );
+    }
+
+    private double filter( short[] x, int start, int end, int ch ) {
+        final double b0 = mShelfB0, b1 = mShelfB1, b2 = mShelfB2, a1 = mShelfA1, a2 = mShelfA2;
+        final double p1 = mPassA1,  p2 = mPassA2;
+        double s1 = mShelfZ1[ch], s2 = mShelfZ2[ch];
+        double h1 = mPassZ1[ch],  h2 = mPassZ2[ch];
+        double sum = 0.0;
+        for ( int i = start; i < end; i += mChannels ) {
+            double in = x[i] * TruePeakDetector.SHORT_TO_FLOAT_SCALE;
+            double y  = b0 * in + s1;
+            s1 = b1 * in - a1 * y + s2;
+            s2 = b2 * in - a2 * y;
+            double z  = y + h1;
+            h1 = -2.0 * y - p1 * z + h2;
+            h2 = y - p2 * z;
+            sum += z * z;
+        }
+        mShelfZ1[ch] = s1;
+        mShelfZ2[ch] = s2;
+        mPassZ1[ch]  = h1;
+        mPassZ2[ch]  = h2;
+        return sum;
+    }
+
+    private double filter( float[] x, int start, int end, int ch ) {
+        final double b0 = mShelfB0, b1 = mShelfB1, b2 = mShelfB2, a1 = mShelfA1, a2 = mShelfA2;
+        final double p1 = mPassA1,  p2 = mPassA2;
+        double s1 = mShelfZ1[ch], s2 = mShelfZ2[ch];
+        double h1 = mPassZ1[ch],  h2 = mPassZ2[ch];
+        double sum = 0.0;
+        for ( int i = start; i < end; i += mChannels ) {
+            double in = x[i];
+            double y  = b0 * in + s1;
+            s1 = b1 * in - a1 * y + s2;
+            s2 = b2 * in - a2 * y;
+            double z  = y + h1;
+            h1 = -2.0 * y - p1 * z + h2;
+            h2 = y - p2 * z;
+            sum += z * z;
+        }
+        mShelfZ1[ch] = s1;
+        mShelfZ2[ch] = s2;
+        mPassZ1[ch]  = h1;
+        mPassZ2[ch]  = h2;
+        return sum;
+    }
+
+    private void endOfSegment( int frames ) {
+        mSubBlockFill += frames;
+        if ( mSubBlockFill < mSubBlockFrames ) {
+            return;
+        }
+
+        double energy = 0.0;
+        for ( int ch = 0; ch < mChannels; ch++ ) {
+            energy += mChannelSum[ch] / mSubBlockFrames;
+            mChannelSum[ch] = 0.0;
+        }
+        mSubBlockFill   = 0;
+        mRing[mRingPos] = energy;
+        mRingPos        = ( mRingPos + 1 ) % SHORT_TERM_SUB_BLOCKS;
+        mSubBlocks++;
+
+        double momentary = windowEnergy( MOMENTARY_SUB_BLOCKS );
+        double shortTerm = windowEnergy( SHORT_TERM_SUB_BLOCKS );
+        mMomentary = toLUFS( momentary );
+        mShortTerm = toLUFS( shortTerm );
+
+        if ( mSubBlocks >= MOMENTARY_SUB_BLOCKS ) {
+            mGatingBlocks.add( momentary );
+            mIntegrated = mGatingBlocks.gatedLoudness( RELATIVE_GATE_LU );
+        }
+        if ( mSubBlocks >= SHORT_TERM_SUB_BLOCKS ) {
+            mShortTerms.add( shortTerm );
+            mLoudnessRange = mShortTerms.range( LRA_RELATIVE_GATE_LU,
+                                                LRA_LOW_PERCENTILE, LRA_HIGH_PERCENTILE );
+        }
+    }
+
+    /** @brief Mean of the last count sub-blocks. Missing ones count as silence. */
+    private double windowEnergy( int count ) {
+        double sum = 0.0;
+        int pos = mRingPos;
+        for ( int i = 0; i < count; i++ ) {
+            pos = ( pos == 0 ? SHORT_TERM_SUB_BLOCKS : pos ) - 1;
+            sum += mRing[pos];
+        }
+        return sum / count;
+    }
+
+    /** @brief Loudness values above the absolute gate, binned by 0.1 LU
+     *         from -70 to +30 LUFS, with the sum of their energies per bin.
+     */
+    static final class Histogram {
+
+        static final int    BINS     = 1000;
+        static final double STEP_LU  = 0.1;
+
+        private final long[]   mCount  = new long[BINS];
+        private final double[] mEnergy = new double[BINS];
+
+        void clear() {
+            Arrays.fill( mCount, 0L );
+            Arrays.fill( mEnergy, 0.0 );
+        }
+
+        void add( double energy ) {
+            float lufs = toLUFS( energy );
+            if ( !( lufs > ABSOLUTE_GATE_LUFS ) ) {
+                return;
+            }
+            int bin = binOf( lufs );
+            mCount[bin]++;
+            mEnergy[bin] += energy;
+        }
+
+        /** @brief Loudness of the mean energy of the bins at or above the
+         *         relative gate below the ungated mean.
+         */
+        float gatedLoudness( float relativeGateLU ) {
+            int gateBin = relativeGateBin( relativeGateLU );
+            if ( gateBin < 0 ) {
+                return Float.NEGATIVE_INFINITY;
+            }
+            long   count  = 0L;
+            double energy = 0.0;
+            for ( int bin = gateBin; bin < BINS; bin++ ) {
+                count  += mCount[bin];
+                energy += mEnergy[bin];
+            }
+            return count > 0L ? toLUFS( energy / count ) : Float.NEGATIVE_INFINITY;
+        }
+
+        /** @brief Difference between the high and the low percentile of the
+         *         values at or above the relative gate.
+         */
+        float range( float relativeGateLU, float lowPercentile, float highPercentile ) {
+            int gateBin = relativeGateBin( relativeGateLU );
+            if ( gateBin < 0 ) {
+                return 0.0f;
+            }
+            long count = 0L;
+            for ( int bin = gateBin; bin < BINS; bin++ ) {
+                count += mCount[bin];
+            }
+            if ( count == 0L ) {
+                return 0.0f;
+            }
+            int low  = percentileBin( gateBin, (long)( ( count - 1 ) * lowPercentile  + 0.5 ) );
+            int high = percentileBin( gateBin, (long)( ( count - 1 ) * highPercentile + 0.5 ) );
+            return (float)( ( high - low ) * STEP_LU );
+        }
+
+        /** @brief Bin of the relative gate, -1 if the histogram is empty. */
+        private int relativeGateBin( float relativeGateLU ) {
+            long   count  = 0L;
+            double energy = 0.0;
+            for ( int bin = 0; bin < BINS; bin++ ) {
+                count  += mCount[bin];
+                energy += mEnergy[bin];
+            }
+            if ( count == 0L ) {
+                return -1;
+            }
+            float gate = toLUFS( energy / count ) + relativeGateLU;
+            return gate > ABSOLUTE_GATE_LUFS ? binOf( gate ) : 0;
+        }
+
+        /** @brief Bin holding the rank-th value (0-based) from fromBin on. */
+        private int percentileBin( int fromBin, long rank ) {
+            long seen = 0L;
+            for ( int bin = fromBin; bin < BINS; bin++ ) {
+                seen += mCount[bin];
+                if ( seen > rank ) {
+                    return bin;
+                }
+            }
+            return BINS - 1;
+        }
+
+        private static int binOf( float lufs ) {
+            int bin = (int)( ( lufs - ABSOLUTE_GATE_LUFS ) / STEP_LU );
+            return Math.max( 0, Math.min( BINS - 1, bin ) );
+        }
+    }
+}
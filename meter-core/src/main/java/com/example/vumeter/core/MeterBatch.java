@@ -0,0 +1,354 @@
+package com.example.vumeter.core;
+
+import java.util.Arrays;
+
+/** @brief Geometry of many meters drawn with one draw call.
+ *
+ *  Every meter is a base, its hands and its LED, cut from the same
+ *  vu_meter_texture.png as the single meter, laid out on a grid of cells
+ *  that fills the viewport. All of them are one interleaved vertex array
+ *  and one index array:
+ *
+ *      quads 0 .. N-1                    : bases of the N meters (static)
+ *      then, per meter, H hands and LED  : dynamic
+ *
+ *  Each vertex is (x, y, s, t, alpha). The alpha of the LED is its
+ *  brightness, so lit, fading and dark LEDs need no uniform and no
+ *  separate draw; the hands and the bases have alpha 1. The order of the
+ *  indices is the order of painting: all bases first, then the hands and
+ *  the LED of each meter on top of its own base.
+ *
+ *  layout() writes everything and has to be uploaded whole. Per frame
+ *  setHand() and setLed() rewrite only what moved, and the meters touched
+ *  since the last clearDirty() are one contiguous range of the dynamic part
+ *  for glBufferSubData(). The cost of a frame is linear in the number of
+ *  meters that moved, and nothing is allocated after construction.
+ *
+ *  Not thread safe: owned by the GL thread.
+ */
+public class MeterBatch {
+
+    public static final int BYTES_PER_FLOAT     = VertexUploadPlan.BYTES_PER_FLOAT;
+    public static final int BYTES_PER_SHORT     = VertexUploadPlan.BYTES_PER_SHORT;
+
+    public static final int POSITION_ELEMENTS   = 2;
+    public static final int TEXCOORD_ELEMENTS   = 2;
+    public static final int ALPHA_ELEMENTS      = 1;
+    public static final int FLOATS_PER_VERTEX   = POSITION_ELEMENTS + TEXCOORD_ELEMENTS + ALPHA_ELEMENTS;
+    public static final int STRIDE_BYTES        = FLOATS_PER_VERTEX * BYTES_PER_FLOAT;
+    public static final int POSITION_OFFSET     = 0;
+    public static final int TEXCOORD_OFFSET     = POSITION_ELEMENTS * BYTES_PER_FLOAT;
+    public static final int ALPHA_OFFSET        = TEXCOORD_OFFSET + TEXCOORD_ELEMENTS * BYTES_PER_FLOAT;
+
+    public static final int VERTICES_PER_QUAD   = VertexUploadPlan.VERTICES_PER_QUAD;
+    public static final int INDICES_PER_QUAD    = VertexUploadPlan.INDICES_PER_QUAD;
+    public static final int FLOATS_PER_QUAD     = VERTICES_PER_QUAD * FLOATS_PER_VERTEX;
+
+    /** @brief Indices are unsigned shorts. */
+    public static final int MAX_VERTICES        = 65536;
+
+    /** @brief Fraction of a cell left empty around its meter. */
+    static final float CELL_MARGIN = 0.04f;
+
+    private final MeterGeometry mGeometry;
+    private final int           mMeterCount;
+    private final int           mHandsPerMeter;
+    private final int           mDynamicQuadsPerMeter;
+
+    private final float[]       mVertices;
+
+    private int mColumns = 1;
+    private int mRows    = 1;
+
+    /** @brief Per meter: the NDC rectangle of its base, left, top and
+     *         NDC units per PNG pixel in x and y.
+     */
+    private final float[] mCellLeft;
+    private final float[] mCellTop;
+    private float         mScaleX;
+    private float         mScaleY;
+
+    /** @brief What the vertices were last written for, to skip the rest. */
+    private final float[] mTheta;
+    private final float[] mLed;
+
+    private int     mDirtyFirst;
+    private int     mDirtyLast;
+    private boolean mLayoutChanged;
+
+    private final float[] mCorners = new float[8];
+
+    public MeterBatch( MeterGeometry geometry, int meterCount, int handsPerMeter ) {
+        int verticesPerMeter = ( 2 + handsPerMeter ) * VERTICES_PER_QUAD;
+        if ( meterCount < 1 || handsPerMeter < 1
+             || (long)meterCount * verticesPerMeter > MAX_VERTICES ) {
+            throw new IllegalArgumentException( "Cannot batch " + meterCount + " meters of "
+                                                + handsPerMeter + " hands" );
+        }
+        mGeometry             = geometry;
+        mMeterCount           = meterCount;
+        mHandsPerMeter        = handsPerMeter;
+        mDynamicQuadsPerMeter = handsPerMeter + 1;
+
+        mVertices = new float[numQuads() * FLOATS_PER_QUAD];
+        mCellLeft = new float[meterCount];
+        mCellTop  = new float[meterCount];
+        mTheta    = new float[meterCount * handsPerMeter];
+        mLed      = new float[meterCount];
+
+        Arrays.fill( mTheta, geometry.HandAngularLimitLeft );
+        clearDirty();
+        layout( 1, 1 );
+    }
+
+    public int getMeterCount() {
+        return mMeterCount;
+    }
+
+    public int getHandsPerMeter() {
+        return mHandsPerMeter;
+    }
+
+    public int getColumns() {
+        return mColumns;
+    }
+
+    public int getRows() {
+        return mRows;
+    }
+
+    public int numQuads() {
+        return mMeterCount * ( 1 + mDynamicQuadsPerMeter );
+    }
+
+    public int numVertexFloats() {
+        return mVertices.length;
+    }
+
+    public int numIndices() {
+        return numQuads() * INDICES_PER_QUAD;
+    }
+
+    public int vertexBytes() {
+        return numVertexFloats() * BYTES_PER_FLOAT;
+    }
+
+    public int indexBytes() {
+        return numIndices() * BYTES_PER_SHORT;
+    }
+
+    /** @brief The interleaved vertices. Do not modify. */
+    public float[] getVertices() {
+        return mVertices;
+    }
+
+    public static int firstFloatOfQuad( int quad ) {
+        return quad * FLOATS_PER_QUAD;
+    }
+
+    public int quadOfBase( int meter ) {
+        return meter;
+    }
+
+    public int quadOfHand( int meter, int hand ) {
+        return mMeterCount + meter * mDynamicQuadsPerMeter + hand;
+    }
+
+    public int quadOfLed( int meter ) {
+        return mMeterCount + meter * mDynamicQuadsPerMeter + mHandsPerMeter;
+    }
+
+    /** @brief Two triangles per quad, (0, 1, 2) and (2, 3, 0), in the order
+     *         of the quads. Static: uploaded once.
+     */
+    public void fillIndices( short[] indices ) {
+        for ( int quad = 0; quad < numQuads(); quad++ ) {
+            int v = quad * VERTICES_PER_QUAD;
+            int i = quad * INDICES_PER_QUAD;
+            indices[ i + 0 ] = (short)( v + 0 );
+            indices[ i + 1 ] = (short)( v + 1 );
+            indices[ i + 2 ] = (short)( v + 2 );
+            indices[ i + 3 ] = (short)( v + 2 );
+            indices[ i + 4 ] = (short)( v + 3 );
+            indices[ i + 5 ] = (short)( v + 0 );
+        }
+    }
+
+    /** @brief Lays the meters out for a viewport of width x height pixels:
+     *         the grid that shows them largest without stretching the face,
+     *         each centered in its cell. Rewrites every vertex.
+     */
+    public void layout( int width, int height ) {
+        width  = Math.max( 1, width );
+        height = Math.max( 1, height );
+
+        float face = mGeometry.BaseWidth / mGeometry.BaseHeight;
+        float best = -1.0f;
+        for ( int columns = 1; columns <= mMeterCount; columns++ ) {
+            int   rows  = ( mMeterCount + columns - 1 ) / columns;
+            float cellW = (float)width  / columns;
+            float cellH = (float)height / rows;
+            float faceW = Math.min( cellW, cellH * face );
+            if ( faceW > best ) {
+                best     = faceW;
+                mColumns = columns;
+                mRows    = rows;
+            }
+        }
+
+        // In pixels, then in NDC.
+        float cellW = (float)width  / mColumns;
+        float cellH = (float)height / mRows;
+        float faceW = Math.min( cellW, cellH * face ) * ( 1.0f - 2.0f * CELL_MARGIN );
+        float faceH = faceW / face;
+
+        mScaleX = 2.0f * faceW / width  / mGeometry.BaseWidth;
+        mScaleY = 2.0f * faceH / height / mGeometry.BaseHeight;
+
+        for ( int m = 0; m < mMeterCount; m++ ) {
+            int column = m % mColumns;
+            int row    = m / mColumns;
+            float left = column * cellW + ( cellW - faceW ) * 0.5f;
+            float top  = row    * cellH + ( cellH - faceH ) * 0.5f;
+            mCellLeft[m] = 2.0f * left / width  - 1.0f;
+            mCellTop[m]  = 1.0f - 2.0f * top / height;
+        }
+
+        for ( int m = 0; m < mMeterCount; m++ ) {
+            writeBase( m );
+            for ( int hand = 0; hand < mHandsPerMeter; hand++ ) {
+                writeHand( m, hand );
+            }
+            writeLed( m );
+        }
+        mLayoutChanged = true;
+        markDirty( 0 );
+        markDirty( mMeterCount - 1 );
+    }
+
+    /** @brief True once after layout(): the whole vertex array has to be
+     *         uploaded. The dirty range is cleared with it.
+     */
+    public boolean takeLayoutChanged() {
+        boolean changed = mLayoutChanged;
+        mLayoutChanged = false;
+        if ( changed ) {
+            clearDirty();
+        }
+        return changed;
+    }
+
+    /** @brief Moves a hand. Nothing is written if the angle did not change. */
+    public void setHand( int meter, int hand, float theta ) {
+        int i = meter * mHandsPerMeter + hand;
+        if ( mTheta[i] == theta ) {
+            return;
+        }
+        mTheta[i] = theta;
+        writeHand( meter, hand );
+        markDirty( meter );
+    }
+
+    /** @brief Brightness of the LED, 0 (off) to 1. */
+    public void setLed( int meter, float brightness ) {
+        if ( mLed[meter] == brightness ) {
+            return;
+        }
+        mLed[meter] = brightness;
+        writeLed( meter );
+        markDirty( meter );
+    }
+
+    /** @brief The hands and the LED of a NeedleMeter at its last frame. */
+    public void setMeter( int meter, NeedleMeter needles ) {
+        int hands = Math.min( mHandsPerMeter, needles.getChannelCount() );
+        for ( int hand = 0; hand < hands; hand++ ) {
+            setHand( meter, hand, needles.getTheta( hand ) );
+        }
+        setLed( meter, needles.getLedBrightness() );
+    }
+
+    public boolean isDirty() {
+        return mDirtyFirst <= mDirtyLast;
+    }
+
+    /** @brief First float of the dynamic quads of the meters changed since
+     *         the last clearDirty().
+     */
+    public int dirtyFirstFloat() {
+        return firstFloatOfQuad( quadOfHand( mDirtyFirst, 0 ) );
+    }
+
+    public int dirtyFloatCount() {
+        if ( !isDirty() ) {
+            return 0;
+        }
+        return ( mDirtyLast - mDirtyFirst + 1 ) * mDynamicQuadsPerMeter * FLOATS_PER_QUAD;
+    }
+
+    public int dirtyByteOffset() {
+        return dirtyFirstFloat() * BYTES_PER_FLOAT;
+    }
+
+    public int dirtyByteSize() {
+        return dirtyFloatCount() * BYTES_PER_FLOAT;
+    }
+
+    /** @brief After the dirty range has been uploaded. */
+    public void clearDirty() {
+        mDirtyFirst = Integer.MAX_VALUE;
+        mDirtyLast  = Integer.MIN_VALUE;
+    }
+
+    private void markDirty( int meter ) {
+        mDirtyFirst = Math.min( mDirtyFirst, meter );
+        mDirtyLast  = Math.max( mDirtyLast,  meter );
+    }
+
+    private void writeBase( int meter ) {
+        MeterGeometry g = mGeometry;
+        int q = firstFloatOfQuad( quadOfBase( meter ) );
+        q = vertex( meter, q, g.BaseWidth, g.BaseHeight, g.BaseWidth, g.BaseHeight, 1.0f );
+        q = vertex( meter, q, g.BaseWidth, 0.0f,         g.BaseWidth, 0.0f,         1.0f );
+        q = vertex( meter, q, 0.0f,        0.0f,         0.0f,        0.0f,         1.0f );
+            vertex( meter, q, 0.0f,        g.BaseHeight, 0.0f,        g.BaseHeight, 1.0f );
+    }
+
+    private void writeLed( int meter ) {
+        MeterGeometry g = mGeometry;
+        float x0 = g.LEDTopLeftOnBaseX;
+        float y0 = g.LEDTopLeftOnBaseY;
+        float x1 = x0 + g.LEDBottomRightX - g.LEDTopLeftX;
+        float y1 = y0 + g.LEDBottomRightY - g.LEDTopLeftY;
+        float a  = mLed[meter];
+        int q = firstFloatOfQuad( quadOfLed( meter ) );
+        q = vertex( meter, q, x1, y1, g.LEDBottomRightX, g.LEDBottomRightY, a );
+        q = vertex( meter, q, x1, y0, g.LEDBottomRightX, g.LEDTopLeftY,     a );
+        q = vertex( meter, q, x0, y0, g.LEDTopLeftX,     g.LEDTopLeftY,     a );
+            vertex( meter, q, x0, y1, g.LEDTopLeftX,     g.LEDBottomRightY, a );
+    }
+
+    private void writeHand( int meter, int hand ) {
+        MeterGeometry g = mGeometry;
+        float[] c = mCorners;
+        g.handCorners( c, mTheta[meter * mHandsPerMeter + hand] );
+        int q = firstFloatOfQuad( quadOfHand( meter, hand ) );
+        q = vertex( meter, q, c[0], c[1], g.HandBottomRightX, g.HandBottomRightY, 1.0f );
+        q = vertex( meter, q, c[2], c[3], g.HandBottomRightX, g.HandTopLeftY,     1.0f );
+        q = vertex( meter, q, c[4], c[5], g.HandTopLeftX,     g.HandTopLeftY,     1.0f );
+            vertex( meter, q, c[6], c[7], g.HandTopLeftX,     g.HandBottomRightY, 1.0f );
+    }
+
+    /** @brief One vertex at PNG pixel (x, y) on the base of the meter, with
+     *         the texture point (s, t) in PNG pixels.
+     */
+    private int vertex( int meter, int i, float x, float y, float s, float t, float alpha ) {
+        float[] v = mVertices;
+        v[ i + 0 ] = mCellLeft[meter] + x * mScaleX;
+        v[ i + 1 ] = mCellTop[meter]  - y * mScaleY;
+        v[ i + 2 ] = s / mGeometry.TextureWidth;
+        v[ i + 3 ] = t / mGeometry.TextureHeight;
+        v[ i + 4 ] = alpha;
+        return i + FLOATS_PER_VERTEX;
+    }
+}
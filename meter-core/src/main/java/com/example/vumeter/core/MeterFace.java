@@ -0,0 +1,405 @@
+package com.example.vumeter.core;
+
+import java.util.Arrays;
+
+/** @brief A meter face tessellated from its description rather than sampled
+ *         from vu_meter_texture.png, so it stays sharp at any size.
+ *
+ *  The face is laid out in the PNG pixels of the base of MeterGeometry,
+ *  around the rotating center of the hand, and the vertices come out in
+ *  normalized device coordinates like those of makeStaticVertices(): the
+ *  paper, the scale arc with its red zone, the ticks, the labels in
+ *  StrokeFont and the caption, as triangles of one color each. The ticks
+ *  stand at the angles NeedleMeter gives their values.
+ *
+ *  The number of segments of the arcs follows the size in pixels the face
+ *  is drawn at, so they are never more than TOLERANCE_PIXELS off the
+ *  circle, and no line gets thinner than a pixel, which would alias on a
+ *  small meter. generate() allocates; keep the meshes in a MeterFaceCache
+ *  rather than generating one per frame.
+ */
+public class MeterFace {
+
+    /** @brief Palette entries, the third float of every vertex. */
+    public static final int COLOR_PAPER = 0;
+    public static final int COLOR_INK   = 1;
+    public static final int COLOR_RED   = 2;
+    public static final int COLORS      = 3;
+
+    /** @brief Largest distance from an arc to its chords, in pixels. */
+    public static final float TOLERANCE_PIXELS = 0.25f;
+
+    // Layout in PNG pixels of the base.
+    static final float ARC_RADIUS         = 190.0f;
+    static final float ARC_WIDTH          =   2.0f;
+    static final float RED_WIDTH          =   6.0f;
+    static final float MINOR_TICK         =   8.0f;
+    static final float MAJOR_TICK         =  14.0f;
+    static final float MINOR_TICK_WIDTH   =   1.5f;
+    static final float MAJOR_TICK_WIDTH   =   2.5f;
+    static final float LABEL_HEIGHT       =  12.0f;
+    static final float LABEL_STROKE       =   1.6f;
+    static final float LABEL_GAP          =   6.0f;
+    static final float CAPTION_HEIGHT     =  24.0f;
+    static final float CAPTION_STROKE     =   3.0f;
+    static final float CAPTION_Y          = 190.0f;
+
+    /** @brief What the face reads: the values of the ticks and labels, in
+     *         the units NeedleMeter maps to the angles of the hand.
+     */
+    public enum Scale {
+        /** @brief dB of the reading (NeedleMeter.Scale.MIC_DB), for the VU ballistics. */
+        VU  ( "VU",  -55,   0,   0, 5, 10, 10,  -6 ),
+        /** @brief The same dB in the 4 dB marks of a PPM. */
+        PPM ( "PPM", -55,   0,   0, 2,  4,  8,  -8 ),
+        /** @brief The EBU +9 scale of NeedleMeter.Scale.MOMENTARY_LUFS and
+         *         SHORT_TERM_LUFS, labelled in LU from -23 LUFS.
+         */
+        LUFS( "LU",  -41, -14, -23, 1,  3,  6, -20 );
+
+        final String mCaption;
+        final int    mFloor;
+        final int    mPeak;
+        final int    mReference;
+        final int    mMinorStep;
+        final int    mMajorStep;
+        final int    mLabelStep;
+        final int    mRedFrom;
+
+        Scale( String caption, int floor, int peak, int reference,
+               int minorStep, int majorStep, int labelStep, int redFrom ) {
+            mCaption   = caption;
+            mFloor     = floor;
+            mPeak      = peak;
+            mReference = reference;
+            mMinorStep = minorStep;
+            mMajorStep = majorStep;
+            mLabelStep = labelStep;
+            mRedFrom   = redFrom;
+        }
+
+        /** @brief Value at HandAngularLimitLeft. */
+        public int getFloor() {
+            return mFloor;
+        }
+
+        /** @brief Value at HandAngularLimitRight. */
+        public int getPeak() {
+            return mPeak;
+        }
+
+        /** @brief Angle of the hand at the given value. */
+        public float thetaFor( MeterGeometry g, float value ) {
+            return g.HandAngularLimitLeft
+                    + ( g.HandAngularLimitRight - g.HandAngularLimitLeft )
+                    * ( value - mFloor ) / ( mPeak - mFloor );
+        }
+
+        /** @brief Number of ticks: one every minor step on the scale. */
+        public int tickCount() {
+            return floorDiv( mPeak, mMinorStep ) - floorDiv( mFloor + mMinorStep - 1, mMinorStep ) + 1;
+        }
+
+        boolean isMajor( int value ) {
+            return ( value - mReference ) % mMajorStep == 0;
+        }
+
+        boolean isLabelled( int value ) {
+            return ( value - mReference ) % mLabelStep == 0;
+        }
+
+        /** @brief Text of the label at the given value, signed from the reference. */
+        String label( int value ) {
+            int v = value - mReference;
+            return v > 0 ? "+" + v : Integer.toString( v );
+        }
+    }
+
+    /** @brief The triangles of a face: (x, y, color) per vertex and three
+     *         indices per triangle. Shared through MeterFaceCache: read only.
+     */
+    public static final class Mesh {
+
+        public static final int FLOATS_PER_VERTEX = 3;
+        public static final int STRIDE_BYTES      = FLOATS_PER_VERTEX * VertexUploadPlan.BYTES_PER_FLOAT;
+
+        private final Scale   mScale;
+        private final int     mWidth;
+        private final int     mHeight;
+        private final float[] mVertices;
+        private final short[] mIndices;
+        private final int     mArcSegments;
+        private final int     mStrokes;
+
+        Mesh( Scale scale, int width, int height, float[] vertices, short[] indices,
+              int arcSegments, int strokes ) {
+            mScale       = scale;
+            mWidth       = width;
+            mHeight      = height;
+            mVertices    = vertices;
+            mIndices     = indices;
+            mArcSegments = arcSegments;
+            mStrokes     = strokes;
+        }
+
+        public Scale getScale() {
+            return mScale;
+        }
+
+        /** @brief Size in pixels the mesh was tessellated for. */
+        public int getWidth() {
+            return mWidth;
+        }
+
+        public int getHeight() {
+            return mHeight;
+        }
+
+        public float[] getVertices() {
+            return mVertices;
+        }
+
+        public short[] getIndices() {
+            return mIndices;
+        }
+
+        public int vertexCount() {
+            return mVertices.length / FLOATS_PER_VERTEX;
+        }
+
+        public int indexCount() {
+            return mIndices.length;
+        }
+
+        public int vertexBytes() {
+            return mVertices.length * VertexUploadPlan.BYTES_PER_FLOAT;
+        }
+
+        public int indexBytes() {
+            return mIndices.length * VertexUploadPlan.BYTES_PER_SHORT;
+        }
+
+        /** @brief Segments of the ink and the red arcs together. */
+        public int getArcSegments() {
+            return mArcSegments;
+        }
+
+        /** @brief Straight strokes of the labels and the caption. */
+        public int getStrokes() {
+            return mStrokes;
+        }
+    }
+
+    private MeterFace() {
+    }
+
+    /** @brief RGBA of the palette entries, for a uniform vec4[COLORS]. */
+    public static float[] palette() {
+        return new float[] {
+            0.96f, 0.92f, 0.80f, 1.0f,
+            0.10f, 0.10f, 0.10f, 1.0f,
+            0.80f, 0.10f, 0.10f, 1.0f,
+        };
+    }
+
+    /** @brief Tessellates the face of the scale for a base drawn at
+     *         widthPixels by heightPixels.
+     *  @throws IllegalStateException if it needs more vertices than 16-bit
+     *         indices reach, far beyond any screen.
+     */
+    public static Mesh generate( MeterGeometry g, Scale scale, int widthPixels, int heightPixels ) {
+        if ( widthPixels <= 0 || heightPixels <= 0 ) {
+            throw new IllegalArgumentException( "size " + widthPixels + "x" + heightPixels );
+        }
+        float pixelsPerUnit = Math.max( widthPixels / g.BaseWidth, heightPixels / g.BaseHeight );
+        Builder b = new Builder( g, pixelsPerUnit );
+
+        b.rect( 0.0f, 0.0f, g.BaseWidth, g.BaseHeight, COLOR_PAPER );
+
+        // The arc up to the red zone, then the red zone as a wider band.
+        float left = g.HandAngularLimitLeft;
+        float right = g.HandAngularLimitRight;
+        float red = scale.thetaFor( g, scale.mRedFrom );
+        float inner = ARC_RADIUS - b.width( ARC_WIDTH ) * 0.5f;
+        int arcSegments = b.arc( inner, ARC_RADIUS + b.width( ARC_WIDTH ) * 0.5f, red, left, COLOR_INK )
+                        + b.arc( inner, ARC_RADIUS + RED_WIDTH, right, red, COLOR_RED );
+
+        float labelRadius = ARC_RADIUS + MAJOR_TICK + LABEL_GAP + LABEL_HEIGHT * 0.5f;
+        int strokes = 0;
+        for ( int value = floorDiv( scale.mPeak, scale.mMinorStep ) * scale.mMinorStep;
+              value >= scale.mFloor; value -= scale.mMinorStep ) {
+            float theta = scale.thetaFor( g, value );
+            boolean major = scale.isMajor( value );
+            int color = value >= scale.mRedFrom ? COLOR_RED : COLOR_INK;
+            b.tick( theta, ARC_RADIUS, major ? MAJOR_TICK : MINOR_TICK,
+                    major ? MAJOR_TICK_WIDTH : MINOR_TICK_WIDTH, color );
+            if ( major && scale.isLabelled( value ) ) {
+                float x = g.HandRotatingCenterX + labelRadius * (float)Math.cos( theta );
+                float y = g.HandRotatingCenterY - labelRadius * (float)Math.sin( theta );
+                strokes += b.text( scale.label( value ), x, y, LABEL_HEIGHT, LABEL_STROKE, color );
+            }
+        }
+        strokes += b.text( scale.mCaption, g.HandRotatingCenterX, CAPTION_Y, CAPTION_HEIGHT, CAPTION_STROKE,
+                           COLOR_INK );
+
+        return b.build( scale, widthPixels, heightPixels, arcSegments, strokes );
+    }
+
+    /** @brief a / b rounded toward negative infinity, for b > 0 and the
+     *         negative floors and peaks of the scales. Math.floorDiv() is
+     *         API 24, and the app runs from API 21.
+     */
+    static int floorDiv( int a, int b ) {
+        int q = a / b;
+        return a % b != 0 && a < 0 ? q - 1 : q;
+    }
+
+    /** @brief Chords needed for an arc of the given angle and radius, in PNG
+     *         pixels, to stay within TOLERANCE_PIXELS at that pixel scale.
+     */
+    static int arcSegments( float angle, float radius, float pixelsPerUnit ) {
+        double r = radius * pixelsPerUnit;
+        double step = r > TOLERANCE_PIXELS * 0.5 ? 2.0 * Math.acos( 1.0 - TOLERANCE_PIXELS / r ) : Math.PI;
+        return Math.max( 1, (int)Math.ceil( angle / step - 1e-9 ) );
+    }
+
+    /** @brief Appends the triangles in normalized device coordinates. */
+    private static final class Builder {
+
+        final MeterGeometry mGeometry;
+        final float         mPixelsPerUnit;
+        float[] mVertices = new float[ 1024 * Mesh.FLOATS_PER_VERTEX ];
+        short[] mIndices  = new short[ 1536 ];
+        int     mVertexCount;
+        int     mIndexCount;
+
+        Builder( MeterGeometry geometry, float pixelsPerUnit ) {
+            mGeometry      = geometry;
+            mPixelsPerUnit = pixelsPerUnit;
+        }
+
+        /** @brief A width in PNG pixels, but at least one pixel on the screen. */
+        float width( float w ) {
+            return Math.max( w, 1.0f / mPixelsPerUnit );
+        }
+
+        int vertex( float x, float y, int color ) {
+            if ( mVertexCount > 0xFFFF ) {
+                throw new IllegalStateException( "More than 65536 vertices" );
+            }
+            int f = mVertexCount * Mesh.FLOATS_PER_VERTEX;
+            if ( f + Mesh.FLOATS_PER_VERTEX > mVertices.length ) {
+                mVertices = Arrays.copyOf( mVertices, mVertices.length * 2 );
+            }
+            mVertices[f]     = mGeometry.fromTexCoordToNormCoordX( x );
+            mVertices[f + 1] = mGeometry.fromTexCoordToNormCoordYInverted( y );
+            mVertices[f + 2] = color;
+            return mVertexCount++;
+        }
+
+        void triangle( int a, int b, int c ) {
+            if ( mIndexCount + 3 > mIndices.length ) {
+                mIndices = Arrays.copyOf( mIndices, mIndices.length * 2 );
+            }
+            mIndices[mIndexCount++] = (short)a;
+            mIndices[mIndexCount++] = (short)b;
+            mIndices[mIndexCount++] = (short)c;
+        }
+
+        /** @brief Quad of the four corners in order around it. */
+        void quad( float x0, float y0, float x1, float y1, float x2, float y2, float x3, float y3, int color ) {
+            int v = vertex( x0, y0, color );
+            vertex( x1, y1, color );
+            vertex( x2, y2, color );
+            vertex( x3, y3, color );
+            triangle( v, v + 1, v + 2 );
+            triangle( v + 2, v + 3, v );
+        }
+
+        void rect( float x0, float y0, float x1, float y1, int color ) {
+            quad( x0, y0, x1, y0, x1, y1, x0, y1, color );
+        }
+
+        /** @brief Band between two radii around the rotating center, from
+         *         angle from to angle to.
+         *  @return the number of segments.
+         */
+        int arc( float r0, float r1, float from, float to, int color ) {
+            float cx = mGeometry.HandRotatingCenterX;
+            float cy = mGeometry.HandRotatingCenterY;
+            int n = arcSegments( Math.abs( to - from ), r1, mPixelsPerUnit );
+            int first = mVertexCount;
+            for ( int i = 0; i <= n; i++ ) {
+                double theta = from + (double)( to - from ) * i / n;
+                float c = (float)Math.cos( theta );
+                float s = (float)Math.sin( theta );
+                vertex( cx + r0 * c, cy - r0 * s, color );
+                vertex( cx + r1 * c, cy - r1 * s, color );
+            }
+            for ( int i = 0; i < n; i++ ) {
+                int v = first + 2 * i;
+                triangle( v, v + 1, v + 3 );
+                triangle( v + 3, v + 2, v );
+            }
+            return n;
+        }
+
+        /** @brief Radial tick outward from radius r. */
+        void tick( float theta, float r, float length, float w, int color ) {
+            float c = (float)Math.cos( theta );
+            float s = (float)Math.sin( theta );
+            segment( mGeometry.HandRotatingCenterX + r * c, mGeometry.HandRotatingCenterY - r * s,
+                     mGeometry.HandRotatingCenterX + ( r + length ) * c,
+                     mGeometry.HandRotatingCenterY - ( r + length ) * s,
+                     width( w ), 0.0f, color );
+        }
+
+        /** @brief A stroke of width w from (x0, y0) to (x1, y1), longer by
+         *         cap at both ends.
+         */
+        void segment( float x0, float y0, float x1, float y1, float w, float cap, int color ) {
+            float dx = x1 - x0;
+            float dy = y1 - y0;
+            float length = (float)Math.sqrt( dx * dx + dy * dy );
+            dx /= length;
+            dy /= length;
+            float nx = -dy * w * 0.5f;
+            float ny =  dx * w * 0.5f;
+            x0 -= dx * cap;
+            y0 -= dy * cap;
+            x1 += dx * cap;
+            y1 += dy * cap;
+            quad( x0 + nx, y0 + ny, x1 + nx, y1 + ny, x1 - nx, y1 - ny, x0 - nx, y0 - ny, color );
+        }
+
+        /** @brief Text centered on (x, y), upright.
+         *  @return the number of strokes.
+         */
+        int text( String text, float x, float y, float height, float stroke, int color ) {
+            float unit = height / StrokeFont.GLYPH_HEIGHT;
+            float w = width( stroke );
+            float left = x - StrokeFont.width( text ) * unit * 0.5f;
+            float baseline = y + height * 0.5f;
+            int strokes = 0;
+            for ( int i = 0; i < text.length(); i++ ) {
+                float gx = left + i * StrokeFont.ADVANCE * unit;
+                for ( float[] line : StrokeFont.glyph( text.charAt( i ) ) ) {
+                    for ( int k = 0; k + 3 < line.length; k += 2 ) {
+                        // Square caps join the strokes of a polyline.
+                        segment( gx + line[k] * unit,     baseline - line[k + 1] * unit,
+                                 gx + line[k + 2] * unit, baseline - line[k + 3] * unit,
+                                 w, w * 0.5f, color );
+                        strokes++;
+                    }
+                }
+            }
+            return strokes;
+        }
+
+        Mesh build( Scale scale, int width, int height, int arcSegments, int strokes ) {
+            return new Mesh( scale, width, height,
+                             Arrays.copyOf( mVertices, mVertexCount * Mesh.FLOATS_PER_VERTEX ),
+                             Arrays.copyOf( mIndices, mIndexCount ), arcSegments, strokes );
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.vumeter.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** @brief The MeterFace meshes generated so far, by scale and size, so a
+ *         layout change or a change of scale back and forth only
+ *         tessellates what it has not seen yet. The least recently used
+ *         mesh goes beyond the capacity. Any thread.
+ */
+public class MeterFaceCache {
+
+    public static final int DEFAULT_CAPACITY = 8;
+
+    private static final class Key {
+        final MeterFace.Scale mScale;
+        final int             mWidth;
+        final int             mHeight;
+
+        Key( MeterFace.Scale scale, int width, int height ) {
+            mScale  = scale;
+            mWidth  = width;
+            mHeight = height;
+        }
+
+        @Override
+        public boolean equals( Object o ) {
+            if ( !( o instanceof Key ) ) {
+                return false;
+            }
+            Key other = (Key)o;
+            return mScale == other.mScale && mWidth == other.mWidth && mHeight == other.mHeight;
+        }
+
+        @Override
+        public int hashCode() {
+            return ( mScale.ordinal() * 31 + mWidth ) * 31 + mHeight;
+        }
+    }
+
+    private final MeterGeometry            mGeometry;
+    private final Map<Key, MeterFace.Mesh> mMeshes;
+    private int                            mGenerated;
+
+    public MeterFaceCache( MeterGeometry geometry ) {
+        this( geometry, DEFAULT_CAPACITY );
+    }
+
+    public MeterFaceCache( MeterGeometry geometry, final int capacity ) {
+        mGeometry = geometry;
+        mMeshes   = new LinkedHashMap<Key, MeterFace.Mesh>( 16, 0.75f, true ) {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<Key, MeterFace.Mesh> eldest ) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** @brief The face of the scale for a base of widthPixels by heightPixels,
+     *         generated on the first call.
+     */
+    public synchronized MeterFace.Mesh get( MeterFace.Scale scale, int widthPixels, int heightPixels ) {
+        Key key = new Key( scale, widthPixels, heightPixels );
+        MeterFace.Mesh mesh = mMeshes.get( key );
+        if ( mesh == null ) {
+            mesh = MeterFace.generate( mGeometry, scale, widthPixels, heightPixels );
+            mMeshes.put( key, mesh );
+            mGenerated++;
+        }
+        return mesh;
+    }
+
+    /** @brief Meshes tessellated so far, including those evicted since. */
+    public synchronized int getGeneratedCount() {
+        return mGenerated;
+    }
+
+    public synchronized int size() {
+        return mMeshes.size();
+    }
+}
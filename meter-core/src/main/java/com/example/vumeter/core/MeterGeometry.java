@@ -0,0 +1,245 @@
+package com.example.vumeter.core;
+
+/** @brief Layout of vu_meter_texture.png and the vertices built from it.
+ *
+ *  Positions are in pixels in the xy integer coordinates of the PNG file,
+ *  where Y's positive direction is downward. The base spans the whole
+ *  viewport, so a PNG position maps to normalized device coordinates by
+ *  the base size. See VUMeterModel for the two coordinate systems.
+ *
+ *  The vertex arrays are laid out as described by VertexUploadPlan.
+ */
+public class MeterGeometry {
+
+    public final float TextureWidth             = 512.0f;
+    public final float TextureHeight            = 512.0f;
+
+    public final float BaseWidth                = 512.0f;
+    public final float BaseHeight               = 300.0f;
+
+    public final float HandTopLeftX             =   8.0f;
+    public final float HandTopLeftY             = 313.0f;
+    public final float HandBottomRightX         = 187.0f;
+    public final float HandBottomRightY         = 316.0f;
+    public final float HandRotatingCenterX      = 251.0f;
+    public final float HandRotatingCenterY      = 288.0f;
+    public final float HandBottomUprightOnBaseY = 240.0f;
+
+    public final float LEDTopLeftOnBaseX        = 414.0f;
+    public final float LEDTopLeftOnBaseY        = 116.0f;
+    public final float LEDTopLeftX              = 198.0f;
+    public final float LEDTopLeftY              = 304.0f;
+    public final float LEDBottomRightX          = 231.0f;
+    public final float LEDBottomRightY          = 339.0f;
+
+    public final float HandAngularLimitLeft     = (float)Math.PI * 3.0f/4.0f;
+    public final float HandAngularLimitRight    = (float)Math.PI * 1.0f/4.0f;
+
+    /** @brief From the rotating center to the bottom and the tip of the
+     *         hand, and half its width, in PNG pixels.
+     */
+    final float mRadiusShort   = HandRotatingCenterY - HandBottomUprightOnBaseY;
+    final float mRadiusLong    = mRadiusShort + HandBottomRightX - HandTopLeftX;
+    final float mHandHalfWidth = ( HandBottomRightY - HandTopLeftY ) * 0.5f;
+
+    /** @brief Scratch for makeHandVertices(), which runs on the GL thread only. */
+    private final float[] mCorners = new float[8];
+
+    /** @brief null while the hands are computed exactly. */
+    private volatile HandCornerTable mHandTable;
+
+    /** @brief Looks the corners of the hands up in a HandCornerTable instead
+     *         of computing them with cos() and sin(), at most
+     *         HandCornerTable.MAX_ERROR_PIXELS (0.005 pixels) off. Any
+     *         thread; the table is built by the first call that turns it on.
+     */
+    public void setLookupTables( boolean on )
+    {
+        if ( !on ) {
+            mHandTable = null;
+        }
+        else if ( mHandTable == null ) {
+            mHandTable = new HandCornerTable( this );
+        }
+    }
+
+    public boolean usesLookupTables()
+    {
+        return mHandTable != null;
+    }
+
+    /** @brief Distance from the rotating center to the tip of the hand. */
+    public float handLength()
+    {
+        return mRadiusLong;
+    }
+
+    /**  @brief Converting from PNG texture Coord to Normalized Coord */
+    public float fromTexCoordToNormCoordX(float x)
+    {
+        return ( x / BaseWidth ) * 2.0f - 1.0f;
+    }
+
+
+    /** @brief Converting from PNG texture Coord to Normalized Coord */
+    public float fromTexCoordToNormCoordYInverted(float y)
+    {
+        return ( y / BaseHeight ) * -2.0f + 1.0f;
+    }
+
+
+    /** @brief Fills the base, the LED, and the texture points of every hand.
+     *         The positions of the hands are set by makeHandVertices().
+     */
+    public void makeStaticVertices( float[] vertices, VertexUploadPlan plan )
+    {
+        // VU Meter base.
+        vertices[  0 *  5 +  0 ] = fromTexCoordToNormCoordX( BaseWidth );
+
+        vertices[  0 *  5 +  1 ] = fromTexCoordToNormCoordYInverted( BaseHeight );
+
+        vertices[  0 *  5 +  2 ] = 0.0f;
+
+        vertices[  1 *  5 +  0 ] = fromTexCoordToNormCoordX( BaseWidth );
+
+        vertices[  1 *  5 +  1 ] = fromTexCoordToNormCoordYInverted(0.0f );
+
+        vertices[  1 *  5 +  2 ] = 0.0f;
+
+        vertices[  2 *  5 +  0 ] = fromTexCoordToNormCoordX(0.0f );
+
+        vertices[  2 *  5 +  1 ] = fromTexCoordToNormCoordYInverted( 0.0f );
+
+        vertices[  2 *  5 +  2 ] = 0.0f;
+
+        vertices[  3 *  5 +  0 ] = fromTexCoordToNormCoordX(0.0f);
+
+        vertices[  3 *  5 +  1 ] = fromTexCoordToNormCoordYInverted( BaseHeight );
+
+        vertices[  3 *  5 +  2 ] = 0.0f;
+
+        // LED
+        float LEDWidth  = LEDBottomRightX - LEDTopLeftX;
+        float LEDHeight = LEDBottomRightY - LEDTopLeftY;
+
+        vertices[  4 *  5 +  0 ] = fromTexCoordToNormCoordX( LEDTopLeftOnBaseX + LEDWidth );
+
+        vertices[  4 *  5 +  1 ] = fromTexCoordToNormCoordYInverted(LEDTopLeftOnBaseY + LEDHeight );
+
+        vertices[  4 *  5 +  2 ] = 0.0f;
+
+        vertices[  5 *  5 +  0 ] = fromTexCoordToNormCoordX( LEDTopLeftOnBaseX + LEDWidth );
+
+        vertices[  5 *  5 +  1 ] = fromTexCoordToNormCoordYInverted( LEDTopLeftOnBaseY  );
+
+        vertices[  5 *  5 +  2 ] = 0.0f;
+
+        vertices[  6 *  5 +  0 ] = fromTexCoordToNormCoordX( LEDTopLeftOnBaseX );
+
+        vertices[  6 *  5 +  1 ] = fromTexCoordToNormCoordYInverted( LEDTopLeftOnBaseY );
+
+        vertices[  6 *  5 +  2 ] = 0.0f;
+
+        vertices[  7 *  5 +  0 ] = fromTexCoordToNormCoordX( LEDTopLeftOnBaseX );
+
+        vertices[  7 *  5 +  1 ] = fromTexCoordToNormCoordYInverted(LEDTopLeftOnBaseY + LEDHeight );
+
+        vertices[  7 *  5 +  2 ] = 0.0f;
+
+        // Base
+        vertices[  0 *  5  + 3 ] = BaseWidth  / TextureWidth;
+        vertices[  0 *  5  + 4 ] = BaseHeight / TextureHeight;
+        vertices[  1 *  5  + 3 ] = BaseWidth  / TextureWidth;
+        vertices[  1 *  5  + 4 ] = 0.0f;
+        vertices[  2 *  5  + 3 ] = 0.0f;
+        vertices[  2 *  5  + 4 ] = 0.0f;
+        vertices[  3 *  5  + 3 ] = 0.0f;
+        vertices[  3 *  5  + 4 ] = BaseHeight / TextureHeight;
+
+        // LED
+        vertices[  4 *  5  + 3 ] = LEDBottomRightX / TextureWidth;
+        vertices[  4 *  5  + 4 ] = LEDBottomRightY / TextureHeight;
+        vertices[  5 *  5  + 3 ] = LEDBottomRightX / TextureWidth;
+        vertices[  5 *  5  + 4 ] = LEDTopLeftY     / TextureHeight;
+        vertices[  6 *  5  + 3 ] = LEDTopLeftX     / TextureWidth;
+        vertices[  6 *  5  + 4 ] = LEDTopLeftY     / TextureHeight;
+        vertices[  7 *  5  + 3 ] = LEDTopLeftX     / TextureWidth;
+        vertices[  7 *  5  + 4 ] = LEDBottomRightY / TextureHeight;
+
+        // Indicator, one per channel. Only the texture points are static.
+        for ( int hand = 0; hand < plan.numHands(); hand++ ) {
+            int h = VertexUploadPlan.firstFloatOfQuad( VertexUploadPlan.quadOfHand( hand ) );
+            vertices[ h + 0 * 5 + 3 ] = HandBottomRightX / TextureWidth;
+            vertices[ h + 0 * 5 + 4 ] = HandBottomRightY / TextureHeight;
+            vertices[ h + 1 * 5 + 3 ] = HandBottomRightX / TextureWidth;
+            vertices[ h + 1 * 5 + 4 ] = HandTopLeftY     / TextureHeight;
+            vertices[ h + 2 * 5 + 3 ] = HandTopLeftX     / TextureWidth;
+            vertices[ h + 2 * 5 + 4 ] = HandTopLeftY     / TextureHeight;
+            vertices[ h + 3 * 5 + 3 ] = HandTopLeftX     / TextureWidth;
+            vertices[ h + 3 * 5 + 4 ] = HandBottomRightY / TextureHeight;
+        }
+    }
+
+    /** @brief Corners of the hand at angle theta in PNG pixels on the base,
+     *         as (x, y) pairs in the vertex order of the hand quad: top
+     *         left, top right, bottom left, bottom right of the texture.
+     */
+    public void handCorners( float[] corners, float theta )
+    {
+        HandCornerTable table = mHandTable;
+        if ( table == null || !table.corners( corners, theta ) ) {
+            exactHandCorners( corners, theta );
+        }
+    }
+
+    /** @brief handCorners() with cos() and sin(), whatever the mode. */
+    void exactHandCorners( float[] corners, float theta )
+    {
+        float cosTheta = (float)Math.cos( theta );
+        float sinTheta = (float)Math.sin( theta );
+
+        float posBottomCenterX = HandRotatingCenterX + cosTheta * mRadiusShort;
+        float posBottomCenterY = HandRotatingCenterY - sinTheta * mRadiusShort;
+        float posTopCenterX    = HandRotatingCenterX + cosTheta * mRadiusLong;
+        float posTopCenterY    = HandRotatingCenterY - sinTheta * mRadiusLong;
+
+        float offsetFromCenterToTopLeftX = mHandHalfWidth * -1.0f * sinTheta;
+        float offsetFromCenterToTopLeftY = mHandHalfWidth * cosTheta;
+
+        corners[ 0 ] = posTopCenterX    + offsetFromCenterToTopLeftX;
+        corners[ 1 ] = posTopCenterY    - offsetFromCenterToTopLeftY;
+        corners[ 2 ] = posTopCenterX    - offsetFromCenterToTopLeftX;
+        corners[ 3 ] = posTopCenterY    + offsetFromCenterToTopLeftY;
+        corners[ 4 ] = posBottomCenterX + offsetFromCenterToTopLeftX;
+        corners[ 5 ] = posBottomCenterY - offsetFromCenterToTopLeftY;
+        corners[ 6 ] = posBottomCenterX - offsetFromCenterToTopLeftX;
+        corners[ 7 ] = posBottomCenterY + offsetFromCenterToTopLeftY;
+    }
+
+    /** @brief Positions of the given hand at angle theta.
+     *         Called at every screen update (at frame rate).
+     */
+    public void makeHandVertices( float[] vertices, int hand, float theta )
+    {
+        int h = VertexUploadPlan.firstFloatOfQuad( VertexUploadPlan.quadOfHand( hand ) );
+
+        float[] corners = mCorners;
+        HandCornerTable table = mHandTable;
+        if ( table != null && table.normalizedCorners( corners, theta ) ) {
+            // Already in normalized device coordinates.
+            for ( int v = 0; v < VertexUploadPlan.VERTICES_PER_QUAD; v++ ) {
+                vertices[ h + v * 5 + 0 ] = corners[ v * 2 ];
+                vertices[ h + v * 5 + 1 ] = corners[ v * 2 + 1 ];
+                vertices[ h + v * 5 + 2 ] = 0.0f;
+            }
+            return;
+        }
+        exactHandCorners( corners, theta );
+
+        for ( int v = 0; v < VertexUploadPlan.VERTICES_PER_QUAD; v++ ) {
+            vertices[ h + v * 5 + 0 ] = fromTexCoordToNormCoordX( corners[ v * 2 ] );
+            vertices[ h + v * 5 + 1 ] = fromTexCoordToNormCoordYInverted( corners[ v * 2 + 1 ] );
+            vertices[ h + v * 5 + 2 ] = 0.0f;
+        }
+    }
+}
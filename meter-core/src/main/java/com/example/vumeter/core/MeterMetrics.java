@@ -0,0 +1,120 @@
+package com.example.vumeter.core;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** @brief Timings and counters of the hot paths, from the read of the
+ *         microphone to the frame on the screen.
+ *
+ *  One LatencyHistogram per Stage and one count per Counter. Each stage
+ *  and each counter is written by one thread only (see their comments),
+ *  so recording is a few nanoseconds without locks or allocations, and
+ *  any thread can read and report them. The values are since the start.
+ *
+ *  CaptureLoop, LevelUpdateDispatcher and NeedleMeter record into the
+ *  instance they are given; the renderer records the stages of its own.
+ */
+public class MeterMetrics {
+
+    /** @brief Timed stages, each with the thread that records it. */
+    public enum Stage {
+        /** @brief Capture thread: AudioSource.read(), waiting included. */
+        READ,
+        /** @brief Capture thread: levels, ballistics, true peak, loudness, spectrum. */
+        METER,
+        /** @brief Capture thread: the snapshot and the capture-thread listener. */
+        PUBLISH,
+        /** @brief Listener thread: from the post of a level update to its delivery. */
+        DISPATCH_HOP,
+        /** @brief GL thread: NeedleMeter.updateFromCapture(). */
+        UPDATE,
+        /** @brief GL thread: the vertices of the hands. */
+        VERTICES,
+        /** @brief GL thread: the GL calls of a frame. */
+        RENDER,
+        /** @brief GL thread: from the capture of the newest sample to the frame. */
+        CAPTURE_TO_RENDER,
+        /** @brief GL thread: from the publication of a snapshot to the frame. */
+        PUBLISH_TO_RENDER
+    }
+
+    /** @brief Counted events, each with the thread that counts it. */
+    public enum Counter {
+        /** @brief Capture thread: blocks read and metered. */
+        BLOCKS_READ,
+        /** @brief Capture thread: reads that returned less than a block. */
+        SHORT_READS,
+        /** @brief Capture thread: reads that returned an error; the loop ends. */
+        READ_ERRORS,
+        /** @brief Capture thread: blocks dropped to catch up with the source. */
+        BLOCKS_DROPPED,
+        /** @brief Capture thread: level updates handed to the dispatcher. */
+        LEVELS_PUBLISHED,
+        /** @brief Capture thread: runnables posted to the listener's thread. */
+        LEVELS_POSTED,
+        /** @brief Listener thread: level updates delivered to the listener. */
+        LEVELS_CONSUMED,
+        /** @brief GL thread: frames drawn. */
+        FRAMES_RENDERED
+    }
+
+    private static final Stage[]   STAGES   = Stage.values();
+    private static final Counter[] COUNTERS = Counter.values();
+
+    private final LatencyHistogram[] mHistograms = new LatencyHistogram[STAGES.length];
+    private final AtomicLongArray    mCounts     = new AtomicLongArray( COUNTERS.length );
+
+    public MeterMetrics() {
+        for ( int i = 0; i < mHistograms.length; i++ ) {
+            mHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public LatencyHistogram histogram( Stage stage ) {
+        return mHistograms[ stage.ordinal() ];
+    }
+
+    /** @brief On the thread of the stage. */
+    public void record( Stage stage, long nanos ) {
+        mHistograms[ stage.ordinal() ].record( nanos );
+    }
+
+    /** @brief On the thread of the counter. A single writer, so an ordered
+     *         store does instead of an atomic increment.
+     */
+    public void increment( Counter counter ) {
+        int i = counter.ordinal();
+        mCounts.lazySet( i, mCounts.get( i ) + 1 );
+    }
+
+    public void add( Counter counter, long delta ) {
+        int i = counter.ordinal();
+        mCounts.lazySet( i, mCounts.get( i ) + delta );
+    }
+
+    public long get( Counter counter ) {
+        return mCounts.get( counter.ordinal() );
+    }
+
+    /** @brief One line per stage with records and one with all counters.
+     *         For the log and the overlay; allocates.
+     */
+    public String report() {
+        StringBuilder out = new StringBuilder();
+        for ( Stage stage : STAGES ) {
+            LatencyHistogram histogram = histogram( stage );
+            if ( histogram.getCount() == 0 ) {
+                continue;
+            }
+            out.append( stage.name().toLowerCase( Locale.ROOT ) ).append( ' ' );
+            histogram.appendTo( out );
+            out.append( '\n' );
+        }
+        for ( int i = 0; i < COUNTERS.length; i++ ) {
+            out.append( i == 0 ? "" : " " )
+               .append( COUNTERS[i].name().toLowerCase( Locale.ROOT ) )
+               .append( '=' ).append( mCounts.get( i ) );
+        }
+        return out.toString();
+    }
+}
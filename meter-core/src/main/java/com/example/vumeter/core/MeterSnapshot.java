@@ -0,0 +1,183 @@
+package com.example.vumeter.core;
+
+/** @brief One consistent reading of the meter state produced by the
+ *         capture thread: block RMS, block peak, true peak and ballistic
+ *         reading per channel, the loudness of the program, the overload
+ *         state, and the time it was taken.
+ *
+ *  Instances are owned by MeterStateTripleBuffer and are never shared
+ *  between the producer and the consumer at the same time.
+ */
+public class MeterSnapshot {
+
+    public static final int MAX_CHANNELS = 2;
+
+    /** @brief Third octaves from 20 Hz to 20 kHz fit. */
+    public static final int MAX_BANDS    = 32;
+
+    int        mChannelCount;
+    final int[] mRMS  = new int[MAX_CHANNELS];
+    final int[] mPeak = new int[MAX_CHANNELS];
+
+    /** @brief Reading of the Ballistics after the last sample of the block. */
+    final float[] mLevel = new float[MAX_CHANNELS];
+
+    /** @brief TruePeakDetector level of the block, linear, 1.0 at 0 dBTP. */
+    final float[] mTruePeak = new float[MAX_CHANNELS];
+
+    /** @brief True if the true peak of any channel reached the overload
+     *         threshold in this block.
+     */
+    boolean mOverload;
+
+    /** @brief Overloaded blocks so far. mLastOverloadNanos is valid if > 0. */
+    long mOverloadCount;
+
+    /** @brief mTimestampNanos of the last overloaded block. Latched, so a
+     *         reader that skips snapshots still sees it.
+     */
+    long mLastOverloadNanos;
+
+    /** @brief LoudnessMeter readings after the block, LUFS and LU. */
+    float mMomentaryLUFS;
+    float mShortTermLUFS;
+    float mIntegratedLUFS;
+    float mLoudnessRangeLU;
+
+    /** @brief SpectrumAnalyzer band levels in dB, 0 bands if it is off. */
+    int mBandCount;
+    final float[] mBandDB = new float[MAX_BANDS];
+
+    /** @brief Duration of the audio in the block. */
+    long mBlockNanos;
+
+    /** @brief System.nanoTime() when the block was metered. */
+    long mTimestampNanos;
+
+    /** @brief System.nanoTime() when the newest sample of the block was
+     *         captured, see CaptureTimestamps.
+     */
+    long mCaptureNanos;
+
+    /** @brief Frames dropped unmetered so far to catch up with the source. */
+    long mDroppedFrames;
+
+    /** @brief 1, 2, 3, ... in publication order. 0 means nothing published yet. */
+    long mSequence;
+
+    public int getChannelCount() {
+        return mChannelCount;
+    }
+
+    public int getRMS( int channel ) {
+        return mRMS[channel];
+    }
+
+    public int getPeak( int channel ) {
+        return mPeak[channel];
+    }
+
+    public float getLevel( int channel ) {
+        return mLevel[channel];
+    }
+
+    public float getTruePeak( int channel ) {
+        return mTruePeak[channel];
+    }
+
+    public boolean isOverload() {
+        return mOverload;
+    }
+
+    public long getOverloadCount() {
+        return mOverloadCount;
+    }
+
+    public long getLastOverloadNanos() {
+        return mLastOverloadNanos;
+    }
+
+    public float getMomentaryLUFS() {
+        return mMomentaryLUFS;
+    }
+
+    public float getShortTermLUFS() {
+        return mShortTermLUFS;
+    }
+
+    public float getIntegratedLUFS() {
+        return mIntegratedLUFS;
+    }
+
+    public float getLoudnessRangeLU() {
+        return mLoudnessRangeLU;
+    }
+
+    public int getBandCount() {
+        return mBandCount;
+    }
+
+    public float getBandDB( int band ) {
+        return mBandDB[band];
+    }
+
+    public long getBlockNanos() {
+        return mBlockNanos;
+    }
+
+    public long getTimestampNanos() {
+        return mTimestampNanos;
+    }
+
+    public long getCaptureNanos() {
+        return mCaptureNanos;
+    }
+
+    public long getDroppedFrames() {
+        return mDroppedFrames;
+    }
+
+    public long getSequence() {
+        return mSequence;
+    }
+
+    public void copyFrom( MeterSnapshot other ) {
+        mChannelCount   = other.mChannelCount;
+        System.arraycopy( other.mRMS,   0, mRMS,   0, MAX_CHANNELS );
+        System.arraycopy( other.mPeak,  0, mPeak,  0, MAX_CHANNELS );
+        System.arraycopy( other.mLevel, 0, mLevel, 0, MAX_CHANNELS );
+        System.arraycopy( other.mTruePeak, 0, mTruePeak, 0, MAX_CHANNELS );
+        mOverload          = other.mOverload;
+        mOverloadCount     = other.mOverloadCount;
+        mLastOverloadNanos = other.mLastOverloadNanos;
+        mMomentaryLUFS     = other.mMomentaryLUFS;
+        mShortTermLUFS     = other.mShortTermLUFS;
+        mIntegratedLUFS    = other.mIntegratedLUFS;
+        mLoudnessRangeLU   = other.mLoudnessRangeLU;
+        mBandCount         = other.mBandCount;
+        System.arraycopy( other.mBandDB, 0, mBandDB, 0, MAX_BANDS );
+        mBlockNanos     = other.mBlockNanos;
+        mTimestampNanos = other.mTimestampNanos;
+        mCaptureNanos   = other.mCaptureNanos;
+        mDroppedFrames  = other.mDroppedFrames;
+        mSequence       = other.mSequence;
+    }
+
+    /** @brief Largest peak over all channels. */
+    public int maxPeak() {
+        int max = 0;
+        for ( int ch = 0; ch < mChannelCount; ch++ ) {
+            max = Math.max( max, mPeak[ch] );
+        }
+        return max;
+    }
+
+    /** @brief Largest true peak over all channels. */
+    public float maxTruePeak() {
+        float max = 0.0f;
+        for ( int ch = 0; ch < mChannelCount; ch++ ) {
+            max = Math.max( max, mTruePeak[ch] );
+        }
+        return max;
+    }
+}
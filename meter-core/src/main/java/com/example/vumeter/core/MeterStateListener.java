@@ -0,0 +1,11 @@
+package com.example.vumeter.core;
+
+/** @brief Notified on the capture thread right after a snapshot has been
+ *         published to the MeterStateTripleBuffer. Implementations must not
+ *         block, allocate or keep the snapshot beyond the call.
+ */
+public interface MeterStateListener {
+
+    void onMeterStatePublished( MeterSnapshot snapshot );
+
+}
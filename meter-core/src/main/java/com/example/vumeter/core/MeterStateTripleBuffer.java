@@ -0,0 +1,78 @@
+package com.example.vumeter.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** @brief Lock-free single-producer/single-consumer hand-off of MeterSnapshot
+ *         from the capture thread to the GL thread.
+ *
+ *  Three preallocated slots rotate between the producer (back), the
+ *  consumer (front) and a shared middle slot. Publishing swaps the back
+ *  slot with the middle one and marks it fresh; reading swaps the front
+ *  slot with the middle one only if it is fresh. Both sides are a single
+ *  getAndSet(), so neither side ever waits for the other and the reader
+ *  always sees a snapshot that was completely written.
+ *
+ *                    publish()             read()
+ *      [ back ]  <-------------> [ middle ] <-------------> [ front ]
+ *    capture thread                                          GL thread
+ */
+public class MeterStateTripleBuffer {
+
+    private static final int INDEX_MASK = 0x3;
+    private static final int FRESH_BIT  = 0x4;
+
+    private final MeterSnapshot[] mSlots = new MeterSnapshot[] {
+        new MeterSnapshot(), new MeterSnapshot(), new MeterSnapshot()
+    };
+
+    /** @brief Index of the middle slot, or'ed with FRESH_BIT if unread. */
+    private final AtomicInteger mMiddle = new AtomicInteger(1);
+
+    /** @brief Owned by the producer. */
+    private int  mBack     = 0;
+    private long mSequence = 0;
+
+    /** @brief Owned by the consumer. */
+    private int  mFront    = 2;
+
+    /** @brief Producer side. Returns the slot to fill before publish(). */
+    public MeterSnapshot beginWrite() {
+        return mSlots[mBack];
+    }
+
+    /** @brief Producer side. Makes the slot returned by beginWrite() visible
+     *         and returns it. The producer may still read the returned slot
+     *         until its next call to beginWrite().
+     */
+    public MeterSnapshot publish() {
+        MeterSnapshot published = mSlots[mBack];
+        published.mSequence = ++mSequence;
+        mBack = mMiddle.getAndSet( mBack | FRESH_BIT ) & INDEX_MASK;
+        return published;
+    }
+
+    /** @brief Producer side convenience for a single channel. */
+    public void publish( int rms, int peak, long timestampNanos ) {
+        MeterSnapshot s = beginWrite();
+        s.mChannelCount   = 1;
+        s.mRMS[0]         = rms;
+        s.mPeak[0]        = peak;
+        s.mTimestampNanos = timestampNanos;
+        publish();
+    }
+
+    /** @brief Consumer side. Returns the latest published snapshot. The
+     *         returned object stays valid and unchanged until the next call.
+     */
+    public MeterSnapshot read() {
+        if ( ( mMiddle.get() & FRESH_BIT ) != 0 ) {
+            mFront = mMiddle.getAndSet( mFront ) & INDEX_MASK;
+        }
+        return mSlots[mFront];
+    }
+
+    /** @brief Consumer side. True if read() would return a newer snapshot. */
+    public boolean hasUpdate() {
+        return ( mMiddle.get() & FRESH_BIT ) != 0;
+    }
+}
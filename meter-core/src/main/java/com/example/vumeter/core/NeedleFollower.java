@@ -0,0 +1,106 @@
+package com.example.vumeter.core;
+
+/** @brief Moves the hand through the angles of the published readings.
+ *
+ *  The ballistics themselves are computed per sample on the capture thread
+ *  (see Ballistics), so the hand adds no dynamics of its own. Readings
+ *  arrive once per capture block, and every block is drawn as a straight
+ *  move from where the hand is to the new angle over the duration of the
+ *  block. The hand lags the audio by one block and moves smoothly at any
+ *  frame rate and any block size.
+ *
+ *  Pure Java, no Android dependencies. Not thread safe: owned by the GL thread.
+ */
+public class NeedleFollower {
+
+    private final float mAngularLimitLeft;
+    private final float mAngularLimitRight;
+
+    private float   mFrom;
+    private float   mTo;
+    private float   mTheta;
+    private long    mStartNanos;
+    private long    mDurationNanos;
+
+    private boolean mPending;
+    private float   mPendingTarget;
+    private long    mPendingDurationNanos;
+
+    public NeedleFollower( float angularLimitLeft, float angularLimitRight ) {
+        mAngularLimitLeft  = angularLimitLeft;
+        mAngularLimitRight = angularLimitRight;
+        reset( angularLimitLeft );
+    }
+
+    /** @brief Parks the hand at theta. */
+    public void reset( float theta ) {
+        mFrom          = theta;
+        mTo            = theta;
+        mTheta         = theta;
+        mStartNanos    = 0L;
+        mDurationNanos = 0L;
+        mPending       = false;
+    }
+
+    /** @brief The angle of a new reading, to be reached durationNanos after
+     *         the next advanceTo(). Only the latest one before advanceTo()
+     *         counts.
+     */
+    public void setTarget( float targetTheta, long durationNanos ) {
+        mPending              = true;
+        mPendingTarget        = clamp( targetTheta );
+        mPendingDurationNanos = Math.max( 0L, durationNanos );
+    }
+
+    /** @brief Moves the hand to the given monotonic time (System.nanoTime()). */
+    public void advanceTo( long nowNanos ) {
+        if ( mPending ) {
+            // Continue from where the previous move is now, not from where
+            // it was drawn last.
+            mTheta         = thetaAt( nowNanos );
+            mPending       = false;
+            mFrom          = mTheta;
+            mTo            = mPendingTarget;
+            mStartNanos    = nowNanos;
+            mDurationNanos = mPendingDurationNanos;
+        }
+        mTheta = thetaAt( nowNanos );
+    }
+
+    private float thetaAt( long nowNanos ) {
+        float progress = progress( nowNanos );
+        return progress >= 1.0f ? mTo : mFrom + ( mTo - mFrom ) * progress;
+    }
+
+    private float progress( long nowNanos ) {
+        long elapsed = nowNanos - mStartNanos;
+        if ( mDurationNanos <= 0L || elapsed >= mDurationNanos ) {
+            return 1.0f;
+        }
+        if ( elapsed <= 0L ) {
+            return 0.0f;
+        }
+        return (float)elapsed / (float)mDurationNanos;
+    }
+
+    private float clamp( float theta ) {
+        return Math.max( mAngularLimitRight, Math.min( mAngularLimitLeft, theta ) );
+    }
+
+    /** @brief Angle at the last advanceTo(). */
+    public float getTheta() {
+        return mTheta;
+    }
+
+    /** @brief In rad/s while moving toward the target, 0 once there. */
+    public float getVelocity() {
+        if ( mTheta == mTo || mDurationNanos <= 0L ) {
+            return 0.0f;
+        }
+        return ( mTo - mFrom ) / ( mDurationNanos / 1.0e9f );
+    }
+
+    public float getTarget() {
+        return mPending ? mPendingTarget : mTo;
+    }
+}
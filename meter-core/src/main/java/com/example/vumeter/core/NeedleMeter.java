@@ -0,0 +1,375 @@
+package com.example.vumeter.core;
+
+/** @brief The hands of the meter, one per channel, driven by the snapshots
+ *         of a MeterStateTripleBuffer.
+ *
+ *  Maps the ballistic reading of each snapshot, or the loudness of the
+ *  program (see Scale), to an angle on the scale,
+ *  moves the hands there with NeedleFollower and decides with RedrawPolicy
+ *  when a frame has to be requested. The overload LED follows the
+ *  overloads latched in the snapshots through an OverloadLed, and the
+ *  optional SpectrumBars follow the band levels. The latency of every
+ *  snapshot, from the capture of its newest sample and from its
+ *  publication to the frame that first draws it, and the time taken by
+ *  updateFromCapture() go to MeterMetrics.
+ *  onMeterStatePublished() runs on the capture thread; everything else on
+ *  the GL thread.
+ */
+public class NeedleMeter implements MeterStateListener {
+
+    /** @brief What the hands show. */
+    public enum Scale {
+        /** @brief The ballistic reading of each channel in dB, calibrated
+         *         to the microphone.
+         */
+        MIC_DB,
+        /** @brief Momentary loudness (400 ms) of the program, on all hands. */
+        MOMENTARY_LUFS,
+        /** @brief Short-term loudness (3 s) of the program, on all hands. */
+        SHORT_TERM_LUFS
+    }
+
+    final float AmplitudeRef             = ((float)Short.MAX_VALUE) / 1.4142135623f;
+
+
+    final float DynamicRangeFloorDB      = -96.0f;
+
+    // Following two parameters depend on the microphone and the amplifier.
+    final float MicGainCalibFloorDB      = -55.0f;
+    final float MicGainCalibPeakDB       =  -0.0f;
+
+    // The EBU +9 scale: -18 LU to +9 LU around the -23 LUFS target.
+    final float LoudnessScaleFloorLUFS   = -41.0f;
+    final float LoudnessScalePeakLUFS    = -14.0f;
+
+    /** @brief Set on any thread, read on the capture and the GL thread. */
+    private volatile Scale mScale = Scale.MIC_DB;
+
+    /** @brief Maps the readings with FastLog2 instead of log10(). Same threads. */
+    private volatile boolean mLookupTables;
+
+    /** @brief targetThetaFor( level ) = mThetaAtLevelOne + mThetaPerOctave * log2( level ). */
+    private final float mThetaPerOctave;
+    private final float mThetaAtLevelOne;
+
+    /** @brief null while the spectrum is not shown. */
+    private volatile SpectrumBars mSpectrum;
+
+    private final MeterGeometry          mGeometry;
+    private final MeterStateTripleBuffer mMeterState;
+    private final RenderRequester        mRenderRequester;
+
+    /** @brief One hand per captured channel. Indexed by channel. */
+    final float[]         mTheta;
+    final NeedleFollower[] mFollower;
+    final RedrawPolicy[]   mRedrawPolicy;
+
+    final float[]          mLevel;
+    final float[]          mTargetTheta;
+
+    /** @brief Recorded on the GL thread, read on any. */
+    private MeterMetrics   mMetrics = new MeterMetrics();
+
+    final OverloadLed      mLed = new OverloadLed();
+    float                  mLedBrightness;
+    private long           mOverloadCount;
+
+    public NeedleMeter( MeterGeometry geometry, int channels,
+                        MeterStateTripleBuffer meterState, RenderRequester renderRequester ) {
+        mGeometry        = geometry;
+        mMeterState      = meterState;
+        mRenderRequester = renderRequester;
+
+        mTheta        = new float[channels];
+        mLevel        = new float[channels];
+        mTargetTheta  = new float[channels];
+        mFollower     = new NeedleFollower[channels];
+        mRedrawPolicy = new RedrawPolicy[channels];
+
+        float thetaPerDB = ( geometry.HandAngularLimitRight - geometry.HandAngularLimitLeft )
+                         / ( MicGainCalibPeakDB - MicGainCalibFloorDB );
+        mThetaPerOctave  = thetaPerDB * FastLog2.DB_PER_OCTAVE;
+        mThetaAtLevelOne = geometry.HandAngularLimitLeft
+                         + thetaPerDB * ( (float)( -20.0 * Math.log10( AmplitudeRef ) ) - MicGainCalibFloorDB );
+
+        for ( int ch = 0; ch < channels; ch++ ) {
+            mFollower[ch] = new NeedleFollower( geometry.HandAngularLimitLeft, geometry.HandAngularLimitRight );
+            mRedrawPolicy[ch] = new RedrawPolicy( geometry.handLength(), geometry.BaseWidth, geometry.BaseHeight,
+                                                  RedrawPolicy.DEFAULT_THRESHOLD_PIXELS );
+        }
+
+        resetHands();
+    }
+
+    public int getChannelCount() {
+        return mTheta.length;
+    }
+
+    public Scale getScale() {
+        return mScale;
+    }
+
+    /** @brief Switches what the hands show, from the next snapshot on. */
+    public void setScale( Scale scale ) {
+        mScale = scale;
+    }
+
+    /** @brief Maps the readings to angles with FastLog2 rather than log10(),
+     *         at most 3e-6 radians (1e-4 dB) off, from the next snapshot on.
+     *         See also MeterGeometry.setLookupTables().
+     */
+    public void setLookupTables( boolean on ) {
+        mLookupTables = on;
+    }
+
+    public boolean usesLookupTables() {
+        return mLookupTables;
+    }
+
+    /** @brief Shows the band levels on the bars, or nothing with null. */
+    public void setSpectrum( SpectrumBars bars ) {
+        mSpectrum = bars;
+    }
+
+    public SpectrumBars getSpectrum() {
+        return mSpectrum;
+    }
+
+    /** @brief From the capture of the newest sample of each snapshot to
+     *         the updateFromCapture() of the frame that first shows it.
+     */
+    public LatencyHistogram getCaptureToRenderLatency() {
+        return mMetrics.histogram( MeterMetrics.Stage.CAPTURE_TO_RENDER );
+    }
+
+    /** @brief From the publication of each snapshot by the capture thread
+     *         to the updateFromCapture() of the frame that first shows it.
+     */
+    public LatencyHistogram getPublishToRenderLatency() {
+        return mMetrics.histogram( MeterMetrics.Stage.PUBLISH_TO_RENDER );
+    }
+
+    /** @brief Where the GL thread records. Call on the GL thread, or before
+     *         it starts.
+     */
+    public void setMetrics( MeterMetrics metrics ) {
+        mMetrics = metrics;
+    }
+
+    public MeterMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /** @brief Angle of the hand of the given channel to draw. */
+    public float getTheta( int channel ) {
+        return mTheta[channel];
+    }
+
+
+    /** @brief Called on the capture thread after each published snapshot.
+     *         Wakes the renderer up only if the result would be visible.
+     */
+    @Override
+    public void onMeterStatePublished( MeterSnapshot snapshot )
+    {
+        boolean led  = snapshot.mOverload;
+        boolean wake = false;
+
+        int channels = Math.min( snapshot.mChannelCount, mRedrawPolicy.length );
+        for ( int ch = 0; ch < channels; ch++ ) {
+            float targetTheta = clampToScale( targetThetaFor( snapshot, ch ) );
+            wake |= mRedrawPolicy[ch].shouldWakeForLevel( targetTheta, led );
+        }
+
+        SpectrumBars spectrum = mSpectrum;
+        if ( spectrum != null ) {
+            wake |= spectrum.shouldWakeForLevels( snapshot );
+        }
+
+        if ( wake ) {
+            mRenderRequester.requestRender();
+        }
+    }
+
+
+    /** @brief Called on the GL thread when the surface size changes. */
+    public void setViewportSize( int width, int height )
+    {
+        for ( RedrawPolicy policy : mRedrawPolicy ) {
+            policy.setViewportSize( width, height );
+        }
+    }
+
+
+    /** @brief Pulls the latest snapshot published by the capture thread and
+     *         moves the hands to the frame time. Called on the GL thread
+     *         before every frame.
+     */
+    public void updateFromCapture( long frameTimeNanos )
+    {
+        MeterMetrics metrics = mMetrics;
+        long start = System.nanoTime();
+        SpectrumBars spectrum = mSpectrum;
+        if ( mMeterState.hasUpdate() ) {
+            MeterSnapshot snapshot = mMeterState.read();
+            if ( snapshot.mTimestampNanos != 0L ) {
+                metrics.record( MeterMetrics.Stage.CAPTURE_TO_RENDER, frameTimeNanos - snapshot.mCaptureNanos );
+                metrics.record( MeterMetrics.Stage.PUBLISH_TO_RENDER, frameTimeNanos - snapshot.mTimestampNanos );
+            }
+            int channels = Math.min( snapshot.mChannelCount, mLevel.length );
+            for ( int ch = 0; ch < channels; ch++ ) {
+                mLevel[ch]       = snapshot.mLevel[ch];
+                mTargetTheta[ch] = targetThetaFor( snapshot, ch );
+            }
+            if ( snapshot.mOverloadCount != mOverloadCount ) {
+                mOverloadCount = snapshot.mOverloadCount;
+                mLed.trigger( snapshot.mLastOverloadNanos );
+            }
+
+            if ( spectrum != null ) {
+                spectrum.setLevels( snapshot );
+            }
+
+            updateTargets( snapshot.mBlockNanos );
+        }
+        if ( spectrum != null ) {
+            spectrum.advanceTo( frameTimeNanos );
+        }
+
+        for ( int ch = 0; ch < mFollower.length; ch++ ) {
+            mFollower[ch].advanceTo( frameTimeNanos );
+            mTheta[ch] = mFollower[ch].getTheta();
+        }
+        mLedBrightness = mLed.getBrightness( frameTimeNanos );
+        metrics.record( MeterMetrics.Stage.UPDATE, System.nanoTime() - start );
+    }
+
+
+    /** @brief Called on the GL thread after a frame has been drawn. Requests
+     *         the next frame while a hand is still moving, the LED is lit
+     *         or a bar is falling.
+     */
+    public void onFrameDrawn()
+    {
+        boolean led           = peaked();
+        boolean keepAnimating = false;
+
+        for ( int ch = 0; ch < mFollower.length; ch++ ) {
+            NeedleFollower follower = mFollower[ch];
+            keepAnimating |= mRedrawPolicy[ch].onFrameDrawn(
+                    mTheta[ch], follower.getVelocity(), follower.getTarget(), led );
+        }
+
+        SpectrumBars spectrum = mSpectrum;
+        if ( spectrum != null ) {
+            keepAnimating |= spectrum.isFalling();
+        }
+
+        if ( !keepAnimating ) {
+            // A level published while this frame was being drawn saw the
+            // meter as animating and did not wake it up. Catch it here.
+            keepAnimating = mMeterState.hasUpdate();
+        }
+
+        if ( keepAnimating ) {
+            mRenderRequester.requestRender();
+        }
+    }
+
+    /** @brief True if the LED is lit, held or fading, at the last frame. */
+    public boolean peaked()
+    {
+        return mLedBrightness > 0.0f;
+    }
+
+    /** @brief 0 (off) to 1 (fully lit) at the last frame. */
+    public float getLedBrightness()
+    {
+        return mLedBrightness;
+    }
+
+    /** @brief Hold and release of the LED. GL thread. */
+    public void setLedTiming( long holdNanos, long releaseNanos )
+    {
+        mLed.setTiming( holdNanos, releaseNanos );
+    }
+
+    public void resetHands()
+    {
+        for ( int ch = 0; ch < mFollower.length; ch++ ) {
+            mLevel[ch] = 0.0f;
+            mTargetTheta[ch] = mGeometry.HandAngularLimitLeft;
+            mTheta[ch] = mGeometry.HandAngularLimitLeft;
+            mFollower[ch].reset( mGeometry.HandAngularLimitLeft );
+        }
+        mLed.reset();
+        mLedBrightness = 0.0f;
+    }
+
+
+    /** @brief Sets the target angles of the hands from the latest readings,
+     *         to be reached over the duration of the block they came from.
+     */
+    void updateTargets( long blockNanos )
+    {
+        for ( int ch = 0; ch < mFollower.length; ch++ ) {
+            mFollower[ch].setTarget( mTargetTheta[ch], blockNanos );
+        }
+    }
+
+
+    float clampToScale( float theta )
+    {
+        return Math.max( mGeometry.HandAngularLimitRight, Math.min( mGeometry.HandAngularLimitLeft, theta ) );
+    }
+
+
+    /** @brief Angle for the given channel of the snapshot on the current scale. */
+    float targetThetaFor( MeterSnapshot snapshot, int channel )
+    {
+        switch ( mScale ) {
+            case MOMENTARY_LUFS:
+                return targetThetaForLUFS( snapshot.mMomentaryLUFS );
+            case SHORT_TERM_LUFS:
+                return targetThetaForLUFS( snapshot.mShortTermLUFS );
+            case MIC_DB:
+            default:
+                return targetThetaFor( snapshot.mLevel[channel] );
+        }
+    }
+
+
+    /** @param lufs loudness, -infinity for silence. */
+    float targetThetaForLUFS( float lufs )
+    {
+        if ( !( lufs > LoudnessScaleFloorLUFS ) ) {
+            return mGeometry.HandAngularLimitLeft;
+        }
+        return mGeometry.HandAngularLimitLeft
+                + ( mGeometry.HandAngularLimitRight - mGeometry.HandAngularLimitLeft )
+                * ( lufs - LoudnessScaleFloorLUFS )
+                / ( LoudnessScalePeakLUFS - LoudnessScaleFloorLUFS );
+    }
+
+
+    /** @param level reading in 16-bit sample units, as the RMS of a sine. */
+    float targetThetaFor( float level )
+    {
+        if ( level < 1.0f ) {
+            level = 1.0f;
+        }
+
+        if ( mLookupTables ) {
+            return mThetaAtLevelOne + mThetaPerOctave * FastLog2.log2( level );
+        }
+
+        // The range of micDB is expected to be in
+        // [ MicGainCalibFloorDB ,MicGainCalibPeakDB ].
+
+        float micDB = (float)(20.0 * Math.log10( level / AmplitudeRef ));
+        return mGeometry.HandAngularLimitLeft
+                + ( mGeometry.HandAngularLimitRight - mGeometry.HandAngularLimitLeft )
+                * ( micDB - MicGainCalibFloorDB )
+                / ( MicGainCalibPeakDB - MicGainCalibFloorDB );
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.vumeter.core;
+
+/** @brief Meters a whole program as fast as the CPU allows, e.g. a
+ *         WavAudioSource, into a LevelReport.
+ *
+ *  The same CaptureLoop as the live meter runs on the calling thread, with
+ *  no maximum lag, so no block is dropped however far the loop is from real
+ *  time. The readings are those the hands would have shown. Configure the
+ *  loop with getLoop() before run(), e.g. its overload threshold.
+ */
+public class OfflineMeter {
+
+    public static final long DEFAULT_INTERVAL_NANOS = 100000000L;
+
+    private final AudioSource mSource;
+    private final CaptureLoop mLoop;
+
+    public OfflineMeter( AudioSource source ) {
+        this( source, Ballistics.Mode.VU );
+    }
+
+    public OfflineMeter( AudioSource source, Ballistics.Mode mode ) {
+        mSource = source;
+        mLoop   = new CaptureLoop( source, mode );
+        mLoop.setMaxLag( Long.MAX_VALUE );
+    }
+
+    public CaptureLoop getLoop() {
+        return mLoop;
+    }
+
+    public LevelReport run() {
+        return run( DEFAULT_INTERVAL_NANOS );
+    }
+
+    /** @brief Meters the source to its end, then releases it.
+     *  @param intervalNanos length of the rows of the report, at least a
+     *                       block.
+     */
+    public LevelReport run( long intervalNanos ) {
+        if ( intervalNanos < mLoop.getBlockNanos() ) {
+            throw new IllegalArgumentException( "interval " + intervalNanos
+                                              + " ns is shorter than a block of " + mLoop.getBlockNanos() + " ns" );
+        }
+        CaptureConfig config = mLoop.getConfig();
+        final LevelReport report = new LevelReport( config.getChannelCount(), config.getSampleRate(),
+                                                    intervalNanos );
+        mLoop.setCaptureThreadListener( new MeterStateListener() {
+            @Override
+            public void onMeterStatePublished( MeterSnapshot snapshot ) {
+                report.add( mLoop.getFramesRead(), snapshot );
+            }
+        } );
+        long start = System.nanoTime();
+        try {
+            mLoop.run();
+        }
+        finally {
+            mLoop.setCaptureThreadListener( null );
+            mSource.release();
+        }
+        report.finish( mLoop.getFramesRead(), System.nanoTime() - start );
+        return report;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.vumeter.core;
+
+/** @brief Brightness of the overload LED over time.
+ *
+ *  The capture thread decides which blocks are overloaded (see
+ *  CaptureLoop.setOverloadThreshold()) and latches the time of the last one
+ *  in the MeterSnapshot, so an overload is never lost between two frames.
+ *  From that time the LED is fully lit for the hold time and then fades out
+ *  linearly over the release time.
+ *
+ *  Pure Java, no Android dependencies. Not thread safe: owned by the GL thread.
+ */
+public class OverloadLed {
+
+    public static final long DEFAULT_HOLD_NANOS    = 1000000000L;
+    public static final long DEFAULT_RELEASE_NANOS =  300000000L;
+
+    private long    mHoldNanos    = DEFAULT_HOLD_NANOS;
+    private long    mReleaseNanos = DEFAULT_RELEASE_NANOS;
+
+    private boolean mTriggered;
+    private long    mLastOverloadNanos;
+
+    public OverloadLed() {
+    }
+
+    public OverloadLed( long holdNanos, long releaseNanos ) {
+        setTiming( holdNanos, releaseNanos );
+    }
+
+    public void setTiming( long holdNanos, long releaseNanos ) {
+        mHoldNanos    = Math.max( 0L, holdNanos );
+        mReleaseNanos = Math.max( 0L, releaseNanos );
+    }
+
+    public long getHoldNanos() {
+        return mHoldNanos;
+    }
+
+    public long getReleaseNanos() {
+        return mReleaseNanos;
+    }
+
+    /** @brief Turns the LED off. */
+    public void reset() {
+        mTriggered = false;
+    }
+
+    /** @brief An overload at the given System.nanoTime(). Earlier ones than
+     *         the latest are ignored.
+     */
+    public void trigger( long overloadNanos ) {
+        if ( !mTriggered || overloadNanos - mLastOverloadNanos > 0L ) {
+            mLastOverloadNanos = overloadNanos;
+        }
+        mTriggered = true;
+    }
+
+    /** @brief 1 while held, falling to 0 over the release, 0 when off. */
+    public float getBrightness( long nowNanos ) {
+        if ( !mTriggered ) {
+            return 0.0f;
+        }
+        long sinceHoldEnd = nowNanos - mLastOverloadNanos - mHoldNanos;
+        if ( sinceHoldEnd <= 0L ) {
+            return 1.0f;
+        }
+        if ( sinceHoldEnd >= mReleaseNanos ) {
+            return 0.0f;
+        }
+        return 1.0f - (float)sinceHoldEnd / (float)mReleaseNanos;
+    }
+
+    /** @brief True while the LED is lit or fading at the given time. */
+    public boolean isLit( long nowNanos ) {
+        return getBrightness( nowNanos ) > 0.0f;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.vumeter.core;
+
+/** @brief Synthetic AudioSource: pink noise, -3 dB per octave, of a given
+ *         RMS on every channel.
+ *
+ *  White noise from a seeded xorshift generator, so a seed always gives the
+ *  same samples, through the refined filter of Paul Kellet: six first-order
+ *  sections within 0.05 dB of -3 dB per octave above 9.2 Hz at 44.1 kHz.
+ *  The output is scaled by the RMS gain of the filter, summed from its
+ *  impulse response. Pink noise has a crest factor of about 4, so an RMS
+ *  above 0.25 clips now and then.
+ */
+public class PinkNoiseAudioSource extends SignalAudioSource {
+
+    /** @brief Poles and input gains of the sections. */
+    private static final double[] POLES = { 0.99886, 0.99332, 0.96900, 0.86650, 0.55000, -0.7616 };
+    private static final double[] GAINS = { 0.0555179, 0.0750759, 0.1538520, 0.3104856, 0.5329522, -0.0168980 };
+    private static final double   DIRECT  = 0.5362;
+    private static final double   DELAYED = 0.115926;
+
+    /** @brief RMS of the filter output for uniform white noise in [-1, 1). */
+    static final double FILTER_RMS = filterRMS();
+
+    private final double   mScale;
+    private final double[] mState = new double[ POLES.length ];
+    private double         mLastWhite;
+    private long           mRandom;
+
+    /**
+     *  @param rms          in full scale, 1.0 being 32767 or 1.0f.
+     *  @param seed         of the white noise.
+     *  @param totalFrames  frames until END_OF_STREAM, or a negative value
+     *                      for an endless source.
+     *  @param realTime     paces read() to the sample rate.
+     */
+    public PinkNoiseAudioSource( CaptureConfig config, double rms, long seed,
+                                 long totalFrames, boolean realTime ) {
+        super( config, totalFrames, realTime );
+        mScale  = rms / FILTER_RMS;
+        // xorshift has to start from a nonzero state.
+        mRandom = seed != 0L ? seed : 0x9e3779b97f4a7c15L;
+    }
+
+    @Override
+    protected double sample( long frame ) {
+        double white = nextWhite();
+        double pink  = DIRECT * white + DELAYED * mLastWhite;
+        for ( int i = 0; i < mState.length; i++ ) {
+            mState[i] = POLES[i] * mState[i] + GAINS[i] * white;
+            pink += mState[i];
+        }
+        mLastWhite = white;
+        return mScale * pink;
+    }
+
+    /** @brief Uniform in [-1, 1), xorshift64*. */
+    private double nextWhite() {
+        long x = mRandom;
+        x ^= x >>> 12;
+        x ^= x << 25;
+        x ^= x >>> 27;
+        mRandom = x;
+        long bits = ( x * 0x2545f4914f6cdd1dL ) >>> 11;
+        return bits * ( 2.0 / ( 1L << 53 ) ) - 1.0;
+    }
+
+    /** @brief sqrt( 1/3 * sum of the squared impulse response ). */
+    private static double filterRMS() {
+        double[] tail = GAINS.clone();
+        double   sum  = 0.0;
+        // 0.99886^n is below 1e-40 by then.
+        for ( int n = 0; n < 100000; n++ ) {
+            double h = n == 0 ? DIRECT : n == 1 ? DELAYED : 0.0;
+            for ( int i = 0; i < tail.length; i++ ) {
+                h       += tail[i];
+                tail[i] *= POLES[i];
+            }
+            sum += h * h;
+        }
+        return Math.sqrt( sum / 3.0 );
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.vumeter.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/** @brief Linked GPU programs kept in files between runs, so the shaders
+ *         are not compiled again at every start.
+ *
+ *  The GL side (glGetProgramBinary() and glProgramBinary() of OpenGL ES 3.0)
+ *  is in the app; this is the storage. A binary is only valid for the
+ *  shader sources and the driver it was made with, so the key is a digest
+ *  of both: a new shader or a driver update finds no entry and the program
+ *  is compiled and stored again. A file that cannot be read, e.g. cut short
+ *  when the app was killed, counts as no entry. store() writes a temporary
+ *  file and renames it, so a reader never sees half an entry.
+ *
+ *  For one thread, the GL thread.
+ */
+public class ProgramBinaryCache {
+
+    /** @brief A cached binary and the format glProgramBinary() takes it in. */
+    public static final class Entry {
+        public final int    format;
+        public final byte[] binary;
+
+        public Entry( int format, byte[] binary ) {
+            this.format = format;
+            this.binary = binary;
+        }
+    }
+
+    private static final int     MAGIC     = 0x56554d50; // "VUMP"
+    private static final int     MAX_BYTES = 16 * 1024 * 1024;
+    private static final String  PREFIX    = "program-";
+    private static final String  SUFFIX    = ".bin";
+    private static final Charset UTF_8     = Charset.forName( "UTF-8" );
+
+    private final File mDirectory;
+
+    /** @param directory e.g. Context.getCodeCacheDir(), created if needed. */
+    public ProgramBinaryCache( File directory ) {
+        mDirectory = directory;
+    }
+
+    /** @brief The key of the program linked from these sources by this
+     *         driver, e.g. GL_RENDERER and GL_VERSION.
+     */
+    public static String key( String vertexSource, String fragmentSource, String... driver ) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance( "SHA-256" );
+        }
+        catch ( NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( e );
+        }
+        update( digest, vertexSource );
+        update( digest, fragmentSource );
+        for ( String part : driver ) {
+            update( digest, part );
+        }
+        byte[] hash = digest.digest();
+        StringBuilder out = new StringBuilder( 32 );
+        for ( int i = 0; i < 16; i++ ) {
+            out.append( Character.forDigit( ( hash[i] >> 4 ) & 0xf, 16 ) );
+            out.append( Character.forDigit( hash[i] & 0xf, 16 ) );
+        }
+        return out.toString();
+    }
+
+    /** @brief Length first, so ("ab", "c") and ("a", "bc") differ. */
+    private static void update( MessageDigest digest, String part ) {
+        byte[] bytes = ( part != null ? part : "" ).getBytes( UTF_8 );
+        int length = bytes.length;
+        digest.update( new byte[] { (byte)( length >>> 24 ), (byte)( length >>> 16 ),
+                                    (byte)( length >>> 8 ),  (byte)length } );
+        digest.update( bytes );
+    }
+
+    File fileOf( String key ) {
+        return new File( mDirectory, PREFIX + key + SUFFIX );
+    }
+
+    /** @return the entry stored under key, or null. */
+    public Entry load( String key ) {
+        File file = fileOf( key );
+        if ( !file.isFile() ) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+            if ( in.readInt() != MAGIC ) {
+                return null;
+            }
+            int format = in.readInt();
+            int length = in.readInt();
+            if ( length <= 0 || length > MAX_BYTES ) {
+                return null;
+            }
+            byte[] binary = new byte[length];
+            in.readFully( binary );
+            return new Entry( format, binary );
+        }
+        catch ( IOException e ) {
+            return null;
+        }
+        finally {
+            close( in );
+        }
+    }
+
+    /** @return false if the entry could not be written; the cache is only
+     *          an optimization, so the caller goes on.
+     */
+    public boolean store( String key, int format, byte[] binary, int length ) {
+        if ( length <= 0 || length > MAX_BYTES ) {
+            return false;
+        }
+        if ( !mDirectory.isDirectory() && !mDirectory.mkdirs() ) {
+            return false;
+        }
+        File file = fileOf( key );
+        File temp = new File( mDirectory, file.getName() + ".tmp" );
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( temp ) ) );
+            out.writeInt( MAGIC );
+            out.writeInt( format );
+            out.writeInt( length );
+            out.write( binary, 0, length );
+            out.close();
+            out = null;
+            return temp.renameTo( file );
+        }
+        catch ( IOException e ) {
+            return false;
+        }
+        finally {
+            close( out );
+            temp.delete();
+        }
+    }
+
+    /** @brief Drops the entry, e.g. after the driver rejected it. */
+    public void remove( String key ) {
+        fileOf( key ).delete();
+    }
+
+    private static void close( Closeable c ) {
+        if ( c != null ) {
+            try {
+                c.close();
+            }
+            catch ( IOException ignored ) {
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.vumeter.core;
+
+/** @brief Levels of a program, or of a part of it, that merge into those of
+ *         the whole: the statistics of BatchAnalyzer.
+ *
+ *  The program is measured in windows of fixed length on a grid from its
+ *  first frame. Per channel: the sample peak, the true peak, the sum of
+ *  squares for the RMS of the whole program, and the highest ballistic
+ *  reading at the end of a window. Over all channels: a histogram of the
+ *  RMS of the loudest channel per window in 1 dB bins, and the windows
+ *  whose true peak reaches the overload threshold.
+ *
+ *  merge() is associative and commutative, maxima and counts exactly, so the
+ *  parts of a program, or programs, can be measured in any order and
+ *  combined in any grouping. Only the sums of squares may differ in their
+ *  last bits with the grouping.
+ */
+public class ProgramStats {
+
+    /** @brief Lower edge of the histogram: the first bin also holds quieter windows. */
+    public static final int HISTOGRAM_FLOOR_DB = -90;
+
+    /** @brief Bin b holds [HISTOGRAM_FLOOR_DB + b, HISTOGRAM_FLOOR_DB + b + 1) dBFS;
+     *         the last one also holds 0 dBFS and above.
+     */
+    public static final int HISTOGRAM_BINS = -HISTOGRAM_FLOOR_DB + 1;
+
+    private final int      mChannels;
+    private long           mFrames;
+    private long           mDurationNanos;
+    private long           mWindows;
+    private long           mOverloadWindows;
+    private final float[]  mPeak;
+    private final float[]  mTruePeak;
+    private final double[] mSumOfSquares;
+    private final float[]  mMaxLevel;
+    private final long[]   mHistogram = new long[HISTOGRAM_BINS];
+
+    public ProgramStats( int channels ) {
+        mChannels     = channels;
+        mPeak         = new float[channels];
+        mTruePeak     = new float[channels];
+        mSumOfSquares = new double[channels];
+        mMaxLevel     = new float[channels];
+    }
+
+    /** @brief Adds a window of frames.
+     *  @param x          interleaved float samples of the window, x[0, frames * channels).
+     *  @param sampleRate of the program.
+     *  @param truePeak   true peak of each channel over the window.
+     *  @param level      ballistic reading of each channel at its end.
+     *  @param overload   linear true peak from which the window is overloaded.
+     */
+    void addWindow( float[] x, int frames, int sampleRate, float[] truePeak, float[] level, float overload,
+                    LevelKernel.FloatBlock scratch ) {
+        double loudest = 0.0;
+        boolean overloaded = false;
+        for ( int ch = 0; ch < mChannels; ch++ ) {
+            LevelKernel.measure( x, ch, frames * mChannels, mChannels, scratch );
+            mSumOfSquares[ch] += scratch.sumOfSquares;
+            mPeak[ch]     = Math.max( mPeak[ch], scratch.peak );
+            mTruePeak[ch] = Math.max( mTruePeak[ch], truePeak[ch] );
+            mMaxLevel[ch] = Math.max( mMaxLevel[ch], level[ch] );
+            loudest       = Math.max( loudest, scratch.sumOfSquares );
+            overloaded   |= truePeak[ch] >= overload;
+        }
+        mHistogram[ bin( LevelKernel.rms( loudest, frames ) ) ]++;
+        mFrames        += frames;
+        mDurationNanos += frames * 1000000000L / sampleRate;
+        mWindows++;
+        if ( overloaded ) {
+            mOverloadWindows++;
+        }
+    }
+
+    /** @brief Adds other into this. Channels that other does not have are
+     *         left alone.
+     *  @return this.
+     */
+    public ProgramStats merge( ProgramStats other ) {
+        if ( other.mChannels > mChannels ) {
+            throw new IllegalArgumentException( other.mChannels + " channels into " + mChannels );
+        }
+        mFrames          += other.mFrames;
+        mDurationNanos   += other.mDurationNanos;
+        mWindows         += other.mWindows;
+        mOverloadWindows += other.mOverloadWindows;
+        for ( int ch = 0; ch < other.mChannels; ch++ ) {
+            mPeak[ch]          = Math.max( mPeak[ch],     other.mPeak[ch] );
+            mTruePeak[ch]      = Math.max( mTruePeak[ch], other.mTruePeak[ch] );
+            mMaxLevel[ch]      = Math.max( mMaxLevel[ch], other.mMaxLevel[ch] );
+            mSumOfSquares[ch] += other.mSumOfSquares[ch];
+        }
+        for ( int b = 0; b < HISTOGRAM_BINS; b++ ) {
+            mHistogram[b] += other.mHistogram[b];
+        }
+        return this;
+    }
+
+    public int getChannelCount() {
+        return mChannels;
+    }
+
+    public long getFrameCount() {
+        return mFrames;
+    }
+
+    /** @brief Length of the program, or of the programs merged. */
+    public long getDurationNanos() {
+        return mDurationNanos;
+    }
+
+    public long getWindowCount() {
+        return mWindows;
+    }
+
+    public long getOverloadWindows() {
+        return mOverloadWindows;
+    }
+
+    /** @brief Sample peak in dBFS. */
+    public float getPeakDB( int channel ) {
+        return TruePeakDetector.toDB( mPeak[channel] );
+    }
+
+    public float getTruePeakDB( int channel ) {
+        return TruePeakDetector.toDB( mTruePeak[channel] );
+    }
+
+    /** @brief RMS of the whole program in dBFS, -3 for a full-scale sine. */
+    public float getRMSDB( int channel ) {
+        return (float)( 10.0 * Math.log10( mSumOfSquares[channel] / mFrames ) );
+    }
+
+    /** @brief Highest ballistic reading in dBFS, -3 for a full-scale sine. */
+    public float getMaxLevelDB( int channel ) {
+        return (float)( 20.0 * Math.log10( mMaxLevel[channel] / LevelMeter.FLOAT_TO_SHORT_SCALE ) );
+    }
+
+    public long getHistogram( int bin ) {
+        return mHistogram[bin];
+    }
+
+    /** @brief Upper edge of the bin under which the given fraction of the
+     *         windows falls, e.g. 0.5 for the median RMS. -infinity without
+     *         windows.
+     */
+    public float getRMSPercentileDB( double fraction ) {
+        long target = (long)Math.ceil( fraction * mWindows );
+        long count  = 0L;
+        for ( int b = 0; b < HISTOGRAM_BINS; b++ ) {
+            count += mHistogram[b];
+            if ( count >= Math.max( 1L, target ) ) {
+                return HISTOGRAM_FLOOR_DB + b + 1;
+            }
+        }
+        return Float.NEGATIVE_INFINITY;
+    }
+
+    private static int bin( double rms ) {
+        if ( rms <= 0.0 ) {
+            return 0;
+        }
+        double db = 20.0 * Math.log10( rms );
+        return (int)Math.max( 0.0, Math.min( Math.floor( db - HISTOGRAM_FLOOR_DB ), HISTOGRAM_BINS - 1 ) );
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.vumeter.core;
+
+/** @brief Forward FFT of a real signal of a power-of-two size N.
+ *
+ *  The N real samples are packed as N/2 complex values (even samples in the
+ *  real part, odd samples in the imaginary part), transformed by an
+ *  iterative radix-2 FFT of size N/2 and split into the N/2 + 1 bins of the
+ *  real spectrum. That is half the work of a complex FFT of size N.
+ *
+ *  Twiddles, the bit-reversal permutation and the work arrays are
+ *  allocated by the constructor; forward() allocates nothing. Not thread
+ *  safe: one instance per thread.
+ */
+public final class RealFft {
+
+    private final int mSize;
+    private final int mHalf;
+
+    /** @brief exp(-2 pi i k / (N/2)) for k < N/4, for the complex FFT. */
+    private final float[] mCos;
+    private final float[] mSin;
+
+    /** @brief exp(-2 pi i k / N) for k <= N/2, for the split. */
+    private final float[] mSplitCos;
+    private final float[] mSplitSin;
+
+    private final int[]   mBitReverse;
+    private final float[] mRe;
+    private final float[] mIm;
+
+    public RealFft( int size ) {
+        if ( size < 4 || Integer.bitCount( size ) != 1 ) {
+            throw new IllegalArgumentException( "FFT size must be a power of two >= 4: " + size );
+        }
+        mSize = size;
+        mHalf = size / 2;
+
+        mCos = new float[mHalf / 2];
+        mSin = new float[mHalf / 2];
+        for ( int k = 0; k < mHalf / 2; k++ ) {
+            double theta = 2.0 * Math.PI * k / mHalf;
+            mCos[k] =  (float)Math.cos( theta );
+            mSin[k] = -(float)Math.sin( theta );
+        }
+
+        mSplitCos = new float[mHalf + 1];
+        mSplitSin = new float[mHalf + 1];
+        for ( int k = 0; k <= mHalf; k++ ) {
+            double theta = 2.0 * Math.PI * k / mSize;
+            mSplitCos[k] =  (float)Math.cos( theta );
+            mSplitSin[k] = -(float)Math.sin( theta );
+        }
+
+        int bits = Integer.numberOfTrailingZeros( mHalf );
+        mBitReverse = new int[mHalf];
+        for ( int i = 0; i < mHalf; i++ ) {
+            mBitReverse[i] = bits == 0 ? 0 : Integer.reverse( i ) >>> ( 32 - bits );
+        }
+
+        mRe = new float[mHalf];
+        mIm = new float[mHalf];
+    }
+
+    public int getSize() {
+        return mSize;
+    }
+
+    /** @brief N/2 + 1, from DC to Nyquist. */
+    public int getBinCount() {
+        return mHalf + 1;
+    }
+
+    /** @brief Spectrum of x[offset, offset + N) into re[0, N/2] and im[0, N/2],
+     *         unnormalized: a sine of amplitude A on bin k gives |X[k]| = A N / 2.
+     */
+    public void forward( float[] x, int offset, float[] re, float[] im ) {
+        final float[] zr = mRe, zi = mIm;
+        final int     m  = mHalf;
+
+        for ( int i = 0; i < m; i++ ) {
+            int j = mBitReverse[i];
+            zr[j] = x[offset + 2 * i];
+            zi[j] = x[offset + 2 * i + 1];
+        }
+
+        for ( int len = 2; len <= m; len <<= 1 ) {
+            int half = len >> 1;
+            int step = m / len;
+            for ( int i = 0; i < m; i += len ) {
+                for ( int k = 0, t = 0; k < half; k++, t += step ) {
+                    float wr = mCos[t];
+                    float wi = mSin[t];
+                    int   a  = i + k;
+                    int   b  = a + half;
+                    float tr = zr[b] * wr - zi[b] * wi;
+                    float ti = zr[b] * wi + zi[b] * wr;
+                    zr[b] = zr[a] - tr;
+                    zi[b] = zi[a] - ti;
+                    zr[a] += tr;
+                    zi[a] += ti;
+                }
+            }
+        }
+
+        // X[k] = E[k] + W^k O[k] with E and O the spectra of the even and
+        // the odd samples: E = (Z[k] + conj Z[m - k]) / 2,
+        // O = (Z[k] - conj Z[m - k]) / 2i.
+        for ( int k = 0; k <= m; k++ ) {
+            int   p  = k == m ? 0 : k;
+            int   q  = k == 0 ? 0 : m - k;
+            float ar = zr[p], ai = zi[p];
+            float cr = zr[q], ci = -zi[q];
+            float er = 0.5f * ( ar + cr );
+            float ei = 0.5f * ( ai + ci );
+            float or = 0.5f * ( ai - ci );
+            float oi = -0.5f * ( ar - cr );
+            float wr = mSplitCos[k];
+            float wi = mSplitSin[k];
+            re[k] = er + or * wr - oi * wi;
+            im[k] = ei + or * wi + oi * wr;
+        }
+    }
+}
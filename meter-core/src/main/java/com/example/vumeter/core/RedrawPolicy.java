@@ -0,0 +1,104 @@
+package com.example.vumeter.core;
+
+/** @brief Decides when the meter has to be redrawn in RENDERMODE_WHEN_DIRTY.
+ *
+ *  Two threads consult it:
+ *  - The capture thread, after each published level, calls
+ *    shouldWakeForLevel(). It returns true only if the meter is idle and
+ *    the hand would move by more than the sub-pixel threshold, or the LED
+ *    would change.
+ *  - The GL thread, after each frame, calls onFrameDrawn(). It returns true
+ *    while the hand is still moving or the LED is lit (held or fading), so
+ *    the renderer keeps requesting frames until both come to rest.
+ *
+ *  The threshold is given in pixels at the tip of the hand and converted to
+ *  an angle once the viewport size is known. Pure Java, no GL.
+ */
+public class RedrawPolicy {
+
+    /** @brief Movements of the tip below this are not worth a frame. */
+    public static final float DEFAULT_THRESHOLD_PIXELS = 0.25f;
+
+    /** @brief Frame period used to turn the velocity into a per-frame movement. */
+    public static final float NOMINAL_FRAME_SECONDS    = 1.0f / 60.0f;
+
+    private final float mHandLength;
+    private final float mBaseWidth;
+    private final float mBaseHeight;
+    private final float mThresholdPixels;
+
+    /** @brief Written on the GL thread, read on the capture thread. */
+    private volatile float   mAngleThreshold;
+    private volatile float   mDrawnTarget;
+    private volatile boolean mDrawnLED;
+    private volatile boolean mAnimating;
+
+    /**
+     *  @param handLength  distance from the rotating center to the tip of the
+     *                     hand, in PNG texture pixels.
+     *  @param baseWidth   width of the meter base in PNG texture pixels. It
+     *                     spans the width of the viewport.
+     *  @param baseHeight  height of the meter base in PNG texture pixels. It
+     *                     spans the height of the viewport.
+     */
+    public RedrawPolicy( float handLength, float baseWidth, float baseHeight, float thresholdPixels ) {
+        mHandLength      = handLength;
+        mBaseWidth       = baseWidth;
+        mBaseHeight      = baseHeight;
+        mThresholdPixels = thresholdPixels;
+        // Until the surface size is known, assume one texture pixel per pixel.
+        mAngleThreshold  = thresholdPixels / handLength;
+        // Nothing may be requested before the first frame has been drawn;
+        // the renderer may not even be attached yet.
+        mAnimating       = true;
+    }
+
+    /** @brief GL thread, from onSurfaceChanged(). */
+    public void setViewportSize( int width, int height ) {
+        float scale = Math.max( width / mBaseWidth, height / mBaseHeight );
+        if ( scale <= 0.0f ) {
+            return;
+        }
+        mAngleThreshold = mThresholdPixels / ( mHandLength * scale );
+    }
+
+    public float getAngleThreshold() {
+        return mAngleThreshold;
+    }
+
+    /** @brief Capture thread. True if an idle meter has to be woken up for
+     *         the given target angle and LED state.
+     */
+    public boolean shouldWakeForLevel( float targetTheta, boolean led ) {
+        if ( mAnimating ) {
+            // The GL thread keeps requesting frames and will pick it up.
+            return false;
+        }
+        return led != mDrawnLED
+            || Math.abs( targetTheta - mDrawnTarget ) > mAngleThreshold;
+    }
+
+    /** @brief GL thread, after a frame has been drawn.
+     *
+     *  @param theta       angle of the hand that was drawn.
+     *  @param velocity    angular velocity of the hand in rad/s.
+     *  @param targetTheta angle the hand is pulled toward.
+     *  @param led         whether the LED was drawn lit.
+     *  @return true if another frame is needed because the hand still moves
+     *          or the LED has yet to go out.
+     */
+    public boolean onFrameDrawn( float theta, float velocity, float targetTheta, boolean led ) {
+        float threshold = mAngleThreshold;
+        boolean atRest = !led
+                      && Math.abs( targetTheta - theta ) <= threshold
+                      && Math.abs( velocity ) * NOMINAL_FRAME_SECONDS <= threshold;
+        mDrawnTarget = targetTheta;
+        mDrawnLED    = led;
+        mAnimating   = !atRest;
+        return !atRest;
+    }
+
+    public boolean isAnimating() {
+        return mAnimating;
+    }
+}
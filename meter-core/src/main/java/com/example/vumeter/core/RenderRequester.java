@@ -0,0 +1,10 @@
+package com.example.vumeter.core;
+
+/** @brief Asks for one more frame. Implemented by VUMeterView with
+ *         GLSurfaceView.requestRender(), which may be called from any thread.
+ */
+public interface RenderRequester {
+
+    void requestRender();
+
+}
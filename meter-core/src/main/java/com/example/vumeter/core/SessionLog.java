@@ -0,0 +1,124 @@
+package com.example.vumeter.core;
+
+import java.nio.ByteBuffer;
+
+/** @brief The binary format of a recorded meter session, written by
+ *         SessionRecorder and read by SessionReader.
+ *
+ *  Little-endian. A header of HEADER_BYTES, then one record of
+ *  recordBytes( channels ) per published snapshot, in order:
+ *
+ *      header  int   MAGIC
+ *              int   VERSION
+ *              int   channels
+ *              int   bytes per record
+ *              int   sample rate
+ *              int   reserved
+ *              long  System.currentTimeMillis() at the start
+ *              long  System.nanoTime() at the start
+ *              long  records, updated at every flush
+ *
+ *      record  long  mTimestampNanos from the start
+ *              int   mBlockNanos
+ *              int   flags: FLAG_OVERLOAD
+ *              float momentary, short-term, integrated LUFS, range LU
+ *              per channel:
+ *                char  RMS, 16-bit full scale, saturated
+ *                char  peak, the same
+ *                float ballistic reading
+ *                float true peak, linear
+ *
+ *  A stereo record is 56 bytes, 11 kB per second in 5 ms blocks, 40 MB
+ *  per hour. The band levels of the spectrum are not recorded.
+ */
+public final class SessionLog {
+
+    public static final int MAGIC   = 0x564d5353; // "VMSS"
+    public static final int VERSION = 1;
+
+    public static final int HEADER_BYTES = 64;
+
+    static final int HEADER_CHANNELS     = 8;
+    static final int HEADER_RECORD_BYTES = 12;
+    static final int HEADER_SAMPLE_RATE  = 16;
+    static final int HEADER_START_MILLIS = 24;
+    static final int HEADER_START_NANOS  = 32;
+    static final int HEADER_RECORDS      = 40;
+
+    static final int RECORD_FIXED_BYTES   = 32;
+    static final int RECORD_CHANNEL_BYTES = 12;
+
+    public static final int FLAG_OVERLOAD = 1;
+
+    private SessionLog() {
+    }
+
+    public static int recordBytes( int channels ) {
+        return RECORD_FIXED_BYTES + channels * RECORD_CHANNEL_BYTES;
+    }
+
+    static void writeHeader( ByteBuffer out, int channels, int sampleRate,
+                             long startMillis, long startNanos ) {
+        out.putInt( 0, MAGIC );
+        out.putInt( 4, VERSION );
+        out.putInt( HEADER_CHANNELS, channels );
+        out.putInt( HEADER_RECORD_BYTES, recordBytes( channels ) );
+        out.putInt( HEADER_SAMPLE_RATE, sampleRate );
+        out.putLong( HEADER_START_MILLIS, startMillis );
+        out.putLong( HEADER_START_NANOS, startNanos );
+        out.putLong( HEADER_RECORDS, 0L );
+    }
+
+    /** @brief Writes the snapshot as a record of channels at offset. Missing
+     *         channels are silent, extra ones left out.
+     */
+    static void writeRecord( ByteBuffer out, int offset, MeterSnapshot s, int channels,
+                             long startNanos ) {
+        out.putLong ( offset,      s.mTimestampNanos - startNanos );
+        out.putInt  ( offset + 8,  (int)Math.min( s.mBlockNanos, Integer.MAX_VALUE ) );
+        out.putInt  ( offset + 12, s.mOverload ? FLAG_OVERLOAD : 0 );
+        out.putFloat( offset + 16, s.mMomentaryLUFS );
+        out.putFloat( offset + 20, s.mShortTermLUFS );
+        out.putFloat( offset + 24, s.mIntegratedLUFS );
+        out.putFloat( offset + 28, s.mLoudnessRangeLU );
+        int at = offset + RECORD_FIXED_BYTES;
+        for ( int ch = 0; ch < channels; ch++ ) {
+            boolean present = ch < s.mChannelCount;
+            out.putChar ( at,     present ? saturate( s.mRMS[ch] )  : 0 );
+            out.putChar ( at + 2, present ? saturate( s.mPeak[ch] ) : 0 );
+            out.putFloat( at + 4, present ? s.mLevel[ch]    : 0.0f );
+            out.putFloat( at + 8, present ? s.mTruePeak[ch] : 0.0f );
+            at += RECORD_CHANNEL_BYTES;
+        }
+    }
+
+    /** @brief Reads the record at offset into the snapshot. The times are
+     *         from the start of the session; the overload count and the
+     *         sequence are left alone.
+     */
+    static void readRecord( ByteBuffer in, int offset, int channels, MeterSnapshot s ) {
+        s.mChannelCount    = channels;
+        s.mTimestampNanos  = in.getLong( offset );
+        s.mBlockNanos      = in.getInt( offset + 8 );
+        s.mOverload        = ( in.getInt( offset + 12 ) & FLAG_OVERLOAD ) != 0;
+        s.mMomentaryLUFS   = in.getFloat( offset + 16 );
+        s.mShortTermLUFS   = in.getFloat( offset + 20 );
+        s.mIntegratedLUFS  = in.getFloat( offset + 24 );
+        s.mLoudnessRangeLU = in.getFloat( offset + 28 );
+        int at = offset + RECORD_FIXED_BYTES;
+        for ( int ch = 0; ch < channels; ch++ ) {
+            s.mRMS[ch]      = in.getChar( at );
+            s.mPeak[ch]     = in.getChar( at + 2 );
+            s.mLevel[ch]    = in.getFloat( at + 4 );
+            s.mTruePeak[ch] = in.getFloat( at + 8 );
+            at += RECORD_CHANNEL_BYTES;
+        }
+        s.mBandCount     = 0;
+        s.mCaptureNanos  = s.mTimestampNanos;
+        s.mDroppedFrames = 0L;
+    }
+
+    private static char saturate( int value ) {
+        return (char)Math.max( 0, Math.min( value, Character.MAX_VALUE ) );
+    }
+}
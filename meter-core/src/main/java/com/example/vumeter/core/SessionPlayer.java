@@ -0,0 +1,119 @@
+package com.example.vumeter.core;
+
+import java.util.concurrent.locks.LockSupport;
+
+/** @brief Replays a recorded session into a MeterStateTripleBuffer, in
+ *         place of the CaptureLoop, so the meter shows it again.
+ *
+ *  Each record is published at its time in the session divided by the
+ *  speed: 1 is real time, 10 is ten times faster, and FASTEST publishes
+ *  the records one after the other. The block durations are divided by the
+ *  speed too, so the hands follow the faster pace. The snapshots are
+ *  stamped with the time of their publication, which is what the hands
+ *  and the LED of NeedleMeter follow; the overload LED lights on the
+ *  overloaded records.
+ *
+ *  run() is the only writer of the buffer while it runs: pause the capture
+ *  into the same buffer first. requestStop() from any thread.
+ */
+public class SessionPlayer implements Runnable {
+
+    /** @brief Speed that does not wait between records. */
+    public static final double FASTEST = Double.POSITIVE_INFINITY;
+
+    private final SessionReader          mReader;
+    private final MeterStateTripleBuffer mMeterState;
+    private final double                 mSpeed;
+
+    private volatile MeterStateListener mCaptureThreadListener;
+    private volatile boolean            mStopRequested;
+
+    /** @brief Records published so far. Written by run(). */
+    private volatile int mPosition;
+
+    private long mOverloadCount;
+    private long mLastOverloadNanos;
+
+    /** @param speed greater than 0, FASTEST for no waits. */
+    public SessionPlayer( SessionReader reader, MeterStateTripleBuffer meterState, double speed ) {
+        if ( !( speed > 0.0 ) ) {
+            throw new IllegalArgumentException( "speed " + speed );
+        }
+        mReader     = reader;
+        mMeterState = meterState;
+        mSpeed      = speed;
+    }
+
+    /** @brief Called on the replay thread after each publication, like the
+     *         capture-thread listener of CaptureLoop.
+     */
+    public void setCaptureThreadListener( MeterStateListener listener ) {
+        mCaptureThreadListener = listener;
+    }
+
+    public void requestStop() {
+        mStopRequested = true;
+    }
+
+    public int getPosition() {
+        return mPosition;
+    }
+
+    public double getSpeed() {
+        return mSpeed;
+    }
+
+    /** @brief Publishes the records from the first, at their pace. Returns
+     *         after the last one or at requestStop().
+     */
+    @Override
+    public void run() {
+        int count = mReader.getRecordCount();
+        if ( count == 0 ) {
+            return;
+        }
+        long startNanos  = System.nanoTime();
+        long firstRecord = mReader.getTimeNanos( 0 );
+        for ( int i = 0; i < count && !mStopRequested; i++ ) {
+            if ( mSpeed != FASTEST ) {
+                long due = startNanos
+                         + (long)( ( mReader.getTimeNanos( i ) - firstRecord ) / mSpeed );
+                waitUntil( due );
+                if ( mStopRequested ) {
+                    break;
+                }
+            }
+            publish( i );
+            mPosition = i + 1;
+        }
+    }
+
+    private void publish( int index ) {
+        MeterSnapshot s = mMeterState.beginWrite();
+        mReader.read( index, s );
+        long now = System.nanoTime();
+        if ( s.mOverload ) {
+            mOverloadCount++;
+            mLastOverloadNanos = now;
+        }
+        s.mOverloadCount     = mOverloadCount;
+        s.mLastOverloadNanos = mLastOverloadNanos;
+        s.mBlockNanos        = mSpeed == FASTEST ? 0L : (long)( s.mBlockNanos / mSpeed );
+        s.mTimestampNanos    = now;
+        s.mCaptureNanos      = now;
+        MeterSnapshot published = mMeterState.publish();
+
+        MeterStateListener listener = mCaptureThreadListener;
+        if ( listener != null ) {
+            listener.onMeterStatePublished( published );
+        }
+    }
+
+    private void waitUntil( long dueNanos ) {
+        long wait;
+        while ( ( wait = dueNanos - System.nanoTime() ) > 0 && !mStopRequested ) {
+            // In slices, so requestStop() is seen within one.
+            LockSupport.parkNanos( Math.min( wait, 10000000L ) );
+        }
+    }
+}
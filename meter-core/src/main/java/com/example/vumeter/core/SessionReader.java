@@ -0,0 +1,113 @@
+package com.example.vumeter.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** @brief Random access to the records of a SessionLog file, mapped
+ *         read-only.
+ *
+ *  The records are those counted in the header, i.e. flushed: a log cut
+ *  short by a crash reads up to its last flush. Logs up to 2 GB, about 50
+ *  hours of stereo in 5 ms blocks. One thread at a time.
+ */
+public class SessionReader implements Closeable {
+
+    private final RandomAccessFile mFile;
+    private final MappedByteBuffer mMap;
+    private final int              mChannels;
+    private final int              mRecordBytes;
+    private final int              mSampleRate;
+    private final long             mStartMillis;
+    private final long             mStartNanos;
+    private final int              mRecordCount;
+
+    public SessionReader( File file ) throws IOException {
+        mFile = new RandomAccessFile( file, "r" );
+        try {
+            long size = mFile.length();
+            if ( size < SessionLog.HEADER_BYTES || size > Integer.MAX_VALUE ) {
+                throw new IOException( "Not a session log: " + size + " bytes." );
+            }
+            mMap = mFile.getChannel().map( FileChannel.MapMode.READ_ONLY, 0L, size );
+            mMap.order( ByteOrder.LITTLE_ENDIAN );
+            if ( mMap.getInt( 0 ) != SessionLog.MAGIC || mMap.getInt( 4 ) != SessionLog.VERSION ) {
+                throw new IOException( "Not a session log of version " + SessionLog.VERSION + "." );
+            }
+            mChannels    = mMap.getInt( SessionLog.HEADER_CHANNELS );
+            mRecordBytes = mMap.getInt( SessionLog.HEADER_RECORD_BYTES );
+            if ( mChannels < 1 || mChannels > MeterSnapshot.MAX_CHANNELS
+                    || mRecordBytes != SessionLog.recordBytes( mChannels ) ) {
+                throw new IOException( "Bad session log header." );
+            }
+            mSampleRate  = mMap.getInt( SessionLog.HEADER_SAMPLE_RATE );
+            mStartMillis = mMap.getLong( SessionLog.HEADER_START_MILLIS );
+            mStartNanos  = mMap.getLong( SessionLog.HEADER_START_NANOS );
+            long records = mMap.getLong( SessionLog.HEADER_RECORDS );
+            mRecordCount = (int)Math.max( 0L, Math.min( records,
+                    ( size - SessionLog.HEADER_BYTES ) / mRecordBytes ) );
+        }
+        catch ( IOException e ) {
+            mFile.close();
+            throw e;
+        }
+    }
+
+    public int getChannelCount() {
+        return mChannels;
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    /** @brief System.currentTimeMillis() at the start of the session, to
+     *         tell the wall-clock time of a record.
+     */
+    public long getStartMillis() {
+        return mStartMillis;
+    }
+
+    /** @brief System.nanoTime() at the start, on the recording device. */
+    public long getStartNanos() {
+        return mStartNanos;
+    }
+
+    public int getRecordCount() {
+        return mRecordCount;
+    }
+
+    /** @brief Time of the record from the start of the session. */
+    public long getTimeNanos( int index ) {
+        return mMap.getLong( offsetOf( index ) );
+    }
+
+    /** @brief Duration from the start to the last record. */
+    public long getDurationNanos() {
+        return mRecordCount > 0 ? getTimeNanos( mRecordCount - 1 ) : 0L;
+    }
+
+    /** @brief Fills the snapshot with the record. Its times are from the
+     *         start of the session; its overload count and sequence are
+     *         left alone.
+     */
+    public void read( int index, MeterSnapshot snapshot ) {
+        SessionLog.readRecord( mMap, offsetOf( index ), mChannels, snapshot );
+    }
+
+    private int offsetOf( int index ) {
+        if ( index < 0 || index >= mRecordCount ) {
+            throw new IndexOutOfBoundsException( "record " + index + " of " + mRecordCount );
+        }
+        return SessionLog.HEADER_BYTES + index * mRecordBytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mFile.close();
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.vumeter.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/** @brief Appends every snapshot published by the capture thread to a
+ *         SessionLog file, for an audit of what the meter showed.
+ *
+ *  The capture thread only copies the snapshot into a preallocated direct
+ *  ring buffer: record() takes no lock, does no I/O and allocates nothing.
+ *  If the ring is full, the record is dropped and counted, never waited
+ *  for. A writer thread of its own moves the records from the ring into
+ *  the file through MappedByteBuffers of CHUNK_BYTES, mapped ahead as the
+ *  file grows, and forces them to the storage with the record count in the
+ *  header every flush interval. A session cut short, e.g. by a crash, keeps
+ *  the records up to the last flush.
+ *
+ *  Attach it with CaptureLoop.setSessionRecorder(), and detach it before
+ *  close(), which drains the ring and trims the file to its records.
+ */
+public class SessionRecorder implements Closeable {
+
+    /** @brief 40 seconds of 5 ms blocks. */
+    public static final int   DEFAULT_RING_RECORDS = 8192;
+    public static final long  DEFAULT_FLUSH_NANOS  = 1000000000L;
+    static final int          CHUNK_BYTES          = 4 * 1024 * 1024;
+    private static final long WRITER_PERIOD_NANOS  = 20000000L;
+
+    private final int  mChannels;
+    private final int  mRecordBytes;
+    private final int  mRingRecords;
+    private final long mFlushNanos;
+    private final long mStartNanos;
+
+    /** @brief Records at [ mTail, mHead ) are in the ring, slot i at
+     *         ( i % mRingRecords ) * mRecordBytes. mHead is written by the
+     *         capture thread, mTail by the writer, each with an ordered store.
+     */
+    private final ByteBuffer mRing;
+    private final AtomicLong mHead = new AtomicLong();
+    private final AtomicLong mTail = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+
+    private final RandomAccessFile mFile;
+    private final FileChannel      mChannel;
+    private final MappedByteBuffer mHeader;
+    private final Thread           mWriter;
+    private volatile boolean       mClosing;
+    private boolean                mClosed;
+    private volatile IOException   mFailure;
+
+    /** @brief Writer thread. */
+    private final ByteBuffer mRingRead;
+    private MappedByteBuffer mChunk;
+    private long             mChunkStart;
+    private long             mWritten;
+    private long             mLastFlushNanos;
+
+    public SessionRecorder( File file, int channels, int sampleRate ) throws IOException {
+        this( file, channels, sampleRate, DEFAULT_RING_RECORDS, DEFAULT_FLUSH_NANOS );
+    }
+
+    /**
+     *  @param file          created, or truncated if it exists.
+     *  @param ringRecords   records the writer may fall behind by before
+     *                       records are dropped.
+     *  @param flushNanos    how often the records reach the storage.
+     */
+    public SessionRecorder( File file, int channels, int sampleRate,
+                            int ringRecords, long flushNanos ) throws IOException {
+        if ( channels < 1 || channels > MeterSnapshot.MAX_CHANNELS || ringRecords < 1 ) {
+            throw new IllegalArgumentException( "channels " + channels + " ring " + ringRecords );
+        }
+        mChannels    = channels;
+        mRecordBytes = SessionLog.recordBytes( channels );
+        mRingRecords = ringRecords;
+        mFlushNanos  = flushNanos;
+        mRing        = ByteBuffer.allocateDirect( ringRecords * mRecordBytes )
+                                 .order( ByteOrder.LITTLE_ENDIAN );
+        mRingRead    = mRing.duplicate().order( ByteOrder.LITTLE_ENDIAN );
+
+        mFile    = new RandomAccessFile( file, "rw" );
+        mFile.setLength( 0L );
+        mChannel = mFile.getChannel();
+        mHeader  = mChannel.map( FileChannel.MapMode.READ_WRITE, 0L, SessionLog.HEADER_BYTES );
+        mHeader.order( ByteOrder.LITTLE_ENDIAN );
+        mStartNanos = System.nanoTime();
+        SessionLog.writeHeader( mHeader, channels, sampleRate, System.currentTimeMillis(), mStartNanos );
+        mChunkStart     = SessionLog.HEADER_BYTES;
+        mChunk          = mapChunk( mChunkStart );
+        mLastFlushNanos = mStartNanos;
+
+        mWriter = new Thread( new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "SessionRecorder" );
+        mWriter.start();
+    }
+
+    /** @brief Capture thread. Appends the snapshot, unless the ring is full.
+     *  @return false if the record was dropped.
+     */
+    public boolean record( MeterSnapshot snapshot ) {
+        long head = mHead.get();
+        if ( head - mTail.get() >= mRingRecords || mClosing ) {
+            mDropped.lazySet( mDropped.get() + 1 );
+            return false;
+        }
+        int offset = (int)( head % mRingRecords ) * mRecordBytes;
+        SessionLog.writeRecord( mRing, offset, snapshot, mChannels, mStartNanos );
+        mHead.lazySet( head + 1 );
+        return true;
+    }
+
+    /** @brief Records handed to record() and not dropped. */
+    public long getRecorded() {
+        return mHead.get();
+    }
+
+    /** @brief Records moved to the file, flushed or not. */
+    public long getWritten() {
+        return mTail.get();
+    }
+
+    public long getDropped() {
+        return mDropped.get();
+    }
+
+    public int getRingRecords() {
+        return mRingRecords;
+    }
+
+    /** @brief Nanoseconds of System.nanoTime() the record times count from. */
+    public long getStartNanos() {
+        return mStartNanos;
+    }
+
+    /** @brief Stops accepting records, writes those in the ring, trims the
+     *         file and closes it. Not on the capture thread: it waits for
+     *         the writer.
+     */
+    @Override
+    public void close() throws IOException {
+        if ( mClosed ) {
+            return;
+        }
+        mClosed  = true;
+        mClosing = true;
+        LockSupport.unpark( mWriter );
+        boolean interrupted = false;
+        while ( mWriter.isAlive() ) {
+            try {
+                mWriter.join();
+            }
+            catch ( InterruptedException e ) {
+                interrupted = true;
+            }
+        }
+        if ( interrupted ) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if ( mFailure == null ) {
+                mChunk.force();
+                writeCount();
+                mChannel.truncate( SessionLog.HEADER_BYTES + mWritten );
+            }
+        }
+        finally {
+            mFile.close();
+        }
+        if ( mFailure != null ) {
+            throw mFailure;
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while ( true ) {
+                // Read before draining, so nothing recorded before close() is left.
+                boolean closing = mClosing;
+                drain();
+                long now = System.nanoTime();
+                if ( now - mLastFlushNanos >= mFlushNanos ) {
+                    mChunk.force();
+                    writeCount();
+                    mLastFlushNanos = now;
+                }
+                if ( closing ) {
+                    return;
+                }
+                LockSupport.parkNanos( Math.min( WRITER_PERIOD_NANOS, mFlushNanos ) );
+            }
+        }
+        catch ( IOException e ) {
+            mFailure = e;
+            mClosing = true;
+        }
+    }
+
+    /** @brief Moves the records in the ring to the file. */
+    private void drain() throws IOException {
+        long tail = mTail.get();
+        long head = mHead.get();
+        while ( tail < head ) {
+            int slot  = (int)( tail % mRingRecords );
+            int count = (int)Math.min( head - tail, mRingRecords - slot );
+            int bytes = count * mRecordBytes;
+            mRingRead.limit( slot * mRecordBytes + bytes ).position( slot * mRecordBytes );
+            while ( mRingRead.hasRemaining() ) {
+                if ( !mChunk.hasRemaining() ) {
+                    mChunk.force();
+                    mChunkStart += CHUNK_BYTES;
+                    mChunk = mapChunk( mChunkStart );
+                }
+                int n = Math.min( mRingRead.remaining(), mChunk.remaining() );
+                int limit = mRingRead.limit();
+                mRingRead.limit( mRingRead.position() + n );
+                mChunk.put( mRingRead );
+                mRingRead.limit( limit );
+            }
+            tail += count;
+            mWritten += bytes;
+            mTail.lazySet( tail );
+        }
+    }
+
+    private MappedByteBuffer mapChunk( long start ) throws IOException {
+        return mChannel.map( FileChannel.MapMode.READ_WRITE, start, CHUNK_BYTES );
+    }
+
+    /** @brief The records up to here are forced, so the count can say so. */
+    private void writeCount() {
+        mHeader.putLong( SessionLog.HEADER_RECORDS, mWritten / mRecordBytes );
+        mHeader.force();
+    }
+}
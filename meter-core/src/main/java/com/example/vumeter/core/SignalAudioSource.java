@@ -0,0 +1,145 @@
+package com.example.vumeter.core;
+
+/** @brief Synthetic AudioSource: a generated signal, the same on every
+ *         channel.
+ *
+ *  Stands in for the microphone in tests and benchmarks, and gives
+ *  reproducible inputs for them. With realTime set, read() sleeps until the
+ *  requested samples would have been captured, so the capture loop runs at
+ *  the pace it has on the device. Otherwise it returns immediately. In real
+ *  time frame f is captured f / sampleRate after start(), counting the time
+ *  between a stop() and the next start() out.
+ *
+ *  Subclasses give the value of each frame with sample(), which is called
+ *  for the frames in order from 0, once each.
+ */
+public abstract class SignalAudioSource implements AudioSource, CaptureTimestamps {
+
+    private final CaptureConfig mConfig;
+    private final long          mTotalFrames;
+    private final boolean       mRealTime;
+    private final int           mBufferSizeInSamples;
+
+    private long mFramesRead;
+    private long mStartNanos;
+
+    /**
+     *  @param totalFrames  frames until END_OF_STREAM, or a negative value
+     *                      for an endless source.
+     *  @param realTime     paces read() to the sample rate.
+     */
+    protected SignalAudioSource( CaptureConfig config, long totalFrames, boolean realTime ) {
+        mConfig      = config;
+        mTotalFrames = totalFrames;
+        mRealTime    = realTime;
+        // 20 ms, about what AudioRecord.getMinBufferSize() returns, unless
+        // the config asks for another block size.
+        mBufferSizeInSamples = config.getBlockSamples( Math.max( 1, config.getSampleRate() / 50 ) );
+    }
+
+    /** @brief The value of the given frame in full scale, 1.0 being 32767
+     *         or 1.0f. Values beyond full scale are clipped.
+     */
+    protected abstract double sample( long frame );
+
+    @Override
+    public CaptureConfig getConfig() {
+        return mConfig;
+    }
+
+    @Override
+    public int getBufferSizeInSamples() {
+        return mBufferSizeInSamples;
+    }
+
+    /** @brief Frames read so far. */
+    public long getFramesRead() {
+        return mFramesRead;
+    }
+
+    @Override
+    public void start() {
+        // After a stop() the frames go on from now, so read() is paced
+        // from the restart and not from the first start().
+        mStartNanos = System.nanoTime() - mFramesRead * 1000000000L / mConfig.getSampleRate();
+    }
+
+    @Override
+    public int read( short[] buffer, int offset, int length ) {
+        int channels = mConfig.getChannelCount();
+        int frames   = framesToRead( length );
+        if ( frames < 0 ) {
+            return END_OF_STREAM;
+        }
+        for ( int f = 0; f < frames; f++ ) {
+            long  s = Math.round( Short.MAX_VALUE * sample( mFramesRead + f ) );
+            short v = (short)Math.max( Short.MIN_VALUE, Math.min( s, Short.MAX_VALUE ) );
+            for ( int ch = 0; ch < channels; ch++ ) {
+                buffer[ offset + f * channels + ch ] = v;
+            }
+        }
+        return consume( frames );
+    }
+
+    @Override
+    public int read( float[] buffer, int offset, int length ) {
+        int channels = mConfig.getChannelCount();
+        int frames   = framesToRead( length );
+        if ( frames < 0 ) {
+            return END_OF_STREAM;
+        }
+        for ( int f = 0; f < frames; f++ ) {
+            float v = (float)Math.max( -1.0, Math.min( sample( mFramesRead + f ), 1.0 ) );
+            for ( int ch = 0; ch < channels; ch++ ) {
+                buffer[ offset + f * channels + ch ] = v;
+            }
+        }
+        return consume( frames );
+    }
+
+    @Override
+    public long captureNanosOfFrame( long framePosition ) {
+        if ( !mRealTime ) {
+            return NO_TIMESTAMP;
+        }
+        return mStartNanos + framePosition * 1000000000L / mConfig.getSampleRate();
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public void release() {
+    }
+
+    /** @brief Whole frames that fit in length, limited by the end of the stream. -1 at the end. */
+    private int framesToRead( int length ) {
+        long frames = length / mConfig.getChannelCount();
+        if ( mTotalFrames >= 0 ) {
+            long left = mTotalFrames - mFramesRead;
+            if ( left <= 0 ) {
+                return -1;
+            }
+            frames = Math.min( frames, left );
+        }
+        return (int)frames;
+    }
+
+    private int consume( int frames ) {
+        mFramesRead += frames;
+        if ( mRealTime ) {
+            long dueNanos = mStartNanos + mFramesRead * 1000000000L / mConfig.getSampleRate();
+            long waitNanos = dueNanos - System.nanoTime();
+            if ( waitNanos > 0 ) {
+                try {
+                    Thread.sleep( waitNanos / 1000000L, (int)( waitNanos % 1000000L ) );
+                }
+                catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        return frames * mConfig.getChannelCount();
+    }
+}
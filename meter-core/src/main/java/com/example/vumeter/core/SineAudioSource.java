@@ -0,0 +1,29 @@
+package com.example.vumeter.core;
+
+/** @brief Synthetic AudioSource: a sine of fixed frequency and amplitude on
+ *         every channel, with a phase continuous across reads.
+ */
+public class SineAudioSource extends SignalAudioSource {
+
+    private final double mPhaseIncrement;
+    private final double mAmplitude;
+
+    /**
+     *  @param frequency    in Hz.
+     *  @param amplitude    in full scale, 1.0 being 32767 or 1.0f.
+     *  @param totalFrames  frames until END_OF_STREAM, or a negative value
+     *                      for an endless source.
+     *  @param realTime     paces read() to the sample rate.
+     */
+    public SineAudioSource( CaptureConfig config, double frequency, double amplitude,
+                            long totalFrames, boolean realTime ) {
+        super( config, totalFrames, realTime );
+        mPhaseIncrement = 2.0 * Math.PI * frequency / config.getSampleRate();
+        mAmplitude      = amplitude;
+    }
+
+    @Override
+    protected double sample( long frame ) {
+        return mAmplitude * Math.sin( mPhaseIncrement * frame );
+    }
+}
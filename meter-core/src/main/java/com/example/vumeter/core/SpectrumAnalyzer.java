@@ -0,0 +1,263 @@
+package com.example.vumeter.core;
+
+import java.util.Arrays;
+
+/** @brief Octave or third-octave band levels of the captured signal.
+ *
+ *  - The channels are mixed to mono into a ring of FFT size. Every half
+ *    FFT size of new samples (50 % overlap) the ring is Hann windowed and
+ *    transformed by a RealFft.
+ *  - Welch averaging: the band levels come from the mean of the power
+ *    spectra of the last few segments, kept as a running sum over a ring
+ *    of spectra.
+ *  - Each band sums the power of the bins it covers. Bins on the band
+ *    edges count by the fraction of their width inside the band, so the
+ *    bands split the power of the spectrum between them without gaps or
+ *    overlaps. Bands narrower than the main lobe of the window (4 bins,
+ *    below about 400 Hz at 48 kHz and 2048 points) share a tone with their
+ *    neighbours: the total is right, the split is as fine as the FFT.
+ *
+ *  Bands are base-2 around 1 kHz (1000 * 2^(n/3) Hz for third octaves), from
+ *  about 20 Hz up to the last band below the Nyquist frequency, at most
+ *  MeterSnapshot.MAX_BANDS. Levels are in dB relative to a full-scale sine
+ *  in the band, down to FLOOR_DB.
+ *
+ *  All buffers are allocated by the constructor; process() allocates
+ *  nothing. Not thread safe: owned by the capture thread.
+ */
+public class SpectrumAnalyzer {
+
+    public enum Bands {
+        OCTAVE( 1 ),
+        THIRD_OCTAVE( 3 );
+
+        final int mPerOctave;
+
+        Bands( int perOctave ) {
+            mPerOctave = perOctave;
+        }
+    }
+
+    public static final int   DEFAULT_AVERAGES  = 4;
+    public static final float FLOOR_DB          = -120.0f;
+    public static final float LOWEST_CENTER_HZ  = 19.0f;
+
+    private final int     mSampleRate;
+    private final int     mChannels;
+    private final RealFft mFft;
+    private final int     mSize;
+    private final int     mHop;
+
+    private final float[] mWindow;
+    /** @brief 2 / (N * sum(w^2)): a sine of amplitude A sums to A^2 / 2. */
+    private final float   mPowerScale;
+
+    /** @brief The last mSize mono samples; mRingPos is the oldest. */
+    private final float[] mRing;
+    private int           mRingPos;
+    private int           mSinceLastSegment;
+    private long          mSegments;
+
+    private final float[] mSegment;
+    private final float[] mRe;
+    private final float[] mIm;
+
+    /** @brief Power spectra of the last segments and their running sum. */
+    private final float[][] mHistory;
+    private int             mHistoryPos;
+    private final double[]  mSum;
+
+    private final int     mBandCount;
+    private final float[] mBandCenter;
+    private final int[]   mBandFirst;
+    private final int[]   mBandLast;
+    private final float[] mFirstWeight;
+    private final float[] mLastWeight;
+    private final float[] mBandDB;
+
+    /**
+     *  @param fftSize  power of two. The frequency resolution is
+     *                  sampleRate / fftSize.
+     *  @param averages segments in the Welch average.
+     */
+    public SpectrumAnalyzer( int sampleRate, int channelCount, int fftSize, Bands bands, int averages ) {
+        mSampleRate = sampleRate;
+        mChannels   = channelCount;
+        mFft        = new RealFft( fftSize );
+        mSize       = fftSize;
+        mHop        = fftSize / 2;
+
+        mWindow = new float[fftSize];
+        double sumOfSquares = 0.0;
+        for ( int n = 0; n < fftSize; n++ ) {
+            double w = 0.5 - 0.5 * Math.cos( 2.0 * Math.PI * n / fftSize );
+            mWindow[n] = (float)w;
+            sumOfSquares += w * w;
+        }
+        mPowerScale = (float)( 2.0 / ( fftSize * sumOfSquares ) );
+
+        int bins = mFft.getBinCount();
+        mRing    = new float[fftSize];
+        mSegment = new float[fftSize];
+        mRe      = new float[bins];
+        mIm      = new float[bins];
+        mHistory = new float[Math.max( 1, averages )][bins];
+        mSum     = new double[bins];
+
+        mBandCenter  = new float[MeterSnapshot.MAX_BANDS];
+        mBandFirst   = new int[MeterSnapshot.MAX_BANDS];
+        mBandLast    = new int[MeterSnapshot.MAX_BANDS];
+        mFirstWeight = new float[MeterSnapshot.MAX_BANDS];
+        mLastWeight  = new float[MeterSnapshot.MAX_BANDS];
+        mBandDB      = new float[MeterSnapshot.MAX_BANDS];
+        mBandCount   = layoutBands( bands.mPerOctave );
+
+        reset();
+    }
+
+    /** @brief The default for the capture rate: about 24 Hz resolution,
+     *         third octaves, DEFAULT_AVERAGES segments.
+     */
+    public static SpectrumAnalyzer forConfig( CaptureConfig config ) {
+        // The next power of two.
+        int size = Integer.highestOneBit( Math.max( 64, config.getSampleRate() / 24 ) - 1 ) << 1;
+        return new SpectrumAnalyzer( config.getSampleRate(), config.getChannelCount(), size,
+                                     Bands.THIRD_OCTAVE, DEFAULT_AVERAGES );
+    }
+
+    public void reset() {
+        Arrays.fill( mRing, 0.0f );
+        for ( float[] spectrum : mHistory ) {
+            Arrays.fill( spectrum, 0.0f );
+        }
+        Arrays.fill( mSum, 0.0 );
+        Arrays.fill( mBandDB, FLOOR_DB );
+        mRingPos          = 0;
+        mSinceLastSegment = 0;
+        mHistoryPos       = 0;
+        mSegments         = 0L;
+    }
+
+    public int getFftSize() {
+        return mSize;
+    }
+
+    public int getBandCount() {
+        return mBandCount;
+    }
+
+    public float getBandCenter( int band ) {
+        return mBandCenter[band];
+    }
+
+    /** @brief Level of the band in dB re a full-scale sine, FLOOR_DB at least. */
+    public float getBandDB( int band ) {
+        return mBandDB[band];
+    }
+
+    /** @brief Segments analyzed since reset(). */
+    public long getSegmentCount() {
+        return mSegments;
+    }
+
+    /** @brief Interleaved 16-bit samples, x[0, length). */
+    public void process( short[] x, int length ) {
+        float scale = TruePeakDetector.SHORT_TO_FLOAT_SCALE / mChannels;
+        for ( int i = 0; i + mChannels <= length; i += mChannels ) {
+            int sum = 0;
+            for ( int ch = 0; ch < mChannels; ch++ ) {
+                sum += x[i + ch];
+            }
+            push( sum * scale );
+        }
+    }
+
+    /** @brief Interleaved float samples, x[0, length). */
+    public void process( float[] x, int length ) {
+        float scale = 1.0f / mChannels;
+        for ( int i = 0; i + mChannels <= length; i += mChannels ) {
+            float sum = 0.0f;
+            for ( int ch = 0; ch < mChannels; ch++ ) {
+                sum += x[i + ch];
+            }
+            push( sum * scale );
+        }
+    }
+
+    private void push( float sample ) {
+        mRing[mRingPos] = sample;
+        mRingPos = mRingPos + 1 == mSize ? 0 : mRingPos + 1;
+        if ( ++mSinceLastSegment == mHop ) {
+            mSinceLastSegment = 0;
+            analyzeSegment();
+        }
+    }
+
+    private void analyzeSegment() {
+        int tail = mSize - mRingPos;
+        for ( int n = 0; n < tail; n++ ) {
+            mSegment[n] = mRing[mRingPos + n] * mWindow[n];
+        }
+        for ( int n = tail; n < mSize; n++ ) {
+            mSegment[n] = mRing[n - tail] * mWindow[n];
+        }
+        mFft.forward( mSegment, 0, mRe, mIm );
+
+        float[] oldest = mHistory[mHistoryPos];
+        mHistoryPos = ( mHistoryPos + 1 ) % mHistory.length;
+        for ( int k = 0; k < mRe.length; k++ ) {
+            float power = ( mRe[k] * mRe[k] + mIm[k] * mIm[k] ) * mPowerScale;
+            mSum[k]  += (double)power - oldest[k];
+            oldest[k] = power;
+        }
+        mSegments++;
+
+        int averaged = (int)Math.min( mSegments, (long)mHistory.length );
+        for ( int b = 0; b < mBandCount; b++ ) {
+            int    first = mBandFirst[b], last = mBandLast[b];
+            double power = mSum[first] * mFirstWeight[b];
+            if ( last > first ) {
+                for ( int k = first + 1; k < last; k++ ) {
+                    power += mSum[k];
+                }
+                power += mSum[last] * mLastWeight[b];
+            }
+            // A full-scale sine has a mean square of 1/2.
+            double db = 10.0 * Math.log10( 2.0 * Math.max( power, 0.0 ) / averaged );
+            mBandDB[b] = (float)Math.max( FLOOR_DB, db );
+        }
+    }
+
+    /** @brief Fills the band tables. Bin k covers [k - 1/2, k + 1/2) bins. */
+    private int layoutBands( int perOctave ) {
+        double binHz   = (double)mSampleRate / mSize;
+        double nyquist = mSampleRate / 2.0;
+        double halfBand = Math.pow( 2.0, 0.5 / perOctave );
+        int n = (int)Math.ceil( perOctave * Math.log( LOWEST_CENTER_HZ / 1000.0 ) / Math.log( 2.0 ) );
+        int count = 0;
+        while ( count < MeterSnapshot.MAX_BANDS ) {
+            double center = 1000.0 * Math.pow( 2.0, (double)n / perOctave );
+            double lo = center / halfBand / binHz;
+            double hi = center * halfBand / binHz;
+            if ( center * halfBand > nyquist ) {
+                break;
+            }
+            int first = (int)Math.floor( lo + 0.5 );
+            int last  = Math.min( mSize / 2, (int)Math.floor( hi + 0.5 ) );
+            mBandCenter[count] = (float)center;
+            mBandFirst[count]  = first;
+            mBandLast[count]   = last;
+            if ( first == last ) {
+                mFirstWeight[count] = (float)( hi - lo );
+                mLastWeight[count]  = 0.0f;
+            }
+            else {
+                mFirstWeight[count] = (float)( first + 0.5 - lo );
+                mLastWeight[count]  = (float)( hi - ( last - 0.5 ) );
+            }
+            count++;
+            n++;
+        }
+        return count;
+    }
+}
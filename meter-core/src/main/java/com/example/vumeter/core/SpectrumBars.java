@@ -0,0 +1,197 @@
+package com.example.vumeter.core;
+
+/** @brief The bars of the spectrum display: their geometry, and their
+ *         heights driven by the band levels of the snapshots.
+ *
+ *  All bars are one batch: every bar is a quad whose vertices carry their
+ *  x, whether they are on the top edge, and the index of their band. The
+ *  vertices never change; the vertex shader lifts the top edge by the
+ *  height of the band taken from a uniform array, so a frame uploads only
+ *  the MAX_BANDS heights and draws all bars with one call.
+ *
+ *  A bar jumps up to a louder level at once and falls at FALL_DB_PER_SECOND,
+ *  as analyzers usually do. Heights are 0 to 1 for FLOOR_DB to CEILING_DB.
+ *
+ *  shouldWakeForLevels() runs on the capture thread; everything else on
+ *  the GL thread.
+ */
+public class SpectrumBars {
+
+    public static final int   MAX_BANDS          = MeterSnapshot.MAX_BANDS;
+
+    public static final float FLOOR_DB           = -72.0f;
+    public static final float CEILING_DB         =   0.0f;
+    public static final float FALL_DB_PER_SECOND =  24.0f;
+
+    /** @brief Height changes below this are not worth a frame. */
+    public static final float WAKE_THRESHOLD     = 1.0f / 256.0f;
+
+    /** @brief x, top (0 or 1), band. */
+    public static final int   FLOATS_PER_VERTEX  = 3;
+    public static final int   VERTICES_PER_BAR   = 4;
+    public static final int   INDICES_PER_BAR    = 6;
+
+    /** @brief Fraction of the slot of a band covered by its bar. */
+    static final float BAR_FILL = 0.8f;
+
+    private final float mLeft;
+    private final float mRight;
+
+    private int     mBandCount;
+    private boolean mLayoutChanged;
+
+    private final float[] mTarget = new float[MAX_BANDS];
+    private final float[] mHeight = new float[MAX_BANDS];
+    private long          mLastNanos;
+    private boolean       mAdvanced;
+    private boolean       mFalling;
+
+    /** @brief Capture thread: the heights the last wake-up was for. */
+    private final float[] mWokenHeight = new float[MAX_BANDS];
+    private int           mWokenBandCount;
+
+    /** @param left, right horizontal extent of the bars in normalized
+     *         device coordinates. The vertical extent is up to the shader.
+     */
+    public SpectrumBars( float left, float right ) {
+        mLeft  = left;
+        mRight = right;
+    }
+
+    public int getBandCount() {
+        return mBandCount;
+    }
+
+    /** @brief Height of the band, 0 to 1, at the last advanceTo(). */
+    public float getHeight( int band ) {
+        return mHeight[band];
+    }
+
+    /** @brief All MAX_BANDS heights, for glUniform1fv(). Do not modify. */
+    public float[] getHeights() {
+        return mHeight;
+    }
+
+    /** @brief True once after the band count changed: the vertices have to
+     *         be made and uploaded again.
+     */
+    public boolean takeLayoutChanged() {
+        boolean changed = mLayoutChanged;
+        mLayoutChanged = false;
+        return changed;
+    }
+
+    public static float heightFor( float db ) {
+        float h = ( db - FLOOR_DB ) / ( CEILING_DB - FLOOR_DB );
+        return Math.max( 0.0f, Math.min( 1.0f, h ) );
+    }
+
+    /** @brief Capture thread. True if the bars drawn for the last wake-up
+     *         differ visibly from the snapshot.
+     */
+    public boolean shouldWakeForLevels( MeterSnapshot snapshot ) {
+        boolean wake = snapshot.mBandCount != mWokenBandCount;
+        for ( int b = 0; b < snapshot.mBandCount; b++ ) {
+            float h = heightFor( snapshot.mBandDB[b] );
+            if ( Math.abs( h - mWokenHeight[b] ) > WAKE_THRESHOLD ) {
+                wake = true;
+            }
+        }
+        if ( wake ) {
+            mWokenBandCount = snapshot.mBandCount;
+            for ( int b = 0; b < snapshot.mBandCount; b++ ) {
+                mWokenHeight[b] = heightFor( snapshot.mBandDB[b] );
+            }
+        }
+        return wake;
+    }
+
+    /** @brief GL thread. The levels of a new snapshot. */
+    public void setLevels( MeterSnapshot snapshot ) {
+        if ( snapshot.mBandCount != mBandCount ) {
+            mBandCount     = snapshot.mBandCount;
+            mLayoutChanged = true;
+            for ( int b = mBandCount; b < MAX_BANDS; b++ ) {
+                mTarget[b] = 0.0f;
+                mHeight[b] = 0.0f;
+            }
+        }
+        for ( int b = 0; b < mBandCount; b++ ) {
+            mTarget[b] = heightFor( snapshot.mBandDB[b] );
+        }
+    }
+
+    /** @brief GL thread. Moves the bars to the frame time. */
+    public void advanceTo( long nowNanos ) {
+        float seconds = mAdvanced ? Math.max( 0.0f, ( nowNanos - mLastNanos ) / 1.0e9f ) : 0.0f;
+        mLastNanos = nowNanos;
+        mAdvanced  = true;
+        float fall = seconds * FALL_DB_PER_SECOND / ( CEILING_DB - FLOOR_DB );
+
+        boolean falling = false;
+        for ( int b = 0; b < mBandCount; b++ ) {
+            float target = mTarget[b];
+            float h = mHeight[b];
+            h = h <= target ? target : Math.max( target, h - fall );
+            mHeight[b] = h;
+            falling |= h > target;
+        }
+        mFalling = falling;
+    }
+
+    /** @brief True while a bar has yet to fall to its level. */
+    public boolean isFalling() {
+        return mFalling;
+    }
+
+    public int numVertexFloats() {
+        return MAX_BANDS * VERTICES_PER_BAR * FLOATS_PER_VERTEX;
+    }
+
+    public int numIndices() {
+        return MAX_BANDS * INDICES_PER_BAR;
+    }
+
+    /** @brief Indices to draw for the current band count. */
+    public int indexCount() {
+        return mBandCount * INDICES_PER_BAR;
+    }
+
+    /** @brief Bars for the current band count, evenly spaced, bottom-left,
+     *         bottom-right, top-right, top-left.
+     */
+    public void makeVertices( float[] out ) {
+        int   count = Math.max( 1, mBandCount );
+        float slot  = ( mRight - mLeft ) / count;
+        float gap   = slot * ( 1.0f - BAR_FILL ) * 0.5f;
+        int   i     = 0;
+        for ( int b = 0; b < MAX_BANDS; b++ ) {
+            float x0 = mLeft + slot * b + gap;
+            float x1 = mLeft + slot * ( b + 1 ) - gap;
+            i = vertex( out, i, x0, 0.0f, b );
+            i = vertex( out, i, x1, 0.0f, b );
+            i = vertex( out, i, x1, 1.0f, b );
+            i = vertex( out, i, x0, 1.0f, b );
+        }
+    }
+
+    public static void makeIndices( short[] out ) {
+        int i = 0;
+        for ( int b = 0; b < MAX_BANDS; b++ ) {
+            short v = (short)( b * VERTICES_PER_BAR );
+            out[i++] = v;
+            out[i++] = (short)( v + 1 );
+            out[i++] = (short)( v + 2 );
+            out[i++] = (short)( v + 2 );
+            out[i++] = (short)( v + 3 );
+            out[i++] = v;
+        }
+    }
+
+    private static int vertex( float[] out, int i, float x, float top, int band ) {
+        out[i]     = x;
+        out[i + 1] = top;
+        out[i + 2] = band;
+        return i + FLOATS_PER_VERTEX;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.vumeter.core;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** @brief When each milestone of the startup was first reached, from the
+ *         creation of the meter to its first frame on the screen.
+ *
+ *  The milestones are reached on different threads, in an order that
+ *  varies: the texture is decoded on a worker thread while the GL thread
+ *  sets up the surface and the capture thread opens the microphone. Each
+ *  keeps the time of its first mark(); later marks, e.g. after the GL
+ *  context was lost, are ignored. getTimeToFirstFrame() is the number to
+ *  track for regressions.
+ */
+public class StartupTrace {
+
+    /** @brief Milestones, each with the thread that marks it. */
+    public enum Milestone {
+        /** @brief Worker thread: the PNG of the face decoded into a Bitmap. */
+        TEXTURE_DECODED,
+        /** @brief Main thread: the capture thread started, opening the
+         *         microphone on its own while the GL thread sets up.
+         */
+        CAPTURE_STARTED,
+        /** @brief GL thread: onSurfaceCreated() called. */
+        SURFACE_CREATED,
+        /** @brief GL thread: the programs linked from their sources. */
+        PROGRAMS_COMPILED,
+        /** @brief GL thread: the programs loaded from their cached binaries. */
+        PROGRAMS_LOADED,
+        /** @brief GL thread: the texture uploaded, after waiting for the decode. */
+        TEXTURE_UPLOADED,
+        /** @brief GL thread: the first onDrawFrame() done. */
+        FIRST_FRAME
+    }
+
+    /** @brief getNanos() of a milestone not reached yet. */
+    public static final long NOT_REACHED = -1L;
+
+    private static final Milestone[] MILESTONES = Milestone.values();
+
+    private final long            mOriginNanos;
+    private final AtomicLongArray mNanos = new AtomicLongArray( MILESTONES.length );
+
+    /** @brief Counts from now. */
+    public StartupTrace() {
+        this( System.nanoTime() );
+    }
+
+    /** @param originNanos System.nanoTime() at the start, e.g. of the Activity. */
+    public StartupTrace( long originNanos ) {
+        mOriginNanos = originNanos;
+        for ( int i = 0; i < MILESTONES.length; i++ ) {
+            mNanos.set( i, NOT_REACHED );
+        }
+    }
+
+    public long getOriginNanos() {
+        return mOriginNanos;
+    }
+
+    /** @brief Any thread.
+     *  @return true if the milestone was reached for the first time.
+     */
+    public boolean mark( Milestone milestone ) {
+        return mark( milestone, System.nanoTime() );
+    }
+
+    public boolean mark( Milestone milestone, long nowNanos ) {
+        long nanos = Math.max( 0L, nowNanos - mOriginNanos );
+        return mNanos.compareAndSet( milestone.ordinal(), NOT_REACHED, nanos );
+    }
+
+    public boolean isReached( Milestone milestone ) {
+        return getNanos( milestone ) != NOT_REACHED;
+    }
+
+    /** @return nanoseconds from the origin, or NOT_REACHED. */
+    public long getNanos( Milestone milestone ) {
+        return mNanos.get( milestone.ordinal() );
+    }
+
+    public long getTimeToFirstFrame() {
+        return getNanos( Milestone.FIRST_FRAME );
+    }
+
+    /** @brief "startup texture_decoded=12.3ms ..." with the milestones
+     *         reached, in the order of the enum. Allocates.
+     */
+    public String report() {
+        StringBuilder out = new StringBuilder( "startup" );
+        for ( Milestone milestone : MILESTONES ) {
+            long nanos = getNanos( milestone );
+            if ( nanos == NOT_REACHED ) {
+                continue;
+            }
+            out.append( ' ' ).append( milestone.name().toLowerCase( Locale.ROOT ) )
+               .append( String.format( Locale.ROOT, "=%.1fms", nanos / 1.0e6 ) );
+        }
+        return out.toString();
+    }
+
+    @Override
+    public String toString() {
+        return report();
+    }
+}
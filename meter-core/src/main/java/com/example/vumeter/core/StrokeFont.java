@@ -0,0 +1,89 @@
+package com.example.vumeter.core;
+
+/** @brief The few characters of the labels of a MeterFace, as polylines on
+ *         a grid GLYPH_WIDTH wide and GLYPH_HEIGHT high, y up from the
+ *         baseline. MeterFace strokes every segment as a quad, so the
+ *         labels are as sharp at any size as the rest of the face.
+ */
+final class StrokeFont {
+
+    static final float GLYPH_WIDTH  = 4.0f;
+    static final float GLYPH_HEIGHT = 6.0f;
+
+    /** @brief From the left of a glyph to the left of the next one. */
+    static final float ADVANCE      = 6.0f;
+
+    private static final float[][] NONE = new float[0][];
+
+    private StrokeFont() {
+    }
+
+    /** @brief Width of the text from the left of its first glyph to the
+     *         right of its last.
+     */
+    static float width( String text ) {
+        return text.isEmpty() ? 0.0f : ( text.length() - 1 ) * ADVANCE + GLYPH_WIDTH;
+    }
+
+    /** @brief Number of straight segments of the text. */
+    static int segmentCount( String text ) {
+        int segments = 0;
+        for ( int i = 0; i < text.length(); i++ ) {
+            for ( float[] line : glyph( text.charAt( i ) ) ) {
+                segments += line.length / 2 - 1;
+            }
+        }
+        return segments;
+    }
+
+    /** @brief The polylines of c, each as (x, y) pairs. */
+    static float[][] glyph( char c ) {
+        switch ( c ) {
+            case ' ':
+                return NONE;
+            case '0':
+                return new float[][] { { 1,0, 3,0, 4,1, 4,5, 3,6, 1,6, 0,5, 0,1, 1,0 } };
+            case '1':
+                return new float[][] { { 1,5, 2,6, 2,0 }, { 1,0, 3,0 } };
+            case '2':
+                return new float[][] { { 0,5, 1,6, 3,6, 4,5, 4,4, 0,0, 4,0 } };
+            case '3':
+                return new float[][] { { 0,5, 1,6, 3,6, 4,5, 4,4, 3,3, 1,3 },
+                                       { 3,3, 4,2, 4,1, 3,0, 1,0, 0,1 } };
+            case '4':
+                return new float[][] { { 3,0, 3,6, 0,2, 4,2 } };
+            case '5':
+                return new float[][] { { 4,6, 0,6, 0,3, 3,3, 4,2, 4,1, 3,0, 0,0 } };
+            case '6':
+                return new float[][] { { 3,6, 1,6, 0,5, 0,1, 1,0, 3,0, 4,1, 4,2, 3,3, 0,3 } };
+            case '7':
+                return new float[][] { { 0,6, 4,6, 1,0 } };
+            case '8':
+                return new float[][] { { 1,3, 0,4, 0,5, 1,6, 3,6, 4,5, 4,4, 3,3, 1,3,
+                                         0,2, 0,1, 1,0, 3,0, 4,1, 4,2, 3,3 } };
+            case '9':
+                return new float[][] { { 4,3, 1,3, 0,4, 0,5, 1,6, 3,6, 4,5, 4,1, 3,0, 1,0 } };
+            case '+':
+                return new float[][] { { 0,3, 4,3 }, { 2,1, 2,5 } };
+            case '-':
+                return new float[][] { { 0,3, 4,3 } };
+            case 'B':
+                return new float[][] { { 0,0, 0,6, 3,6, 4,5, 4,4, 3,3, 0,3 },
+                                       { 3,3, 4,2, 4,1, 3,0, 0,0 } };
+            case 'L':
+                return new float[][] { { 0,6, 0,0, 4,0 } };
+            case 'M':
+                return new float[][] { { 0,0, 0,6, 2,3, 4,6, 4,0 } };
+            case 'P':
+                return new float[][] { { 0,0, 0,6, 3,6, 4,5, 4,4, 3,3, 0,3 } };
+            case 'U':
+                return new float[][] { { 0,6, 0,1, 1,0, 3,0, 4,1, 4,6 } };
+            case 'V':
+                return new float[][] { { 0,6, 2,0, 4,6 } };
+            case 'd':
+                return new float[][] { { 4,6, 4,0, 1,0, 0,1, 0,3, 1,4, 4,4 } };
+            default:
+                throw new IllegalArgumentException( "No glyph for '" + c + "'" );
+        }
+    }
+}
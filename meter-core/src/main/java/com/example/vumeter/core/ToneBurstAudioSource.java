@@ -0,0 +1,54 @@
+package com.example.vumeter.core;
+
+/** @brief Synthetic AudioSource: bursts of sine repeated at a fixed period,
+ *         silent in between, on every channel.
+ *
+ *  The test signal of the meter standards, e.g. 5 kHz bursts of 5 or 10 ms
+ *  for the attack of a PPM (IEC 60268-10), or 300 ms of 1 kHz for the
+ *  rise of a VU (IEC 60268-17). Every burst starts at zero phase, on frame
+ *  0 of its period.
+ */
+public class ToneBurstAudioSource extends SignalAudioSource {
+
+    private final double mPhaseIncrement;
+    private final double mAmplitude;
+    private final long   mBurstFrames;
+    private final long   mPeriodFrames;
+
+    /**
+     *  @param frequency    in Hz.
+     *  @param amplitude    in full scale, 1.0 being 32767 or 1.0f.
+     *  @param burstMillis  length of each burst.
+     *  @param periodMillis from the start of a burst to the next, at least
+     *                      burstMillis.
+     *  @param totalFrames  frames until END_OF_STREAM, or a negative value
+     *                      for an endless source.
+     *  @param realTime     paces read() to the sample rate.
+     */
+    public ToneBurstAudioSource( CaptureConfig config, double frequency, double amplitude,
+                                 double burstMillis, double periodMillis,
+                                 long totalFrames, boolean realTime ) {
+        super( config, totalFrames, realTime );
+        if ( !( burstMillis > 0.0 ) || !( periodMillis >= burstMillis ) ) {
+            throw new IllegalArgumentException( "burst " + burstMillis + " ms every " + periodMillis + " ms" );
+        }
+        mPhaseIncrement = 2.0 * Math.PI * frequency / config.getSampleRate();
+        mAmplitude      = amplitude;
+        mBurstFrames    = Math.max( 1L, Math.round( burstMillis  * config.getSampleRate() / 1000.0 ) );
+        mPeriodFrames   = Math.max( 1L, Math.round( periodMillis * config.getSampleRate() / 1000.0 ) );
+    }
+
+    public long getBurstFrames() {
+        return mBurstFrames;
+    }
+
+    public long getPeriodFrames() {
+        return mPeriodFrames;
+    }
+
+    @Override
+    protected double sample( long frame ) {
+        long position = frame % mPeriodFrames;
+        return position < mBurstFrames ? mAmplitude * Math.sin( mPhaseIncrement * position ) : 0.0;
+    }
+}
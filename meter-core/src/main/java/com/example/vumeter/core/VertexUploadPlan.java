@@ -0,0 +1,125 @@
+package com.example.vumeter.core;
+
+/** @brief Layout of the interleaved vertex array shared by VUMeterModel and
+ *         VUMeterRenderer, and what is uploaded to the GPU and when.
+ *
+ *  Each vertex is (x, y, z, s, t) in floats. The array holds one quad for
+ *  the base, one for the LED and one per hand (one per channel):
+ *
+ *      vertices 0- 3 : base    (static)
+ *      vertices 4- 7 : LED     (static)
+ *      vertices 8-11 : hand 0  (dynamic, rewritten by makeHandVertices())
+ *      vertices 12-15: hand 1  (dynamic, stereo only)
+ *
+ *  The whole array and the indices are uploaded once when the surface is
+ *  created. Per frame only the contiguous range of the hands is streamed
+ *  with glBufferSubData().
+ */
+public class VertexUploadPlan {
+
+    public static final int BYTES_PER_FLOAT     = 4;
+    public static final int BYTES_PER_SHORT     = 2;
+
+    public static final int POSITION_ELEMENTS   = 3;
+    public static final int TEXCOORD_ELEMENTS   = 2;
+    public static final int FLOATS_PER_VERTEX   = POSITION_ELEMENTS + TEXCOORD_ELEMENTS;
+    public static final int STRIDE_BYTES        = FLOATS_PER_VERTEX * BYTES_PER_FLOAT;
+    public static final int POSITION_OFFSET     = 0;
+    public static final int TEXCOORD_OFFSET     = POSITION_ELEMENTS * BYTES_PER_FLOAT;
+
+    public static final int VERTICES_PER_QUAD   = 4;
+    public static final int INDICES_PER_QUAD    = 6;
+
+    public static final int QUAD_BASE           = 0;
+    public static final int QUAD_LED            = 1;
+    public static final int QUAD_FIRST_HAND     = 2;
+
+    private final int mNumHands;
+
+    public VertexUploadPlan( int numHands ) {
+        mNumHands = numHands;
+    }
+
+    public int numHands() {
+        return mNumHands;
+    }
+
+    public int numQuads() {
+        return QUAD_FIRST_HAND + mNumHands;
+    }
+
+    public int numVertexFloats() {
+        return numQuads() * VERTICES_PER_QUAD * FLOATS_PER_VERTEX;
+    }
+
+    public int numIndices() {
+        return numQuads() * INDICES_PER_QUAD;
+    }
+
+    public int vertexBytes() {
+        return numVertexFloats() * BYTES_PER_FLOAT;
+    }
+
+    public int indexBytes() {
+        return numIndices() * BYTES_PER_SHORT;
+    }
+
+    public static int quadOfHand( int hand ) {
+        return QUAD_FIRST_HAND + hand;
+    }
+
+    /** @brief First float of the given quad in the vertex array. */
+    public static int firstFloatOfQuad( int quad ) {
+        return quad * VERTICES_PER_QUAD * FLOATS_PER_VERTEX;
+    }
+
+    /** @brief Byte offset into the index buffer for glDrawElements(). */
+    public static int indexByteOffsetOfQuad( int quad ) {
+        return quad * INDICES_PER_QUAD * BYTES_PER_SHORT;
+    }
+
+    /** @brief Number of indices to draw all the hands with one call. */
+    public int handIndexCount() {
+        return mNumHands * INDICES_PER_QUAD;
+    }
+
+    public int dynamicFirstFloat() {
+        return firstFloatOfQuad( QUAD_FIRST_HAND );
+    }
+
+    public int dynamicFloatCount() {
+        return mNumHands * VERTICES_PER_QUAD * FLOATS_PER_VERTEX;
+    }
+
+    public int dynamicByteOffset() {
+        return dynamicFirstFloat() * BYTES_PER_FLOAT;
+    }
+
+    public int dynamicByteSize() {
+        return dynamicFloatCount() * BYTES_PER_FLOAT;
+    }
+
+    /** @brief Bytes sent to the GPU in onSurfaceCreated(). */
+    public int bytesUploadedAtSurfaceCreation() {
+        return vertexBytes() + indexBytes();
+    }
+
+    /** @brief Bytes sent to the GPU in every onDrawFrame(). */
+    public int bytesUploadedPerFrame() {
+        return dynamicByteSize();
+    }
+
+    /** @brief Two triangles per quad, (0, 1, 2) and (2, 3, 0). */
+    public void fillIndices( short[] indices ) {
+        for ( int quad = 0; quad < numQuads(); quad++ ) {
+            int v = quad * VERTICES_PER_QUAD;
+            int i = quad * INDICES_PER_QUAD;
+            indices[ i + 0 ] = (short)( v + 0 );
+            indices[ i + 1 ] = (short)( v + 1 );
+            indices[ i + 2 ] = (short)( v + 2 );
+            indices[ i + 3 ] = (short)( v + 2 );
+            indices[ i + 4 ] = (short)( v + 3 );
+            indices[ i + 5 ] = (short)( v + 0 );
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.vumeter.core;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** @brief AudioSource that streams the samples of a WAV file.
+ *
+ *  Integer PCM of 16, 24 and 32 bits and IEEE float of 32 bits, also in
+ *  WAVE_FORMAT_EXTENSIBLE, of 1 or 2 channels. The data is mapped read-only
+ *  a window of about DEFAULT_WINDOW_BYTES at a time as read() goes through
+ *  it, so files of any length are read without loading them. A data chunk
+ *  of size 0 or past the end of the file, as left by a recorder that did
+ *  not finish, is taken to run to the end of the file.
+ *
+ *  16-bit files are read as PCM_16BIT, the others as PCM_FLOAT; both read()
+ *  convert from any format. read() returns as fast as the file can be
+ *  decoded, so CaptureLoop meters it faster than real time (OfflineMeter).
+ *  Not thread safe, like the other sources.
+ */
+public class WavAudioSource implements AudioSource {
+
+    public static final int DEFAULT_WINDOW_BYTES = 8 * 1024 * 1024;
+
+    private static final int RIFF = 0x46464952;
+    private static final int WAVE = 0x45564157;
+    private static final int FMT  = 0x20746d66;
+    private static final int DATA = 0x61746164;
+
+    private static final int FORMAT_PCM        = 1;
+    private static final int FORMAT_FLOAT      = 3;
+    private static final int FORMAT_EXTENSIBLE = 0xfffe;
+
+    private final File          mFile;
+    private final CaptureConfig mConfig;
+    private final int           mBitsPerSample;
+    private final boolean       mFloat;
+    private final int           mBytesPerSample;
+    private final int           mBytesPerFrame;
+    private final long          mDataOffset;
+    private final long          mFrameCount;
+    private final int           mWindowFrames;
+    private final int           mBufferSizeInSamples;
+
+    private RandomAccessFile mRandomAccess;
+    private MappedByteBuffer mWindow;
+    private long             mWindowStart = -1L;
+    private int              mWindowLength;
+    private long             mFramesRead;
+
+    public WavAudioSource( File file ) throws IOException {
+        this( file, 0 );
+    }
+
+    /** @param blockFrames frames per read, or 0 for 20 ms. */
+    public WavAudioSource( File file, int blockFrames ) throws IOException {
+        this( file, blockFrames, DEFAULT_WINDOW_BYTES );
+    }
+
+    WavAudioSource( File file, int blockFrames, int windowBytes ) throws IOException {
+        mFile = file;
+        RandomAccessFile in = new RandomAccessFile( file, "r" );
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            ByteBuffer header = readAt( channel, 0L, 12 );
+            if ( header.getInt( 0 ) != RIFF || header.getInt( 8 ) != WAVE ) {
+                throw new IOException( file + " is not a WAV file." );
+            }
+            ByteBuffer format = null;
+            long dataOffset = -1L;
+            long dataBytes  = 0L;
+            long position   = 12L;
+            while ( position + 8 <= size ) {
+                ByteBuffer chunk = readAt( channel, position, 8 );
+                int  id    = chunk.getInt( 0 );
+                long bytes = chunk.getInt( 4 ) & 0xffffffffL;
+                if ( id == FMT ) {
+                    format = readAt( channel, position + 8, (int)Math.min( bytes, 40L ) );
+                }
+                else if ( id == DATA ) {
+                    dataOffset = position + 8;
+                    dataBytes  = bytes == 0L || dataOffset + bytes > size ? size - dataOffset : bytes;
+                    break;
+                }
+                position += 8 + bytes + ( bytes & 1L );
+            }
+            if ( format == null || format.capacity() < 16 || dataOffset < 0L ) {
+                throw new IOException( file + " has no fmt or data chunk." );
+            }
+
+            int tag        = format.getShort( 0 ) & 0xffff;
+            int channels   = format.getShort( 2 ) & 0xffff;
+            int sampleRate = format.getInt( 4 );
+            int blockAlign = format.getShort( 12 ) & 0xffff;
+            mBitsPerSample = format.getShort( 14 ) & 0xffff;
+            if ( tag == FORMAT_EXTENSIBLE && format.capacity() >= 26 ) {
+                // The format tag is the first two bytes of the sub-format GUID.
+                tag = format.getShort( 24 ) & 0xffff;
+            }
+            mFloat = tag == FORMAT_FLOAT;
+            boolean supported = mFloat ? mBitsPerSample == 32
+                              : tag == FORMAT_PCM
+                                && ( mBitsPerSample == 16 || mBitsPerSample == 24 || mBitsPerSample == 32 );
+            if ( !supported ) {
+                throw new IOException( file + ": format " + tag + " of " + mBitsPerSample
+                                     + " bits is not supported." );
+            }
+            if ( channels < 1 || channels > CaptureConfig.MAX_CHANNELS || sampleRate <= 0 ) {
+                throw new IOException( file + ": " + channels + " channels at " + sampleRate
+                                     + " Hz are not supported." );
+            }
+            mBytesPerSample = mBitsPerSample / 8;
+            mBytesPerFrame  = mBytesPerSample * channels;
+            if ( blockAlign != mBytesPerFrame ) {
+                throw new IOException( file + ": block align " + blockAlign + " for "
+                                     + mBytesPerFrame + " bytes per frame." );
+            }
+            mDataOffset = dataOffset;
+            mFrameCount = dataBytes / mBytesPerFrame;
+            mConfig     = new CaptureConfig( sampleRate, channels,
+                                             mBitsPerSample == 16 && !mFloat
+                                                 ? CaptureConfig.Encoding.PCM_16BIT
+                                                 : CaptureConfig.Encoding.PCM_FLOAT,
+                                             blockFrames );
+        }
+        finally {
+            in.close();
+        }
+        mWindowFrames        = Math.max( 1, windowBytes / mBytesPerFrame );
+        mBufferSizeInSamples = mConfig.getBlockSamples( Math.max( 1, mConfig.getSampleRate() / 50 ) );
+    }
+
+    @Override
+    public CaptureConfig getConfig() {
+        return mConfig;
+    }
+
+    @Override
+    public int getBufferSizeInSamples() {
+        return mBufferSizeInSamples;
+    }
+
+    public int getBitsPerSample() {
+        return mBitsPerSample;
+    }
+
+    public boolean isFloat() {
+        return mFloat;
+    }
+
+    public long getFrameCount() {
+        return mFrameCount;
+    }
+
+    public long getDurationNanos() {
+        return mFrameCount * 1000000000L / mConfig.getSampleRate();
+    }
+
+    /** @brief Frames read so far. */
+    public long getFramesRead() {
+        return mFramesRead;
+    }
+
+    /** @brief The next read() starts at the given frame, e.g. to read a
+     *         part of the file.
+     */
+    public void seek( long frame ) {
+        if ( frame < 0L || frame > mFrameCount ) {
+            throw new IndexOutOfBoundsException( "frame " + frame + " of " + mFrameCount );
+        }
+        mFramesRead = frame;
+    }
+
+    /** @brief Opens the file, unless it is open. Reading goes on from where
+     *         it stopped.
+     */
+    @Override
+    public void start() {
+        if ( mRandomAccess != null ) {
+            return;
+        }
+        try {
+            mRandomAccess = new RandomAccessFile( mFile, "r" );
+        }
+        catch ( IOException e ) {
+            throw new IllegalStateException( "Cannot open " + mFile, e );
+        }
+    }
+
+    @Override
+    public int read( short[] buffer, int offset, int length ) {
+        int channels = mConfig.getChannelCount();
+        int frames   = (int)Math.min( length / channels, mFrameCount - mFramesRead );
+        if ( frames <= 0 && mFramesRead >= mFrameCount ) {
+            return END_OF_STREAM;
+        }
+        int done = 0;
+        while ( done < frames ) {
+            int n  = mapWindow();
+            n      = Math.min( n, frames - done );
+            int at = (int)( mFramesRead - mWindowStart ) * mBytesPerFrame;
+            int to = offset + done * channels;
+            for ( int i = 0; i < n * channels; i++, at += mBytesPerSample ) {
+                buffer[ to + i ] = shortAt( at );
+            }
+            mFramesRead += n;
+            done        += n;
+        }
+        return frames * channels;
+    }
+
+    @Override
+    public int read( float[] buffer, int offset, int length ) {
+        int channels = mConfig.getChannelCount();
+        int frames   = (int)Math.min( length / channels, mFrameCount - mFramesRead );
+        if ( frames <= 0 && mFramesRead >= mFrameCount ) {
+            return END_OF_STREAM;
+        }
+        int done = 0;
+        while ( done < frames ) {
+            int n  = mapWindow();
+            n      = Math.min( n, frames - done );
+            int at = (int)( mFramesRead - mWindowStart ) * mBytesPerFrame;
+            int to = offset + done * channels;
+            for ( int i = 0; i < n * channels; i++, at += mBytesPerSample ) {
+                buffer[ to + i ] = floatAt( at );
+            }
+            mFramesRead += n;
+            done        += n;
+        }
+        return frames * channels;
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    /** @brief Closes the file. The mapped windows go with the garbage. */
+    @Override
+    public void release() {
+        mWindow      = null;
+        mWindowStart = -1L;
+        if ( mRandomAccess != null ) {
+            try {
+                mRandomAccess.close();
+            }
+            catch ( IOException e ) {
+                // Read-only: nothing is lost.
+            }
+            mRandomAccess = null;
+        }
+    }
+
+    /** @brief Maps the window holding the next frame if it is not mapped.
+     *  @return frames left in the window from the next frame.
+     */
+    private int mapWindow() {
+        if ( mWindow == null || mFramesRead < mWindowStart
+                || mFramesRead >= mWindowStart + mWindowLength ) {
+            long frames = Math.min( mWindowFrames, mFrameCount - mFramesRead );
+            try {
+                mWindow = mRandomAccess.getChannel().map( FileChannel.MapMode.READ_ONLY,
+                        mDataOffset + mFramesRead * mBytesPerFrame, frames * mBytesPerFrame );
+            }
+            catch ( IOException e ) {
+                throw new IllegalStateException( "Cannot map " + mFile, e );
+            }
+            mWindow.order( ByteOrder.LITTLE_ENDIAN );
+            mWindowStart  = mFramesRead;
+            mWindowLength = (int)frames;
+        }
+        return (int)( mWindowStart + mWindowLength - mFramesRead );
+    }
+
+    private short shortAt( int at ) {
+        if ( mFloat ) {
+            long v = Math.round( mWindow.getFloat( at ) * LevelMeter.FLOAT_TO_SHORT_SCALE );
+            return (short)Math.max( Short.MIN_VALUE, Math.min( v, Short.MAX_VALUE ) );
+        }
+        switch ( mBytesPerSample ) {
+            case 2:  return mWindow.getShort( at );
+            case 3:  return (short)( ( mWindow.get( at + 1 ) & 0xff ) | ( mWindow.get( at + 2 ) << 8 ) );
+            default: return (short)( mWindow.getInt( at ) >> 16 );
+        }
+    }
+
+    private float floatAt( int at ) {
+        if ( mFloat ) {
+            return mWindow.getFloat( at );
+        }
+        switch ( mBytesPerSample ) {
+            case 2:  return mWindow.getShort( at ) * ( 1.0f / 32768.0f );
+            case 3:  return ( ( mWindow.get( at ) & 0xff ) | ( mWindow.get( at + 1 ) & 0xff ) << 8
+                            | mWindow.get( at + 2 ) << 16 ) * ( 1.0f / 8388608.0f );
+            default: return mWindow.getInt( at ) * ( 1.0f / 2147483648.0f );
+        }
+    }
+
+    private static ByteBuffer readAt( FileChannel channel, long position, int bytes ) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate( bytes ).order( ByteOrder.LITTLE_ENDIAN );
+        while ( buffer.hasRemaining() ) {
+            if ( channel.read( buffer, position + buffer.position() ) < 0 ) {
+                throw new EOFException( "WAV file ends in a header." );
+            }
+        }
+        return buffer;
+    }
+}
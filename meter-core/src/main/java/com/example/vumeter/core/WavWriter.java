@@ -0,0 +1,139 @@
+package com.example.vumeter.core;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+/** @brief Writes float PCM to a WAV file in any of the formats
+ *         WavAudioSource reads, e.g. to make reproducible test programs from
+ *         the generators.
+ *
+ *  Samples beyond [-1, 1] are clipped in the integer formats. The sizes in
+ *  the header are written by close(). Files up to 4 GB.
+ */
+public class WavWriter implements Closeable {
+
+    private final File         mFile;
+    private final OutputStream mOut;
+    private final int          mBytesPerSample;
+    private final boolean      mFloat;
+    private final byte[]       mBuffer = new byte[8192];
+    private int                mBuffered;
+    private long               mDataBytes;
+    private boolean            mClosed;
+
+    /** @param bitsPerSample 16, 24 or 32; 32 only if isFloat. */
+    public WavWriter( File file, int sampleRate, int channels, int bitsPerSample, boolean isFloat )
+            throws IOException {
+        if ( isFloat ? bitsPerSample != 32
+                     : bitsPerSample != 16 && bitsPerSample != 24 && bitsPerSample != 32 ) {
+            throw new IllegalArgumentException( bitsPerSample + " bits, float " + isFloat );
+        }
+        mFile           = file;
+        mBytesPerSample = bitsPerSample / 8;
+        mFloat          = isFloat;
+        mOut            = new BufferedOutputStream( new FileOutputStream( file ) );
+        int blockAlign  = mBytesPerSample * channels;
+        putInt( 0x46464952 );              // RIFF
+        putInt( 0 );
+        putInt( 0x45564157 );              // WAVE
+        putInt( 0x20746d66 );              // fmt
+        putInt( 16 );
+        putShort( isFloat ? 3 : 1 );
+        putShort( channels );
+        putInt( sampleRate );
+        putInt( sampleRate * blockAlign );
+        putShort( blockAlign );
+        putShort( bitsPerSample );
+        putInt( 0x61746164 );              // data
+        putInt( 0 );
+        flushBuffer();
+        mDataBytes = 0L;
+    }
+
+    /** @brief Writes the whole of a finite source, read as float. */
+    public static void write( File file, AudioSource source, int bitsPerSample, boolean isFloat )
+            throws IOException {
+        CaptureConfig config = source.getConfig();
+        WavWriter out = new WavWriter( file, config.getSampleRate(), config.getChannelCount(),
+                                       bitsPerSample, isFloat );
+        try {
+            float[] block = new float[ source.getBufferSizeInSamples() ];
+            source.start();
+            int length;
+            while ( ( length = source.read( block, 0, block.length ) ) >= 0 ) {
+                out.write( block, 0, length );
+            }
+            source.stop();
+        }
+        finally {
+            source.release();
+            out.close();
+        }
+    }
+
+    /** @brief Appends interleaved samples x[offset, offset + length). */
+    public void write( float[] x, int offset, int length ) throws IOException {
+        for ( int i = offset; i < offset + length; i++ ) {
+            if ( mBuffered + 4 > mBuffer.length ) {
+                flushBuffer();
+            }
+            if ( mFloat ) {
+                putInt( Float.floatToIntBits( x[i] ) );
+                continue;
+            }
+            // Full scale is 2^(bits - 1), as WavAudioSource reads it.
+            long full = 1L << ( mBytesPerSample * 8 - 1 );
+            long s    = Math.max( -full, Math.min( Math.round( x[i] * (double)full ), full - 1 ) );
+            mBuffer[mBuffered++] = (byte)s;
+            mBuffer[mBuffered++] = (byte)( s >> 8 );
+            if ( mBytesPerSample >= 3 ) {
+                mBuffer[mBuffered++] = (byte)( s >> 16 );
+            }
+            if ( mBytesPerSample == 4 ) {
+                mBuffer[mBuffered++] = (byte)( s >> 24 );
+            }
+        }
+        mDataBytes += (long)length * mBytesPerSample;
+    }
+
+    /** @brief Completes the header and closes the file. */
+    @Override
+    public void close() throws IOException {
+        if ( mClosed ) {
+            return;
+        }
+        mClosed = true;
+        flushBuffer();
+        mOut.close();
+        RandomAccessFile file = new RandomAccessFile( mFile, "rw" );
+        try {
+            file.seek( 4 );
+            file.writeInt( Integer.reverseBytes( (int)( 36 + mDataBytes ) ) );
+            file.seek( 40 );
+            file.writeInt( Integer.reverseBytes( (int)mDataBytes ) );
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    private void putShort( int v ) {
+        mBuffer[mBuffered++] = (byte)v;
+        mBuffer[mBuffered++] = (byte)( v >> 8 );
+    }
+
+    private void putInt( int v ) {
+        putShort( v );
+        putShort( v >> 16 );
+    }
+
+    private void flushBuffer() throws IOException {
+        mOut.write( mBuffer, 0, mBuffered );
+        mBuffered = 0;
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the meter ballistics against the tone-burst responses of
+ * IEC 60268-17 (VU), IEC 60268-10 (PPM) and IEC 60268-18 (sample peak).
+ */
+public class BallisticsTest {
+
+    private static final double AMPLITUDE = 0.5;
+    /** Steady reading of a sine of AMPLITUDE: its RMS in 16-bit units. */
+    private static final double STEADY = AMPLITUDE * 32767 / Math.sqrt(2.0);
+
+    private static short[] tone(int rate, double freq, double seconds, double silenceAfter) {
+        int n = (int) Math.round(seconds * rate);
+        short[] x = new short[n + (int) Math.round(silenceAfter * rate)];
+        for (int i = 0; i < n; i++) {
+            x[i] = (short) Math.round(AMPLITUDE * 32767 * Math.sin(2.0 * Math.PI * freq * i / rate));
+        }
+        return x;
+    }
+
+    /** The reading after every sample. */
+    private static float[] readings(Ballistics b, short[] x) {
+        float[] r = new float[x.length];
+        for (int i = 0; i < x.length; i++) {
+            r[i] = b.process(x, i, i + 1, 1);
+        }
+        return r;
+    }
+
+    private static double max(float[] r) {
+        double max = 0.0;
+        for (float v : r) {
+            max = Math.max(max, v);
+        }
+        return max;
+    }
+
+    private static double dB(double ratio) {
+        return 20.0 * Math.log10(ratio);
+    }
+
+    private static void assertVuStep(int rate) {
+        // 997 Hz rather than 1 kHz, so that the samples do not land on the
+        // same few phases of the sine, which would bias the rectified mean.
+        float[] r = readings(new Ballistics(Ballistics.Mode.VU, rate), tone(rate, 997.0, 2.0, 0.0));
+        int first99 = -1;
+        for (int i = 0; i < r.length && first99 < 0; i++) {
+            if (r[i] >= 0.99 * STEADY) {
+                first99 = i;
+            }
+        }
+        double riseSeconds = (double) first99 / rate;
+        double overshoot   = max(r) / STEADY - 1.0;
+
+        assertEquals("99% at " + rate, 0.300, riseSeconds, 0.030);
+        assertTrue("overshoot " + overshoot, overshoot >= 0.010 && overshoot <= 0.015);
+        assertEquals(0.0, dB(r[r.length - 1] / STEADY), 0.05);
+    }
+
+    @Test
+    public void vu_stepOfSine_reaches99PercentIn300ms_andOvershootsByAboutOnePercent() {
+        assertVuStep(48000);
+        assertVuStep(44100);
+        assertVuStep(8000);
+    }
+
+    /** Reading of a 5 kHz burst of the given length relative to the steady reading of that tone. */
+    private static double burstDB(Ballistics.Mode mode, double seconds) {
+        float[] steady = readings(new Ballistics(mode, 48000), tone(48000, 5000.0, 1.0, 0.0));
+        float[] burst  = readings(new Ballistics(mode, 48000), tone(48000, 5000.0, seconds, 0.05));
+        return dB(max(burst) / steady[steady.length - 1]);
+    }
+
+    @Test
+    public void ppm_steadyTone_readsItsRms() {
+        for (Ballistics.Mode mode : new Ballistics.Mode[] {
+                Ballistics.Mode.PPM_TYPE_I, Ballistics.Mode.PPM_TYPE_II, Ballistics.Mode.SAMPLE_PEAK }) {
+            // At 1 kHz the sample peaks are within 0.01 dB of the true peak.
+            float[] r = readings(new Ballistics(mode, 48000), tone(48000, 997.0, 1.0, 0.0));
+            assertEquals(mode.toString(), 0.0, dB(r[r.length - 1] / STEADY), 0.05);
+        }
+    }
+
+    @Test
+    public void ppmTypeI_integrationTimeIs5ms() {
+        assertEquals(-2.0, burstDB(Ballistics.Mode.PPM_TYPE_I, 0.005), 0.5);
+        // DIN 45406: a 10 ms burst reads about 1 dB low.
+        assertEquals(-1.0, burstDB(Ballistics.Mode.PPM_TYPE_I, 0.010), 0.5);
+    }
+
+    @Test
+    public void ppmTypeII_integrationTimeIs10ms() {
+        assertEquals(-2.0, burstDB(Ballistics.Mode.PPM_TYPE_II, 0.010), 0.5);
+        // BBC: a 5 ms burst reads about 4 dB low.
+        assertEquals(-4.0, burstDB(Ballistics.Mode.PPM_TYPE_II, 0.005), 0.75);
+    }
+
+    /** Seconds from the end of a steady tone until the reading fell by fallDB. */
+    private static double returnSeconds(Ballistics.Mode mode, double fallDB) {
+        int rate = 48000;
+        short[] x = tone(rate, 5000.0, 1.0, 4.0);
+        float[] r = readings(new Ballistics(mode, rate), x);
+        int end = rate - 1;
+        double threshold = r[end] * Math.pow(10.0, -fallDB / 20.0);
+        for (int i = end; i < r.length; i++) {
+            if (r[i] <= threshold) {
+                return (double) (i - end) / rate;
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    @Test
+    public void returnTimes() {
+        assertEquals(1.5, returnSeconds(Ballistics.Mode.PPM_TYPE_I, 20.0), 0.15);
+        assertEquals(2.8, returnSeconds(Ballistics.Mode.PPM_TYPE_II, 24.0), 0.28);
+        assertEquals(1.7, returnSeconds(Ballistics.Mode.SAMPLE_PEAK, 20.0), 0.17);
+    }
+
+    @Test
+    public void samplePeak_catchesASingleSample() {
+        Ballistics b = new Ballistics(Ballistics.Mode.SAMPLE_PEAK, 48000);
+        short[] x = new short[480];
+        x[100] = Short.MIN_VALUE;
+        float reading = b.process(x, 0, 101, 1);
+        assertEquals(32768 / Math.sqrt(2.0), reading, 0.01);
+    }
+
+    @Test
+    public void reading_doesNotDependOnTheBlockSize() {
+        short[] x = tone(48000, 997.0, 0.5, 0.5);
+        for (Ballistics.Mode mode : Ballistics.Mode.values()) {
+            float[] perSample = readings(new Ballistics(mode, 48000), x);
+            for (int block : new int[] { 320, 1920, 4096 }) {
+                Ballistics b = new Ballistics(mode, 48000);
+                for (int start = 0; start < x.length; start += block) {
+                    int end = Math.min(x.length, start + block);
+                    assertEquals(mode + " block " + block, perSample[end - 1], b.process(x, start, end, 1), 0.0f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void interleavedFloat_matches16Bit() {
+        short[] x = tone(48000, 1000.0, 0.5, 0.0);
+        float[] stereo = new float[x.length * 2];
+        for (int i = 0; i < x.length; i++) {
+            stereo[2 * i + 1] = x[i] / 32767.0f;
+        }
+        for (Ballistics.Mode mode : Ballistics.Mode.values()) {
+            float expected = new Ballistics(mode, 48000).process(x, 0, x.length, 1);
+            float actual   = new Ballistics(mode, 48000).process(stereo, 1, stereo.length, 2);
+            assertEquals(mode.toString(), expected, actual, expected * 1.0e-4f);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.vumeter.core;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the parallel analysis of WAV files in chunks.
+ */
+public class BatchAnalyzerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    private static final CaptureConfig STEREO = new CaptureConfig(48000, 2, CaptureConfig.Encoding.PCM_FLOAT);
+
+    /** @brief Pink noise, then full-scale 5 kHz bursts, then a quiet sine. */
+    private File program(String name, int seconds) throws IOException {
+        File file = folder.newFile(name);
+        WavWriter out = new WavWriter(file, 48000, 2, 24, false);
+        AudioSource[] parts = {
+            new PinkNoiseAudioSource(STEREO, 0.1, 3L, 48000L * seconds / 2, false),
+            new ToneBurstAudioSource(STEREO, 5000.0, 1.0, 10.0, 730.0, 48000L * seconds / 4, false),
+            new SineAudioSource(STEREO, 440.0, 0.01, 48000L * seconds / 4, false),
+        };
+        float[] block = new float[4800];
+        for (AudioSource part : parts) {
+            int n;
+            while ((n = part.read(block, 0, block.length)) >= 0) {
+                out.write(block, 0, n);
+            }
+        }
+        out.close();
+        return file;
+    }
+
+    private void assertSameStats(ProgramStats expected, ProgramStats actual, float levelTolerance) {
+        assertEquals(expected.getFrameCount(), actual.getFrameCount());
+        assertEquals(expected.getDurationNanos(), actual.getDurationNanos());
+        assertEquals(expected.getWindowCount(), actual.getWindowCount());
+        assertEquals(expected.getOverloadWindows(), actual.getOverloadWindows());
+        for (int b = 0; b < ProgramStats.HISTOGRAM_BINS; b++) {
+            assertEquals("bin " + b, expected.getHistogram(b), actual.getHistogram(b));
+        }
+        for (int ch = 0; ch < expected.getChannelCount(); ch++) {
+            assertEquals(expected.getPeakDB(ch), actual.getPeakDB(ch), 0.0f);
+            assertEquals(expected.getTruePeakDB(ch), actual.getTruePeakDB(ch), 0.0f);
+            assertEquals(expected.getRMSDB(ch), actual.getRMSDB(ch), 1e-5f);
+            assertEquals(expected.getMaxLevelDB(ch), actual.getMaxLevelDB(ch), levelTolerance);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void chunks_matchASinglePass() throws IOException {
+        File file = program("program.wav", 120);
+        ProgramStats single = new BatchAnalyzer(pool, Ballistics.Mode.VU, -1.0f, 1e6).analyze(file);
+        assertEquals(48000L * 120, single.getFrameCount());
+        assertEquals(1200, single.getWindowCount());
+        assertTrue(single.getOverloadWindows() > 0);
+
+        // Chunks of 7.3 s: the splits fall inside the noise, the bursts and the sine.
+        ProgramStats chunked = new BatchAnalyzer(pool, Ballistics.Mode.VU, -1.0f, 7.3).analyze(file);
+        assertSameStats(single, chunked, 0.01f);
+
+        ProgramStats ppm = new BatchAnalyzer(pool, Ballistics.Mode.PPM_TYPE_II, -1.0f, 1e6).analyze(file);
+        ProgramStats ppmChunked = new BatchAnalyzer(pool, Ballistics.Mode.PPM_TYPE_II, -1.0f, 7.3).analyze(file);
+        assertSameStats(ppm, ppmChunked, 0.01f);
+    }
+
+    @Test(timeout = 60000)
+    public void merge_isAssociativeAndCommutative() throws IOException {
+        BatchAnalyzer analyzer = new BatchAnalyzer(pool);
+        File a = program("a.wav", 8), b = program("b.wav", 12), c = program("c.wav", 20);
+
+        ProgramStats left = analyzer.analyze(a).merge(analyzer.analyze(b)).merge(analyzer.analyze(c));
+        ProgramStats right = analyzer.analyze(c).merge(analyzer.analyze(b).merge(analyzer.analyze(a)));
+        assertSameStats(left, right, 0.0f);
+        assertEquals(40000000000L, left.getDurationNanos());
+    }
+
+    @Test(timeout = 60000)
+    public void sine_readsItsLevels() throws IOException {
+        File file = folder.newFile("sine.wav");
+        WavWriter.write(file, new SineAudioSource(STEREO, 1000.0, 0.1, 48000 * 10, false), 16, false);
+        ProgramStats stats = new BatchAnalyzer(pool).analyze(file);
+        for (int ch = 0; ch < 2; ch++) {
+            assertEquals(-20.0f, stats.getPeakDB(ch), 0.01f);
+            assertEquals(-20.0f, stats.getTruePeakDB(ch), 0.05f);
+            assertEquals(-23.01f, stats.getRMSDB(ch), 0.01f);
+            assertEquals(-23.01f, stats.getMaxLevelDB(ch), 0.2f);
+        }
+        // Every window in [-24, -23) dBFS.
+        assertEquals(100, stats.getHistogram(-24 - ProgramStats.HISTOGRAM_FLOOR_DB));
+        assertEquals(-23.0f, stats.getRMSPercentileDB(0.5), 0.0f);
+        assertEquals(0, stats.getOverloadWindows());
+    }
+
+    @Test(timeout = 60000)
+    public void batch_reportsEveryFileAndTheirTotal() throws IOException {
+        File good = program("good.wav", 10);
+        File bad = folder.newFile("bad.wav");
+        File other = program("other.wav", 6);
+        BatchReport report = new BatchAnalyzer(pool).analyze(Arrays.asList(good, bad, other));
+
+        assertEquals(3, report.getFileCount());
+        assertNotNull(report.getStats(0));
+        assertNull(report.getStats(1));
+        assertNotNull(report.getFailure(1));
+        assertEquals(16000000000L, report.getDurationNanos());
+        assertEquals(report.getStats(0).getOverloadWindows() + report.getStats(2).getOverloadWindows(),
+                     report.getTotal().getOverloadWindows());
+
+        StringBuilder table = new StringBuilder();
+        report.writeTable(table);
+        String[] lines = table.toString().split("\n");
+        assertEquals(5, lines.length);
+        assertTrue(lines[0].startsWith("file "));
+        assertTrue(lines[1].startsWith("good.wav     0:00:10"));
+        assertTrue(lines[2].startsWith("bad.wav "));
+        assertTrue(lines[4].startsWith("total        0:00:16"));
+    }
+}
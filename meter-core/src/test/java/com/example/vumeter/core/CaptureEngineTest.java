@@ -0,0 +1,219 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the lifecycle of the capture thread, with a fake microphone
+ * that counts how it is opened, started and read.
+ */
+public class CaptureEngineTest {
+
+    /** @brief Silence in 1 ms blocks at 8 kHz, read at the pace of the device. */
+    private static class FakeMicrophone implements AudioSource {
+
+        final CaptureConfig config = CaptureConfig.DEFAULT.withBlockMillis(1);
+        final AtomicInteger opens    = new AtomicInteger();
+        final AtomicInteger starts   = new AtomicInteger();
+        final AtomicInteger stops    = new AtomicInteger();
+        final AtomicInteger releases = new AtomicInteger();
+        final AtomicInteger reads    = new AtomicInteger();
+        final AtomicInteger readers  = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+
+        volatile boolean open;
+        volatile boolean recording;
+        volatile boolean denied;
+
+        @Override
+        public CaptureConfig getConfig() {
+            return config;
+        }
+
+        @Override
+        public int getBufferSizeInSamples() {
+            return config.getBlockSamples(160);
+        }
+
+        @Override
+        public void start() {
+            if (denied) {
+                throw new SecurityException("RECORD_AUDIO denied");
+            }
+            if (!open) {
+                open = true;
+                opens.incrementAndGet();
+            }
+            recording = true;
+            starts.incrementAndGet();
+        }
+
+        @Override
+        public int read(short[] buffer, int offset, int length) {
+            if (readers.incrementAndGet() > 1 || !recording) {
+                overlaps.incrementAndGet();
+            }
+            try {
+                Thread.sleep(1);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (int i = 0; i < length; i++) {
+                buffer[offset + i] = 0;
+            }
+            reads.incrementAndGet();
+            readers.decrementAndGet();
+            return length;
+        }
+
+        @Override
+        public int read(float[] buffer, int offset, int length) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void stop() {
+            recording = false;
+            stops.incrementAndGet();
+        }
+
+        @Override
+        public void release() {
+            open = false;
+            releases.incrementAndGet();
+        }
+
+        void awaitReads(int count) throws InterruptedException {
+            int target = reads.get() + count;
+            while (reads.get() < target) {
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private static int captureThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && CaptureEngine.THREAD_NAME.equals(thread.getName())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test(timeout = 10000)
+    public void repeatedCycles_leaveNoCaptureThread() throws InterruptedException {
+        FakeMicrophone mic = new FakeMicrophone();
+        CaptureEngine engine = new CaptureEngine(mic);
+        assertEquals(CaptureEngine.State.STOPPED, engine.getState());
+
+        for (int cycle = 0; cycle < 20; cycle++) {
+            engine.start();
+            engine.start();
+            assertEquals(CaptureEngine.State.RUNNING, engine.getState());
+            assertEquals(1, captureThreads());
+            mic.awaitReads(2);
+
+            engine.pause();
+            assertEquals(CaptureEngine.State.PAUSED, engine.getState());
+            assertEquals(0, captureThreads());
+            assertFalse(mic.recording);
+            assertTrue(mic.open);
+
+            engine.start();
+            mic.awaitReads(2);
+            engine.stop();
+            assertEquals(CaptureEngine.State.STOPPED, engine.getState());
+            assertEquals(0, captureThreads());
+            assertFalse(mic.open);
+        }
+        engine.stop();
+
+        assertEquals(40, mic.starts.get());
+        assertEquals(40, mic.stops.get());
+        assertEquals(20, mic.opens.get());
+        assertEquals(20, mic.releases.get());
+        assertEquals(0, mic.overlaps.get());
+    }
+
+    @Test(timeout = 10000)
+    public void resume_goesOnFromThePausedMeterState() throws InterruptedException {
+        FakeMicrophone mic = new FakeMicrophone();
+        CaptureEngine engine = new CaptureEngine(mic);
+        MeterStateTripleBuffer state = engine.getLoop().getMeterState();
+
+        engine.start();
+        mic.awaitReads(5);
+        engine.pause();
+        long paused = state.read().getSequence();
+        assertTrue(paused >= 5);
+        Thread.sleep(5);
+        assertEquals(paused, state.read().getSequence());
+
+        engine.start();
+        mic.awaitReads(5);
+        engine.pause();
+        assertTrue(state.read().getSequence() >= paused + 5);
+        assertEquals(0, mic.releases.get());
+        engine.stop();
+    }
+
+    @Test(timeout = 10000)
+    public void deniedMicrophone_failsCleanly_andStartsOnceGranted() throws InterruptedException {
+        FakeMicrophone mic = new FakeMicrophone();
+        mic.denied = true;
+        CaptureEngine engine = new CaptureEngine(mic);
+        final CountDownLatch ended = new CountDownLatch(1);
+        final AtomicReference<Throwable> reported = new AtomicReference<Throwable>();
+        engine.setListener(new CaptureEngine.Listener() {
+            @Override
+            public void onCaptureEnded(Throwable failure) {
+                reported.set(failure);
+                ended.countDown();
+            }
+        });
+
+        engine.start();
+        assertTrue(ended.await(5, TimeUnit.SECONDS));
+        assertEquals(CaptureEngine.State.FAILED, engine.getState());
+        assertTrue(engine.getFailure() instanceof SecurityException);
+        assertSame(engine.getFailure(), reported.get());
+        assertEquals(0, mic.stops.get());
+
+        mic.denied = false;
+        engine.start();
+        assertEquals(CaptureEngine.State.RUNNING, engine.getState());
+        assertNull(engine.getFailure());
+        mic.awaitReads(2);
+        engine.stop();
+        assertEquals(0, captureThreads());
+        assertEquals(1, mic.releases.get());
+    }
+
+    @Test(timeout = 10000)
+    public void endOfStream_finishes() throws InterruptedException {
+        CaptureEngine engine = new CaptureEngine(
+                new SineAudioSource(CaptureConfig.DEFAULT, 440.0, 0.5, 800, false));
+        final CountDownLatch ended = new CountDownLatch(1);
+        engine.setListener(new CaptureEngine.Listener() {
+            @Override
+            public void onCaptureEnded(Throwable failure) {
+                ended.countDown();
+            }
+        });
+
+        engine.start();
+        assertTrue(ended.await(5, TimeUnit.SECONDS));
+        assertEquals(CaptureEngine.State.FINISHED, engine.getState());
+        assertNull(engine.getFailure());
+        engine.stop();
+        assertEquals(CaptureEngine.State.STOPPED, engine.getState());
+    }
+}
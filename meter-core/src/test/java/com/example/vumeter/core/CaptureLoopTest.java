@@ -0,0 +1,195 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the capture thread with a synthetic AudioSource in place of
+ * the microphone.
+ */
+public class CaptureLoopTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable r) {
+            r.run();
+        }
+    };
+
+    @Test
+    public void sine16_publishesRmsAndPeak() {
+        CaptureConfig config = new CaptureConfig(48000, 1, CaptureConfig.Encoding.PCM_16BIT);
+        CaptureLoop loop = new CaptureLoop(new SineAudioSource(config, 1000.0, 0.5, -1, false));
+
+        assertTrue(loop.processBlock());
+
+        MeterSnapshot s = loop.getMeterState().read();
+        assertEquals(1, s.getChannelCount());
+        assertEquals(0.5 * 32767 / Math.sqrt(2.0), s.getRMS(0), 2.0);
+        assertEquals(16384, s.getPeak(0), 1);
+        assertEquals(1L, s.getSequence());
+    }
+
+    @Test
+    public void floatStereo_metersEachChannelIn16BitUnits() {
+        CaptureLoop loop = new CaptureLoop(
+                new SineAudioSource(CaptureConfig.BROADCAST, 1000.0, 0.25, -1, false));
+
+        assertTrue(loop.processBlock());
+
+        MeterSnapshot s = loop.getMeterState().read();
+        assertEquals(2, s.getChannelCount());
+        for (int ch = 0; ch < 2; ch++) {
+            assertEquals(0.25 * 32767 / Math.sqrt(2.0), s.getRMS(ch), 2.0);
+        }
+    }
+
+    @Test
+    public void run_endsAtEndOfStream_afterPublishingEveryBlock() {
+        CaptureConfig config = CaptureConfig.DEFAULT;
+        SineAudioSource source = new SineAudioSource(config, 440.0, 0.1, 8000, false);
+        final AtomicInteger published = new AtomicInteger();
+        final AtomicInteger delivered = new AtomicInteger();
+
+        CaptureLoop loop = new CaptureLoop(source);
+        loop.setCaptureThreadListener(new MeterStateListener() {
+            @Override
+            public void onMeterStatePublished(MeterSnapshot snapshot) {
+                published.incrementAndGet();
+            }
+        });
+        loop.setLevelListener(DIRECT, new AudioReceiverListener() {
+            @Override
+            public void onUpdateRMS(int rms, int peak) {
+                delivered.incrementAndGet();
+            }
+        });
+
+        loop.run();
+
+        // One second at 8 kHz in 20 ms reads.
+        int blocks = 8000 / (source.getBufferSizeInSamples() / config.getChannelCount());
+        assertEquals(blocks, published.get());
+        assertEquals(blocks, delivered.get());
+        assertEquals(blocks, loop.getMeterState().read().getSequence());
+        assertFalse(loop.processBlock());
+    }
+
+    @Test(timeout = 5000)
+    public void requestStop_endsAnEndlessRealTimeSource() throws InterruptedException {
+        CaptureLoop loop = new CaptureLoop(
+                new SineAudioSource(CaptureConfig.DEFAULT, 440.0, 0.1, -1, true));
+        Thread thread = new Thread(loop);
+        thread.start();
+        Thread.sleep(100);
+        loop.requestStop();
+        thread.join();
+        long blocks = loop.getMeterState().read().getSequence();
+        // Paced at 20 ms per block.
+        assertTrue("blocks: " + blocks, blocks >= 2 && blocks <= 20);
+    }
+
+    @Test
+    public void lowLatencyConfig_readsBlocksOfItsLength() {
+        CaptureConfig config = CaptureConfig.BROADCAST.withBlockMillis(CaptureConfig.LOW_LATENCY_BLOCK_MILLIS);
+        assertEquals(240, config.getBlockFrames());
+        assertEquals(240, config.withEncoding(CaptureConfig.Encoding.PCM_16BIT).getBlockFrames());
+
+        SineAudioSource source = new SineAudioSource(config, 1000.0, 0.5, -1, false);
+        assertEquals(480, source.getBufferSizeInSamples());
+        CaptureLoop loop = new CaptureLoop(source);
+        assertEquals(5000000L, loop.getBlockNanos());
+        assertEquals(CaptureLoop.DEFAULT_MAX_LAG_BLOCKS * 5000000L, loop.getMaxLag());
+
+        loop.processBlock();
+        assertEquals(5000000L, loop.getMeterState().read().getBlockNanos());
+    }
+
+    /** @brief Has a backlog: frame f was captured BACKLOG_NANOS before
+     *         f / rate after start(), and read() never blocks. Each sample
+     *         is the index of its block.
+     */
+    private static class BackloggedSource implements AudioSource, CaptureTimestamps {
+        static final long BACKLOG_NANOS = 200000000L;
+
+        final CaptureConfig config = new CaptureConfig(48000, 1, CaptureConfig.Encoding.PCM_16BIT, 240);
+        long startNanos;
+        long framesRead;
+
+        @Override public CaptureConfig getConfig() { return config; }
+        @Override public int getBufferSizeInSamples() { return 240; }
+        @Override public void start() { startNanos = System.nanoTime(); }
+        @Override public void stop() { }
+        @Override public void release() { }
+
+        @Override
+        public int read(short[] buffer, int offset, int length) {
+            java.util.Arrays.fill(buffer, offset, offset + length, (short) (framesRead / 240));
+            framesRead += length;
+            return length;
+        }
+
+        @Override
+        public int read(float[] buffer, int offset, int length) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long captureNanosOfFrame(long framePosition) {
+            return startNanos - BACKLOG_NANOS + framePosition * 1000000000L / 48000;
+        }
+    }
+
+    @Test
+    public void backlog_isDroppedAndTheFreshestBlockMetered() {
+        BackloggedSource source = new BackloggedSource();
+        CaptureLoop loop = new CaptureLoop(source);
+        source.start();
+
+        assertTrue(loop.processBlock());
+        MeterSnapshot s = loop.getMeterState().read();
+
+        // 200 ms behind with a 15 ms limit: about 37 blocks of 5 ms dropped.
+        long blocksRead = source.framesRead / 240;
+        assertTrue("blocks read: " + blocksRead, blocksRead >= 37 && blocksRead <= 45);
+        assertEquals((blocksRead - 1) * 240, s.getDroppedFrames());
+        assertEquals(blocksRead - 1, s.getPeak(0));
+        long lag = s.getTimestampNanos() - s.getCaptureNanos();
+        assertTrue("lag: " + lag, lag >= 0 && lag <= loop.getMaxLag());
+
+        // Caught up: the next block is metered as is.
+        loop.setMaxLag(Long.MAX_VALUE);
+        loop.processBlock();
+        assertEquals((blocksRead - 1) * 240, loop.getMeterState().read().getDroppedFrames());
+    }
+
+    @Test(timeout = 5000)
+    public void realTimeSource_isNeverDropped_andItsLatencyIsRecorded() {
+        SineAudioSource source = new SineAudioSource(
+                CaptureConfig.DEFAULT.withBlockMillis(10.0f), 440.0, 0.1, -1, true);
+        CaptureLoop loop = new CaptureLoop(source);
+        NeedleMeter meter = new NeedleMeter(new MeterGeometry(), 1, loop.getMeterState(),
+                new RenderRequester() {
+                    @Override
+                    public void requestRender() {
+                    }
+                });
+        source.start();
+        for (int block = 1; block <= 20; block++) {
+            loop.processBlock();
+            // Drawn 3 ms after the newest sample of the block was captured.
+            meter.updateFromCapture(source.captureNanosOfFrame(block * 80 - 1) + 3000000L);
+        }
+        assertEquals(0L, loop.getMeterState().read().getDroppedFrames());
+
+        LatencyHistogram latency = meter.getCaptureToRenderLatency();
+        assertEquals(20L, latency.getCount());
+        assertEquals(3000000L, latency.getPercentileNanos(50.0));
+        assertEquals(3000000L, latency.getMaxNanos());
+        assertEquals(20L, meter.getPublishToRenderLatency().getCount());
+    }
+}
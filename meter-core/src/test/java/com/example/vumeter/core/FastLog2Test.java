@@ -0,0 +1,70 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the table-driven log2 and of the levels it maps to angles.
+ */
+public class FastLog2Test {
+
+    private static final RenderRequester NO_RENDER = new RenderRequester() {
+        @Override
+        public void requestRender() {
+        }
+    };
+
+    @Test
+    public void log2_isWithinItsErrorBound() {
+        double worst = 0.0;
+        for (float x = 1e-30f; x < 1e30f; x *= 1.0007f) {
+            double exact = Math.log(x) / Math.log(2.0);
+            worst = Math.max(worst, Math.abs(exact - FastLog2.log2(x)));
+        }
+        assertTrue("error " + worst, worst <= FastLog2.MAX_ERROR);
+    }
+
+    @Test
+    public void log2_isExactOnPowersOfTwo() {
+        for (int e = -126; e <= 127; e++) {
+            assertEquals(e, FastLog2.log2((float) Math.scalb(1.0, e)), 0.0f);
+        }
+    }
+
+    @Test
+    public void log2_isMonotonic() {
+        // Across every entry of the table and every exponent step of the 16-bit range.
+        float previous = FastLog2.log2(1.0f);
+        for (float x = Math.nextUp(1.0f); x < 65536.0f; x += Math.ulp(x) * 97.0f) {
+            float y = FastLog2.log2(x);
+            assertTrue("at " + x, y >= previous);
+            previous = y;
+        }
+    }
+
+    @Test
+    public void lookupTables_mapLevelsToTheSameAngles() {
+        MeterGeometry geometry = new MeterGeometry();
+        NeedleMeter meter = new NeedleMeter(geometry, 1, new MeterStateTripleBuffer(), NO_RENDER);
+        NeedleMeter tables = new NeedleMeter(geometry, 1, new MeterStateTripleBuffer(), NO_RENDER);
+        tables.setLookupTables(true);
+        assertTrue(tables.usesLookupTables());
+
+        double perDB = (geometry.HandAngularLimitRight - geometry.HandAngularLimitLeft)
+                     / (meter.MicGainCalibPeakDB - meter.MicGainCalibFloorDB);
+        double worst = 0.0;
+        for (float level = 0.5f; level < 65536.0f; level *= 1.001f) {
+            double db = 20.0 * Math.log10(Math.max(1.0f, level) / meter.AmplitudeRef);
+            double exact = geometry.HandAngularLimitLeft + perDB * (db - meter.MicGainCalibFloorDB);
+            assertEquals(exact, meter.targetThetaFor(level), 3e-6);
+            worst = Math.max(worst, Math.abs(exact - tables.targetThetaFor(level)));
+        }
+        assertTrue("error " + worst, worst <= 3e-6);
+
+        // The ends of the scale land where they did.
+        assertEquals(meter.targetThetaFor(meter.AmplitudeRef), tables.targetThetaFor(meter.AmplitudeRef), 1e-6f);
+        assertEquals(geometry.HandAngularLimitRight, tables.targetThetaFor(meter.AmplitudeRef), 1e-6f);
+        assertEquals(meter.targetThetaFor(0.0f), tables.targetThetaFor(0.0f), 1e-6f);
+    }
+}
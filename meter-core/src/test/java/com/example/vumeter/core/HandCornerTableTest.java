@@ -0,0 +1,79 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the hand corners looked up in a table against cos() and sin().
+ */
+public class HandCornerTableTest {
+
+    private final MeterGeometry geometry = new MeterGeometry();
+
+    @Test
+    public void corners_areWithinTheStatedErrorOverTheScale() {
+        HandCornerTable table = new HandCornerTable(geometry);
+        float[] exact = new float[8];
+        float[] looked = new float[8];
+        float span = geometry.HandAngularLimitLeft - geometry.HandAngularLimitRight;
+        double worst = 0.0;
+        for (int i = 0; i <= 100000; i++) {
+            float theta = geometry.HandAngularLimitRight + span * i / 100000;
+            geometry.exactHandCorners(exact, theta);
+            assertTrue(table.corners(looked, theta));
+            for (int k = 0; k < 8; k += 2) {
+                worst = Math.max(worst, Math.hypot(exact[k] - looked[k], exact[k + 1] - looked[k + 1]));
+            }
+        }
+        assertTrue("error " + worst, worst <= HandCornerTable.MAX_ERROR_PIXELS);
+        // The bound is not loose either: the tip sags by r h^2 / 8 mid-interval.
+        assertTrue("error " + worst, worst > HandCornerTable.MAX_ERROR_PIXELS / 2);
+    }
+
+    @Test
+    public void corners_offTheScaleAreNotInTheTable() {
+        HandCornerTable table = new HandCornerTable(geometry);
+        float[] corners = new float[8];
+        assertFalse(table.corners(corners, Math.nextDown(geometry.HandAngularLimitRight)));
+        assertFalse(table.corners(corners, Math.nextUp(geometry.HandAngularLimitLeft)));
+        assertFalse(table.corners(corners, Float.NaN));
+        assertTrue(table.corners(corners, geometry.HandAngularLimitLeft));
+    }
+
+    @Test
+    public void lookupTables_buildTheSameVertices() {
+        MeterGeometry tables = new MeterGeometry();
+        tables.setLookupTables(true);
+        assertTrue(tables.usesLookupTables());
+
+        VertexUploadPlan plan = new VertexUploadPlan(2);
+        float[] exact = new float[plan.numVertexFloats()];
+        float[] looked = new float[plan.numVertexFloats()];
+        geometry.makeStaticVertices(exact, plan);
+        tables.makeStaticVertices(looked, plan);
+
+        // One pixel is 2 / 512 across and 2 / 300 down in device coordinates.
+        float tolerance = HandCornerTable.MAX_ERROR_PIXELS * 2.0f / geometry.BaseHeight;
+        float[] angles = {
+            geometry.HandAngularLimitRight, 0.9f, (float) (Math.PI / 2.0), 2.0f, geometry.HandAngularLimitLeft,
+            // Off the scale: computed exactly.
+            0.1f, 3.0f
+        };
+        for (float theta : angles) {
+            for (int hand = 0; hand < 2; hand++) {
+                geometry.makeHandVertices(exact, hand, theta);
+                tables.makeHandVertices(looked, hand, theta);
+            }
+            for (int i = 0; i < exact.length; i++) {
+                assertEquals("theta " + theta + " float " + i, exact[i], looked[i], tolerance);
+            }
+        }
+
+        tables.setLookupTables(false);
+        assertFalse(tables.usesLookupTables());
+        tables.makeHandVertices(looked, 0, 2.0f);
+        geometry.makeHandVertices(exact, 0, 2.0f);
+        assertArrayEquals(exact, looked, 0.0f);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the hands rotated by the vertex shader against the vertices
+ * MeterGeometry builds on the CPU.
+ */
+public class HandShaderTest {
+
+    private final MeterGeometry geometry = new MeterGeometry();
+    private final VertexUploadPlan plan = new VertexUploadPlan(2);
+    private final HandShader shader = new HandShader(geometry, 2);
+
+    @Test
+    public void shaderMath_matchesTheCpuVertices() {
+        float[] cpu = new float[plan.numVertexFloats()];
+        float[] gpu = new float[plan.numVertexFloats()];
+        geometry.makeStaticVertices(cpu, plan);
+        geometry.makeStaticVertices(gpu, plan);
+        shader.makeHandVertices(gpu);
+
+        float[] xy = new float[2];
+        float span = geometry.HandAngularLimitLeft - geometry.HandAngularLimitRight;
+        for (int i = 0; i <= 1000; i++) {
+            float theta = geometry.HandAngularLimitRight + span * i / 1000;
+            for (int hand = 0; hand < 2; hand++) {
+                geometry.makeHandVertices(cpu, hand, theta);
+                int h = VertexUploadPlan.firstFloatOfQuad(VertexUploadPlan.quadOfHand(hand));
+                for (int v = 0; v < VertexUploadPlan.VERTICES_PER_QUAD; v++) {
+                    int f = h + v * VertexUploadPlan.FLOATS_PER_VERTEX;
+                    assertEquals(hand + 1, gpu[f + 2], 0.0f);
+                    shader.position(xy, gpu[f], gpu[f + 1], theta);
+                    assertEquals("theta " + theta + " vertex " + v, cpu[f], xy[0], 1e-5f);
+                    assertEquals("theta " + theta + " vertex " + v, cpu[f + 1], xy[1], 1e-5f);
+                    // The texture points are the same.
+                    assertEquals(cpu[f + 3], gpu[f + 3], 0.0f);
+                    assertEquals(cpu[f + 4], gpu[f + 4], 0.0f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void staticQuads_stayInPlace() {
+        float[] cpu = new float[plan.numVertexFloats()];
+        float[] gpu = new float[plan.numVertexFloats()];
+        geometry.makeStaticVertices(cpu, plan);
+        geometry.makeStaticVertices(gpu, plan);
+        shader.makeHandVertices(gpu);
+        for (int f = 0; f < plan.dynamicFirstFloat(); f++) {
+            assertEquals(cpu[f], gpu[f], 0.0f);
+        }
+        // z = 0: drawn as they are by the shader.
+        for (int v = 0; v < VertexUploadPlan.QUAD_FIRST_HAND * VertexUploadPlan.VERTICES_PER_QUAD; v++) {
+            assertEquals(0.0f, gpu[v * VertexUploadPlan.FLOATS_PER_VERTEX + 2], 0.0f);
+        }
+    }
+
+    @Test
+    public void source_holdsTheConstantsOfTheJavaMath() {
+        String source = shader.vertexShader();
+        assertTrue(source.contains("uniform   float " + HandShader.THETA_UNIFORM + "[2];"));
+        assertTrue(source.contains(HandShader.THETA_UNIFORM + "[ int( Position.z ) - 1 ]"));
+
+        String number = "(-?[0-9.]+(?:E-?[0-9]+)?)";
+        Matcher center = Pattern.compile("Center = vec2\\( " + number + ", " + number + " \\);").matcher(source);
+        assertTrue(center.find());
+        assertEquals(shader.getCenterX(), Float.parseFloat(center.group(1)), 0.0f);
+        assertEquals(shader.getCenterY(), Float.parseFloat(center.group(2)), 0.0f);
+
+        Matcher scale = Pattern.compile("Scale  = vec2\\( " + number + ", " + number + " \\);").matcher(source);
+        assertTrue(scale.find());
+        assertEquals(shader.getScaleX(), Float.parseFloat(scale.group(1)), 0.0f);
+        assertEquals(shader.getScaleY(), Float.parseFloat(scale.group(2)), 0.0f);
+
+        // Every literal has a point, as GLSL ES wants for a float.
+        assertEquals("1.0", HandShader.literal(1.0f));
+        assertEquals("-0.0", HandShader.literal(-0.0f));
+    }
+
+    @Test
+    public void perFrameUpload_isTheAngles() {
+        assertEquals(8, shader.bytesUploadedPerFrame());
+        assertEquals(160, plan.bytesUploadedPerFrame());
+        assertEquals(4, new HandShader(geometry, 1).bytesUploadedPerFrame());
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the peak-hold markers and the history strip, without GL.
+ */
+public class HistoryOverlayTest {
+
+    /** 1 kHz, so a bin of 10 ms is 10 frames. */
+    private static final int RATE = 1000;
+
+    private final MeterGeometry geometry = new MeterGeometry();
+
+    private final NeedleMeter meter = new NeedleMeter(geometry, 1, new MeterStateTripleBuffer(),
+            new RenderRequester() {
+                @Override
+                public void requestRender() {
+                }
+            });
+
+    private long frames;
+
+    private void addBins(LevelHistory history, float level, int bins) {
+        MeterSnapshot s = new MeterSnapshot();
+        s.mChannelCount = 1;
+        s.mBlockNanos = 10000000L;
+        s.mLevel[0] = level;
+        for (int i = 0; i < bins; i++) {
+            frames += 10;
+            history.add(frames, s);
+        }
+    }
+
+    @Test
+    public void marker_holdsTheHighestReading_forTheHoldTime() {
+        LevelHistory history = new LevelHistory(1, RATE);
+        // A window of 1 s in 10 columns, a hold of 200 ms.
+        HistoryOverlay overlay = new HistoryOverlay(geometry, meter, history, 1000000000L, 10, 200000000L);
+        float loud = meter.clampToScale(meter.targetThetaFor(10000.0f));
+        float quiet = meter.clampToScale(meter.targetThetaFor(500.0f));
+
+        addBins(history, 10000.0f, 5);
+        addBins(history, 500.0f, 10);
+        assertTrue(overlay.update());
+        assertEquals(loud, overlay.getPeakHoldTheta(0), 0.0f);
+
+        // 150 ms later, the loud bins are older than the hold.
+        addBins(history, 500.0f, 15);
+        overlay.update();
+        assertEquals(quiet, overlay.getPeakHoldTheta(0), 0.0f);
+    }
+
+    @Test
+    public void strip_movesByWholeColumns_inAFixedMesh() {
+        LevelHistory history = new LevelHistory(1, RATE);
+        HistoryOverlay overlay = new HistoryOverlay(geometry, meter, history, 1000000000L, 10, 200000000L);
+        int vertices = overlay.vertexCount();
+        short[] indices = overlay.getIndices().clone();
+        assertEquals((1 + 10 + 1) * 6, overlay.indexCount());
+
+        addBins(history, 1000.0f, 10);
+        assertTrue(overlay.update());
+        float[] drawn = overlay.getVertices().clone();
+
+        // Within the same column of 100 ms, with the marker where it was.
+        addBins(history, 1000.0f, 9);
+        assertFalse(overlay.update());
+        assertArrayEquals(drawn, overlay.getVertices(), 0.0f);
+
+        addBins(history, 1000.0f, 1);
+        assertTrue(overlay.update());
+        assertEquals(vertices, overlay.vertexCount());
+        assertArrayEquals(indices, overlay.getIndices());
+
+        // The newest column is ink in the strip, at the height of the level.
+        int f = (1 + 9) * HistoryOverlay.VERTICES_PER_QUAD * MeterFace.Mesh.FLOATS_PER_VERTEX;
+        float[] v = overlay.getVertices();
+        assertEquals(MeterFace.COLOR_INK, v[f + 2], 0.0f);
+        assertEquals(geometry.fromTexCoordToNormCoordX(HistoryOverlay.STRIP_RIGHT), v[f + 3], 1e-5f);
+        float top = v[f + 1];
+        assertTrue(top < geometry.fromTexCoordToNormCoordYInverted(HistoryOverlay.STRIP_TOP));
+        assertTrue(top > geometry.fromTexCoordToNormCoordYInverted(HistoryOverlay.STRIP_BOTTOM));
+    }
+
+    @Test
+    public void loudnessScale_hidesTheMarkersAndTheStrip() {
+        LevelHistory history = new LevelHistory(1, RATE);
+        HistoryOverlay overlay = new HistoryOverlay(geometry, meter, history, 1000000000L, 10, 200000000L);
+        float loud = meter.clampToScale(meter.targetThetaFor(10000.0f));
+        addBins(history, 10000.0f, 20);
+
+        meter.setScale(NeedleMeter.Scale.MOMENTARY_LUFS);
+        assertTrue(overlay.update());
+        assertTrue(Float.isNaN(overlay.getPeakHoldTheta(0)));
+        // Every quad collapsed to a point: nothing is drawn on the LUFS face.
+        float[] v = overlay.getVertices();
+        for (int f = 0; f < v.length; f += MeterFace.Mesh.FLOATS_PER_VERTEX) {
+            assertEquals(v[0], v[f], 0.0f);
+            assertEquals(v[1], v[f + 1], 0.0f);
+        }
+        addBins(history, 10000.0f, 20);
+        assertFalse(overlay.update());
+
+        // Back on the dB scale, where the readings are.
+        meter.setScale(NeedleMeter.Scale.MIC_DB);
+        assertTrue(overlay.update());
+        assertEquals(loud, overlay.getPeakHoldTheta(0), 0.0f);
+        assertEquals(geometry.fromTexCoordToNormCoordX(HistoryOverlay.STRIP_LEFT), overlay.getVertices()[0], 1e-6f);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the log-linear buckets and the percentiles.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_areContiguous_andHoldTheirValues() {
+        assertEquals(0, LatencyHistogram.bucketOf(0L));
+        assertEquals(63, LatencyHistogram.bucketOf(63L));
+        assertEquals(64, LatencyHistogram.bucketOf(64L));
+        assertEquals(64, LatencyHistogram.bucketOf(65L));
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestOf(LatencyHistogram.BUCKETS - 1));
+
+        for (int b = 1; b < LatencyHistogram.BUCKETS; b++) {
+            long lowest = LatencyHistogram.highestOf(b - 1) + 1;
+            assertEquals(b, LatencyHistogram.bucketOf(lowest));
+            assertEquals(b, LatencyHistogram.bucketOf(LatencyHistogram.highestOf(b)));
+        }
+    }
+
+    @Test
+    public void percentiles_areWithinTheRelativePrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0L, histogram.getPercentileNanos(50.0));
+
+        // 1 ms to 100 ms in steps of 1 ms.
+        for (int ms = 1; ms <= 100; ms++) {
+            histogram.record(ms * 1000000L);
+        }
+        assertEquals(100L, histogram.getCount());
+        double precision = 1.0 / LatencyHistogram.SUB_BUCKETS;
+        assertEquals(50.0e6, histogram.getPercentileNanos(50.0), 50.0e6 * precision);
+        assertEquals(90.0e6, histogram.getPercentileNanos(90.0), 90.0e6 * precision);
+        assertEquals(99.0e6, histogram.getPercentileNanos(99.0), 99.0e6 * precision);
+        assertTrue(histogram.getPercentileNanos(50.0) >= 50000000L);
+        assertEquals(100000000L, histogram.getPercentileNanos(100.0));
+        assertEquals(50500000L, histogram.getMeanNanos());
+        assertEquals(100000000L, histogram.getMaxNanos());
+    }
+
+    @Test
+    public void randomDurations_matchTheSortedPercentiles() {
+        Random random = new Random(7);
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 20.0);
+            histogram.record(values[i]);
+        }
+        java.util.Arrays.sort(values);
+        for (double p : new double[] { 1.0, 25.0, 50.0, 90.0, 99.0, 99.9 }) {
+            long expected = values[(int) Math.ceil(values.length * p / 100.0) - 1];
+            long actual = histogram.getPercentileNanos(p);
+            assertTrue(p + ": " + actual + " < " + expected, actual >= expected);
+            assertTrue(p + ": " + actual + " >> " + expected,
+                    actual <= expected + expected / LatencyHistogram.SUB_BUCKETS + 1);
+        }
+    }
+
+    @Test
+    public void negative_readsZero_andResetEmpties() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5000000L);
+        histogram.record(3000L);
+        assertEquals(0L, histogram.getPercentileNanos(50.0));
+        assertEquals(3000L, histogram.getPercentileNanos(99.0));
+
+        histogram.reset();
+        assertEquals(0L, histogram.getCount());
+        assertEquals(0L, histogram.getMaxNanos());
+        assertEquals(0L, histogram.getPercentileNanos(99.0));
+    }
+}
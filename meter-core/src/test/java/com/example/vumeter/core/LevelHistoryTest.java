@@ -0,0 +1,220 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the tiers of the level history against the readings kept
+ * one by one.
+ */
+public class LevelHistoryTest {
+
+    /** 1 kHz, so a bin of 10 ms is 10 frames. */
+    private static final int RATE = 1000;
+
+    /** A block of 10 ms. */
+    private static MeterSnapshot snapshot(float left, float right) {
+        return snapshot(left, right, 10);
+    }
+
+    private static MeterSnapshot snapshot(float left, float right, int frames) {
+        MeterSnapshot s = new MeterSnapshot();
+        s.mChannelCount = 2;
+        s.mBlockNanos = frames * 1000000000L / RATE;
+        s.mLevel[0] = left;
+        s.mLevel[1] = right;
+        return s;
+    }
+
+    private static float exactMax(float[] levels, long from, long to) {
+        float max = Float.NEGATIVE_INFINITY;
+        for (long i = Math.max(0L, from); i < to; i++) {
+            max = Math.max(max, levels[(int) i]);
+        }
+        return max;
+    }
+
+    private static float exactMin(float[] levels, long from, long to) {
+        float min = Float.POSITIVE_INFINITY;
+        for (long i = Math.max(0L, from); i < to; i++) {
+            min = Math.min(min, levels[(int) i]);
+        }
+        return min;
+    }
+
+    @Test
+    public void add_binsTheBlocksByTheirFrames() {
+        LevelHistory history = new LevelHistory(2, RATE);
+        assertEquals(10000000L, history.getBinNanos(0));
+        assertEquals(1000000000L, history.getBinNanos(2));
+
+        // Blocks of 4 frames: the first bin ends inside the third block.
+        history.add(4, snapshot(1.0f, 10.0f, 4));
+        history.add(8, snapshot(3.0f, 30.0f, 4));
+        assertEquals(0L, history.getBinCount(0));
+        history.add(12, snapshot(2.0f, 20.0f, 4));
+        assertEquals(1L, history.getBinCount(0));
+        assertEquals(3.0f, history.max(0, 0, 1), 0.0f);
+        assertEquals(1.0f, history.min(0, 0, 1), 0.0f);
+        assertEquals(30.0f, history.max(1, 0, 1), 0.0f);
+
+        // A block of 25 frames fills every bin it spans.
+        history.add(37, snapshot(7.0f, 70.0f, 25));
+        assertEquals(3L, history.getBinCount(0));
+        assertEquals(7.0f, history.max(0, 1, 2), 0.0f);
+        assertEquals(2.0f, history.min(0, 1, 2), 0.0f);
+        assertEquals(7.0f, history.min(0, 2, 3), 0.0f);
+    }
+
+    @Test
+    public void add_countsTheBinsFromTheFirstBlock() {
+        LevelHistory history = new LevelHistory(1, RATE);
+        // Attached an hour into the stream, mid-bin.
+        history.add(3600000 + 5, snapshot(4.0f, 0.0f, 5));
+        history.add(3600000 + 15, snapshot(5.0f, 0.0f));
+        assertEquals(1L, history.getBinCount(0));
+        assertEquals(5.0f, history.maxOverLast(0, 10000000L), 0.0f);
+        assertEquals(4.0f, history.minOverLast(0, 10000000L), 0.0f);
+    }
+
+    @Test
+    public void add_firstBlockOnABinBoundary_completesOnlyItsOwnBin() {
+        LevelHistory history = new LevelHistory(1, RATE);
+        MeterSnapshot s = snapshot(6.0f, 0.0f);
+        // The block [20, 30) is the whole bin [20, 30), nothing before it.
+        history.add(30, s);
+        assertEquals(1L, history.getBinCount(0));
+        assertEquals(6.0f, history.min(0, 0, 1), 0.0f);
+    }
+
+    @Test
+    public void reattach_leavesTheBinsOfTheGapEmpty() {
+        LevelHistory history = new LevelHistory(1, RATE);
+        // 1 s at 100, 5 s detached, then a block at 9000.
+        long frames = 0;
+        for (int i = 0; i < 100; i++) {
+            frames += 10;
+            history.add(frames, snapshot(100.0f, 0.0f));
+        }
+        frames += 5000;
+        history.add(frames + 10, snapshot(9000.0f, 0.0f));
+
+        assertEquals(601L, history.getBinCount(0));
+        assertEquals(0.0f, history.max(0, 100, 600), 0.0f);
+        assertEquals(0.0f, history.min(0, 100, 600), 0.0f);
+        assertEquals(9000.0f, history.maxOverLast(0, 5000000000L), 0.0f);
+        assertEquals(100.0f, history.minOverLast(0, 6010000000L), 0.0f);
+        assertEquals(100.0f, history.max(0, 0, 100), 0.0f);
+    }
+
+    @Test
+    public void reattach_afterHours_keepsTheTiersInStep() {
+        LevelHistory history = new LevelHistory(1, RATE);
+        history.add(10, snapshot(100.0f, 0.0f));
+        // 100 hours detached, one block, then on.
+        long frames = 10 + 100L * 3600 * RATE + 3;
+        for (int i = 0; i < 50; i++) {
+            frames += 10;
+            history.add(frames, snapshot(200.0f + i, 0.0f));
+        }
+        long bins = history.getBinCount(0);
+        assertEquals(frames / 10, bins);
+        for (int k = 1; k < history.getTierCount(); k++) {
+            long perBin = (long) Math.pow(LevelHistory.FACTOR, k);
+            assertEquals(bins / perBin, history.getBinCount(k));
+        }
+        assertEquals(249.0f, history.maxOverLast(0, 3600000000000L), 0.0f);
+        assertEquals(200.0f, history.minOverLast(0, 3600000000000L), 0.0f);
+        assertEquals(249.0f, history.max(0, 0, bins), 0.0f);
+    }
+
+    @Test
+    public void queries_areExactWhereTheFinestTierReaches() {
+        LevelHistory history = new LevelHistory(2, RATE, LevelHistory.DEFAULT_BIN_NANOS, 3, 100);
+        Random random = new Random(25);
+        int bins = 5000;
+        float[] levels = new float[bins];
+        for (int i = 0; i < bins; i++) {
+            levels[i] = random.nextFloat() * 32767.0f;
+            history.add((i + 1) * 10L, snapshot(levels[i], -levels[i]));
+        }
+        assertEquals(bins, history.getBinCount(0));
+        assertEquals(bins / 100, history.getBinCount(2));
+
+        // The finest tier keeps the last 100 bins, less the margin of the readers.
+        for (int n = 0; n < 2000; n++) {
+            long from = bins - 80 + random.nextInt(80);
+            long to = from + 1 + random.nextInt((int) (bins - from));
+            assertEquals(exactMax(levels, from, to), history.max(0, from, to), 0.0f);
+            assertEquals(exactMin(levels, from, to), history.min(0, from, to), 0.0f);
+            assertEquals(-exactMin(levels, from, to), history.max(1, from, to), 0.0f);
+        }
+        assertEquals(exactMax(levels, bins - 50, bins), history.maxOverLast(0, 500000000L), 0.0f);
+    }
+
+    @Test
+    public void queries_widenToCoarserBins_whereTheFinerAreGone() {
+        LevelHistory history = new LevelHistory(1, RATE, LevelHistory.DEFAULT_BIN_NANOS, 3, 100);
+        Random random = new Random(2025);
+        int bins = 5000;
+        float[] levels = new float[bins];
+        for (int i = 0; i < bins; i++) {
+            levels[i] = random.nextFloat();
+            history.add((i + 1) * 10L, snapshot(levels[i], 0.0f));
+        }
+        for (int n = 0; n < 2000; n++) {
+            long from = random.nextInt(bins);
+            long to = from + 1 + random.nextInt(bins - (int) from);
+            // Never less than the range, never more than the range widened
+            // to the bins of the coarsest tier, of 100 of the finest.
+            long wideFrom = from / 100 * 100;
+            long wideTo = Math.min(bins, (to + 99) / 100 * 100);
+            float max = history.max(0, from, to);
+            assertTrue(max >= exactMax(levels, from, to));
+            assertTrue(max <= exactMax(levels, wideFrom, wideTo));
+            float min = history.min(0, from, to);
+            assertTrue(min <= exactMin(levels, from, to));
+            assertTrue(min >= exactMin(levels, wideFrom, wideTo));
+        }
+    }
+
+    @Test
+    public void memory_staysTheSame_howeverLongTheSession() {
+        LevelHistory history = new LevelHistory(2, 48000);
+        long bytes = history.sizeInBytes();
+        assertEquals(2L * 5 * 2 * 1000 * 4, bytes);
+        MeterSnapshot s = snapshot(0.0f, 0.0f);
+        // 3 hours in blocks of 10 ms, louder in the last second.
+        long blocks = 3L * 3600 * 100;
+        for (long i = 0; i < blocks; i++) {
+            float level = i >= blocks - 100 ? 1000.0f + i % 7 : 10.0f;
+            s.mLevel[0] = level;
+            s.mLevel[1] = level * 0.5f;
+            history.add((i + 1) * 480L, s);
+        }
+        assertEquals(bytes, history.sizeInBytes());
+        assertEquals(blocks, history.getBinCount(0));
+        assertEquals(1006.0f, history.maxOverLast(0, 1000000000L), 0.0f);
+        assertEquals(10.0f, history.minOverLast(0, 3600000000000L), 0.0f);
+        assertEquals(503.0f, history.maxOverLast(1, 3600000000000L), 0.0f);
+    }
+
+    @Test
+    public void captureLoop_addsEveryPublishedBlock() {
+        CaptureLoop loop = new CaptureLoop(new SineAudioSource(CaptureConfig.DEFAULT, 440.0, 0.5, 8000, false));
+        loop.setMaxLag(Long.MAX_VALUE);
+        LevelHistory history = new LevelHistory(1, CaptureConfig.DEFAULT.getSampleRate());
+        loop.setLevelHistory(history);
+        float highest = 0.0f;
+        while (loop.processBlock()) {
+            highest = Math.max(highest, loop.getMeterState().read().getLevel(0));
+        }
+        // One second at 8 kHz.
+        assertEquals(100L, history.getBinCount(0));
+        assertEquals(highest, history.maxOverLast(0, 1000000000L), 0.0f);
+        assertTrue(highest > 0.0f);
+    }
+}
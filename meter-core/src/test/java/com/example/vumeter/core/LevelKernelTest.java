@@ -0,0 +1,128 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks LevelKernel against the original AudioReceiver.calcRMS(): bit-exact
+ * for 16-bit PCM, within the documented tolerance for float PCM.
+ */
+public class LevelKernelTest {
+
+    /** Sizes from getMinBufferSize() at 8 kHz up to 64k samples, plus odd tails. */
+    private static final int[] SIZES = { 0, 1, 2, 3, 5, 7, 320, 321, 1920, 4095, 4096, 16383, 65536 };
+
+    /** The loop of the original calcRMS(), for one channel at a stride. */
+    private static int[] legacyCalcRMS(short[] buffer, int start, int end, int stride) {
+        double accumAbs = 0.0;
+        int peak = 0;
+        int length = 0;
+        for (int i = start; i < end; i += stride) {
+            int v = Math.abs((int) buffer[i]);
+            if (peak < v) {
+                peak = v;
+            }
+            double val = (double) buffer[i];
+            accumAbs += (val * val);
+            length++;
+        }
+        int rms = (int) Math.sqrt((accumAbs / (double) length));
+        return new int[] { length == 0 ? 0 : rms, peak };
+    }
+
+    private static short[] randomShorts(Random random, int n) {
+        short[] x = new short[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = (short) random.nextInt(65536);
+        }
+        return x;
+    }
+
+    @Test
+    public void shorts_areBitExactWithCalcRMS() {
+        Random random = new Random(11);
+        for (int n : SIZES) {
+            short[] x = randomShorts(random, n);
+            int[] legacy = legacyCalcRMS(x, 0, n, 1);
+            assertEquals("rms, n=" + n,  legacy[0], LevelKernel.rms(LevelKernel.sumOfSquares(x, 0, n), n));
+            assertEquals("peak, n=" + n, legacy[1], LevelKernel.peak(x, 0, n));
+        }
+    }
+
+    @Test
+    public void interleavedShorts_areBitExactWithCalcRMS() {
+        Random random = new Random(12);
+        for (int stride = 1; stride <= 3; stride++) {
+            for (int n : SIZES) {
+                short[] x = randomShorts(random, n * stride);
+                int end = n * stride;
+                for (int ch = 0; ch < stride; ch++) {
+                    int[] legacy = legacyCalcRMS(x, ch, end, stride);
+                    long sum = LevelKernel.sumOfSquares(x, ch, end, stride);
+                    assertEquals(legacy[0], LevelKernel.rms(sum, n));
+                    assertEquals(legacy[1], LevelKernel.peak(x, ch, end, stride));
+
+                    LevelKernel.Block block = new LevelKernel.Block();
+                    LevelKernel.measure(x, ch, end, stride, block);
+                    assertEquals(sum, block.sumOfSquares);
+                    assertEquals(legacy[1], block.peak);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void fullScaleExtremes_doNotOverflow() {
+        short[] x = new short[65536];
+        java.util.Arrays.fill(x, Short.MIN_VALUE);
+        assertEquals(65536L * 32768L * 32768L, LevelKernel.sumOfSquares(x, 0, x.length));
+        assertEquals(32768, LevelKernel.peak(x, 0, x.length));
+        assertEquals(32768, LevelKernel.rms(LevelKernel.sumOfSquares(x, 0, x.length), x.length));
+        LevelKernel.Block block = new LevelKernel.Block();
+        LevelKernel.measure(x, 0, x.length, 1, block);
+        assertEquals(32768, block.peak);
+
+        java.util.Arrays.fill(x, Short.MAX_VALUE);
+        assertEquals(32767, LevelKernel.peak(x, 0, x.length));
+        assertEquals(32767, LevelKernel.rms(LevelKernel.sumOfSquares(x, 0, x.length), x.length));
+    }
+
+    @Test
+    public void floats_areWithinTolerance() {
+        Random random = new Random(13);
+        for (int stride = 1; stride <= 2; stride++) {
+            for (int n : SIZES) {
+                float[] x = new float[n * stride];
+                for (int i = 0; i < x.length; i++) {
+                    x[i] = (float) (random.nextGaussian() * 0.3);
+                }
+                for (int ch = 0; ch < stride; ch++) {
+                    double reference = 0.0;
+                    float  peak      = 0.0f;
+                    for (int i = ch; i < x.length; i += stride) {
+                        reference += (double) x[i] * (double) x[i];
+                        peak = Math.max(peak, Math.abs(x[i]));
+                    }
+                    double sum = LevelKernel.sumOfSquares(x, ch, x.length, stride);
+                    assertEquals("n=" + n, reference, sum, reference * 1.0e-5);
+                    assertEquals(peak, LevelKernel.peak(x, ch, x.length, stride), 0.0f);
+
+                    LevelKernel.FloatBlock block = new LevelKernel.FloatBlock();
+                    LevelKernel.measure(x, ch, x.length, stride, block);
+                    assertEquals(sum, block.sumOfSquares, 0.0);
+                    assertEquals(peak, block.peak, 0.0f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rms_ofEmptyBlockIsZero() {
+        assertEquals(0, LevelKernel.rms(0L, 0));
+        assertEquals(0.0, LevelKernel.rms(0.0, 0), 0.0);
+        assertEquals(0, LevelKernel.peak(new short[4], 2, 2));
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * JVM tests of the per-channel level computation with synthetic buffers.
+ */
+public class LevelMeterTest {
+
+    private static final int RATE   = 48000;
+    private static final int FRAMES = 4800;
+
+    private static short[] stereoSine16(double ampL, double ampR, double freq) {
+        short[] buffer = new short[FRAMES * 2];
+        for (int i = 0; i < FRAMES; i++) {
+            double phase = 2.0 * Math.PI * freq * i / RATE;
+            buffer[2 * i]     = (short) Math.round(ampL * Math.sin(phase));
+            buffer[2 * i + 1] = (short) Math.round(ampR * Math.sin(phase));
+        }
+        return buffer;
+    }
+
+    private static float[] stereoSineFloat(double ampL, double ampR, double freq) {
+        float[] buffer = new float[FRAMES * 2];
+        for (int i = 0; i < FRAMES; i++) {
+            double phase = 2.0 * Math.PI * freq * i / RATE;
+            buffer[2 * i]     = (float) (ampL * Math.sin(phase));
+            buffer[2 * i + 1] = (float) (ampR * Math.sin(phase));
+        }
+        return buffer;
+    }
+
+    /** The block RMS of the original AudioReceiver.calcRMS(). */
+    private static int legacyRMS(short[] buffer, int length) {
+        double accum = 0.0;
+        for (int i = 0; i < length; i++) {
+            double val = (double) buffer[i];
+            accum += val * val;
+        }
+        return (int) Math.sqrt(accum / (double) length);
+    }
+
+    @Test
+    public void mono16_matchesTheOriginalCalcRMS() {
+        Random random = new Random(1);
+        short[] buffer = new short[1234];
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = (short) random.nextInt(65536);
+        }
+        buffer[77] = Short.MIN_VALUE;
+
+        LevelMeter meter = new LevelMeter(1);
+        meter.process(buffer, buffer.length);
+        assertEquals(legacyRMS(buffer, buffer.length), meter.getRMS(0));
+        assertEquals(32768, meter.getPeak(0));
+    }
+
+    @Test
+    public void stereoSine16_separatesChannels() {
+        // 100 Hz divides the 48 kHz block into whole periods.
+        short[] buffer = stereoSine16(20000.0, 5000.0, 100.0);
+        LevelMeter meter = new LevelMeter(2);
+        meter.process(buffer, buffer.length);
+
+        assertEquals(20000.0 / Math.sqrt(2.0), meter.getRMS(0), 2.0);
+        assertEquals( 5000.0 / Math.sqrt(2.0), meter.getRMS(1), 2.0);
+        assertEquals(20000, meter.getPeak(0));
+        assertEquals( 5000, meter.getPeak(1));
+        assertEquals(meter.getRMS(0),  meter.getMaxRMS());
+        assertEquals(meter.getPeak(0), meter.getMaxPeak());
+    }
+
+    @Test
+    public void stereoSineFloat_isReportedIn16BitUnits() {
+        float[] buffer = stereoSineFloat(0.5, 0.25, 1000.0);
+        LevelMeter meter = new LevelMeter(2);
+        meter.process(buffer, buffer.length);
+
+        assertEquals(0.5  * 32767.0 / Math.sqrt(2.0), meter.getRMS(0), 2.0);
+        assertEquals(0.25 * 32767.0 / Math.sqrt(2.0), meter.getRMS(1), 2.0);
+        assertEquals(0.5  * 32767.0, meter.getPeak(0), 1.0);
+        assertEquals(0.25 * 32767.0, meter.getPeak(1), 1.0);
+    }
+
+    @Test
+    public void uniformNoise_hasTheExpectedRMS() {
+        Random random = new Random(2);
+        float[] buffer = new float[FRAMES * 20];
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = random.nextFloat() * 2.0f - 1.0f;
+        }
+        LevelMeter meter = new LevelMeter(1);
+        meter.process(buffer, buffer.length);
+        // Uniform in [-1, 1]: RMS = 1 / sqrt(3).
+        assertEquals(32767.0 / Math.sqrt(3.0), meter.getRMS(0), 32767.0 * 0.01);
+        assertTrue(meter.getPeak(0) > 32767 * 0.99);
+    }
+
+    @Test
+    public void partialFrameAndEmptyBuffer_areHandled() {
+        LevelMeter meter = new LevelMeter(2);
+        meter.process(new short[] { 100, -200, 300 }, 3);
+        assertEquals(100, meter.getRMS(0));
+        assertEquals(200, meter.getPeak(1));
+
+        meter.process(new short[0], 0);
+        assertEquals(0, meter.getRMS(0));
+        assertEquals(0, meter.getPeak(1));
+
+        // read() error codes are negative.
+        meter.process(new float[4], -3);
+        assertEquals(0, meter.getRMS(1));
+    }
+
+    @Test
+    public void process_allocatesNothingAt48kStereo() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        short[] shorts = stereoSine16(10000.0, 10000.0, 440.0);
+        float[] floats = stereoSineFloat(0.3, 0.3, 440.0);
+        LevelMeter meter = new LevelMeter(2);
+
+        for (int i = 0; i < 2000; i++) {
+            meter.process(shorts, shorts.length);
+            meter.process(floats, floats.length);
+        }
+
+        long tid    = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(tid);
+        // 100 seconds of 48 kHz stereo in 100 ms blocks, in both encodings.
+        for (int i = 0; i < 1000; i++) {
+            meter.process(shorts, shorts.length);
+            meter.process(floats, floats.length);
+        }
+        long allocated = threads.getThreadAllocatedBytes(tid) - before;
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * JVM tests of the coalescing capture-to-UI hand-off.
+ */
+public class LevelUpdateDispatcherTest {
+
+    private static final int NUM_BUFFERS = 200000;
+
+    /** Stands in for the main-thread Handler: posts are queued and run on demand. */
+    static class QueueExecutor implements Executor {
+        final ArrayDeque<Runnable> mQueue = new ArrayDeque<>(16);
+        int mPosted;
+
+        @Override
+        public void execute(Runnable r) {
+            mPosted++;
+            mQueue.add(r);
+        }
+
+        void runAll() {
+            Runnable r;
+            while ((r = mQueue.poll()) != null) {
+                r.run();
+            }
+        }
+    }
+
+    static class RecordingListener implements AudioReceiverListener {
+        int mCalls;
+        int mRMS;
+        int mPeak;
+
+        @Override
+        public void onUpdateRMS(int rms, int peak) {
+            mCalls++;
+            mRMS  = rms;
+            mPeak = peak;
+        }
+    }
+
+    @Test
+    public void packing_roundTrips() {
+        int[] values = { 0, 1, 32767, 32768, Integer.MAX_VALUE, -1, Integer.MIN_VALUE };
+        for (int rms : values) {
+            for (int peak : values) {
+                long packed = LevelUpdateDispatcher.pack(rms, peak);
+                assertEquals(rms,  LevelUpdateDispatcher.unpackRMS(packed));
+                assertEquals(peak, LevelUpdateDispatcher.unpackPeak(packed));
+            }
+        }
+    }
+
+    @Test
+    public void slowConsumer_neverBuildsAQueue() {
+        QueueExecutor     executor = new QueueExecutor();
+        RecordingListener listener = new RecordingListener();
+        LevelUpdateDispatcher dispatcher = new LevelUpdateDispatcher(executor, listener);
+
+        int drains = 0;
+        for (int i = 0; i < NUM_BUFFERS; i++) {
+            dispatcher.publish(i, i + 1);
+            assertTrue(executor.mQueue.size() <= 1);
+            // The UI thread gets around to the queue only every 1000 buffers.
+            if (i % 1000 == 999) {
+                executor.runAll();
+                drains++;
+                assertEquals(i,     listener.mRMS);
+                assertEquals(i + 1, listener.mPeak);
+            }
+        }
+        executor.runAll();
+
+        assertEquals(drains, NUM_BUFFERS / 1000);
+        assertTrue(executor.mPosted <= drains + 1);
+        assertEquals(executor.mPosted, listener.mCalls);
+        assertEquals(NUM_BUFFERS - 1, listener.mRMS);
+    }
+
+    @Test
+    public void fastConsumer_seesEveryBuffer() {
+        QueueExecutor     executor = new QueueExecutor();
+        RecordingListener listener = new RecordingListener();
+        LevelUpdateDispatcher dispatcher = new LevelUpdateDispatcher(executor, listener);
+
+        for (int i = 0; i < 1000; i++) {
+            dispatcher.publish(i, 2 * i);
+            executor.runAll();
+            assertEquals(i,     listener.mRMS);
+            assertEquals(2 * i, listener.mPeak);
+        }
+        assertEquals(1000, executor.mPosted);
+    }
+
+    @Test
+    public void publish_allocatesNothingPerBuffer() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        QueueExecutor     executor = new QueueExecutor();
+        RecordingListener listener = new RecordingListener();
+        LevelUpdateDispatcher dispatcher = new LevelUpdateDispatcher(executor, listener);
+
+        // Warm up so that class loading and the JIT do not count.
+        for (int i = 0; i < NUM_BUFFERS; i++) {
+            dispatcher.publish(i, i);
+            if ((i & 63) == 0) {
+                executor.runAll();
+            }
+        }
+
+        long tid    = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < NUM_BUFFERS; i++) {
+            dispatcher.publish(i, i);
+            if ((i & 63) == 0) {
+                executor.runAll();
+            }
+        }
+        long allocated = threads.getThreadAllocatedBytes(tid) - before;
+
+        // A single Runnable or boxed value per buffer would be several MB here.
+        assertTrue("allocated " + allocated + " bytes", allocated < 4096);
+    }
+}
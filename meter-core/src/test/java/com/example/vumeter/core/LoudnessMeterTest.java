@@ -0,0 +1,169 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the loudness meter against the synthetic test cases of EBU
+ * Tech 3341 (loudness) and EBU Tech 3342 (loudness range): stereo 1 kHz
+ * sines at 48 kHz, the level given as the peak of each channel in dBFS.
+ */
+public class LoudnessMeterTest {
+
+    private static final int RATE = 48000;
+
+    /** Plays stereo sine segments into a meter in 20 ms blocks. */
+    private static class Program {
+        final LoudnessMeter meter;
+        final float[] block = new float[2 * RATE / 50];
+        double phase;
+
+        Program(LoudnessMeter meter) {
+            this.meter = meter;
+        }
+
+        Program play(double dBFS, double seconds) {
+            double amplitude = Math.pow(10.0, dBFS / 20.0);
+            double step = 2.0 * Math.PI * 1000.0 / RATE;
+            long frames = Math.round(seconds * RATE);
+            while (frames > 0) {
+                int n = (int) Math.min(frames, block.length / 2);
+                for (int i = 0; i < n; i++) {
+                    float v = (float) (amplitude * Math.sin(phase));
+                    block[2 * i]     = v;
+                    block[2 * i + 1] = v;
+                    phase += step;
+                }
+                phase %= 2.0 * Math.PI;
+                meter.process(block, 2 * n);
+                frames -= n;
+            }
+            return this;
+        }
+    }
+
+    private static Program program() {
+        return new Program(new LoudnessMeter(RATE, 2));
+    }
+
+    @Test
+    public void tech3341_case1_steadyMinus23() {
+        LoudnessMeter m = program().play(-23.0, 20.0).meter;
+        assertEquals(-23.0f, m.getMomentary(),  0.1f);
+        assertEquals(-23.0f, m.getShortTerm(),  0.1f);
+        assertEquals(-23.0f, m.getIntegrated(), 0.1f);
+    }
+
+    @Test
+    public void tech3341_case2_steadyMinus33() {
+        LoudnessMeter m = program().play(-33.0, 20.0).meter;
+        assertEquals(-33.0f, m.getMomentary(),  0.1f);
+        assertEquals(-33.0f, m.getShortTerm(),  0.1f);
+        assertEquals(-33.0f, m.getIntegrated(), 0.1f);
+    }
+
+    @Test
+    public void tech3341_case3_relativeGateDropsQuietParts() {
+        LoudnessMeter m = program().play(-36.0, 10.0).play(-23.0, 60.0).play(-36.0, 10.0).meter;
+        assertEquals(-23.0f, m.getIntegrated(), 0.1f);
+    }
+
+    @Test
+    public void tech3341_case4_absoluteAndRelativeGates() {
+        LoudnessMeter m = program().play(-72.0, 10.0).play(-36.0, 10.0).play(-23.0, 60.0)
+                                   .play(-36.0, 10.0).play(-72.0, 10.0).meter;
+        assertEquals(-23.0f, m.getIntegrated(), 0.1f);
+    }
+
+    @Test
+    public void tech3341_case5_gatingOfTransitions() {
+        LoudnessMeter m = program().play(-26.0, 20.0).play(-20.0, 20.1).play(-26.0, 20.0).meter;
+        assertEquals(-23.0f, m.getIntegrated(), 0.1f);
+    }
+
+    @Test
+    public void tech3342_case1() {
+        LoudnessMeter m = program().play(-20.0, 20.0).play(-30.0, 20.0).meter;
+        assertEquals(10.0f, m.getLoudnessRange(), 1.0f);
+    }
+
+    @Test
+    public void tech3342_case2() {
+        LoudnessMeter m = program().play(-20.0, 20.0).play(-15.0, 20.0).meter;
+        assertEquals(5.0f, m.getLoudnessRange(), 1.0f);
+    }
+
+    @Test
+    public void tech3342_case3() {
+        LoudnessMeter m = program().play(-40.0, 20.0).play(-20.0, 20.0).meter;
+        assertEquals(20.0f, m.getLoudnessRange(), 1.0f);
+    }
+
+    @Test
+    public void tech3342_case4() {
+        LoudnessMeter m = program().play(-50.0, 20.0).play(-35.0, 20.0).play(-20.0, 20.0)
+                                   .play(-35.0, 20.0).play(-50.0, 20.0).meter;
+        assertEquals(15.0f, m.getLoudnessRange(), 1.0f);
+    }
+
+    @Test
+    public void momentaryFollowsWithin400ms_shortTermWithin3s() {
+        Program p = program().play(-40.0, 5.0).play(-20.0, 0.4);
+        assertEquals(-20.0f, p.meter.getMomentary(), 0.1f);
+        assertTrue(p.meter.getShortTerm() < -25.0f);
+        p.play(-20.0, 2.6);
+        assertEquals(-20.0f, p.meter.getShortTerm(), 0.1f);
+    }
+
+    @Test
+    public void shortSamples_matchFloatSamples() {
+        LoudnessMeter fromFloat = program().play(-23.0, 5.0).meter;
+
+        LoudnessMeter fromShort = new LoudnessMeter(RATE, 2);
+        short[] block = new short[2 * 960];
+        double amplitude = Math.pow(10.0, -23.0 / 20.0) * 32768.0;
+        long n = 0;
+        for (int b = 0; b < 250; b++) {
+            for (int i = 0; i < 960; i++, n++) {
+                short v = (short) Math.round(amplitude * Math.sin(2.0 * Math.PI * 1000.0 * n / RATE));
+                block[2 * i]     = v;
+                block[2 * i + 1] = v;
+            }
+            fromShort.process(block, block.length);
+        }
+        assertEquals(fromFloat.getIntegrated(), fromShort.getIntegrated(), 0.01f);
+    }
+
+    @Test
+    public void silence_isUnmeasured_andResetStartsOver() {
+        LoudnessMeter m = new LoudnessMeter(RATE, 2);
+        float[] silence = new float[2 * RATE];
+        m.process(silence, silence.length);
+        assertEquals(Float.NEGATIVE_INFINITY, m.getIntegrated(), 0.0f);
+
+        new Program(m).play(-23.0, 5.0);
+        m.reset();
+        assertEquals(Float.NEGATIVE_INFINITY, m.getIntegrated(), 0.0f);
+        assertEquals(Float.NEGATIVE_INFINITY, m.getMomentary(), 0.0f);
+        assertEquals(0.0f, m.getLoudnessRange(), 0.0f);
+    }
+
+    @Test
+    public void otherSampleRates_readTheSame() {
+        for (int rate : new int[] { 8000, 44100 }) {
+            LoudnessMeter m = new LoudnessMeter(rate, 1);
+            float[] block = new float[rate / 10];
+            double amplitude = Math.pow(10.0, -20.0 / 20.0);
+            long n = 0;
+            for (int b = 0; b < 50; b++) {
+                for (int i = 0; i < block.length; i++, n++) {
+                    block[i] = (float) (amplitude * Math.sin(2.0 * Math.PI * 997.0 * n / rate));
+                }
+                m.process(block, block.length);
+            }
+            // Mono is 3 dB below the same sine on a stereo pair.
+            assertEquals("at " + rate, -23.0f, m.getIntegrated(), 0.1f);
+        }
+    }
+}
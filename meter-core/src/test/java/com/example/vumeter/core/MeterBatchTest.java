@@ -0,0 +1,159 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the layout and the per-frame updates of the batched meters.
+ */
+public class MeterBatchTest {
+
+    private static final int F = MeterBatch.FLOATS_PER_VERTEX;
+
+    @Test
+    public void layout_isBasesThenHandsAndLedPerMeter() {
+        MeterBatch batch = new MeterBatch(new MeterGeometry(), 3, 2);
+        assertEquals(20, MeterBatch.STRIDE_BYTES);
+        assertEquals(16, MeterBatch.ALPHA_OFFSET);
+        assertEquals(12, batch.numQuads());
+        assertEquals(72, batch.numIndices());
+        assertEquals(0, batch.quadOfBase(0));
+        assertEquals(2, batch.quadOfBase(2));
+        assertEquals(3, batch.quadOfHand(0, 0));
+        assertEquals(4, batch.quadOfHand(0, 1));
+        assertEquals(5, batch.quadOfLed(0));
+        assertEquals(6, batch.quadOfHand(1, 0));
+        assertEquals(11, batch.quadOfLed(2));
+
+        short[] indices = new short[batch.numIndices()];
+        batch.fillIndices(indices);
+        assertEquals(44, indices[66]);
+        assertEquals(47, indices[70]);
+    }
+
+    @Test
+    public void oneMeter_isTheSingleMeterInsideTheMargin() {
+        MeterGeometry geometry = new MeterGeometry();
+        MeterBatch batch = new MeterBatch(geometry, 1, 1);
+        batch.layout(512, 300);
+        float theta = 1.9f;
+        batch.setHand(0, 0, theta);
+
+        VertexUploadPlan plan = new VertexUploadPlan(1);
+        float[] single = new float[plan.numVertexFloats()];
+        geometry.makeStaticVertices(single, plan);
+        geometry.makeHandVertices(single, 0, theta);
+
+        float shrink = 1.0f - 2.0f * MeterBatch.CELL_MARGIN;
+        float[] v = batch.getVertices();
+        int[][] quads = {
+                { VertexUploadPlan.QUAD_BASE,       batch.quadOfBase(0) },
+                { VertexUploadPlan.QUAD_LED,        batch.quadOfLed(0) },
+                { VertexUploadPlan.quadOfHand(0),   batch.quadOfHand(0, 0) } };
+        for (int[] q : quads) {
+            int s = VertexUploadPlan.firstFloatOfQuad(q[0]);
+            int b = MeterBatch.firstFloatOfQuad(q[1]);
+            for (int i = 0; i < 4; i++) {
+                assertEquals(single[s + i * 5] * shrink,     v[b + i * F],     1.0e-5f);
+                assertEquals(single[s + i * 5 + 1] * shrink, v[b + i * F + 1], 1.0e-5f);
+                assertEquals(single[s + i * 5 + 3],          v[b + i * F + 2], 0.0f);
+                assertEquals(single[s + i * 5 + 4],          v[b + i * F + 3], 0.0f);
+            }
+        }
+    }
+
+    @Test
+    public void grid_keepsTheFaceAndStaysOnScreen() {
+        MeterBatch batch = new MeterBatch(new MeterGeometry(), 16, 2);
+        batch.layout(1920, 1080);
+        assertEquals(4, batch.getColumns());
+        assertEquals(4, batch.getRows());
+
+        batch.layout(1080, 1920);
+        assertEquals(2, batch.getColumns());
+        assertEquals(8, batch.getRows());
+
+        float[] v = batch.getVertices();
+        for (int m = 0; m < 16; m++) {
+            int b = MeterBatch.firstFloatOfQuad(batch.quadOfBase(m));
+            float width  = (v[b] - v[b + 2 * F]) * 1080.0f;
+            float height = (v[b + F + 1] - v[b + 1]) * 1920.0f;
+            assertEquals(512.0f / 300.0f, width / height, 1.0e-3f);
+            for (int i = 0; i < 4; i++) {
+                assertTrue(Math.abs(v[b + i * F]) <= 1.0f);
+                assertTrue(Math.abs(v[b + i * F + 1]) <= 1.0f);
+            }
+        }
+        // Meter 1 is right of meter 0, meter 2 below it.
+        int m0 = MeterBatch.firstFloatOfQuad(batch.quadOfBase(0));
+        int m1 = MeterBatch.firstFloatOfQuad(batch.quadOfBase(1));
+        int m2 = MeterBatch.firstFloatOfQuad(batch.quadOfBase(2));
+        assertTrue(v[m1 + 2 * F] > v[m0]);
+        assertTrue(v[m2 + F + 1] < v[m0 + 1]);
+    }
+
+    @Test
+    public void frame_uploadsOnlyTheMetersThatMoved() {
+        MeterGeometry geometry = new MeterGeometry();
+        MeterBatch batch = new MeterBatch(geometry, 8, 1);
+        batch.layout(800, 600);
+        assertTrue(batch.takeLayoutChanged());
+        assertFalse(batch.takeLayoutChanged());
+        assertFalse(batch.isDirty());
+        assertEquals(0, batch.dirtyByteSize());
+
+        batch.setHand(5, 0, geometry.HandAngularLimitLeft);
+        batch.setLed(2, 0.0f);
+        assertFalse(batch.isDirty());
+
+        batch.setHand(5, 0, 1.5f);
+        batch.setLed(3, 0.25f);
+        assertTrue(batch.isDirty());
+        assertEquals(MeterBatch.firstFloatOfQuad(batch.quadOfHand(3, 0)), batch.dirtyFirstFloat());
+        assertEquals(3 * 2 * MeterBatch.FLOATS_PER_QUAD, batch.dirtyFloatCount());
+        assertEquals(batch.dirtyFirstFloat() * 4, batch.dirtyByteOffset());
+
+        int led = MeterBatch.firstFloatOfQuad(batch.quadOfLed(3));
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0.25f, batch.getVertices()[led + i * F + 4], 0.0f);
+        }
+        int hand = MeterBatch.firstFloatOfQuad(batch.quadOfHand(3, 0));
+        assertEquals(1.0f, batch.getVertices()[hand + 4], 0.0f);
+
+        batch.clearDirty();
+        assertFalse(batch.isDirty());
+        assertEquals(0, batch.dirtyFloatCount());
+    }
+
+    @Test
+    public void meter_takesItsHandsAndLedFromANeedleMeter() {
+        MeterGeometry geometry = new MeterGeometry();
+        NeedleMeter needles = new NeedleMeter(geometry, 2, new MeterStateTripleBuffer(),
+                new RenderRequester() {
+                    @Override
+                    public void requestRender() {
+                    }
+                });
+        needles.mTheta[0] = 2.0f;
+        needles.mTheta[1] = 1.0f;
+        needles.mLedBrightness = 0.5f;
+
+        MeterBatch batch = new MeterBatch(geometry, 4, 2);
+        batch.takeLayoutChanged();
+        batch.setMeter(2, needles);
+
+        MeterBatch other = new MeterBatch(geometry, 4, 2);
+        other.setHand(2, 0, 2.0f);
+        other.setHand(2, 1, 1.0f);
+        other.setLed(2, 0.5f);
+        assertArrayEquals(other.getVertices(), batch.getVertices(), 0.0f);
+        assertEquals(MeterBatch.firstFloatOfQuad(batch.quadOfHand(2, 0)), batch.dirtyFirstFloat());
+        assertEquals(3 * MeterBatch.FLOATS_PER_QUAD, batch.dirtyFloatCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooManyVerticesForShortIndices_isRejected() {
+        new MeterBatch(new MeterGeometry(), 4097, 2);
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the tessellated meter faces and their cache.
+ */
+public class MeterFaceTest {
+
+    private final MeterGeometry geometry = new MeterGeometry();
+
+    private static final RenderRequester NO_RENDER = new RenderRequester() {
+        @Override
+        public void requestRender() {
+        }
+    };
+
+    private int expectedStrokes(MeterFace.Scale scale) {
+        int strokes = StrokeFont.segmentCount(scale.mCaption);
+        for (int value = scale.getFloor(); value <= scale.getPeak(); value++) {
+            if (Math.floorMod(value, scale.mMinorStep) == 0 && scale.isMajor(value) && scale.isLabelled(value)) {
+                strokes += StrokeFont.segmentCount(scale.label(value));
+            }
+        }
+        return strokes;
+    }
+
+    @Test
+    public void floorDiv_roundsDown_likeTheJdk() {
+        for (int a = -60; a <= 10; a++) {
+            for (int b = 1; b <= 10; b++) {
+                assertEquals(Math.floorDiv(a, b), MeterFace.floorDiv(a, b));
+            }
+        }
+    }
+
+    @Test
+    public void vertexCounts_followTheLayout() {
+        for (MeterFace.Scale scale : MeterFace.Scale.values()) {
+            MeterFace.Mesh mesh = MeterFace.generate(geometry, scale, 1024, 600);
+            int ticks = scale.tickCount();
+            int strokes = expectedStrokes(scale);
+            assertEquals(strokes, mesh.getStrokes());
+            // Paper, two arcs of n + 1 pairs, a quad per tick and per stroke.
+            assertEquals(4 + 2 * (mesh.getArcSegments() + 2) + 4 * ticks + 4 * strokes, mesh.vertexCount());
+            assertEquals(6 * (1 + mesh.getArcSegments() + ticks + strokes), mesh.indexCount());
+        }
+        assertEquals(12, MeterFace.Scale.VU.tickCount());
+        assertEquals(28, MeterFace.Scale.PPM.tickCount());
+        assertEquals(28, MeterFace.Scale.LUFS.tickCount());
+
+        // -50 -40 -30 -20 -10 0, then VU.
+        MeterFace.Mesh vu = MeterFace.generate(geometry, MeterFace.Scale.VU, 512, 300);
+        assertEquals(16 + 12 + 20 + 15 + 12 + 8 + 7, vu.getStrokes());
+    }
+
+    @Test
+    public void arcs_stayWithinTheToleranceAtEverySize() {
+        int previous = 0;
+        int[][] sizes = {{128, 75}, {512, 300}, {1920, 1125}, {3840, 2250}};
+        for (int[] size : sizes) {
+            MeterFace.Mesh mesh = MeterFace.generate(geometry, MeterFace.Scale.VU, size[0], size[1]);
+            assertTrue(size[0] + " wide: " + mesh.getArcSegments(), mesh.getArcSegments() > previous);
+            previous = mesh.getArcSegments();
+        }
+
+        float span = geometry.HandAngularLimitLeft - geometry.HandAngularLimitRight;
+        for (float pixelsPerUnit : new float[] {0.25f, 1.0f, 3.75f, 7.5f, 30.0f}) {
+            int n = MeterFace.arcSegments(span, 196.0f, pixelsPerUnit);
+            double r = 196.0 * pixelsPerUnit;
+            assertTrue(r * (1.0 - Math.cos(span / n / 2.0)) <= MeterFace.TOLERANCE_PIXELS);
+            // And no more chords than that takes.
+            assertTrue(n == 1 || r * (1.0 - Math.cos(span / (n - 1) / 2.0)) > MeterFace.TOLERANCE_PIXELS);
+        }
+    }
+
+    @Test
+    public void mesh_staysOnTheBase() {
+        for (MeterFace.Scale scale : MeterFace.Scale.values()) {
+            MeterFace.Mesh mesh = MeterFace.generate(geometry, scale, 3840, 2250);
+            float[] v = mesh.getVertices();
+            for (int i = 0; i < v.length; i += MeterFace.Mesh.FLOATS_PER_VERTEX) {
+                assertTrue(v[i] >= -1.0f && v[i] <= 1.0f);
+                assertTrue(v[i + 1] >= -1.0f && v[i + 1] <= 1.0f);
+                assertTrue(v[i + 2] >= 0 && v[i + 2] < MeterFace.COLORS);
+            }
+            for (short index : mesh.getIndices()) {
+                assertTrue((index & 0xFFFF) < mesh.vertexCount());
+            }
+            assertEquals(mesh.vertexCount() * 12, mesh.vertexBytes());
+            assertEquals(mesh.indexCount() * 2, mesh.indexBytes());
+        }
+    }
+
+    @Test
+    public void ticks_standWhereTheHandReadsTheirValue() {
+        NeedleMeter meter = new NeedleMeter(geometry, 1, new MeterStateTripleBuffer(), NO_RENDER);
+        for (int db = -55; db <= 0; db += 5) {
+            float level = meter.AmplitudeRef * (float) Math.pow(10.0, db / 20.0);
+            assertEquals(meter.targetThetaFor(level), MeterFace.Scale.VU.thetaFor(geometry, db), 1e-5f);
+            assertEquals(meter.targetThetaFor(level), MeterFace.Scale.PPM.thetaFor(geometry, db), 1e-5f);
+        }
+        for (int lufs = -41; lufs <= -14; lufs++) {
+            assertEquals(meter.targetThetaForLUFS(lufs), MeterFace.Scale.LUFS.thetaFor(geometry, lufs), 1e-6f);
+        }
+        assertEquals("+6", MeterFace.Scale.LUFS.label(-17));
+        assertEquals("-18", MeterFace.Scale.LUFS.label(-41));
+        assertEquals("0", MeterFace.Scale.VU.label(0));
+    }
+
+    @Test
+    public void cache_tessellatesEachScaleAndSizeOnce() {
+        MeterFaceCache cache = new MeterFaceCache(geometry, 2);
+        MeterFace.Mesh vu = cache.get(MeterFace.Scale.VU, 1080, 633);
+        assertSame(vu, cache.get(MeterFace.Scale.VU, 1080, 633));
+        assertEquals(1, cache.getGeneratedCount());
+
+        MeterFace.Mesh lufs = cache.get(MeterFace.Scale.LUFS, 1080, 633);
+        assertNotSame(vu, lufs);
+        assertEquals(MeterFace.Scale.LUFS, lufs.getScale());
+        assertNotSame(vu, cache.get(MeterFace.Scale.VU, 2160, 1266));
+        assertEquals(3, cache.getGeneratedCount());
+        assertEquals(2, cache.size());
+
+        // The least recently used, the VU at 1080, went.
+        assertSame(lufs, cache.get(MeterFace.Scale.LUFS, 1080, 633));
+        cache.get(MeterFace.Scale.VU, 1080, 633);
+        assertEquals(4, cache.getGeneratedCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void font_rejectsCharactersItDoesNotHave() {
+        StrokeFont.glyph('x');
+    }
+}
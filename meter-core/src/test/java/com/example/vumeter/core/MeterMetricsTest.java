@@ -0,0 +1,84 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of what the capture thread, the level listener and the hands
+ * record into MeterMetrics.
+ */
+public class MeterMetricsTest {
+
+    @Test
+    public void captureLoop_timesEveryStage_andCountsBlocks() {
+        CaptureConfig config = CaptureConfig.DEFAULT;
+        CaptureLoop loop = new CaptureLoop(new SineAudioSource(config, 440.0, 0.5, 8000 + 80, false));
+        LevelUpdateDispatcherTest.QueueExecutor executor = new LevelUpdateDispatcherTest.QueueExecutor();
+        loop.setLevelListener(executor, new LevelUpdateDispatcherTest.RecordingListener());
+        MeterMetrics metrics = new MeterMetrics();
+        loop.setMetrics(metrics);
+
+        for (int block = 0; block < 10; block++) {
+            loop.processBlock();
+        }
+        executor.runAll();
+        loop.processBlock();
+        loop.run();
+
+        // 50 full blocks of 20 ms, a short one of 10 ms, then the end.
+        assertEquals(51L, metrics.get(MeterMetrics.Counter.BLOCKS_READ));
+        assertEquals(1L, metrics.get(MeterMetrics.Counter.SHORT_READS));
+        assertEquals(0L, metrics.get(MeterMetrics.Counter.READ_ERRORS));
+        assertEquals(52L, metrics.histogram(MeterMetrics.Stage.READ).getCount());
+        assertEquals(51L, metrics.histogram(MeterMetrics.Stage.METER).getCount());
+        assertEquals(51L, metrics.histogram(MeterMetrics.Stage.PUBLISH).getCount());
+
+        // Coalesced: one post before the drain, one after it.
+        assertEquals(51L, metrics.get(MeterMetrics.Counter.LEVELS_PUBLISHED));
+        assertEquals(2L, metrics.get(MeterMetrics.Counter.LEVELS_POSTED));
+        assertEquals(1L, metrics.get(MeterMetrics.Counter.LEVELS_CONSUMED));
+        assertEquals(1L, metrics.histogram(MeterMetrics.Stage.DISPATCH_HOP).getCount());
+    }
+
+    @Test
+    public void readError_isCounted() {
+        AudioSource failing = new SineAudioSource(CaptureConfig.DEFAULT, 440.0, 0.5, -1, false) {
+            @Override
+            public int read(short[] buffer, int offset, int length) {
+                return -3;
+            }
+        };
+        CaptureLoop loop = new CaptureLoop(failing);
+        assertFalse(loop.processBlock());
+        assertEquals(1L, loop.getMetrics().get(MeterMetrics.Counter.READ_ERRORS));
+        assertEquals(0L, loop.getMetrics().get(MeterMetrics.Counter.BLOCKS_READ));
+    }
+
+    @Test
+    public void needleMeter_timesItsUpdate_andReports() {
+        CaptureLoop loop = new CaptureLoop(new SineAudioSource(CaptureConfig.DEFAULT, 440.0, 0.5, -1, false));
+        NeedleMeter meter = new NeedleMeter(new MeterGeometry(), 1, loop.getMeterState(),
+                new RenderRequester() {
+                    @Override
+                    public void requestRender() {
+                    }
+                });
+        MeterMetrics metrics = new MeterMetrics();
+        loop.setMetrics(metrics);
+        meter.setMetrics(metrics);
+
+        loop.processBlock();
+        meter.updateFromCapture(System.nanoTime());
+        meter.updateFromCapture(System.nanoTime());
+        assertEquals(2L, metrics.histogram(MeterMetrics.Stage.UPDATE).getCount());
+        assertEquals(1L, metrics.histogram(MeterMetrics.Stage.PUBLISH_TO_RENDER).getCount());
+        assertSame(metrics.histogram(MeterMetrics.Stage.CAPTURE_TO_RENDER), meter.getCaptureToRenderLatency());
+
+        String report = metrics.report();
+        assertTrue(report, report.contains("read n=1 p50="));
+        assertTrue(report, report.contains("update n=2"));
+        assertFalse(report, report.contains("render n=0"));
+        assertTrue(report, report.endsWith("frames_rendered=0"));
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the capture-to-GL snapshot hand-off.
+ */
+public class MeterStateTripleBufferTest {
+
+    private static final int NUM_UPDATES = 5000000;
+
+    /** All three fields are derived from the sequence number, so a snapshot
+     *  mixing two publications is detected by any one of them disagreeing.
+     */
+    private static int  rmsFor (long seq) { return (int) seq; }
+    private static int  peakFor(long seq) { return (int) (seq * 31 + 7); }
+    private static long timeFor(long seq) { return seq * 1000003L; }
+
+    @Test
+    public void read_beforePublish_returnsEmptySnapshot() {
+        MeterStateTripleBuffer buffer = new MeterStateTripleBuffer();
+        assertFalse(buffer.hasUpdate());
+        assertEquals(0, buffer.read().mSequence);
+    }
+
+    @Test
+    public void read_returnsLatestAndKeepsItUntilNextPublish() {
+        MeterStateTripleBuffer buffer = new MeterStateTripleBuffer();
+        buffer.publish(1, 2, 3L);
+        buffer.publish(4, 5, 6L);
+        assertTrue(buffer.hasUpdate());
+
+        MeterSnapshot s = buffer.read();
+        assertFalse(buffer.hasUpdate());
+        assertEquals(2, s.mSequence);
+        assertEquals(1, s.mChannelCount);
+        assertEquals(4, s.mRMS[0]);
+        assertEquals(5, s.mPeak[0]);
+        assertEquals(6L, s.mTimestampNanos);
+
+        // No new publication: same slot, same content.
+        assertSame(s, buffer.read());
+        assertEquals(2, s.mSequence);
+
+        // The consumer's slot is never touched by the producer.
+        buffer.publish(7, 8, 9L);
+        buffer.publish(10, 11, 12L);
+        assertEquals(4, s.mRMS[0]);
+        assertEquals(10, buffer.read().mRMS[0]);
+    }
+
+    @Test
+    public void concurrentProducerAndConsumer_neverSeeTornSnapshots() throws Exception {
+        final MeterStateTripleBuffer buffer = new MeterStateTripleBuffer();
+        final AtomicBoolean done = new AtomicBoolean(false);
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (long seq = 1; seq <= NUM_UPDATES; seq++) {
+                    MeterSnapshot s = buffer.beginWrite();
+                    s.mChannelCount   = 2;
+                    s.mRMS[0]         = rmsFor(seq);
+                    s.mPeak[0]        = peakFor(seq);
+                    s.mRMS[1]         = peakFor(seq);
+                    s.mPeak[1]        = rmsFor(seq);
+                    s.mTimestampNanos = timeFor(seq);
+                    buffer.publish();
+                }
+                done.set(true);
+            }
+        }, "producer");
+
+        producer.start();
+
+        long reads    = 0;
+        long distinct = 0;
+        long lastSeq  = 0;
+        while (true) {
+            boolean finished = done.get();
+            MeterSnapshot s = buffer.read();
+            long seq = s.mSequence;
+            reads++;
+            if (seq != 0) {
+                assertEquals("rms of #" + seq,  rmsFor(seq),  s.mRMS[0]);
+                assertEquals("peak of #" + seq, peakFor(seq), s.mPeak[0]);
+                assertEquals("rms of #" + seq,  peakFor(seq), s.mRMS[1]);
+                assertEquals("peak of #" + seq, rmsFor(seq),  s.mPeak[1]);
+                assertEquals("time of #" + seq, timeFor(seq), s.mTimestampNanos);
+            }
+            assertTrue("went backwards: " + lastSeq + " -> " + seq, seq >= lastSeq);
+            if (seq != lastSeq) {
+                distinct++;
+            }
+            lastSeq = seq;
+            if (finished && seq == NUM_UPDATES) {
+                break;
+            }
+        }
+        producer.join();
+
+        assertEquals(NUM_UPDATES, lastSeq);
+        assertTrue(distinct > 1);
+        assertTrue(reads >= distinct);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the hand moving through the published readings.
+ */
+public class NeedleFollowerTest {
+
+    private static final float LEFT   = (float) Math.PI * 3.0f / 4.0f;
+    private static final float RIGHT  = (float) Math.PI * 1.0f / 4.0f;
+    private static final float MIDDLE = (LEFT + RIGHT) * 0.5f;
+
+    private static final long BLOCK_NANOS = 20000000L;
+
+    @Test
+    public void reachesTheTargetOverOneBlock() {
+        NeedleFollower f = new NeedleFollower(LEFT, RIGHT);
+        f.setTarget(MIDDLE, BLOCK_NANOS);
+        f.advanceTo(1000L);
+        assertEquals(LEFT, f.getTheta(), 0.0f);
+        assertTrue(f.getVelocity() < 0.0f);
+
+        f.advanceTo(1000L + BLOCK_NANOS / 2);
+        assertEquals((LEFT + MIDDLE) * 0.5f, f.getTheta(), 1.0e-6f);
+
+        f.advanceTo(1000L + BLOCK_NANOS);
+        assertEquals(MIDDLE, f.getTheta(), 0.0f);
+        assertEquals(0.0f, f.getVelocity(), 0.0f);
+    }
+
+    @Test
+    public void newReadingMidway_continuesFromTheCurrentPosition() {
+        NeedleFollower f = new NeedleFollower(LEFT, RIGHT);
+        f.setTarget(RIGHT, BLOCK_NANOS);
+        f.advanceTo(0L);
+        f.advanceTo(BLOCK_NANOS / 4);
+        float drawn = f.getTheta();
+
+        f.setTarget(MIDDLE, BLOCK_NANOS);
+        f.advanceTo(BLOCK_NANOS / 2);
+        // Where the first move is at this time, not where it was drawn.
+        assertEquals(LEFT + (RIGHT - LEFT) * 0.5f, f.getTheta(), 1.0e-6f);
+        assertTrue(f.getTheta() < drawn);
+    }
+
+    @Test
+    public void readingsFasterThanFrames_tracksTheLatest() {
+        NeedleFollower f = new NeedleFollower(LEFT, RIGHT);
+        long now = 0L;
+        for (int frame = 0; frame < 100; frame++) {
+            // Three 5 ms blocks per 16.7 ms frame: only the last one counts.
+            f.setTarget(RIGHT, 5000000L);
+            f.setTarget(LEFT, 5000000L);
+            f.setTarget(MIDDLE, 5000000L);
+            f.advanceTo(now);
+            now += 16666667L;
+        }
+        assertEquals(MIDDLE, f.getTheta(), 0.0f);
+    }
+
+    @Test
+    public void targetsOutsideTheScale_areClamped() {
+        NeedleFollower f = new NeedleFollower(LEFT, RIGHT);
+        f.setTarget(-10.0f, 0L);
+        f.advanceTo(0L);
+        assertEquals(RIGHT, f.getTheta(), 0.0f);
+        f.setTarget(10.0f, 0L);
+        f.advanceTo(1L);
+        assertEquals(LEFT, f.getTheta(), 0.0f);
+    }
+}
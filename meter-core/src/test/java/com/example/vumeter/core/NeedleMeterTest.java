@@ -0,0 +1,110 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the hands driven by captured levels, from the synthetic
+ * source to the vertices, without GL.
+ */
+public class NeedleMeterTest {
+
+    private static final long FRAME_NANOS = 16666667L;
+
+    private static class CountingRequester implements RenderRequester {
+        int requests;
+
+        @Override
+        public void requestRender() {
+            requests++;
+        }
+    }
+
+    private final MeterGeometry geometry = new MeterGeometry();
+
+    @Test
+    public void sine_movesHandToItsLevel_andLightsTheLedWhenOverloaded() {
+        CaptureLoop loop = new CaptureLoop(
+                new SineAudioSource(CaptureConfig.DEFAULT, 440.0, 1.0, -1, false));
+        CountingRequester requester = new CountingRequester();
+        NeedleMeter meter = new NeedleMeter(geometry, 1, loop.getMeterState(), requester);
+        loop.setCaptureThreadListener(meter);
+
+        long now = 0L;
+        for (int frame = 0; frame < 180; frame++) {
+            loop.processBlock();
+            meter.updateFromCapture(now);
+            meter.onFrameDrawn();
+            now += FRAME_NANOS;
+        }
+
+        // A steady full-scale sine reads its RMS.
+        float expected = meter.targetThetaFor(32767.0f / (float) Math.sqrt(2.0));
+        assertEquals(meter.clampToScale(expected), meter.getTheta(0), 0.01f);
+        assertTrue(meter.peaked());
+    }
+
+    @Test
+    public void loudnessScale_showsTheProgramLoudnessOnBothHands() {
+        // EBU Tech 3341 case 1: -23 dBFS stereo 1 kHz reads -23 LUFS.
+        CaptureLoop loop = new CaptureLoop(new SineAudioSource(
+                CaptureConfig.BROADCAST, 1000.0, Math.pow(10.0, -23.0 / 20.0), -1, false));
+        NeedleMeter meter = new NeedleMeter(geometry, 2, loop.getMeterState(), new CountingRequester());
+        meter.setScale(NeedleMeter.Scale.SHORT_TERM_LUFS);
+
+        long now = 0L;
+        for (int block = 0; block < 200; block++) {
+            loop.processBlock();
+            meter.updateFromCapture(now);
+            meter.onFrameDrawn();
+            now += 20000000L;
+        }
+
+        assertEquals(-23.0f, loop.getMeterState().read().getShortTermLUFS(), 0.1f);
+        float expected = meter.targetThetaForLUFS(-23.0f);
+        assertEquals(expected, meter.getTheta(0), 0.01f);
+        assertEquals(expected, meter.getTheta(1), 0.01f);
+    }
+
+    @Test
+    public void silence_afterComingToRest_neverRequestsAFrame() {
+        CaptureLoop loop = new CaptureLoop(
+                new SineAudioSource(CaptureConfig.DEFAULT, 440.0, 0.0, -1, false));
+        CountingRequester requester = new CountingRequester();
+        NeedleMeter meter = new NeedleMeter(geometry, 1, loop.getMeterState(), requester);
+        loop.setCaptureThreadListener(meter);
+
+        meter.updateFromCapture(0L);
+        meter.onFrameDrawn();
+        assertEquals(0, requester.requests);
+
+        for (int i = 0; i < 1000; i++) {
+            loop.processBlock();
+        }
+        assertEquals(0, requester.requests);
+        assertEquals(geometry.HandAngularLimitLeft, meter.getTheta(0), 0.0f);
+    }
+
+    @Test
+    public void uprightHand_isCenteredOnTheRotatingCenter() {
+        VertexUploadPlan plan = new VertexUploadPlan(2);
+        float[] vertices = new float[plan.numVertexFloats()];
+        geometry.makeStaticVertices(vertices, plan);
+        geometry.makeHandVertices(vertices, 1, (float) (Math.PI / 2.0));
+
+        int h = VertexUploadPlan.firstFloatOfQuad(VertexUploadPlan.quadOfHand(1));
+        float centerX = geometry.fromTexCoordToNormCoordX(geometry.HandRotatingCenterX);
+        float tipX = (vertices[h] + vertices[h + VertexUploadPlan.FLOATS_PER_VERTEX]) * 0.5f;
+        assertEquals(centerX, tipX, 1.0e-6f);
+
+        // The tip is one hand length above the rotating center.
+        float tipY = geometry.fromTexCoordToNormCoordYInverted(
+                geometry.HandRotatingCenterY - geometry.handLength());
+        assertEquals(tipY, vertices[h + 1], 1.0e-5f);
+
+        // Hand 0 was not touched.
+        int h0 = VertexUploadPlan.firstFloatOfQuad(VertexUploadPlan.quadOfHand(0));
+        assertEquals(0.0f, vertices[h0], 0.0f);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.vumeter.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the metering of whole programs faster than real time.
+ */
+public class OfflineMeterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(timeout = 30000)
+    public void wavFile_isMeteredIntoRowsFasterThanRealTime() throws IOException {
+        // A minute of stereo 1 kHz at -20 dBFS, then 10 s of silence.
+        CaptureConfig config = new CaptureConfig(48000, 2, CaptureConfig.Encoding.PCM_FLOAT);
+        File file = folder.newFile("program.wav");
+        WavWriter out = new WavWriter(file, 48000, 2, 24, false);
+        float[] block = new float[9600];
+        SineAudioSource tone = new SineAudioSource(config, 1000.0, 0.1, 48000 * 60, false);
+        int n;
+        while ((n = tone.read(block, 0, block.length)) >= 0) {
+            out.write(block, 0, n);
+        }
+        Arrays.fill(block, 0.0f);
+        for (int i = 0; i < 100; i++) {
+            out.write(block, 0, block.length);
+        }
+        out.close();
+
+        LevelReport report = new OfflineMeter(new WavAudioSource(file)).run();
+        assertEquals(48000L * 70, report.getFrameCount());
+        assertEquals(70000000000L, report.getDurationNanos());
+        assertEquals(700, report.getRowCount());
+        assertTrue(report.getSpeed() > 10.0);
+        assertEquals(0, report.getOverloadBlocks());
+
+        // Settled: the VU reads the RMS, the peaks the amplitude.
+        for (int ch = 0; ch < 2; ch++) {
+            assertEquals(-23.0f, report.getLevelDB(300, ch), 0.2f);
+            assertEquals(-20.0f, report.getPeakDB(300, ch), 0.1f);
+            assertEquals(-20.0f, report.getTruePeakDB(300, ch), 0.1f);
+            assertEquals(-20.0f, report.getMaxTruePeakDB(ch), 0.1f);
+            assertTrue(report.getLevelDB(699, ch) < -60.0f);
+        }
+        // Mean square 0.005 on both channels, K-weighted +0.7 dB at 1 kHz:
+        // -0.691 + 10 log10(0.01) + 0.7 LUFS.
+        assertEquals(-20.0f, report.getMomentaryLUFS(300), 0.3f);
+        assertEquals(-20.0f, report.getIntegratedLUFS(), 0.3f);
+
+        StringBuilder csv = new StringBuilder();
+        report.writeCsv(csv);
+        String[] lines = csv.toString().split("\n");
+        assertEquals(701, lines.length);
+        assertTrue(lines[0].startsWith("time_s,level_dbfs_1,peak_dbfs_1,true_peak_dbtp_1,level_dbfs_2"));
+        assertTrue(lines[301].startsWith("30.000,-23."));
+    }
+
+    @Test
+    public void overloads_areCountedPerInterval() {
+        CaptureConfig config = new CaptureConfig(48000, 1, CaptureConfig.Encoding.PCM_FLOAT, 480);
+        // 10 ms full-scale bursts every second.
+        ToneBurstAudioSource bursts = new ToneBurstAudioSource(config, 997.0, 1.0, 10.0, 1000.0, 48000 * 10, false);
+        LevelReport report = new OfflineMeter(bursts, Ballistics.Mode.PPM_TYPE_II).run(1000000000L);
+        assertEquals(10, report.getRowCount());
+        assertEquals(1000, report.getBlockCount());
+        for (int row = 0; row < 10; row++) {
+            assertTrue(report.getOverloads(row) >= 1);
+            assertEquals(0.0f, report.getPeakDB(row, 0), 0.01f);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void intervalShorterThanABlock_isRejected() {
+        new OfflineMeter(new SineAudioSource(CaptureConfig.DEFAULT, 1000.0, 0.5, 8000, false)).run(1000000L);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the hold and release of the overload LED, and of the
+ * overloads latched by the capture loop.
+ */
+public class OverloadLedTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void untriggered_isOff() {
+        assertEquals(0.0f, new OverloadLed().getBrightness(123456789L), 0.0f);
+    }
+
+    @Test
+    public void holdsThenFadesOut() {
+        OverloadLed led = new OverloadLed(500 * MS, 200 * MS);
+        long t = 1000 * MS;
+        led.trigger(t);
+
+        assertEquals(1.0f, led.getBrightness(t), 0.0f);
+        assertEquals(1.0f, led.getBrightness(t + 500 * MS), 0.0f);
+        assertEquals(0.5f, led.getBrightness(t + 600 * MS), 1.0e-6f);
+        assertTrue(led.isLit(t + 699 * MS));
+        assertFalse(led.isLit(t + 700 * MS));
+    }
+
+    @Test
+    public void laterOverload_restartsTheHold_earlierOneDoesNot() {
+        OverloadLed led = new OverloadLed(500 * MS, 200 * MS);
+        led.trigger(1000 * MS);
+        led.trigger(1400 * MS);
+        led.trigger(1200 * MS);
+        assertEquals(1.0f, led.getBrightness(1900 * MS), 0.0f);
+        assertFalse(led.isLit(2100 * MS));
+    }
+
+    @Test
+    public void interSamplePeak_overloadsWhereTheSamplePeakWouldNot() {
+        // fs/4 at 45 degrees, -0.2 dBTP: the samples stay at -3.2 dBFS,
+        // below the old fixed threshold of 32767 - 10000.
+        CaptureConfig config = CaptureConfig.DEFAULT;
+        short[] block = new short[config.getSampleRate() / 50];
+        for (int n = 0; n < block.length; n++) {
+            block[n] = (short) Math.round(
+                    0.977 * 32767.0 * Math.sin(Math.PI / 2.0 * n + Math.PI / 4.0));
+        }
+        CaptureLoop loop = new CaptureLoop(new ReplaySource(config, block));
+
+        loop.processBlock();
+        MeterSnapshot s = loop.getMeterState().read();
+        assertTrue(s.getPeak(0) < 32767 - 10000);
+        assertTrue(s.isOverload());
+        assertEquals(1L, s.getOverloadCount());
+        assertEquals(s.getTimestampNanos(), s.getLastOverloadNanos());
+
+        // Just above the true peak, nothing is overloaded, but the last
+        // overload stays latched.
+        loop.setOverloadThreshold(0.0f);
+        loop.processBlock();
+        s = loop.getMeterState().read();
+        assertFalse(s.isOverload());
+        assertEquals(1L, s.getOverloadCount());
+        assertTrue(s.getTimestampNanos() > s.getLastOverloadNanos());
+    }
+
+    /** Plays the same block forever. */
+    private static class ReplaySource implements AudioSource {
+        private final CaptureConfig mConfig;
+        private final short[]       mBlock;
+
+        ReplaySource(CaptureConfig config, short[] block) {
+            mConfig = config;
+            mBlock  = block;
+        }
+
+        @Override public CaptureConfig getConfig()             { return mConfig; }
+        @Override public int           getBufferSizeInSamples() { return mBlock.length; }
+        @Override public void          start()                 { }
+        @Override public void          stop()                  { }
+        @Override public void          release()               { }
+
+        @Override
+        public int read(short[] buffer, int offset, int length) {
+            int n = Math.min(length, mBlock.length);
+            System.arraycopy(mBlock, 0, buffer, offset, n);
+            return n;
+        }
+
+        @Override
+        public int read(float[] buffer, int offset, int length) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.vumeter.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the storage of the program binaries and of the startup
+ * milestones.
+ */
+public class ProgramBinaryCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void storedBinary_isLoadedInTheNextRun() throws IOException {
+        File directory = new File(folder.getRoot(), "programs");
+        String key = ProgramBinaryCache.key("vertex", "fragment", "Adreno 640", "OpenGL ES 3.2 V@415");
+        byte[] binary = { 1, 2, 3, 4, 5, 6, 7 };
+
+        assertNull(new ProgramBinaryCache(directory).load(key));
+        assertTrue(new ProgramBinaryCache(directory).store(key, 0x8741, binary, 5));
+
+        ProgramBinaryCache.Entry entry = new ProgramBinaryCache(directory).load(key);
+        assertNotNull(entry);
+        assertEquals(0x8741, entry.format);
+        assertArrayEquals(new byte[] { 1, 2, 3, 4, 5 }, entry.binary);
+        assertEquals(1, directory.list().length);
+    }
+
+    @Test
+    public void key_changesWithTheShadersAndTheDriver() {
+        String key = ProgramBinaryCache.key("vertex", "fragment", "Mali-G78", "OpenGL ES 3.2 v1");
+        assertEquals(key, ProgramBinaryCache.key("vertex", "fragment", "Mali-G78", "OpenGL ES 3.2 v1"));
+        assertEquals(32, key.length());
+        assertNotEquals(key, ProgramBinaryCache.key("vertex2", "fragment", "Mali-G78", "OpenGL ES 3.2 v1"));
+        assertNotEquals(key, ProgramBinaryCache.key("vertex", "fragment", "Mali-G78", "OpenGL ES 3.2 v2"));
+        assertNotEquals(ProgramBinaryCache.key("ab", "c"), ProgramBinaryCache.key("a", "bc"));
+    }
+
+    @Test
+    public void truncatedOrRemovedEntry_isNoEntry() throws IOException {
+        ProgramBinaryCache cache = new ProgramBinaryCache(folder.getRoot());
+        String key = ProgramBinaryCache.key("v", "f");
+        assertTrue(cache.store(key, 1, new byte[64], 64));
+
+        File file = cache.fileOf(key);
+        FileOutputStream out = new FileOutputStream(file, true);
+        out.getChannel().truncate(40);
+        out.close();
+        assertNull(cache.load(key));
+
+        assertTrue(cache.store(key, 1, new byte[64], 64));
+        assertNotNull(cache.load(key));
+        cache.remove(key);
+        assertNull(cache.load(key));
+        assertFalse(cache.store(key, 1, new byte[0], 0));
+    }
+
+    @Test
+    public void startupTrace_keepsTheFirstMarkOfEachMilestone() {
+        StartupTrace trace = new StartupTrace(1000L);
+        assertFalse(trace.isReached(StartupTrace.Milestone.FIRST_FRAME));
+        assertEquals(StartupTrace.NOT_REACHED, trace.getTimeToFirstFrame());
+
+        assertTrue(trace.mark(StartupTrace.Milestone.TEXTURE_DECODED, 1000L + 12300000L));
+        assertTrue(trace.mark(StartupTrace.Milestone.FIRST_FRAME, 1000L + 85000000L));
+        assertFalse(trace.mark(StartupTrace.Milestone.FIRST_FRAME, 1000L + 99000000L));
+        assertEquals(85000000L, trace.getTimeToFirstFrame());
+        assertEquals("startup texture_decoded=12.3ms first_frame=85.0ms", trace.report());
+    }
+}
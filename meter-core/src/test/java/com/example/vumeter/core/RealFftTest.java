@@ -0,0 +1,82 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the real-input FFT against a naive DFT in double.
+ */
+public class RealFftTest {
+
+    private static void naiveDft(float[] x, double[] re, double[] im) {
+        int n = x.length;
+        for (int k = 0; k <= n / 2; k++) {
+            double sr = 0.0, si = 0.0;
+            for (int t = 0; t < n; t++) {
+                double theta = 2.0 * Math.PI * k * t / n;
+                sr += x[t] * Math.cos(theta);
+                si -= x[t] * Math.sin(theta);
+            }
+            re[k] = sr;
+            im[k] = si;
+        }
+    }
+
+    private static void assertMatchesDft(int size, long seed) {
+        Random random = new Random(seed);
+        float[] x = new float[size + 3];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = (float) random.nextGaussian();
+        }
+        float[] segment = new float[size];
+        System.arraycopy(x, 3, segment, 0, size);
+
+        double[] expectedRe = new double[size / 2 + 1];
+        double[] expectedIm = new double[size / 2 + 1];
+        naiveDft(segment, expectedRe, expectedIm);
+
+        RealFft fft = new RealFft(size);
+        float[] re = new float[fft.getBinCount()];
+        float[] im = new float[fft.getBinCount()];
+        fft.forward(x, 3, re, im);
+
+        // Float rounding grows with sqrt(N) log N on unit-variance noise.
+        double tolerance = 1.0e-5 * Math.sqrt(size) * Math.log(size) / Math.log(2.0);
+        for (int k = 0; k <= size / 2; k++) {
+            assertEquals("re[" + k + "] of " + size, expectedRe[k], re[k], tolerance);
+            assertEquals("im[" + k + "] of " + size, expectedIm[k], im[k], tolerance);
+        }
+    }
+
+    @Test
+    public void matchesNaiveDft_atAllSizes() {
+        for (int size = 4; size <= 4096; size <<= 1) {
+            assertMatchesDft(size, size);
+        }
+    }
+
+    @Test
+    public void sineOnABin_hasAmplitudeTimesHalfTheSize() {
+        int size = 1024;
+        float[] x = new float[size];
+        for (int n = 0; n < size; n++) {
+            x[n] = (float) (0.5 * Math.cos(2.0 * Math.PI * 37 * n / size));
+        }
+        RealFft fft = new RealFft(size);
+        float[] re = new float[fft.getBinCount()];
+        float[] im = new float[fft.getBinCount()];
+        fft.forward(x, 0, re, im);
+
+        assertEquals(0.5 * size / 2, Math.hypot(re[37], im[37]), 1.0e-3);
+        assertEquals(0.0, Math.hypot(re[36], im[36]), 1.0e-3);
+        assertEquals(0.0, Math.hypot(re[38], im[38]), 1.0e-3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPowerOfTwo_isRejected() {
+        new RealFft(1000);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the redraw decisions for RENDERMODE_WHEN_DIRTY.
+ */
+public class RedrawPolicyTest {
+
+    private static final float LEFT  = (float) Math.PI * 3.0f / 4.0f;
+    private static final float RIGHT = (float) Math.PI * 1.0f / 4.0f;
+
+    /** Geometry of vu_meter_texture.png, as in MeterGeometry. */
+    private static final float HAND_LENGTH = (288.0f - 240.0f) + (187.0f - 8.0f);
+
+    private static RedrawPolicy newIdlePolicy(float restingTheta) {
+        RedrawPolicy policy = new RedrawPolicy(HAND_LENGTH, 512.0f, 300.0f,
+                RedrawPolicy.DEFAULT_THRESHOLD_PIXELS);
+        policy.setViewportSize(1024, 600);
+        assertFalse(policy.onFrameDrawn(restingTheta, 0.0f, restingTheta, false));
+        return policy;
+    }
+
+    @Test
+    public void beforeFirstFrame_neverWakes() {
+        RedrawPolicy policy = new RedrawPolicy(HAND_LENGTH, 512.0f, 300.0f, 0.25f);
+        assertTrue(policy.isAnimating());
+        assertFalse(policy.shouldWakeForLevel(RIGHT, true));
+    }
+
+    @Test
+    public void threshold_scalesWithViewport() {
+        RedrawPolicy policy = new RedrawPolicy(HAND_LENGTH, 512.0f, 300.0f, 0.25f);
+        policy.setViewportSize(512, 300);
+        float atNative = policy.getAngleThreshold();
+        policy.setViewportSize(2048, 1200);
+        assertEquals(atNative / 4.0f, policy.getAngleThreshold(), 1.0e-7f);
+        // A quarter pixel at the tip of a 227 texel hand.
+        assertEquals(0.25f / HAND_LENGTH, atNative, 1.0e-7f);
+    }
+
+    @Test
+    public void silentRoom_parkedHand_neverWakes() {
+        RedrawPolicy policy = newIdlePolicy(LEFT);
+        for (int i = 0; i < 10000; i++) {
+            assertFalse(policy.shouldWakeForLevel(LEFT, false));
+        }
+    }
+
+    @Test
+    public void subPixelChange_doesNotWake_visibleChangeDoes() {
+        RedrawPolicy policy = newIdlePolicy(LEFT);
+        float threshold = policy.getAngleThreshold();
+        assertFalse(policy.shouldWakeForLevel(LEFT - threshold * 0.5f, false));
+        assertTrue (policy.shouldWakeForLevel(LEFT - threshold * 2.0f, false));
+    }
+
+    @Test
+    public void ledChange_wakes() {
+        RedrawPolicy policy = newIdlePolicy(LEFT);
+        assertTrue(policy.shouldWakeForLevel(LEFT, true));
+    }
+
+    @Test
+    public void litLed_keepsAnimatingUntilItGoesOut() {
+        RedrawPolicy policy = newIdlePolicy(LEFT);
+        // The hand is at rest, but the LED is held or fading.
+        assertTrue(policy.onFrameDrawn(LEFT, 0.0f, LEFT, true));
+        assertTrue(policy.isAnimating());
+        assertFalse(policy.shouldWakeForLevel(LEFT, true));
+
+        assertFalse(policy.onFrameDrawn(LEFT, 0.0f, LEFT, false));
+        assertFalse(policy.shouldWakeForLevel(LEFT, false));
+        assertTrue (policy.shouldWakeForLevel(LEFT, true));
+    }
+
+    @Test
+    public void whileAnimating_captureNeverRequests() {
+        RedrawPolicy policy = newIdlePolicy(LEFT);
+        assertTrue(policy.onFrameDrawn(LEFT, -1.0f, RIGHT, false));
+        assertTrue(policy.isAnimating());
+        assertFalse(policy.shouldWakeForLevel(RIGHT, true));
+    }
+
+    @Test
+    public void keepsAnimatingUntilTheHandComesToRest() {
+        RedrawPolicy   policy   = newIdlePolicy(LEFT);
+        NeedleFollower follower = new NeedleFollower(LEFT, RIGHT);
+        float target = (LEFT + RIGHT) * 0.5f;
+        // One 500 ms block.
+        follower.setTarget(target, 500000000L);
+
+        long now = 0L;
+        int frames = 0;
+        boolean keepAnimating = true;
+        while (keepAnimating) {
+            follower.advanceTo(now);
+            keepAnimating = policy.onFrameDrawn(follower.getTheta(), follower.getVelocity(), target, false);
+            now += 16666667L;
+            frames++;
+            assertTrue("never came to rest", frames < 60 * 10);
+        }
+
+        // Every frame of the move is drawn, and it really is at rest.
+        assertTrue(frames > 30);
+        assertEquals(target, follower.getTheta(), policy.getAngleThreshold());
+        assertFalse(policy.shouldWakeForLevel(target, false));
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.vumeter.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the recording of meter sessions to a file and their replay,
+ * up to sessions hours long.
+ */
+public class SessionLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** @brief A stereo snapshot of block i, 5 ms apart. */
+    private static void fill(MeterSnapshot s, long startNanos, int i) {
+        s.mChannelCount    = 2;
+        s.mTimestampNanos  = startNanos + i * 5000000L;
+        s.mBlockNanos      = 5000000L;
+        s.mOverload        = i % 1000 == 999;
+        s.mMomentaryLUFS   = -23.0f + (i % 7);
+        s.mShortTermLUFS   = -24.0f;
+        s.mIntegratedLUFS  = -23.5f;
+        s.mLoudnessRangeLU = 6.0f;
+        for (int ch = 0; ch < 2; ch++) {
+            s.mRMS[ch]      = (i * 7 + ch) % 32768;
+            s.mPeak[ch]     = (i * 11 + ch) % 32768;
+            s.mLevel[ch]    = (i % 100) / 100.0f;
+            s.mTruePeak[ch] = (i % 50) / 25.0f;
+        }
+    }
+
+    /** @brief Waits while the ring is full rather than dropping. */
+    private static void recordAll(SessionRecorder recorder, MeterSnapshot s, int count) {
+        for (int i = 0; i < count; i++) {
+            fill(s, recorder.getStartNanos(), i);
+            while (!recorder.record(s)) {
+                Thread.yield();
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void capturedSession_readsBackAsPublished() throws IOException {
+        File file = folder.newFile("session.vms");
+        SessionRecorder recorder = new SessionRecorder(file, 2, 48000);
+
+        final List<MeterSnapshot> published = new ArrayList<MeterSnapshot>();
+        CaptureLoop loop = new CaptureLoop(
+                new SineAudioSource(CaptureConfig.BROADCAST, 1000.0, 0.5, 48000, false));
+        loop.setSessionRecorder(recorder);
+        loop.setCaptureThreadListener(new MeterStateListener() {
+            @Override
+            public void onMeterStatePublished(MeterSnapshot snapshot) {
+                MeterSnapshot copy = new MeterSnapshot();
+                copy.copyFrom(snapshot);
+                published.add(copy);
+            }
+        });
+        loop.run();
+        loop.setSessionRecorder(null);
+        recorder.close();
+
+        assertEquals(0, recorder.getDropped());
+        assertEquals(SessionLog.HEADER_BYTES + published.size() * SessionLog.recordBytes(2), file.length());
+
+        SessionReader reader = new SessionReader(file);
+        assertEquals(published.size(), reader.getRecordCount());
+        assertEquals(2, reader.getChannelCount());
+        assertEquals(48000, reader.getSampleRate());
+        MeterSnapshot s = new MeterSnapshot();
+        for (int i = 0; i < published.size(); i++) {
+            MeterSnapshot p = published.get(i);
+            reader.read(i, s);
+            assertEquals(p.mTimestampNanos - recorder.getStartNanos(), s.mTimestampNanos);
+            assertEquals(p.mBlockNanos, s.mBlockNanos);
+            assertEquals(p.mIntegratedLUFS, s.mIntegratedLUFS, 0.0f);
+            for (int ch = 0; ch < 2; ch++) {
+                assertEquals(p.mRMS[ch], s.mRMS[ch]);
+                assertEquals(p.mPeak[ch], s.mPeak[ch]);
+                assertEquals(p.mLevel[ch], s.mLevel[ch], 0.0f);
+                assertEquals(p.mTruePeak[ch], s.mTruePeak[ch], 0.0f);
+            }
+        }
+        reader.close();
+    }
+
+    /** Two hours of stereo in 5 ms blocks: 1.44 million records, 80 MB. */
+    @Test(timeout = 120000)
+    public void twoHourSession_recordsReadsAndReplays() throws IOException {
+        int records = 2 * 3600 * 200;
+        File file = folder.newFile("long.vms");
+        SessionRecorder recorder = new SessionRecorder(file, 2, 48000, 65536, SessionRecorder.DEFAULT_FLUSH_NANOS);
+        MeterSnapshot s = new MeterSnapshot();
+        recordAll(recorder, s, records);
+        recorder.close();
+        assertEquals(records, recorder.getWritten());
+
+        SessionReader reader = new SessionReader(file);
+        assertEquals(records, reader.getRecordCount());
+        assertEquals((records - 1) * 5000000L, reader.getDurationNanos());
+        MeterSnapshot expected = new MeterSnapshot();
+        for (int i = 0; i < records; i += 997) {
+            fill(expected, 0L, i);
+            reader.read(i, s);
+            assertEquals(expected.mTimestampNanos, s.mTimestampNanos);
+            assertEquals(expected.mRMS[1], s.mRMS[1]);
+            assertEquals(expected.mPeak[0], s.mPeak[0]);
+            assertEquals(expected.mMomentaryLUFS, s.mMomentaryLUFS, 0.0f);
+            assertEquals(expected.mOverload, s.mOverload);
+        }
+
+        MeterStateTripleBuffer state = new MeterStateTripleBuffer();
+        SessionPlayer player = new SessionPlayer(reader, state, SessionPlayer.FASTEST);
+        player.run();
+        assertEquals(records, player.getPosition());
+        MeterSnapshot last = state.read();
+        assertEquals(records, last.getSequence());
+        assertEquals(records / 1000, last.getOverloadCount());
+        reader.close();
+    }
+
+    @Test(timeout = 10000)
+    public void replay_keepsThePaceOfTheSessionAtItsSpeed() throws IOException {
+        File file = folder.newFile("paced.vms");
+        SessionRecorder recorder = new SessionRecorder(file, 2, 48000);
+        recordAll(recorder, new MeterSnapshot(), 201);
+        recorder.close();
+
+        // One second at 10 times the speed.
+        SessionReader reader = new SessionReader(file);
+        MeterStateTripleBuffer state = new MeterStateTripleBuffer();
+        SessionPlayer player = new SessionPlayer(reader, state, 10.0);
+        long start = System.nanoTime();
+        player.run();
+        long elapsed = System.nanoTime() - start;
+        assertTrue(elapsed >= 100000000L);
+        assertTrue(elapsed < 1000000000L);
+        MeterSnapshot last = state.read();
+        assertEquals(201, last.getSequence());
+        assertEquals(500000L, last.getBlockNanos());
+        assertTrue(last.getTimestampNanos() >= start);
+        reader.close();
+    }
+
+    @Test(timeout = 10000)
+    public void unclosedSession_keepsWhatWasFlushed() throws IOException, InterruptedException {
+        File file = folder.newFile("crashed.vms");
+        SessionRecorder recorder = new SessionRecorder(file, 1, 8000, 1024, 1000000L);
+        MeterSnapshot s = new MeterSnapshot();
+        recordAll(recorder, s, 100);
+        while (recorder.getWritten() < 100) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(50);
+
+        SessionReader reader = new SessionReader(file);
+        assertEquals(100, reader.getRecordCount());
+        assertEquals(1, reader.getChannelCount());
+        reader.read(99, s);
+        assertEquals(99 * 5000000L, s.mTimestampNanos);
+        reader.close();
+        recorder.close();
+    }
+
+    @Test(timeout = 10000)
+    public void fullRing_dropsInsteadOfBlocking() throws IOException {
+        File file = folder.newFile("dropped.vms");
+        SessionRecorder recorder = new SessionRecorder(file, 2, 48000, 4, SessionRecorder.DEFAULT_FLUSH_NANOS);
+        MeterSnapshot s = new MeterSnapshot();
+        int accepted = 0;
+        for (int i = 0; i < 10000; i++) {
+            fill(s, recorder.getStartNanos(), i);
+            if (recorder.record(s)) {
+                accepted++;
+            }
+        }
+        assertTrue(recorder.getDropped() > 0);
+        assertEquals(10000, accepted + recorder.getDropped());
+        recorder.close();
+        SessionReader reader = new SessionReader(file);
+        assertEquals(accepted, reader.getRecordCount());
+        reader.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void notALog_isRejected() throws IOException {
+        File file = folder.newFile("empty.vms");
+        new SessionReader(file);
+    }
+}
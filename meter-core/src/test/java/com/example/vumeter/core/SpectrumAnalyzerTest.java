@@ -0,0 +1,136 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the band levels and of the bars that show them.
+ */
+public class SpectrumAnalyzerTest {
+
+    private static final int RATE = 48000;
+
+    private static SpectrumAnalyzer analyze(double frequency, double amplitude, int channels) {
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(RATE, channels, 2048,
+                SpectrumAnalyzer.Bands.THIRD_OCTAVE, SpectrumAnalyzer.DEFAULT_AVERAGES);
+        float[] block = new float[960 * channels];
+        long n = 0;
+        for (int b = 0; b < 50; b++) {
+            for (int i = 0; i < 960; i++, n++) {
+                float v = (float) (amplitude * Math.sin(2.0 * Math.PI * frequency * n / RATE));
+                for (int ch = 0; ch < channels; ch++) {
+                    block[i * channels + ch] = v;
+                }
+            }
+            analyzer.process(block, block.length);
+        }
+        return analyzer;
+    }
+
+    private static int bandOf(SpectrumAnalyzer analyzer, double frequency) {
+        int best = 0;
+        for (int b = 1; b < analyzer.getBandCount(); b++) {
+            if (Math.abs(Math.log(analyzer.getBandCenter(b) / frequency))
+                    < Math.abs(Math.log(analyzer.getBandCenter(best) / frequency))) {
+                best = b;
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void thirdOctaves_coverTheAudioBand() {
+        SpectrumAnalyzer analyzer = SpectrumAnalyzer.forConfig(CaptureConfig.BROADCAST);
+        assertEquals(2048, analyzer.getFftSize());
+        assertEquals(31, analyzer.getBandCount());
+        assertEquals(19.7f, analyzer.getBandCenter(0), 0.1f);
+        assertEquals(1000.0f, analyzer.getBandCenter(17), 1.0e-3f);
+
+        SpectrumAnalyzer narrow = SpectrumAnalyzer.forConfig(CaptureConfig.DEFAULT);
+        assertEquals(512, narrow.getFftSize());
+        assertTrue(narrow.getBandCenter(narrow.getBandCount() - 1) < 4000.0f);
+    }
+
+    @Test
+    public void sine_readsItsLevelInItsBandOnly() {
+        SpectrumAnalyzer analyzer = analyze(1000.0, 0.1, 1);
+        int band = bandOf(analyzer, 1000.0);
+        assertEquals(-20.0f, analyzer.getBandDB(band), 0.2f);
+        assertTrue(analyzer.getBandDB(band - 3) < -60.0f);
+        assertTrue(analyzer.getBandDB(band + 3) < -60.0f);
+    }
+
+    @Test
+    public void lowSine_isSharedByNarrowBands_withoutLosingPower() {
+        // The 80 Hz band is about one bin wide at 2048 points.
+        SpectrumAnalyzer analyzer = analyze(80.0, 1.0, 1);
+        double total = 0.0;
+        int loudest = 0;
+        for (int b = 0; b < analyzer.getBandCount(); b++) {
+            total += Math.pow(10.0, analyzer.getBandDB(b) / 10.0);
+            if (analyzer.getBandDB(b) > analyzer.getBandDB(loudest)) {
+                loudest = b;
+            }
+        }
+        assertEquals(0.0, 10.0 * Math.log10(total), 0.2);
+        assertEquals(bandOf(analyzer, 80.0), loudest);
+    }
+
+    @Test
+    public void stereo_isMixedToMono() {
+        SpectrumAnalyzer mono   = analyze(4000.0, 0.5, 1);
+        SpectrumAnalyzer stereo = analyze(4000.0, 0.5, 2);
+        int band = bandOf(mono, 4000.0);
+        assertEquals(mono.getBandDB(band), stereo.getBandDB(band), 1.0e-3f);
+    }
+
+    @Test
+    public void silence_readsTheFloor() {
+        SpectrumAnalyzer analyzer = analyze(1000.0, 0.0, 1);
+        assertEquals(SpectrumAnalyzer.FLOOR_DB, analyzer.getBandDB(10), 0.0f);
+        assertEquals(2 * 50 * 960 / 2048, analyzer.getSegmentCount());
+    }
+
+    @Test
+    public void captureLoop_publishesTheBands_andTheBarsFollow() {
+        CaptureLoop loop = new CaptureLoop(new SineAudioSource(CaptureConfig.BROADCAST, 1000.0, 0.5, -1, false));
+        loop.processBlock();
+        assertEquals(0, loop.getMeterState().read().getBandCount());
+
+        loop.setSpectrumAnalyzer(SpectrumAnalyzer.forConfig(CaptureConfig.BROADCAST));
+        for (int i = 0; i < 20; i++) {
+            loop.processBlock();
+        }
+        MeterSnapshot s = loop.getMeterState().read();
+        assertEquals(31, s.getBandCount());
+        assertEquals(-6.0f, s.getBandDB(17), 0.2f);
+
+        SpectrumBars bars = new SpectrumBars(-1.0f, 1.0f);
+        assertTrue(bars.shouldWakeForLevels(s));
+        assertFalse(bars.shouldWakeForLevels(s));
+
+        bars.setLevels(s);
+        bars.advanceTo(0L);
+        assertTrue(bars.takeLayoutChanged());
+        assertEquals(SpectrumBars.heightFor(-6.0f), bars.getHeight(17), 0.01f);
+        assertFalse(bars.isFalling());
+
+        // Silence: the bar falls at FALL_DB_PER_SECOND, not at once.
+        MeterSnapshot quiet = new MeterSnapshot();
+        quiet.copyFrom(s);
+        Arrays.fill(quiet.mBandDB, SpectrumAnalyzer.FLOOR_DB);
+        float before = bars.getHeight(17);
+        bars.setLevels(quiet);
+        bars.advanceTo(500000000L);
+        assertTrue(bars.isFalling());
+        float fall = SpectrumBars.FALL_DB_PER_SECOND * 0.5f
+                   / (SpectrumBars.CEILING_DB - SpectrumBars.FLOOR_DB);
+        assertEquals(before - fall, bars.getHeight(17), 1.0e-5f);
+        bars.advanceTo(10000000000L);
+        assertFalse(bars.isFalling());
+        assertEquals(0.0f, bars.getHeight(17), 0.0f);
+    }
+}
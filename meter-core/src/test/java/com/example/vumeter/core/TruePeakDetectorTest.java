@@ -0,0 +1,96 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the BS.1770 true-peak detector with signals whose peaks fall
+ * between the samples.
+ */
+public class TruePeakDetectorTest {
+
+    private static final int RATE = 48000;
+
+    /** amplitude * sin(2 pi f n / RATE + phase), interleaved over channels. */
+    private static float[] sine(double frequency, double phase, double amplitude, int frames,
+                                int channels, int channel) {
+        float[] x = new float[frames * channels];
+        for (int n = 0; n < frames; n++) {
+            x[n * channels + channel] =
+                    (float) (amplitude * Math.sin(2.0 * Math.PI * frequency * n / RATE + phase));
+        }
+        return x;
+    }
+
+    @Test
+    public void quarterRateSineAt45Degrees_readsTheAmplitudeNotTheSamples() {
+        // Samples are +-0.707 A: the sample peak is 3 dB below the waveform.
+        float[] x = sine(RATE / 4.0, Math.PI / 4.0, 0.5, 4800, 1, 0);
+        TruePeakDetector detector = new TruePeakDetector();
+        float truePeak = detector.process(x, 0, x.length, 1);
+
+        assertEquals(0.5f * 0.70710678f, LevelKernel.peak(x, 0, x.length), 1.0e-6f);
+        assertEquals(TruePeakDetector.toDB(0.5f), TruePeakDetector.toDB(truePeak), 0.2f);
+    }
+
+    @Test
+    public void quarterRateSineInPhase_isNotOverestimated() {
+        // Samples hit the crests: sample peak and true peak agree.
+        float[] x = sine(RATE / 4.0, Math.PI / 2.0, 0.5, 4800, 1, 0);
+        float truePeak = new TruePeakDetector().process(x, 0, x.length, 1);
+        assertEquals(TruePeakDetector.toDB(0.5f), TruePeakDetector.toDB(truePeak), 0.2f);
+    }
+
+    @Test
+    public void lowFrequencySine_truePeakEqualsSamplePeak() {
+        float[] x = sine(997.0, 0.3, 0.25, 4800, 1, 0);
+        float truePeak = new TruePeakDetector().process(x, 0, x.length, 1);
+        assertEquals(TruePeakDetector.toDB(0.25f), TruePeakDetector.toDB(truePeak), 0.05f);
+    }
+
+    @Test
+    public void shortSamples_areScaledToFullScale() {
+        float[] f = sine(RATE / 4.0, Math.PI / 4.0, 0.5, 4800, 1, 0);
+        short[] s = new short[f.length];
+        for (int i = 0; i < f.length; i++) {
+            s[i] = (short) Math.round(f[i] * 32768.0f);
+        }
+        float fromFloat = new TruePeakDetector().process(f, 0, f.length, 1);
+        float fromShort = new TruePeakDetector().process(s, 0, s.length, 1);
+        assertEquals(fromFloat, fromShort, 1.0e-4f);
+    }
+
+    @Test
+    public void blockBoundaries_doNotChangeTheResult() {
+        float[] x = sine(11000.0, 0.7, 0.8, 4801, 1, 0);
+        float whole = new TruePeakDetector().process(x, 0, x.length, 1);
+
+        TruePeakDetector split = new TruePeakDetector();
+        float peak = 0.0f;
+        for (int start = 0; start < x.length; start += 7) {
+            peak = Math.max(peak, split.process(x, start, Math.min(x.length, start + 7), 1));
+        }
+        assertEquals(whole, peak, 0.0f);
+    }
+
+    @Test
+    public void interleavedChannels_areMeteredSeparately() {
+        float[] x = sine(RATE / 4.0, Math.PI / 4.0, 0.5, 4800, 2, 1);
+        TruePeakDetector left  = new TruePeakDetector();
+        TruePeakDetector right = new TruePeakDetector();
+        assertEquals(0.0f, left.process(x, 0, x.length, 2), 0.0f);
+        assertEquals(TruePeakDetector.toDB(0.5f),
+                     TruePeakDetector.toDB(right.process(x, 1, x.length, 2)), 0.2f);
+    }
+
+    @Test
+    public void reset_forgetsTheHistory() {
+        TruePeakDetector detector = new TruePeakDetector();
+        float[] loud = sine(1000.0, 0.0, 1.0, 480, 1, 0);
+        detector.process(loud, 0, loud.length, 1);
+        detector.reset();
+        float[] silence = new float[48];
+        assertEquals(0.0f, detector.process(silence, 0, silence.length, 1), 0.0f);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.vumeter.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the vertex layout and of what is uploaded per frame.
+ */
+public class VertexUploadPlanTest {
+
+    @Test
+    public void layout_matchesTheInterleavedArray() {
+        VertexUploadPlan mono = new VertexUploadPlan(1);
+        assertEquals(20, VertexUploadPlan.STRIDE_BYTES);
+        assertEquals(12, VertexUploadPlan.TEXCOORD_OFFSET);
+        assertEquals(60, mono.numVertexFloats());
+        assertEquals(18, mono.numIndices());
+        assertEquals(240, mono.vertexBytes());
+        assertEquals(36, mono.indexBytes());
+    }
+
+    @Test
+    public void drawOffsets_areBaseLedThenHands() {
+        assertEquals(0,  VertexUploadPlan.indexByteOffsetOfQuad(VertexUploadPlan.QUAD_BASE));
+        assertEquals(12, VertexUploadPlan.indexByteOffsetOfQuad(VertexUploadPlan.QUAD_LED));
+        assertEquals(24, VertexUploadPlan.indexByteOffsetOfQuad(VertexUploadPlan.quadOfHand(0)));
+        assertEquals(36, VertexUploadPlan.indexByteOffsetOfQuad(VertexUploadPlan.quadOfHand(1)));
+        assertEquals(12, new VertexUploadPlan(2).handIndexCount());
+    }
+
+    @Test
+    public void dynamicRange_isExactlyTheHands() {
+        for (int hands = 1; hands <= 2; hands++) {
+            VertexUploadPlan plan = new VertexUploadPlan(hands);
+            assertEquals(8 * 5, plan.dynamicFirstFloat());
+            assertEquals(hands * 4 * 5, plan.dynamicFloatCount());
+            assertEquals(160, plan.dynamicByteOffset());
+            assertEquals(hands * 80, plan.dynamicByteSize());
+            assertEquals(plan.vertexBytes(), plan.dynamicByteOffset() + plan.dynamicByteSize());
+        }
+    }
+
+    @Test
+    public void perFrameUpload_isOnlyTheHands() {
+        VertexUploadPlan mono = new VertexUploadPlan(1);
+        int everythingEveryFrame = mono.vertexBytes() + mono.indexBytes();
+
+        assertEquals(everythingEveryFrame, mono.bytesUploadedAtSurfaceCreation());
+        assertEquals(80, mono.bytesUploadedPerFrame());
+        assertTrue(mono.bytesUploadedPerFrame() * 3 < everythingEveryFrame);
+
+        assertEquals(160, new VertexUploadPlan(2).bytesUploadedPerFrame());
+    }
+
+    @Test
+    public void indices_formTwoTrianglesPerQuad() {
+        VertexUploadPlan stereo = new VertexUploadPlan(2);
+        short[] indices = new short[stereo.numIndices()];
+        stereo.fillIndices(indices);
+        assertArrayEquals(new short[] {
+                 0,  1,  2,  2,  3,  0,
+                 4,  5,  6,  6,  7,  4,
+                 8,  9, 10, 10, 11,  8,
+                12, 13, 14, 14, 15, 12 }, indices);
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.vumeter.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the WAV file source and of the synthetic signal sources.
+ */
+public class WavAudioSourceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** @brief A stereo ramp, a different value on each channel. */
+    private static float[] ramp(int frames) {
+        float[] x = new float[frames * 2];
+        for (int f = 0; f < frames; f++) {
+            x[2 * f]     = (f % 2000) / 1000.0f - 1.0f;
+            x[2 * f + 1] = -x[2 * f] * 0.5f;
+        }
+        return x;
+    }
+
+    private File write(String name, float[] x, int bits, boolean isFloat) throws IOException {
+        File file = folder.newFile(name);
+        WavWriter out = new WavWriter(file, 44100, 2, bits, isFloat);
+        out.write(x, 0, x.length);
+        out.close();
+        return file;
+    }
+
+    private static float[] readAll(WavAudioSource source) {
+        float[] all = new float[(int)source.getFrameCount() * 2];
+        float[] block = new float[source.getBufferSizeInSamples()];
+        source.start();
+        int at = 0, n;
+        while ((n = source.read(block, 0, block.length)) >= 0) {
+            System.arraycopy(block, 0, all, at, n);
+            at += n;
+        }
+        source.release();
+        assertEquals(all.length, at);
+        return all;
+    }
+
+    @Test
+    public void everyFormat_readsBackWithinItsResolution() throws IOException {
+        float[] x = ramp(10000);
+        int[]     bits    = {16, 24, 32, 32};
+        boolean[] isFloat = {false, false, false, true};
+        float[]   error   = {1.0f / 32768, 1.0f / 8388608, 1e-7f, 0.0f};
+        for (int i = 0; i < bits.length; i++) {
+            WavAudioSource source = new WavAudioSource(write("f" + i + ".wav", x, bits[i], isFloat[i]));
+            assertEquals(bits[i], source.getBitsPerSample());
+            assertEquals(isFloat[i], source.isFloat());
+            assertEquals(44100, source.getConfig().getSampleRate());
+            assertEquals(2, source.getConfig().getChannelCount());
+            assertEquals(bits[i] == 16 ? CaptureConfig.Encoding.PCM_16BIT : CaptureConfig.Encoding.PCM_FLOAT,
+                         source.getConfig().getEncoding());
+            assertEquals(10000, source.getFrameCount());
+            float[] y = readAll(source);
+            for (int n = 0; n < x.length; n++) {
+                assertEquals("format " + i + " sample " + n, x[n], y[n], error[i]);
+            }
+        }
+    }
+
+    @Test
+    public void shortReads_convertEveryFormatTo16Bit() throws IOException {
+        float[] x = {0.5f, -0.5f, 0.25f, -1.0f};
+        int[]     bits    = {16, 24, 32, 32};
+        boolean[] isFloat = {false, false, false, true};
+        for (int i = 0; i < bits.length; i++) {
+            WavAudioSource source = new WavAudioSource(write("s" + i + ".wav", x, bits[i], isFloat[i]));
+            short[] y = new short[4];
+            source.start();
+            assertEquals(4, source.read(y, 0, 4));
+            assertEquals(AudioSource.END_OF_STREAM, source.read(y, 0, 4));
+            source.release();
+            assertEquals(16384, y[0], 1);
+            assertEquals(-16384, y[1], 1);
+            assertEquals(8192, y[2], 1);
+            assertEquals(-32768, y[3], 1);
+        }
+    }
+
+    @Test
+    public void readsAcrossMappedWindows() throws IOException {
+        float[] x = ramp(50000);
+        File file = write("windows.wav", x, 24, false);
+        // Windows of 1000 frames, not a multiple of the 882-frame blocks.
+        WavAudioSource source = new WavAudioSource(file, 0, 6000);
+        float[] y = readAll(source);
+        for (int n = 0; n < x.length; n++) {
+            assertEquals(x[n], y[n], 1.0f / 8388608);
+        }
+    }
+
+    @Test
+    public void unfinishedDataChunk_runsToTheEndOfTheFile() throws IOException {
+        File file = write("unfinished.wav", ramp(1000), 16, false);
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        raw.seek(40);
+        raw.writeInt(0);
+        raw.close();
+        assertEquals(1000, new WavAudioSource(file).getFrameCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void notAWavFile_isRejected() throws IOException {
+        File file = folder.newFile("text.wav");
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        raw.writeBytes("not a wave file at all");
+        raw.close();
+        new WavAudioSource(file);
+    }
+
+    @Test
+    public void pinkNoise_hasItsRMSAndEqualPowerPerOctave() {
+        CaptureConfig config = new CaptureConfig(48000, 1, CaptureConfig.Encoding.PCM_FLOAT);
+        PinkNoiseAudioSource source = new PinkNoiseAudioSource(config, 0.1, 42L, 48000 * 20, false);
+        SpectrumAnalyzer spectrum = new SpectrumAnalyzer(48000, 1, 4096, SpectrumAnalyzer.Bands.OCTAVE, 400);
+        float[] block = new float[source.getBufferSizeInSamples()];
+        double sum = 0.0;
+        int n;
+        source.start();
+        while ((n = source.read(block, 0, block.length)) >= 0) {
+            spectrum.process(block, n);
+            for (int i = 0; i < n; i++) {
+                sum += block[i] * block[i];
+            }
+        }
+        assertEquals(-20.0, 10.0 * Math.log10(sum / (48000 * 20)), 0.5);
+
+        double first = Double.NaN;
+        for (int b = 0; b < spectrum.getBandCount(); b++) {
+            float center = spectrum.getBandCenter(b);
+            if (center < 100.0f || center > 10000.0f) {
+                continue;
+            }
+            if (Double.isNaN(first)) {
+                first = spectrum.getBandDB(b);
+            }
+            assertEquals("octave " + center, first, spectrum.getBandDB(b), 1.0);
+        }
+    }
+
+    @Test
+    public void pinkNoise_isTheSameForTheSameSeed() {
+        CaptureConfig config = CaptureConfig.DEFAULT;
+        short[] a = new short[800], b = new short[800];
+        new PinkNoiseAudioSource(config, 0.2, 7L, -1, false).read(a, 0, a.length);
+        new PinkNoiseAudioSource(config, 0.2, 7L, -1, false).read(b, 0, b.length);
+        assertArrayEquals(a, b);
+    }
+
+    @Test
+    public void toneBurst_isOnForTheBurstOfEachPeriod() {
+        CaptureConfig config = new CaptureConfig(48000, 1, CaptureConfig.Encoding.PCM_FLOAT);
+        ToneBurstAudioSource source = new ToneBurstAudioSource(config, 5000.0, 1.0, 10.0, 100.0, 48000, false);
+        assertEquals(480, source.getBurstFrames());
+        assertEquals(4800, source.getPeriodFrames());
+        float[] x = new float[48000];
+        int at = 0, n;
+        while ((n = source.read(x, at, Math.min(960, x.length - at))) > 0) {
+            at += n;
+        }
+        assertEquals(48000, at);
+        for (int period = 0; period < 10; period++) {
+            float on = 0.0f, off = 0.0f;
+            for (int f = 0; f < 4800; f++) {
+                float v = Math.abs(x[period * 4800 + f]);
+                if (f < 480) {
+                    on = Math.max(on, v);
+                }
+                else {
+                    off = Math.max(off, v);
+                }
+            }
+            assertEquals(1.0f, on, 1e-3f);
+            assertEquals(0.0f, off, 0.0f);
+        }
+    }
+}
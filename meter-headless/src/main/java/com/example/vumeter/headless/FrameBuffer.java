@@ -0,0 +1,97 @@
+package com.example.vumeter.headless;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/** @brief An offscreen color buffer the SoftwareRasterizer draws into, in
+ *         place of the surface of the GLSurfaceView. Opaque ARGB pixels,
+ *         top row first, reused from frame to frame.
+ */
+public class FrameBuffer {
+
+    /** @brief The clear color of the renderer of the app. */
+    public static final int WHITE = 0xFFFFFFFF;
+
+    private final int   mWidth;
+    private final int   mHeight;
+    private final int[] mPixels;
+
+    public FrameBuffer( int width, int height ) {
+        if ( width <= 0 || height <= 0 ) {
+            throw new IllegalArgumentException( "size must be positive: " + width + "x" + height );
+        }
+        mWidth  = width;
+        mHeight = height;
+        mPixels = new int[ width * height ];
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /** @brief The pixels themselves, row by row from the top. */
+    public int[] getPixels() {
+        return mPixels;
+    }
+
+    public int getPixel( int x, int y ) {
+        return mPixels[ y * mWidth + x ];
+    }
+
+    public void clear( int argb ) {
+        Arrays.fill( mPixels, argb );
+    }
+
+    /** @brief Copies a buffer of the same size, e.g. a cached background. */
+    public void copyFrom( FrameBuffer other ) {
+        if ( other.mWidth != mWidth || other.mHeight != mHeight ) {
+            throw new IllegalArgumentException( other.mWidth + "x" + other.mHeight
+                                              + " into " + mWidth + "x" + mHeight );
+        }
+        System.arraycopy( other.mPixels, 0, mPixels, 0, mPixels.length );
+    }
+
+    /** @brief Copies the rectangle from left, top to right, bottom, inclusive,
+     *         of a buffer of the same size.
+     */
+    public void copyFrom( FrameBuffer other, int left, int top, int right, int bottom ) {
+        if ( other.mWidth != mWidth || other.mHeight != mHeight ) {
+            throw new IllegalArgumentException( other.mWidth + "x" + other.mHeight
+                                              + " into " + mWidth + "x" + mHeight );
+        }
+        int length = right - left + 1;
+        for ( int y = top; y <= bottom; y++ ) {
+            int i = y * mWidth + left;
+            System.arraycopy( other.mPixels, i, mPixels, i, length );
+        }
+    }
+
+    /** @brief Bytes of an RGBA frame, as rawvideo with -pix_fmt rgba takes
+     *         them.
+     */
+    public int rgbaBytes() {
+        return mPixels.length * 4;
+    }
+
+    /** @brief The frame as RGBA bytes, top row first, into out of at least
+     *         rgbaBytes().
+     */
+    public void toRGBA( byte[] out ) {
+        if ( out.length < rgbaBytes() ) {
+            throw new IllegalArgumentException( out.length + " bytes for a frame of " + rgbaBytes() );
+        }
+        // ARGB rotated to RGBA, stored big-endian: a store per pixel
+        // instead of four.
+        IntBuffer rgba = ByteBuffer.wrap( out ).order( ByteOrder.BIG_ENDIAN ).asIntBuffer();
+        int[] pixels = mPixels;
+        for ( int i = 0; i < pixels.length; i++ ) {
+            rgba.put( i, Integer.rotateLeft( pixels[i], 8 ) );
+        }
+    }
+}
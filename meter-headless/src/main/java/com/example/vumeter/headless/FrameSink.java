@@ -0,0 +1,14 @@
+package com.example.vumeter.headless;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/** @brief Where HeadlessMeter.render() writes the frames. */
+public interface FrameSink extends Closeable {
+
+    /** @brief Called with the frames in order. The frame is overwritten by
+     *         the next one, so it must be written or copied before this
+     *         returns.
+     */
+    void write( FrameBuffer frame, long index ) throws IOException;
+}
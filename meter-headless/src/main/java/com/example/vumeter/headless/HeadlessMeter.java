@@ -0,0 +1,273 @@
+package com.example.vumeter.headless;
+
+import com.example.vumeter.core.AudioSource;
+import com.example.vumeter.core.Ballistics;
+import com.example.vumeter.core.CaptureLoop;
+import com.example.vumeter.core.MeterFace;
+import com.example.vumeter.core.MeterGeometry;
+import com.example.vumeter.core.MeterSnapshot;
+import com.example.vumeter.core.MeterStateListener;
+import com.example.vumeter.core.NeedleMeter;
+import com.example.vumeter.core.OverloadLed;
+import com.example.vumeter.core.RenderRequester;
+import com.example.vumeter.core.VertexUploadPlan;
+
+import java.io.IOException;
+
+/** @brief Renders the meter of an AudioSource, e.g. a WavAudioSource, frame
+ *         by frame into a FrameBuffer, without a display or a GPU, and as
+ *         fast as the CPU allows.
+ *
+ *  The same CaptureLoop, NeedleMeter and MeterGeometry as the app run on
+ *  the calling thread, on the clock of the stream instead of the wall
+ *  clock: frame i shows the meter at i / fps seconds into the source, after
+ *  every block read up to then. The base, the hands and the LED are the
+ *  quads of the app drawn by a SoftwareRasterizer from the same texture,
+ *  or the base is a MeterFace (setVectorFace()). The background is drawn
+ *  once, and each frame restores only the pixels the hands and the LED of
+ *  the previous one were drawn over before drawing them again.
+ */
+public class HeadlessMeter {
+
+    public static final double DEFAULT_FPS = 30.0;
+
+    private static final RenderRequester NO_RENDER = new RenderRequester() {
+        @Override
+        public void requestRender() {
+        }
+    };
+
+    private final AudioSource      mSource;
+    private final CaptureLoop      mLoop;
+    private final MeterGeometry    mGeometry = new MeterGeometry();
+    private final NeedleMeter      mMeter;
+    private final VertexUploadPlan mPlan;
+    private final float[]          mVertices;
+    private final short[]          mIndices;
+    private final Texture          mTexture;
+    private final double           mFps;
+    private final int              mSampleRate;
+
+    private final FrameBuffer        mFrame;
+    private final FrameBuffer        mBackground;
+    private final SoftwareRasterizer mRasterizer;
+    private boolean                  mBackgroundDrawn;
+    private boolean                  mVectorFace;
+
+    /** @brief On the clock of the stream. The overload times of the snapshots
+     *         are System.nanoTime(), which means nothing to a stream read
+     *         faster than real time, so the LED of the NeedleMeter is not
+     *         used.
+     */
+    private final OverloadLed mLed = new OverloadLed();
+    private float             mLedBrightness;
+
+    private long    mFramesRendered;
+    private boolean mStarted;
+    private boolean mEnded;
+    private boolean mReleased;
+
+    public HeadlessMeter( AudioSource source, Texture texture, int width, int height ) {
+        this( source, Ballistics.Mode.VU, texture, width, height, DEFAULT_FPS );
+    }
+
+    public HeadlessMeter( AudioSource source, Ballistics.Mode mode, Texture texture,
+                          int width, int height, double fps ) {
+        if ( !( fps > 0.0 ) ) {
+            throw new IllegalArgumentException( "fps must be positive: " + fps );
+        }
+        mSource     = source;
+        mTexture    = texture;
+        mFps        = fps;
+        mSampleRate = source.getConfig().getSampleRate();
+
+        mLoop = new CaptureLoop( source, mode );
+        // Every block is metered, however far ahead of real time.
+        mLoop.setMaxLag( Long.MAX_VALUE );
+        mLoop.setCaptureThreadListener( new MeterStateListener() {
+            @Override
+            public void onMeterStatePublished( MeterSnapshot snapshot ) {
+                if ( snapshot.isOverload() ) {
+                    mLed.trigger( streamNanos( mLoop.getFramesRead() ) );
+                }
+            }
+        } );
+
+        int channels = source.getConfig().getChannelCount();
+        mGeometry.setLookupTables( true );
+        mMeter = new NeedleMeter( mGeometry, channels, mLoop.getMeterState(), NO_RENDER );
+        mMeter.setLookupTables( true );
+        mMeter.setViewportSize( width, height );
+
+        mPlan     = new VertexUploadPlan( channels );
+        mVertices = new float[ mPlan.numVertexFloats() ];
+        mIndices  = new short[ mPlan.numIndices() ];
+        mGeometry.makeStaticVertices( mVertices, mPlan );
+        mPlan.fillIndices( mIndices );
+
+        mFrame      = new FrameBuffer( width, height );
+        mBackground = new FrameBuffer( width, height );
+        mRasterizer = new SoftwareRasterizer( mFrame );
+    }
+
+    /** @brief Configure it before the first frame, e.g. its overload
+     *         threshold.
+     */
+    public CaptureLoop getLoop() {
+        return mLoop;
+    }
+
+    /** @brief Configure it before the first frame, e.g. its scale. */
+    public NeedleMeter getNeedleMeter() {
+        return mMeter;
+    }
+
+    public MeterGeometry getGeometry() {
+        return mGeometry;
+    }
+
+    public double getFps() {
+        return mFps;
+    }
+
+    /** @brief Draws the base as a MeterFace of the scale of the meter
+     *         instead of from the texture.
+     */
+    public void setVectorFace( boolean on ) {
+        mVectorFace      = on;
+        mBackgroundDrawn = false;
+    }
+
+    /** @brief The face that matches the meter, as in the app. */
+    public MeterFace.Scale faceScale() {
+        if ( mMeter.getScale() != NeedleMeter.Scale.MIC_DB ) {
+            return MeterFace.Scale.LUFS;
+        }
+        return mLoop.getBallisticsMode() == Ballistics.Mode.VU ? MeterFace.Scale.VU : MeterFace.Scale.PPM;
+    }
+
+    /** @brief Hold and release of the LED, in stream time. */
+    public void setLedTiming( long holdNanos, long releaseNanos ) {
+        mLed.setTiming( holdNanos, releaseNanos );
+    }
+
+    /** @brief 0 (off) to 1 (fully lit) at the last frame. */
+    public float getLedBrightness() {
+        return mLedBrightness;
+    }
+
+    /** @brief The last frame rendered. Overwritten by the next one. */
+    public FrameBuffer getFrame() {
+        return mFrame;
+    }
+
+    public long getFramesRendered() {
+        return mFramesRendered;
+    }
+
+    /** @brief Time of the given frame from the start of the source. */
+    public long frameTimeNanos( long frame ) {
+        return Math.round( frame * 1.0e9 / mFps );
+    }
+
+    /** @brief Time of the end of the given number of frames of audio. */
+    private long streamNanos( long audioFrames ) {
+        return audioFrames * 1000000000L / mSampleRate;
+    }
+
+    /** @brief Meters the source up to the time of the next frame and draws it
+     *         into getFrame().
+     *  @return false, with nothing drawn, once the source has ended before
+     *          the time of the next frame.
+     */
+    public boolean renderNextFrame() {
+        if ( mReleased ) {
+            throw new IllegalStateException( "released" );
+        }
+        if ( !mStarted ) {
+            mSource.start();
+            mStarted = true;
+        }
+        long frame = mFramesRendered;
+        long audioFrames = (long)Math.ceil( frame * (double)mSampleRate / mFps );
+        while ( !mEnded && mLoop.getFramesRead() < audioFrames ) {
+            mEnded = !mLoop.processBlock();
+        }
+        if ( mLoop.getFramesRead() < audioFrames ) {
+            return false;
+        }
+
+        long now = frameTimeNanos( frame );
+        mMeter.updateFromCapture( now );
+        mLedBrightness = mLed.getBrightness( now );
+        for ( int hand = 0; hand < mPlan.numHands(); hand++ ) {
+            mGeometry.makeHandVertices( mVertices, hand, mMeter.getTheta( hand ) );
+        }
+
+        if ( !mBackgroundDrawn ) {
+            drawBackground();
+            mFrame.copyFrom( mBackground );
+        }
+        else if ( mRasterizer.isDirty() ) {
+            mFrame.copyFrom( mBackground, mRasterizer.getDirtyLeft(), mRasterizer.getDirtyTop(),
+                             mRasterizer.getDirtyRight(), mRasterizer.getDirtyBottom() );
+        }
+        mRasterizer.resetDirty();
+        mRasterizer.drawTextured( mVertices, mIndices, firstIndexOfQuad( VertexUploadPlan.QUAD_FIRST_HAND ),
+                                  mPlan.handIndexCount(), mTexture, 1.0f );
+        if ( mLedBrightness > 0.0f ) {
+            mRasterizer.drawTextured( mVertices, mIndices, firstIndexOfQuad( VertexUploadPlan.QUAD_LED ),
+                                      VertexUploadPlan.INDICES_PER_QUAD, mTexture, mLedBrightness );
+        }
+        mFramesRendered++;
+        return true;
+    }
+
+    /** @brief Renders every frame of the source into the sink, then releases
+     *         the source.
+     *  @return the number of frames.
+     */
+    public long render( FrameSink sink ) throws IOException {
+        try {
+            while ( renderNextFrame() ) {
+                sink.write( mFrame, mFramesRendered - 1 );
+            }
+        }
+        finally {
+            release();
+        }
+        return mFramesRendered;
+    }
+
+    /** @brief Stops and releases the source. */
+    public void release() {
+        if ( mReleased ) {
+            return;
+        }
+        mReleased = true;
+        if ( mStarted ) {
+            mSource.stop();
+        }
+        mSource.release();
+    }
+
+    private void drawBackground() {
+        SoftwareRasterizer rasterizer = new SoftwareRasterizer( mBackground );
+        mBackground.clear( FrameBuffer.WHITE );
+        if ( mVectorFace ) {
+            MeterFace.Mesh mesh = MeterFace.generate( mGeometry, faceScale(),
+                                                      mBackground.getWidth(), mBackground.getHeight() );
+            rasterizer.drawColored( mesh.getVertices(), mesh.getIndices(), 0, mesh.indexCount(),
+                                    MeterFace.palette() );
+        }
+        else {
+            rasterizer.drawTextured( mVertices, mIndices, firstIndexOfQuad( VertexUploadPlan.QUAD_BASE ),
+                                     VertexUploadPlan.INDICES_PER_QUAD, mTexture, 1.0f );
+        }
+        mBackgroundDrawn = true;
+    }
+
+    private static int firstIndexOfQuad( int quad ) {
+        return VertexUploadPlan.indexByteOffsetOfQuad( quad ) / VertexUploadPlan.BYTES_PER_SHORT;
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.vumeter.headless;
+
+import com.example.vumeter.core.AudioSource;
+import com.example.vumeter.core.Ballistics;
+import com.example.vumeter.core.CaptureConfig;
+import com.example.vumeter.core.SineAudioSource;
+import com.example.vumeter.core.WavAudioSource;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/** @brief Renders the meter of a WAV file or of a sine to a PNG sequence or
+ *         to raw RGBA frames, from the command line.
+ *
+ *    HeadlessRender program.wav --out frames
+ *    HeadlessRender program.wav --raw - --size 1920x1080 | \
+ *        ffmpeg -f rawvideo -pix_fmt rgba -s 1920x1080 -r 30 -i - meter.mp4
+ */
+public class HeadlessRender {
+
+    static final String DEFAULT_TEXTURE = "app/src/main/res/drawable/vu_meter_texture.png";
+
+    private static final String USAGE =
+          "usage: HeadlessRender [options] <file.wav | sine:<Hz>:<dBFS>:<seconds>>\n"
+        + "  --out <dir>       a PNG per frame in dir (default frames)\n"
+        + "  --raw <file|->    raw RGBA frames into file, or - for stdout\n"
+        + "  --size <W>x<H>    frame size (default 1920x1125, the aspect of the base)\n"
+        + "  --fps <n>         frame rate (default 30)\n"
+        + "  --mode <mode>     VU, PPM_TYPE_I, PPM_TYPE_II or SAMPLE_PEAK (default VU)\n"
+        + "  --face            the tessellated face of the scale instead of the texture\n"
+        + "  --texture <png>   the meter texture (default " + DEFAULT_TEXTURE + ")\n";
+
+    public static void main( String[] args ) throws IOException {
+        String          input   = null;
+        String          out     = "frames";
+        String          raw     = null;
+        int             width   = 1920;
+        int             height  = 1125;
+        double          fps     = HeadlessMeter.DEFAULT_FPS;
+        Ballistics.Mode mode    = Ballistics.Mode.VU;
+        boolean         face    = false;
+        String          texture = DEFAULT_TEXTURE;
+
+        try {
+            for ( int i = 0; i < args.length; i++ ) {
+                String arg = args[i];
+                if ( arg.equals( "--out" ) ) {
+                    out = args[ ++i ];
+                }
+                else if ( arg.equals( "--raw" ) ) {
+                    raw = args[ ++i ];
+                }
+                else if ( arg.equals( "--size" ) ) {
+                    String[] size = args[ ++i ].split( "x" );
+                    width  = Integer.parseInt( size[0] );
+                    height = Integer.parseInt( size[1] );
+                }
+                else if ( arg.equals( "--fps" ) ) {
+                    fps = Double.parseDouble( args[ ++i ] );
+                }
+                else if ( arg.equals( "--mode" ) ) {
+                    mode = Ballistics.Mode.valueOf( args[ ++i ] );
+                }
+                else if ( arg.equals( "--face" ) ) {
+                    face = true;
+                }
+                else if ( arg.equals( "--texture" ) ) {
+                    texture = args[ ++i ];
+                }
+                else if ( !arg.startsWith( "--" ) && input == null ) {
+                    input = arg;
+                }
+                else {
+                    throw new IllegalArgumentException( "unknown option " + arg );
+                }
+            }
+            if ( input == null ) {
+                throw new IllegalArgumentException( "no input" );
+            }
+        }
+        catch ( RuntimeException e ) {
+            System.err.println( e.getMessage() );
+            System.err.print( USAGE );
+            System.exit( 2 );
+            return;
+        }
+
+        AudioSource source = openSource( input );
+        HeadlessMeter meter = new HeadlessMeter( source, mode, Texture.read( new File( texture ) ),
+                                                 width, height, fps );
+        meter.setVectorFace( face );
+
+        FrameSink sink;
+        if ( raw != null ) {
+            OutputStream stream = raw.equals( "-" ) ? System.out : new FileOutputStream( raw );
+            sink = new RawVideoSink( new BufferedOutputStream( stream, 1 << 16 ) );
+        }
+        else {
+            sink = new PngSequenceSink( new File( out ), "meter" );
+        }
+
+        long start = System.nanoTime();
+        long frames;
+        try {
+            frames = meter.render( sink );
+        }
+        finally {
+            sink.close();
+        }
+        double seconds = ( System.nanoTime() - start ) / 1.0e9;
+        double duration = frames / fps;
+        System.err.println( String.format( Locale.ROOT,
+                "%d frames of %dx%d in %.2f s: %.1f fps, %.1fx real time",
+                frames, width, height, seconds, frames / seconds, duration / seconds ) );
+    }
+
+    /** @brief A WavAudioSource, or a SineAudioSource for sine:Hz:dBFS:seconds. */
+    static AudioSource openSource( String input ) throws IOException {
+        if ( !input.startsWith( "sine:" ) ) {
+            return new WavAudioSource( new File( input ) );
+        }
+        String[] fields = input.split( ":" );
+        if ( fields.length != 4 ) {
+            throw new IllegalArgumentException( "expected sine:<Hz>:<dBFS>:<seconds>, got " + input );
+        }
+        double frequency = Double.parseDouble( fields[1] );
+        double amplitude = Math.pow( 10.0, Double.parseDouble( fields[2] ) / 20.0 );
+        CaptureConfig config = CaptureConfig.BROADCAST;
+        long frames = Math.round( Double.parseDouble( fields[3] ) * config.getSampleRate() );
+        return new SineAudioSource( config, frequency, amplitude, frames, false );
+    }
+}
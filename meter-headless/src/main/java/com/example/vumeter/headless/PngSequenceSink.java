@@ -0,0 +1,48 @@
+package com.example.vumeter.headless;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+
+/** @brief Writes each frame as a PNG, prefix000000.png, prefix000001.png, ...
+ *         in a directory, e.g. for ffmpeg -i prefix%06d.png. The frame is
+ *         copied into one image reused for every frame.
+ */
+public class PngSequenceSink implements FrameSink {
+
+    private final File   mDirectory;
+    private final String mPrefix;
+    private BufferedImage mImage;
+
+    public PngSequenceSink( File directory, String prefix ) throws IOException {
+        if ( !directory.isDirectory() && !directory.mkdirs() ) {
+            throw new IOException( "Cannot create " + directory );
+        }
+        mDirectory = directory;
+        mPrefix    = prefix;
+    }
+
+    public File fileOf( long index ) {
+        return new File( mDirectory, String.format( Locale.ROOT, "%s%06d.png", mPrefix, index ) );
+    }
+
+    @Override
+    public void write( FrameBuffer frame, long index ) throws IOException {
+        if ( mImage == null ) {
+            mImage = new BufferedImage( frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_INT_RGB );
+        }
+        int[] data = ( (DataBufferInt)mImage.getRaster().getDataBuffer() ).getData();
+        System.arraycopy( frame.getPixels(), 0, data, 0, data.length );
+        if ( !ImageIO.write( mImage, "png", fileOf( index ) ) ) {
+            throw new IOException( "No PNG writer" );
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
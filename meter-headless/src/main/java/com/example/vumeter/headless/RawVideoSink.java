@@ -0,0 +1,35 @@
+package com.example.vumeter.headless;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/** @brief Writes the frames back to back as RGBA bytes, top row first, with
+ *         no header, e.g. into
+ *
+ *    ffmpeg -f rawvideo -pix_fmt rgba -s 1920x1080 -r 30 -i - meter.mp4
+ *
+ *  The bytes of a frame go through one array reused for every frame.
+ */
+public class RawVideoSink implements FrameSink {
+
+    private final OutputStream mOut;
+    private byte[]             mBytes;
+
+    public RawVideoSink( OutputStream out ) {
+        mOut = out;
+    }
+
+    @Override
+    public void write( FrameBuffer frame, long index ) throws IOException {
+        if ( mBytes == null || mBytes.length != frame.rgbaBytes() ) {
+            mBytes = new byte[ frame.rgbaBytes() ];
+        }
+        frame.toRGBA( mBytes );
+        mOut.write( mBytes );
+    }
+
+    @Override
+    public void close() throws IOException {
+        mOut.close();
+    }
+}
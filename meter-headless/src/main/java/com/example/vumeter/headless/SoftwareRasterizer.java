@@ -0,0 +1,276 @@
+package com.example.vumeter.headless;
+
+import com.example.vumeter.core.MeterFace;
+import com.example.vumeter.core.VertexUploadPlan;
+
+/** @brief Draws indexed triangles in normalized device coordinates into a
+ *         FrameBuffer the way the GLES 2.0 pipeline of the app draws them
+ *         into the viewport: sampled at pixel centers with the top-left
+ *         fill rule, so the two triangles of a quad cover every pixel of
+ *         it once, and blended with GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA.
+ *
+ *  Edges are in fixed point with SUBPIXEL_BITS of precision, like a GPU's,
+ *  and the edge functions are exact. Texture coordinates are interpolated
+ *  affinely, which is exact for the flat meter.
+ */
+public class SoftwareRasterizer {
+
+    public static final int SUBPIXEL_BITS = 4;
+
+    private static final int   ONE  = 1 << SUBPIXEL_BITS;
+    private static final int   HALF = ONE >> 1;
+
+    private final FrameBuffer mTarget;
+    private final int         mWidth;
+    private final int         mHeight;
+    private final int[]       mPixels;
+
+    /** @brief Pixel coordinates of the triangle being drawn. */
+    private final float[] mX = new float[3];
+    private final float[] mY = new float[3];
+
+    /** @brief Bounds of the pixels drawn since resetDirty(), inclusive. */
+    private int mDirtyMinX, mDirtyMinY, mDirtyMaxX, mDirtyMaxY;
+
+    public SoftwareRasterizer( FrameBuffer target ) {
+        mTarget = target;
+        mWidth  = target.getWidth();
+        mHeight = target.getHeight();
+        mPixels = target.getPixels();
+        resetDirty();
+    }
+
+    public FrameBuffer getTarget() {
+        return mTarget;
+    }
+
+    /** @brief Forgets the pixels drawn so far. */
+    public void resetDirty() {
+        mDirtyMinX = mWidth;
+        mDirtyMinY = mHeight;
+        mDirtyMaxX = -1;
+        mDirtyMaxY = -1;
+    }
+
+    /** @brief False if nothing has been drawn since resetDirty(). */
+    public boolean isDirty() {
+        return mDirtyMinX <= mDirtyMaxX;
+    }
+
+    /** @brief A rectangle around every pixel drawn since resetDirty(): left,
+     *         top, right and bottom, inclusive.
+     */
+    public int getDirtyLeft()   { return mDirtyMinX; }
+    public int getDirtyTop()    { return mDirtyMinY; }
+    public int getDirtyRight()  { return mDirtyMaxX; }
+    public int getDirtyBottom() { return mDirtyMaxY; }
+
+    /** @brief glDrawElements() of the meter program: vertices as laid out by
+     *         VertexUploadPlan, (x, y, z, s, t), the texel modulated by alpha
+     *         like the Alpha uniform does.
+     *  @param first index of the first index to draw, e.g. 6 per quad.
+     */
+    public void drawTextured( float[] vertices, short[] indices, int first, int count,
+                              Texture texture, float alpha ) {
+        int stride = VertexUploadPlan.FLOATS_PER_VERTEX;
+        int alpha256 = Math.round( Math.max( 0.0f, Math.min( 1.0f, alpha ) ) * 256.0f );
+        for ( int i = first; i + 2 < first + count; i += 3 ) {
+            int v0 = ( indices[ i     ] & 0xFFFF ) * stride;
+            int v1 = ( indices[ i + 1 ] & 0xFFFF ) * stride;
+            int v2 = ( indices[ i + 2 ] & 0xFFFF ) * stride;
+            setPositions( vertices, v0, v1, v2 );
+            triangle( texture, alpha256, 0,
+                      vertices[ v0 + 3 ], vertices[ v0 + 4 ],
+                      vertices[ v1 + 3 ], vertices[ v1 + 4 ],
+                      vertices[ v2 + 3 ], vertices[ v2 + 4 ] );
+        }
+    }
+
+    /** @brief glDrawElements() of the face program: vertices of a
+     *         MeterFace.Mesh, (x, y, color), in the colors of the palette,
+     *         RGBA floats as MeterFace.palette() gives them.
+     */
+    public void drawColored( float[] vertices, short[] indices, int first, int count, float[] palette ) {
+        int stride = MeterFace.Mesh.FLOATS_PER_VERTEX;
+        int[] colors = new int[ palette.length / 4 ];
+        for ( int c = 0; c < colors.length; c++ ) {
+            colors[c] = toARGB( palette, c * 4 );
+        }
+        for ( int i = first; i + 2 < first + count; i += 3 ) {
+            int v0 = ( indices[ i     ] & 0xFFFF ) * stride;
+            int v1 = ( indices[ i + 1 ] & 0xFFFF ) * stride;
+            int v2 = ( indices[ i + 2 ] & 0xFFFF ) * stride;
+            setPositions( vertices, v0, v1, v2 );
+            // Every vertex of a quad of the face has the same color.
+            triangle( null, 256, colors[ (int)vertices[ v0 + 2 ] ], 0, 0, 0, 0, 0, 0 );
+        }
+    }
+
+    private static int toARGB( float[] rgba, int offset ) {
+        int r = Math.round( rgba[ offset     ] * 255.0f );
+        int g = Math.round( rgba[ offset + 1 ] * 255.0f );
+        int b = Math.round( rgba[ offset + 2 ] * 255.0f );
+        int a = Math.round( rgba[ offset + 3 ] * 255.0f );
+        return a << 24 | r << 16 | g << 8 | b;
+    }
+
+    /** @brief From normalized device coordinates to pixels, y down, as the
+     *         viewport transform of a full-surface glViewport().
+     */
+    private void setPositions( float[] vertices, int v0, int v1, int v2 ) {
+        float halfWidth  = mWidth  * 0.5f;
+        float halfHeight = mHeight * 0.5f;
+        mX[0] = ( vertices[ v0 ] + 1.0f ) * halfWidth;
+        mY[0] = ( 1.0f - vertices[ v0 + 1 ] ) * halfHeight;
+        mX[1] = ( vertices[ v1 ] + 1.0f ) * halfWidth;
+        mY[1] = ( 1.0f - vertices[ v1 + 1 ] ) * halfHeight;
+        mX[2] = ( vertices[ v2 ] + 1.0f ) * halfWidth;
+        mY[2] = ( 1.0f - vertices[ v2 + 1 ] ) * halfHeight;
+    }
+
+    /** @brief Fills the triangle in mX, mY with the texture, or with color
+     *         if texture is null.
+     */
+    private void triangle( Texture texture, int alpha256, int color,
+                           float s0, float t0, float s1, float t1, float s2, float t2 ) {
+        int x0 = Math.round( mX[0] * ONE ), y0 = Math.round( mY[0] * ONE );
+        int x1 = Math.round( mX[1] * ONE ), y1 = Math.round( mY[1] * ONE );
+        int x2 = Math.round( mX[2] * ONE ), y2 = Math.round( mY[2] * ONE );
+
+        long area = edge( x0, y0, x1, y1, x2, y2 );
+        if ( area == 0L ) {
+            return;
+        }
+        if ( area < 0L ) {
+            // Either winding is drawn; make it the one the edges expect.
+            int x = x1; x1 = x2; x2 = x;
+            int y = y1; y1 = y2; y2 = y;
+            float s = s1; s1 = s2; s2 = s;
+            float t = t1; t1 = t2; t2 = t;
+        }
+
+        int minX = Math.max( 0,           ( Math.min( x0, Math.min( x1, x2 ) ) - HALF ) >> SUBPIXEL_BITS );
+        int maxX = Math.min( mWidth  - 1, ( Math.max( x0, Math.max( x1, x2 ) ) - HALF ) >> SUBPIXEL_BITS );
+        int minY = Math.max( 0,           ( Math.min( y0, Math.min( y1, y2 ) ) - HALF ) >> SUBPIXEL_BITS );
+        int maxY = Math.min( mHeight - 1, ( Math.max( y0, Math.max( y1, y2 ) ) - HALF ) >> SUBPIXEL_BITS );
+        if ( minX > maxX || minY > maxY ) {
+            return;
+        }
+        mDirtyMinX = Math.min( mDirtyMinX, minX );
+        mDirtyMinY = Math.min( mDirtyMinY, minY );
+        mDirtyMaxX = Math.max( mDirtyMaxX, maxX );
+        mDirtyMaxY = Math.max( mDirtyMaxY, maxY );
+
+        // At the center of the first pixel. A pixel on an edge belongs to
+        // the triangle only if that is a top or a left edge.
+        int px = ( minX << SUBPIXEL_BITS ) + HALF;
+        int py = ( minY << SUBPIXEL_BITS ) + HALF;
+        long e0 = edge( x1, y1, x2, y2, px, py ) + bias( x1, y1, x2, y2 );
+        long e1 = edge( x2, y2, x0, y0, px, py ) + bias( x2, y2, x0, y0 );
+        long e2 = edge( x0, y0, x1, y1, px, py ) + bias( x0, y0, x1, y1 );
+        long e0dx = (long)( y2 - y1 ) << SUBPIXEL_BITS, e0dy = (long)( x1 - x2 ) << SUBPIXEL_BITS;
+        long e1dx = (long)( y0 - y2 ) << SUBPIXEL_BITS, e1dy = (long)( x2 - x0 ) << SUBPIXEL_BITS;
+        long e2dx = (long)( y1 - y0 ) << SUBPIXEL_BITS, e2dy = (long)( x0 - x1 ) << SUBPIXEL_BITS;
+
+        // Planes of s and t over the pixels.
+        float dsdx = 0.0f, dsdy = 0.0f, dtdx = 0.0f, dtdy = 0.0f, sRow = 0.0f, tRow = 0.0f;
+        if ( texture != null ) {
+            float ax = ( x1 - x0 ) / (float)ONE, ay = ( y1 - y0 ) / (float)ONE;
+            float bx = ( x2 - x0 ) / (float)ONE, by = ( y2 - y0 ) / (float)ONE;
+            float det = ax * by - bx * ay;
+            dsdx = ( ( s1 - s0 ) * by - ( s2 - s0 ) * ay ) / det;
+            dsdy = ( ( s2 - s0 ) * ax - ( s1 - s0 ) * bx ) / det;
+            dtdx = ( ( t1 - t0 ) * by - ( t2 - t0 ) * ay ) / det;
+            dtdy = ( ( t2 - t0 ) * ax - ( t1 - t0 ) * bx ) / det;
+            float cx = ( px - x0 ) / (float)ONE;
+            float cy = ( py - y0 ) / (float)ONE;
+            sRow = s0 + dsdx * cx + dsdy * cy;
+            tRow = t0 + dtdx * cx + dtdy * cy;
+        }
+
+        int[] pixels = mPixels;
+        int span = maxX - minX;
+        for ( int y = minY; y <= maxY; y++, e0 += e0dy, e1 += e1dy, e2 += e2dy, sRow += dsdy, tRow += dtdy ) {
+            // The pixels of a row inside all three edges are one span, found
+            // from the edge functions instead of testing every pixel of the
+            // bounding box, most of which a thin rotated hand does not cover.
+            int lo = spanStart( e0, e0dx, 0 );
+            lo = spanStart( e1, e1dx, lo );
+            lo = spanStart( e2, e2dx, lo );
+            int hi = spanEnd( e0, e0dx, span );
+            hi = spanEnd( e1, e1dx, hi );
+            hi = spanEnd( e2, e2dx, hi );
+            if ( lo > hi ) {
+                continue;
+            }
+            int i   = y * mWidth + minX + lo;
+            int end = y * mWidth + minX + hi;
+            if ( texture != null ) {
+                float s = sRow + dsdx * lo;
+                float t = tRow + dtdx * lo;
+                for ( ; i <= end; i++, s += dsdx, t += dtdx ) {
+                    pixels[i] = blend( pixels[i], texture.sample( s, t ), alpha256 );
+                }
+            }
+            else {
+                for ( ; i <= end; i++ ) {
+                    pixels[i] = blend( pixels[i], color, 256 );
+                }
+            }
+        }
+    }
+
+    /** @brief The first pixel from the start of the row at which an edge
+     *         w + x * dx is not negative, or lo if that is further.
+     */
+    private static int spanStart( long w, long dx, int lo ) {
+        if ( w >= 0L || dx <= 0L ) {
+            // Inside from the start, or never: spanEnd() tells which.
+            return lo;
+        }
+        long x = ( -w + dx - 1 ) / dx;
+        return x > lo ? (int)Math.min( x, Integer.MAX_VALUE ) : lo;
+    }
+
+    /** @brief The last pixel from the start of the row at which an edge
+     *         w + x * dx is not negative, or hi if that is nearer; -1 if
+     *         none is.
+     */
+    private static int spanEnd( long w, long dx, int hi ) {
+        if ( w < 0L ) {
+            return dx > 0L ? hi : -1;
+        }
+        if ( dx >= 0L ) {
+            return hi;
+        }
+        long x = w / -dx;
+        return x < hi ? (int)x : hi;
+    }
+
+    /** @brief Twice the signed area of (a, b, p), positive inside a triangle
+     *         wound like the one drawn.
+     */
+    private static long edge( int ax, int ay, int bx, int by, int px, int py ) {
+        return (long)( px - ax ) * ( by - ay ) - (long)( py - ay ) * ( bx - ax );
+    }
+
+    /** @brief 0 for a top or a left edge, whose pixels are inside, -1 for
+     *         the others, whose pixels are left to the triangle beyond.
+     */
+    private static long bias( int ax, int ay, int bx, int by ) {
+        int dy = by - ay;
+        boolean topLeft = dy > 0 || ( dy == 0 && bx < ax );
+        return topLeft ? 0L : -1L;
+    }
+
+    /** @brief src over dst with the alpha of src times alpha256 / 256. The
+     *         frame stays opaque.
+     */
+    static int blend( int dst, int src, int alpha256 ) {
+        int a = ( ( src >>> 24 ) * alpha256 + 128 ) >> 8;
+        if ( a == 0 ) {
+            return dst;
+        }
+        return Texture.lerp( dst, src, a + ( a >> 7 ) ) | 0xFF000000;
+    }
+}
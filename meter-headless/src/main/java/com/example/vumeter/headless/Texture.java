@@ -0,0 +1,88 @@
+package com.example.vumeter.headless;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/** @brief The texture of the meter in memory, sampled like the renderer of
+ *         the app samples it: GL_LINEAR, clamped to the edge, with t = 0 at
+ *         the top row, as GLUtils.texImage2D() uploads a Bitmap. Texels are
+ *         ARGB with straight alpha.
+ */
+public class Texture {
+
+    private final int   mWidth;
+    private final int   mHeight;
+    private final int[] mTexels;
+
+    public Texture( int width, int height, int[] argb ) {
+        if ( width <= 0 || height <= 0 || argb.length < width * height ) {
+            throw new IllegalArgumentException( argb.length + " texels for " + width + "x" + height );
+        }
+        mWidth  = width;
+        mHeight = height;
+        mTexels = argb;
+    }
+
+    /** @brief Decodes a PNG, e.g. app/src/main/res/drawable/vu_meter_texture.png. */
+    public static Texture read( File file ) throws IOException {
+        BufferedImage image = ImageIO.read( file );
+        if ( image == null ) {
+            throw new IOException( "Not an image: " + file );
+        }
+        int width  = image.getWidth();
+        int height = image.getHeight();
+        int[] texels = image.getRGB( 0, 0, width, height, null, 0, width );
+        return new Texture( width, height, texels );
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int[] getTexels() {
+        return mTexels;
+    }
+
+    /** @brief The bilinear sample at (s, t), in [0, 1] over the texture. */
+    public int sample( float s, float t ) {
+        float u = s * mWidth  - 0.5f;
+        float v = t * mHeight - 0.5f;
+        int x0 = (int)Math.floor( u );
+        int y0 = (int)Math.floor( v );
+        int fx = (int)( ( u - x0 ) * 256.0f );
+        int fy = (int)( ( v - y0 ) * 256.0f );
+
+        int x1 = x0 + 1;
+        int y1 = y0 + 1;
+        x0 = clamp( x0, mWidth );
+        x1 = clamp( x1, mWidth );
+        y0 = clamp( y0, mHeight ) * mWidth;
+        y1 = clamp( y1, mHeight ) * mWidth;
+
+        int[] texels = mTexels;
+        int top    = lerp( texels[ y0 + x0 ], texels[ y0 + x1 ], fx );
+        int bottom = lerp( texels[ y1 + x0 ], texels[ y1 + x1 ], fx );
+        return lerp( top, bottom, fy );
+    }
+
+    private static int clamp( int i, int size ) {
+        return i < 0 ? 0 : i >= size ? size - 1 : i;
+    }
+
+    /** @brief a + (b - a) * f / 256 on all four channels, f in [0, 256],
+     *         two channels per multiplication.
+     */
+    static int lerp( int a, int b, int f ) {
+        int g = 256 - f;
+        int rb = ( ( a & 0x00FF00FF ) * g + ( b & 0x00FF00FF ) * f ) >>> 8 & 0x00FF00FF;
+        int ag = ( ( a >>> 8 & 0x00FF00FF ) * g + ( b >>> 8 & 0x00FF00FF ) * f ) & 0xFF00FF00;
+        return ag | rb;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.vumeter.headless;
+
+import com.example.vumeter.core.CaptureConfig;
+import com.example.vumeter.core.MeterGeometry;
+import com.example.vumeter.core.SignalAudioSource;
+import com.example.vumeter.core.SineAudioSource;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the offscreen meter, with a texture of the layout of the
+ * app in flat colors: a gray base, a blue hand and a red LED.
+ */
+public class HeadlessMeterTest {
+
+    static final int GRAY = 0xFF808080;
+    static final int BLUE = 0xFF0000FF;
+    static final int RED  = 0xFFFF0000;
+
+    static final CaptureConfig MONO = new CaptureConfig(48000, 1, CaptureConfig.Encoding.PCM_FLOAT);
+
+    private final MeterGeometry geometry = new MeterGeometry();
+
+    static Texture flatTexture(MeterGeometry g) {
+        int size = (int) g.TextureWidth;
+        int[] texels = new int[size * size];
+        fill(texels, size, 0, 0, g.BaseWidth, g.BaseHeight, GRAY);
+        fill(texels, size, g.HandTopLeftX, g.HandTopLeftY, g.HandBottomRightX, g.HandBottomRightY, BLUE);
+        fill(texels, size, g.LEDTopLeftX, g.LEDTopLeftY, g.LEDBottomRightX, g.LEDBottomRightY, RED);
+        return new Texture(size, size, texels);
+    }
+
+    private static void fill(int[] texels, int size, float left, float top, float right, float bottom, int argb) {
+        for (int y = (int) top; y < (int) bottom; y++) {
+            for (int x = (int) left; x < (int) right; x++) {
+                texels[y * size + x] = argb;
+            }
+        }
+    }
+
+    /** Where a point of the base lands in the frame. */
+    private static int pixelAt(FrameBuffer frame, MeterGeometry g, float baseX, float baseY) {
+        int x = (int) (baseX * frame.getWidth() / g.BaseWidth);
+        int y = (int) (baseY * frame.getHeight() / g.BaseHeight);
+        return frame.getPixel(x, y);
+    }
+
+    /** The pixel on the axis of the hand at angle theta, a quarter of the
+     *  way from the tip, clear of where the two triangles of its quad meet.
+     */
+    private static int handPixel(FrameBuffer frame, MeterGeometry g, float theta) {
+        float[] c = new float[8];
+        g.handCorners(c, theta);
+        float x = 0.375f * (c[0] + c[2]) + 0.125f * (c[4] + c[6]);
+        float y = 0.375f * (c[1] + c[3]) + 0.125f * (c[5] + c[7]);
+        return pixelAt(frame, g, x, y);
+    }
+
+    private static int ledPixel(FrameBuffer frame, MeterGeometry g) {
+        return pixelAt(frame, g, g.LEDTopLeftOnBaseX + (g.LEDBottomRightX - g.LEDTopLeftX) / 2.0f,
+                                 g.LEDTopLeftOnBaseY + (g.LEDBottomRightY - g.LEDTopLeftY) / 2.0f);
+    }
+
+    /** A sine at full scale for the first tenth of a second, then silence. */
+    private static SignalAudioSource burst(long totalFrames) {
+        return new SignalAudioSource(MONO, totalFrames, false) {
+            @Override
+            protected double sample(long frame) {
+                return frame < 4800 ? Math.sin(2.0 * Math.PI * 1000.0 * frame / 48000.0) : 0.0;
+            }
+        };
+    }
+
+    @Test
+    public void render_writesAFramePerPeriodOfTheSource() throws Exception {
+        final boolean[] released = new boolean[1];
+        SineAudioSource source = new SineAudioSource(MONO, 1000.0, 0.5, 48000, false) {
+            @Override
+            public void release() {
+                released[0] = true;
+            }
+        };
+        HeadlessMeter meter = new HeadlessMeter(source, flatTexture(geometry), 256, 150);
+        final List<Long> indices = new ArrayList<>();
+        long frames = meter.render(new FrameSink() {
+            @Override
+            public void write(FrameBuffer frame, long index) {
+                assertEquals(256, frame.getWidth());
+                indices.add(index);
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        // Frames at 0, 1/30, ... 1 s.
+        assertEquals(31, frames);
+        assertEquals(31, indices.size());
+        assertEquals(Long.valueOf(30), indices.get(30));
+        assertEquals(1000000000L, meter.frameTimeNanos(30));
+        assertTrue(released[0]);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void renderNextFrame_afterRelease_throws() {
+        HeadlessMeter meter = new HeadlessMeter(new SineAudioSource(MONO, 1000.0, 0.5, 4800, false),
+                                                flatTexture(geometry), 64, 40);
+        meter.release();
+        meter.renderNextFrame();
+    }
+
+    @Test
+    public void hand_isDrawnWhereTheMeterPointsIt() {
+        HeadlessMeter meter = new HeadlessMeter(new SineAudioSource(MONO, 1000.0, 0.1, 48000, false),
+                                                flatTexture(geometry), 1024, 600);
+        assertTrue(meter.renderNextFrame());
+        float parked = meter.getNeedleMeter().getTheta(0);
+        assertEquals(geometry.HandAngularLimitLeft, parked, 1e-6f);
+        assertEquals(BLUE, handPixel(meter.getFrame(), meter.getGeometry(), parked));
+
+        while (meter.renderNextFrame()) {
+        }
+        float theta = meter.getNeedleMeter().getTheta(0);
+        assertTrue(theta < parked - 0.1f);
+        assertEquals(BLUE, handPixel(meter.getFrame(), meter.getGeometry(), theta));
+        // Where the hand was is base again.
+        assertEquals(GRAY, handPixel(meter.getFrame(), meter.getGeometry(), parked));
+        meter.release();
+    }
+
+    @Test
+    public void led_holdsAndReleasesOnTheClockOfTheStream() {
+        HeadlessMeter meter = new HeadlessMeter(burst(48000 * 2), flatTexture(geometry), 512, 300);
+        assertTrue(meter.renderNextFrame());
+        assertEquals(0.0f, meter.getLedBrightness(), 0.0f);
+        assertEquals(GRAY, ledPixel(meter.getFrame(), geometry));
+
+        // 0.5 s: held since the burst, however fast the frames are rendered.
+        while (meter.getFramesRendered() <= 15) {
+            assertTrue(meter.renderNextFrame());
+        }
+        assertEquals(1.0f, meter.getLedBrightness(), 0.0f);
+        assertEquals(RED, ledPixel(meter.getFrame(), geometry));
+
+        // 1.2 s: fading, half way through the release after the hold.
+        while (meter.getFramesRendered() <= 36) {
+            assertTrue(meter.renderNextFrame());
+        }
+        float fading = meter.getLedBrightness();
+        assertTrue(fading > 0.0f && fading < 1.0f);
+
+        // 1.5 s: out.
+        while (meter.getFramesRendered() <= 45) {
+            assertTrue(meter.renderNextFrame());
+        }
+        assertEquals(0.0f, meter.getLedBrightness(), 0.0f);
+        assertEquals(GRAY, ledPixel(meter.getFrame(), geometry));
+        meter.release();
+    }
+
+    @Test
+    public void vectorFace_replacesTheTexturedBase() {
+        HeadlessMeter meter = new HeadlessMeter(new SineAudioSource(MONO, 1000.0, 0.1, 4800, false),
+                                                flatTexture(geometry), 512, 300);
+        meter.setVectorFace(true);
+        assertTrue(meter.renderNextFrame());
+        assertEquals(0xFFF5EBCC, meter.getFrame().getPixel(10, 10));
+        meter.release();
+    }
+}
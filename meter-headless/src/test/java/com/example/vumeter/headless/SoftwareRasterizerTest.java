@@ -0,0 +1,145 @@
+package com.example.vumeter.headless;
+
+import com.example.vumeter.core.MeterFace;
+import com.example.vumeter.core.MeterGeometry;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests of the software rasterizer against what GLES 2.0 would draw.
+ */
+public class SoftwareRasterizerTest {
+
+    private static final float[] HALF_GRAY = {0.5f, 0.5f, 0.5f, 0.5f};
+
+    private static int channel(int argb, int shift) {
+        return argb >>> shift & 0xFF;
+    }
+
+    /** Two triangles of a quad, colored (x, y, color). */
+    private static float[] quad(float x0, float y0, float x1, float y1, float x2, float y2, float x3, float y3) {
+        return new float[] {x0, y0, 0, x1, y1, 0, x2, y2, 0, x3, y3, 0};
+    }
+
+    @Test
+    public void quads_coverEveryPixelOfTheSharedEdgeOnce() {
+        Random random = new Random(1L);
+        short[] indices = {0, 1, 2, 0, 2, 3};
+        for (int n = 0; n < 50; n++) {
+            FrameBuffer frame = new FrameBuffer(64, 48);
+            frame.clear(0xFF000000);
+            float cx = random.nextFloat() - 0.5f, cy = random.nextFloat() - 0.5f;
+            float r = 0.2f + random.nextFloat() * 0.5f;
+            double a = random.nextDouble() * Math.PI;
+            float c = (float) Math.cos(a) * r, s = (float) Math.sin(a) * r;
+            float[] v = quad(cx + c, cy + s, cx - s, cy + c, cx - c, cy - s, cx + s, cy - c);
+            new SoftwareRasterizer(frame).drawColored(v, indices, 0, 6, HALF_GRAY);
+
+            // Once blended, a pixel is 64; twice, 96.
+            int covered = 0;
+            for (int pixel : frame.getPixels()) {
+                int red = channel(pixel, 16);
+                assertTrue("blended twice: " + red, red == 0 || red == 64);
+                covered += red == 64 ? 1 : 0;
+            }
+            // The area of the square, 2 r^2 in NDC, in pixels.
+            double area = 2.0 * r * r * frame.getWidth() * frame.getHeight() / 4.0;
+            assertEquals(area, covered, area * 0.1 + 4.0);
+        }
+    }
+
+    @Test
+    public void pixelCenters_onAnEdge_belongToTheTopLeftOnly() {
+        // A 4x4 frame, pixel centers at NDC -0.75, -0.25, 0.25, 0.75. The
+        // quad from NDC -0.75 to 0.25 has centers on all four edges: those
+        // on its left and top are in, those on its right and bottom are out.
+        FrameBuffer frame = new FrameBuffer(4, 4);
+        frame.clear(0xFF000000);
+        float[] v = quad(-0.75f, 0.75f, 0.25f, 0.75f, 0.25f, -0.25f, -0.75f, -0.25f);
+        new SoftwareRasterizer(frame).drawColored(v, new short[] {0, 1, 2, 0, 2, 3}, 0, 6,
+                                                  new float[] {1, 1, 1, 1});
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                boolean in = x < 2 && y < 2;
+                assertEquals(x + "," + y, in ? -1 : 0xFF000000, frame.getPixel(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void texture_isSampledWithTheTopRowAtTZero() {
+        // Red on top, blue below.
+        Texture texture = new Texture(2, 2, new int[] {0xFFFF0000, 0xFFFF0000, 0xFF0000FF, 0xFF0000FF});
+        float[] v = {
+             1, -1, 0, 1, 1,
+             1,  1, 0, 1, 0,
+            -1,  1, 0, 0, 0,
+            -1, -1, 0, 0, 1,
+        };
+        FrameBuffer frame = new FrameBuffer(8, 8);
+        new SoftwareRasterizer(frame).drawTextured(v, new short[] {0, 1, 2, 0, 2, 3}, 0, 6, texture, 1.0f);
+        assertEquals(0xFFFF0000, frame.getPixel(3, 0));
+        assertEquals(0xFF0000FF, frame.getPixel(3, 7));
+        // Bilinear in between.
+        int middle = frame.getPixel(3, 4);
+        assertTrue(channel(middle, 16) > 0 && channel(middle, 0) > 0);
+    }
+
+    @Test
+    public void alpha_blendsLikeSrcAlphaOneMinusSrcAlpha() {
+        Texture red = new Texture(1, 1, new int[] {0xFFFF0000});
+        Texture halfRed = new Texture(1, 1, new int[] {0x80FF0000});
+        float[] v = {1, -1, 0, 1, 1, 1, 1, 0, 1, 0, -1, 1, 0, 0, 0, -1, -1, 0, 0, 1};
+        short[] indices = {0, 1, 2, 0, 2, 3};
+
+        FrameBuffer frame = new FrameBuffer(2, 2);
+        frame.clear(FrameBuffer.WHITE);
+        new SoftwareRasterizer(frame).drawTextured(v, indices, 0, 6, red, 0.5f);
+        int pixel = frame.getPixel(0, 0);
+        assertEquals(255, channel(pixel, 16));
+        assertEquals(127, channel(pixel, 8), 1);
+        assertEquals(255, channel(pixel, 24));
+
+        frame.clear(FrameBuffer.WHITE);
+        new SoftwareRasterizer(frame).drawTextured(v, indices, 0, 6, halfRed, 1.0f);
+        assertEquals(channel(pixel, 8), channel(frame.getPixel(1, 1), 8), 1);
+
+        // Alpha 0 leaves the frame as it was.
+        frame.clear(FrameBuffer.WHITE);
+        new SoftwareRasterizer(frame).drawTextured(v, indices, 0, 6, red, 0.0f);
+        assertEquals(FrameBuffer.WHITE, frame.getPixel(1, 1));
+    }
+
+    @Test
+    public void meterFace_fillsTheFrameWithPaperAndInk() {
+        MeterFace.Mesh mesh = MeterFace.generate(new MeterGeometry(), MeterFace.Scale.VU, 512, 300);
+        FrameBuffer frame = new FrameBuffer(512, 300);
+        frame.clear(0xFF000000);
+        SoftwareRasterizer rasterizer = new SoftwareRasterizer(frame);
+        rasterizer.drawColored(mesh.getVertices(), mesh.getIndices(), 0, mesh.indexCount(), MeterFace.palette());
+        int paper = 0;
+        for (int pixel : frame.getPixels()) {
+            paper += pixel == 0xFFF5EBCC ? 1 : 0;
+        }
+        // Mostly paper, the rest ink and red; none left black.
+        assertTrue(paper > frame.getPixels().length / 2);
+        for (int pixel : frame.getPixels()) {
+            assertNotEquals(0xFF000000, pixel);
+        }
+        assertEquals(0, rasterizer.getDirtyLeft());
+        assertEquals(511, rasterizer.getDirtyRight());
+    }
+
+    @Test
+    public void frame_convertsToRgbaBytes() {
+        FrameBuffer frame = new FrameBuffer(2, 1);
+        frame.clear(0xFF102030);
+        byte[] rgba = new byte[frame.rgbaBytes()];
+        frame.toRGBA(rgba);
+        assertArrayEquals(new byte[] {0x10, 0x20, 0x30, (byte) 0xFF, 0x10, 0x20, 0x30, (byte) 0xFF}, rgba);
+    }
+}